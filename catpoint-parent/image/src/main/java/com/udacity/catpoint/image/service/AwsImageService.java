@@ -8,15 +8,21 @@ import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.core.SdkBytes;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.rekognition.RekognitionClient;
+import software.amazon.awssdk.services.rekognition.model.BoundingBox;
 import software.amazon.awssdk.services.rekognition.model.DetectLabelsRequest;
 import software.amazon.awssdk.services.rekognition.model.DetectLabelsResponse;
 import software.amazon.awssdk.services.rekognition.model.Image;
+import software.amazon.awssdk.services.rekognition.model.Instance;
+import software.amazon.awssdk.services.rekognition.model.Label;
 
 import javax.imageio.ImageIO;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 import java.util.stream.Collectors;
 
@@ -40,6 +46,13 @@ public class AwsImageService implements ImageService {
     //aws recommendation is to maintain only a single instance of client objects
     private static RekognitionClient rekognitionClient;
 
+    //lowest confidence asked for by detect, so the result can be checked against any reasonable threshhold
+    private static final float MIN_CONFIDENCE = 20.0f;
+
+    //encoding buffer reused across frames, so it doesn't grow from scratch every time
+    private static final ThreadLocal<ByteArrayOutputStream> encodeBuffers =
+            ThreadLocal.withInitial(() -> new ByteArrayOutputStream(256 * 1024));
+
     public AwsImageService() {
         Properties props = new Properties();
         try (InputStream is = getClass().getClassLoader().getResourceAsStream("config.properties")) {
@@ -69,18 +82,69 @@ public class AwsImageService implements ImageService {
      */
     @Override
     public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        return detect(image, confidenceThreshhold).containsCat(confidenceThreshhold);
+    }
+
+    /**
+     * Returns every label Rekognition finds with at least {@value #MIN_CONFIDENCE}% confidence,
+     * along with the bounding boxes of the objects it can locate.
+     */
+    @Override
+    public DetectionResult detect(BufferedImage image) {
+        return detect(image, MIN_CONFIDENCE);
+    }
+
+    private DetectionResult detect(BufferedImage image, float minConfidence) {
+        ImageDetectionEvent event = new ImageDetectionEvent();
+        event.begin();
+        long start = System.nanoTime();
         Image awsImage = null;
-        try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
+        long encodedSize;
+        ByteArrayOutputStream os = encodeBuffers.get();
+        os.reset();
+        try {
             ImageIO.write(image, "jpg", os);
-            awsImage = Image.builder().bytes(SdkBytes.fromByteArray(os.toByteArray())).build();
+            encodedSize = os.size();
+            //toByteArray already made a private copy, so the sdk doesn't need to copy it again
+            awsImage = Image.builder().bytes(SdkBytes.fromByteArrayUnsafe(os.toByteArray())).build();
         } catch (IOException ioe) {
             log.error("Error building image byte array", ioe);
-            return false;
+            return DetectionResult.NONE;
         }
-        DetectLabelsRequest detectLabelsRequest = DetectLabelsRequest.builder().image(awsImage).minConfidence(confidenceThreshhold).build();
+        long encoded = System.nanoTime();
+        DetectLabelsRequest detectLabelsRequest = DetectLabelsRequest.builder().image(awsImage).minConfidence(minConfidence).build();
         DetectLabelsResponse response = rekognitionClient.detectLabels(detectLabelsRequest);
+        long received = System.nanoTime();
         logLabelsForFun(response);
-        return response.labels().stream().filter(l -> l.name().toLowerCase().contains("cat")).findFirst().isPresent();
+        DetectionResult result = toResult(response);
+        boolean cat = result.containsCat(minConfidence);
+        if (event.shouldCommit()) {
+            event.service = "aws";
+            event.width = image.getWidth();
+            event.height = image.getHeight();
+            event.encodedSize = encodedSize;
+            event.encodeNanos = encoded - start;
+            event.networkNanos = received - encoded;
+            event.labels = response.labels().size();
+            event.catDetected = cat;
+            event.commit();
+        }
+        return result;
+    }
+
+    private static DetectionResult toResult(DetectLabelsResponse response) {
+        List<DetectedLabel> labels = new ArrayList<>(response.labels().size());
+        for (Label label : response.labels()) {
+            List<Rectangle2D> boxes = new ArrayList<>();
+            for (Instance instance : label.instances()) {
+                BoundingBox box = instance.boundingBox();
+                if (box != null) {
+                    boxes.add(new Rectangle2D.Float(box.left(), box.top(), box.width(), box.height()));
+                }
+            }
+            labels.add(new DetectedLabel(label.name(), label.confidence(), boxes));
+        }
+        return new DetectionResult(labels);
     }
 
     private void logLabelsForFun(DetectLabelsResponse response) {
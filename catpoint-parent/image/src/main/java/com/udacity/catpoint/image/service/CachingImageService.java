@@ -0,0 +1,130 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Image service that remembers the {@link DetectionResult} of recent frames, so asking about the
+ * same frame again, with another threshhold or for another label, doesn't run detection again.
+ * <p>
+ * Frames are recognized by their content rather than by object identity, because decoded frames
+ * are usually pooled and the same image object holds a different frame every time. The content
+ * is reduced to its size and a 64 bit {@link ImageKernels#hash(BufferedImage) hash} of every pixel, which is
+ * much cheaper than detection.
+ * <p>
+ * Only delegates that implement {@link ImageService#detect} return labels that hold for any
+ * threshhold. For other delegates, {@link #imageContainsCat} asks the delegate every time with
+ * the caller's threshhold, since the default {@code detect} only answers at 50.
+ */
+public class CachingImageService implements ImageService {
+
+    private final ImageService delegate;
+    private final boolean delegateDetects;
+    private final Map<FrameKey, DetectionResult> results;
+
+    //metrics, guarded by results
+    private long hits;
+    private long misses;
+
+    /**
+     * @param delegate The service that runs detection
+     * @param capacity How many frames to remember
+     */
+    public CachingImageService(ImageService delegate, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.delegate = delegate;
+        this.delegateDetects = overridesDetect(delegate);
+        this.results = new LinkedHashMap<>(capacity * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<FrameKey, DetectionResult> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    private static boolean overridesDetect(ImageService service) {
+        try {
+            return service.getClass().getMethod("detect", BufferedImage.class).getDeclaringClass() != ImageService.class;
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        if (!delegateDetects || image == null) {
+            return delegate.imageContainsCat(image, confidenceThreshhold);
+        }
+        return detect(image).containsCat(confidenceThreshhold);
+    }
+
+    /**
+     * A null image, sent when there is no camera frame, goes to the delegate without caching.
+     */
+    @Override
+    public DetectionResult detect(BufferedImage image) {
+        if (image == null) {
+            return delegate.detect(null);
+        }
+        FrameKey key = FrameKey.of(image);
+        synchronized (results) {
+            DetectionResult cached = results.get(key);
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+        //not holding the lock while detecting, two threads may detect the same new frame
+        DetectionResult result = delegate.detect(image);
+        synchronized (results) {
+            results.put(key, result);
+        }
+        return result;
+    }
+
+    public long getHits() {
+        synchronized (results) {
+            return hits;
+        }
+    }
+
+    public long getMisses() {
+        synchronized (results) {
+            return misses;
+        }
+    }
+
+    private static final class FrameKey {
+        private final int width;
+        private final int height;
+        private final long hash;
+
+        private FrameKey(int width, int height, long hash) {
+            this.width = width;
+            this.height = height;
+            this.hash = hash;
+        }
+
+        static FrameKey of(BufferedImage image) {
+            return new FrameKey(image.getWidth(), image.getHeight(), ImageKernels.hash(image));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            FrameKey key = (FrameKey) o;
+            return width == key.width && height == key.height && hash == key.hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(width, height, hash);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.udacity.catpoint.image.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Image service that asks a cheap local classifier first and only escalates to an expensive
+ * detector, such as {@link AwsImageService}, when the local score is uncertain. The uncertain
+ * band is set relative to the confidence threshhold of each call: a score below
+ * threshhold - lowerMargin is a confident no, a score at or above threshhold + upperMargin a
+ * confident yes, and anything in between is escalated. {@link #detect} uses the band around the
+ * default threshhold of 50.
+ * <p>
+ * {@link TextureClassifier} only looks at texture, so any busy scene can score high without a
+ * cat in it. With it, the local stage only rules out featureless frames, and every other frame
+ * goes to the detector.
+ * <p>
+ * To keep an eye on recall, every n-th frame decided locally is also sent to the detector and
+ * the two answers compared. Together with the escalated frames, that gives the agreement rate
+ * between the stages and the number of cats the local stage would have missed.
+ */
+public class CascadingImageService implements ImageService {
+
+    private static final float DETECT_THRESHHOLD = 50.0f;
+
+    private Logger log = LoggerFactory.getLogger(CascadingImageService.class);
+
+    private final LocalClassifier localClassifier;
+    private final ImageService detector;
+    private final float lowerMargin;
+    private final float upperMargin;
+    private final int auditEvery;
+
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicLong localNegatives = new AtomicLong();
+    private final AtomicLong localPositives = new AtomicLong();
+    private final AtomicLong escalations = new AtomicLong();
+    private final AtomicLong comparisons = new AtomicLong();
+    private final AtomicLong agreements = new AtomicLong();
+    private final AtomicLong missedCats = new AtomicLong();
+
+    /**
+     * @param localClassifier The cheap first stage
+     * @param detector        The expensive second stage
+     * @param lowerMargin     How far below the threshhold a local score must be to decide no cat
+     * @param upperMargin     How far above the threshhold a local score must be to decide cat,
+     *                        {@link Float#POSITIVE_INFINITY} to have the detector confirm every cat
+     * @param auditEvery      Also send every n-th locally decided frame to the detector, 0 to never
+     */
+    public CascadingImageService(LocalClassifier localClassifier, ImageService detector,
+                                 float lowerMargin, float upperMargin, int auditEvery) {
+        if (lowerMargin < 0 || upperMargin < 0 || auditEvery < 0) {
+            throw new IllegalArgumentException("margins and audit interval can't be negative");
+        }
+        this.localClassifier = localClassifier;
+        this.detector = detector;
+        this.lowerMargin = lowerMargin;
+        this.upperMargin = upperMargin;
+        this.auditEvery = auditEvery;
+    }
+
+    /**
+     * Uses {@link TextureClassifier}, which is only trusted to rule frames out.
+     */
+    public CascadingImageService(ImageService detector) {
+        this(new TextureClassifier(), detector, 30f, Float.POSITIVE_INFINITY, 50);
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        if (image == null) {
+            //no camera frame, nothing for the local stage to score
+            return detector.imageContainsCat(null, confidenceThreshhold);
+        }
+        frames.incrementAndGet();
+        float score = localClassifier.catConfidence(image);
+        Boolean localAnswer = decideLocally(score, confidenceThreshhold);
+        if (localAnswer == null) {
+            boolean cat = detector.imageContainsCat(image, confidenceThreshhold);
+            compare(score >= confidenceThreshhold, cat);
+            return cat;
+        }
+        if (auditDue()) {
+            audit(score, localAnswer, detector.imageContainsCat(image, confidenceThreshhold));
+        }
+        return localAnswer;
+    }
+
+    /**
+     * Escalated frames return the detector's labels. A frame decided locally gets a "Cat" label
+     * with the local score, or no labels if it was ruled out.
+     */
+    @Override
+    public DetectionResult detect(BufferedImage image) {
+        if (image == null) {
+            return detector.detect(null);
+        }
+        frames.incrementAndGet();
+        float score = localClassifier.catConfidence(image);
+        Boolean localAnswer = decideLocally(score, DETECT_THRESHHOLD);
+        if (localAnswer == null) {
+            DetectionResult detection = detector.detect(image);
+            compare(score >= DETECT_THRESHHOLD, detection.containsCat(DETECT_THRESHHOLD));
+            return detection;
+        }
+        if (auditDue()) {
+            audit(score, localAnswer, detector.detect(image).containsCat(DETECT_THRESHHOLD));
+        }
+        return localAnswer
+                ? new DetectionResult(List.of(new DetectedLabel("Cat", score, List.of())))
+                : DetectionResult.NONE;
+    }
+
+    /**
+     * @return the local answer, or null if the score is in the uncertain band and the frame has
+     * been counted as escalated
+     */
+    private Boolean decideLocally(float score, float confidenceThreshhold) {
+        if (score < confidenceThreshhold - lowerMargin) {
+            localNegatives.incrementAndGet();
+            return false;
+        }
+        if (score >= confidenceThreshhold + upperMargin) {
+            localPositives.incrementAndGet();
+            return true;
+        }
+        escalations.incrementAndGet();
+        return null;
+    }
+
+    private boolean auditDue() {
+        return auditEvery > 0 && (localPositives.get() + localNegatives.get()) % auditEvery == 0;
+    }
+
+    private void audit(float score, boolean localAnswer, boolean detectorAnswer) {
+        compare(localAnswer, detectorAnswer);
+        if (!localAnswer && detectorAnswer) {
+            log.warn("Local stage scored {} for a frame the detector says has a cat", score);
+        }
+    }
+
+    private void compare(boolean localAnswer, boolean detectorAnswer) {
+        comparisons.incrementAndGet();
+        if (localAnswer == detectorAnswer) {
+            agreements.incrementAndGet();
+        } else if (detectorAnswer) {
+            missedCats.incrementAndGet();
+        }
+    }
+
+    public long getFrames() {
+        return frames.get();
+    }
+
+    /**
+     * @return the number of frames the local stage decided had no cat
+     */
+    public long getLocalNegatives() {
+        return localNegatives.get();
+    }
+
+    /**
+     * @return the number of frames the local stage decided had a cat
+     */
+    public long getLocalPositives() {
+        return localPositives.get();
+    }
+
+    /**
+     * @return the number of frames sent to the detector because the local score was uncertain
+     */
+    public long getEscalations() {
+        return escalations.get();
+    }
+
+    /**
+     * @return the fraction of frames that were escalated, not counting audits
+     */
+    public double getEscalationRate() {
+        long total = frames.get();
+        return total == 0 ? 0 : (double) escalations.get() / total;
+    }
+
+    /**
+     * @return the fraction of frames seen by both stages where the local score was on the same
+     * side of the threshhold as the detector's answer
+     */
+    public double getAgreementRate() {
+        long total = comparisons.get();
+        return total == 0 ? 1 : (double) agreements.get() / total;
+    }
+
+    /**
+     * @return the number of frames seen by both stages where the detector found a cat the
+     * local score was below the threshhold for
+     */
+    public long getMissedCats() {
+        return missedCats.get();
+    }
+}
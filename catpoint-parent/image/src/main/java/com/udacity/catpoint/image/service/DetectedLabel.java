@@ -0,0 +1,60 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Something an image service recognized in an image, with how confident it is and, for objects
+ * it can locate, where they are.
+ */
+public final class DetectedLabel {
+
+    private final String name;
+    private final float confidence;
+    private final List<Rectangle2D> boundingBoxes;
+
+    /**
+     * @param name          Name of the label, for example "Cat"
+     * @param confidence    Confidence from 0 to 100
+     * @param boundingBoxes Where each instance of the label is, as fractions of the image width
+     *                      and height. Empty if the label isn't a locatable object.
+     */
+    public DetectedLabel(String name, float confidence, List<? extends Rectangle2D> boundingBoxes) {
+        this.name = name;
+        this.confidence = confidence;
+        List<Rectangle2D> copies = new ArrayList<>(boundingBoxes.size());
+        for (Rectangle2D box : boundingBoxes) {
+            copies.add((Rectangle2D) box.clone());
+        }
+        this.boundingBoxes = Collections.unmodifiableList(copies);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public float getConfidence() {
+        return confidence;
+    }
+
+    /**
+     * @return the instances of the label, as fractions of the image size. Don't modify them.
+     */
+    public List<Rectangle2D> getBoundingBoxes() {
+        return boundingBoxes;
+    }
+
+    /**
+     * @return true if the label's name contains the given name, ignoring case
+     */
+    public boolean matches(String label) {
+        return name.toLowerCase().contains(label.toLowerCase());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s(%.1f%%)", name, confidence);
+    }
+}
@@ -0,0 +1,152 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary protocol between {@link WorkerPoolImageService} and its {@link DetectionWorker} processes.
+ * Every frame is [int length][byte type][long id][payload], where length counts everything after
+ * itself.
+ * <ul>
+ *     <li>HELLO, worker to pool: id is the worker's slot, payload is the {@value #TOKEN_SIZE} byte
+ *     token the worker was started with</li>
+ *     <li>DETECT, pool to worker: id is the request id, payload is [float threshhold][int width]
+ *     [int height] followed by the pixels as packed RGB bytes, row by row</li>
+ *     <li>RESULT, worker to pool: payload is one byte, 1 if the image contains a cat</li>
+ *     <li>FAILURE, worker to pool: payload is [short length] followed by at most 1 KB of the error message as UTF-8</li>
+ * </ul>
+ */
+final class DetectionProtocol {
+
+    static final byte HELLO = 1;
+    static final byte DETECT = 2;
+    static final byte RESULT = 3;
+    static final byte FAILURE = 4;
+
+    static final int HEADER_SIZE = Byte.BYTES + Long.BYTES;
+    static final int TOKEN_SIZE = 32;
+    private static final int MAX_FRAME_SIZE = 256 * 1024 * 1024;
+
+    private DetectionProtocol() {
+    }
+
+    static void writeHello(DataOutputStream out, int slot, byte[] token) throws IOException {
+        out.writeInt(HEADER_SIZE + token.length);
+        out.writeByte(HELLO);
+        out.writeLong(slot);
+        out.write(token);
+        out.flush();
+    }
+
+    /**
+     * Writes a detection request, packing the pixels into the given scratch buffer.
+     *
+     * @param pixels Scratch buffer for the packed pixels, at least width * height * 3 bytes
+     */
+    static void writeDetect(DataOutputStream out, long requestId, BufferedImage image, float threshhold,
+                            byte[] pixels) throws IOException {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int pixelBytes = width * height * 3;
+        ImageKernels.rgb(image, pixels);
+        out.writeInt(HEADER_SIZE + Float.BYTES + 2 * Integer.BYTES + pixelBytes);
+        out.writeByte(DETECT);
+        out.writeLong(requestId);
+        out.writeFloat(threshhold);
+        out.writeInt(width);
+        out.writeInt(height);
+        out.write(pixels, 0, pixelBytes);
+        out.flush();
+    }
+
+    static void writeResult(DataOutputStream out, long requestId, boolean cat) throws IOException {
+        out.writeInt(HEADER_SIZE + 1);
+        out.writeByte(RESULT);
+        out.writeLong(requestId);
+        out.writeBoolean(cat);
+        out.flush();
+    }
+
+    static void writeFailure(DataOutputStream out, long requestId, String message) throws IOException {
+        byte[] utf = String.valueOf(message).getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(utf.length, 1024);
+        out.writeInt(HEADER_SIZE + Short.BYTES + length);
+        out.writeByte(FAILURE);
+        out.writeLong(requestId);
+        out.writeShort(length);
+        out.write(utf, 0, length);
+        out.flush();
+    }
+
+    /**
+     * Reads the length and header of the next frame.
+     *
+     * @return the payload length
+     */
+    static int readHeader(DataInputStream in, Header header) throws IOException {
+        int length = in.readInt();
+        if (length < HEADER_SIZE || length > MAX_FRAME_SIZE) {
+            throw new StreamCorruptedException("Invalid frame length " + length);
+        }
+        header.type = in.readByte();
+        header.id = in.readLong();
+        return length - HEADER_SIZE;
+    }
+
+    /**
+     * Reads the payload of a DETECT frame into an image, reusing the given image if it has the
+     * right size.
+     *
+     * @param reuse  A TYPE_INT_RGB image to decode into, or null
+     * @param pixels Scratch buffer for the packed pixels
+     * @return the image the pixels were read into
+     */
+    static BufferedImage readImage(DataInputStream in, int width, int height, BufferedImage reuse, byte[] pixels)
+            throws IOException {
+        if (width < 1 || height < 1 || (long) width * height * 3 > MAX_FRAME_SIZE) {
+            throw new StreamCorruptedException("Invalid image size " + width + "x" + height);
+        }
+        BufferedImage image = reuse != null && reuse.getWidth() == width && reuse.getHeight() == height
+                ? reuse : new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int pixelBytes = width * height * 3;
+        in.readFully(pixels, 0, pixelBytes);
+        int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        for (int i = 0, p = 0; i < data.length; i++, p += 3) {
+            data[i] = (pixels[p] & 0xFF) << 16 | (pixels[p + 1] & 0xFF) << 8 | pixels[p + 2] & 0xFF;
+        }
+        return image;
+    }
+
+    /**
+     * Reads the token of a HELLO frame.
+     *
+     * @param payload The payload length returned by {@link #readHeader(DataInputStream, Header)}
+     */
+    static byte[] readToken(DataInputStream in, int payload) throws IOException {
+        if (payload != TOKEN_SIZE) {
+            throw new StreamCorruptedException("Invalid token length " + payload);
+        }
+        byte[] token = new byte[TOKEN_SIZE];
+        in.readFully(token);
+        return token;
+    }
+
+    static String readFailure(DataInputStream in) throws IOException {
+        byte[] utf = new byte[in.readUnsignedShort()];
+        in.readFully(utf);
+        return new String(utf, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Type and id of a frame, reused between frames.
+     */
+    static final class Header {
+        byte type;
+        long id;
+    }
+}
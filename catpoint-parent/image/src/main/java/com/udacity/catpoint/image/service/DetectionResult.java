@@ -0,0 +1,75 @@
+package com.udacity.catpoint.image.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Everything an image service recognized in one image. Holding on to the result lets callers
+ * check it against other labels or confidence threshholds without running detection again.
+ */
+public final class DetectionResult {
+
+    public static final DetectionResult NONE = new DetectionResult(List.of());
+
+    private final List<DetectedLabel> labels;
+
+    public DetectionResult(List<DetectedLabel> labels) {
+        this.labels = List.copyOf(labels);
+    }
+
+    public List<DetectedLabel> getLabels() {
+        return labels;
+    }
+
+    /**
+     * @param label A label name, matched the way {@link DetectedLabel#matches(String)} does
+     * @return the highest confidence of any matching label, or 0 if there is none
+     */
+    public float getConfidence(String label) {
+        float confidence = 0;
+        for (DetectedLabel detected : labels) {
+            if (detected.matches(label)) {
+                confidence = Math.max(confidence, detected.getConfidence());
+            }
+        }
+        return confidence;
+    }
+
+    /**
+     * @return true if a matching label was detected with at least the given confidence
+     */
+    public boolean contains(String label, float confidenceThreshhold) {
+        for (DetectedLabel detected : labels) {
+            if (detected.matches(label) && detected.getConfidence() >= confidenceThreshhold) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Same check {@link ImageService#imageContainsCat} makes.
+     */
+    public boolean containsCat(float confidenceThreshhold) {
+        return contains("cat", confidenceThreshhold);
+    }
+
+    /**
+     * @param threshholds Minimum confidence per label name
+     * @return true if any of the labels was detected with at least its confidence
+     */
+    public boolean containsAny(Map<String, Float> threshholds) {
+        for (Map.Entry<String, Float> threshhold : threshholds.entrySet()) {
+            if (contains(threshhold.getKey(), threshhold.getValue())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return labels.stream().map(DetectedLabel::toString).collect(Collectors.joining(", "));
+    }
+}
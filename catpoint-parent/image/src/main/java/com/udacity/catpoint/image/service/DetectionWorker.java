@@ -0,0 +1,83 @@
+package com.udacity.catpoint.image.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Base64;
+
+/**
+ * Entry point of a detection worker process started by {@link WorkerPoolImageService}. Connects
+ * back to the pool on the loopback interface, then runs every frame it is sent through an
+ * {@link ImageService} until the pool closes the connection.
+ * <p>
+ * Arguments: the pool's port, the worker's slot, and the class name of the image service to use,
+ * which needs a public no-argument constructor. The token to identify itself with comes in the
+ * {@value #TOKEN_VARIABLE} environment variable, base64 encoded, so other users can't read it off
+ * the command line.
+ */
+public final class DetectionWorker {
+
+    static final String TOKEN_VARIABLE = "CATPOINT_DETECTION_TOKEN";
+
+    private static final Logger log = LoggerFactory.getLogger(DetectionWorker.class);
+
+    private DetectionWorker() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = Integer.parseInt(args[0]);
+        int slot = Integer.parseInt(args[1]);
+        byte[] token = Base64.getDecoder().decode(System.getenv(TOKEN_VARIABLE));
+        ImageService imageService = (ImageService) Class.forName(args[2]).getConstructor().newInstance();
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DetectionProtocol.writeHello(out, slot, token);
+            serve(imageService, in, out);
+        } catch (EOFException eof) {
+            //the pool closed the connection
+        }
+    }
+
+    private static void serve(ImageService imageService, DataInputStream in, DataOutputStream out) throws IOException {
+        DetectionProtocol.Header header = new DetectionProtocol.Header();
+        BufferedImage image = null;
+        byte[] pixels = new byte[0];
+        while (true) {
+            int payload = DetectionProtocol.readHeader(in, header);
+            if (header.type != DetectionProtocol.DETECT) {
+                in.skipNBytes(payload);
+                continue;
+            }
+            float threshhold = in.readFloat();
+            int width = in.readInt();
+            int height = in.readInt();
+            int pixelBytes = payload - Float.BYTES - 2 * Integer.BYTES;
+            if ((long) width * height * 3 != pixelBytes) {
+                throw new StreamCorruptedException("Image size doesn't match frame length");
+            }
+            if (pixels.length < pixelBytes) {
+                pixels = new byte[pixelBytes];
+            }
+            image = DetectionProtocol.readImage(in, width, height, image, pixels);
+            try {
+                DetectionProtocol.writeResult(out, header.id, imageService.imageContainsCat(image, threshhold));
+            } catch (RuntimeException e) {
+                log.error("Detection failed", e);
+                DetectionProtocol.writeFailure(out, header.id, e.toString());
+            }
+        }
+    }
+}
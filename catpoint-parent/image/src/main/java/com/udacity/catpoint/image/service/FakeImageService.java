@@ -1,6 +1,7 @@
 package com.udacity.catpoint.image.service;
 
 import java.awt.image.BufferedImage;
+import java.util.List;
 import java.util.Random;
 
 /**
@@ -13,4 +14,12 @@ public class FakeImageService implements ImageService {
     public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
         return r.nextBoolean();
     }
+
+    /**
+     * Guesses a confidence for "Cat", so the result can be checked against different threshholds.
+     */
+    @Override
+    public DetectionResult detect(BufferedImage image) {
+        return new DetectionResult(List.of(new DetectedLabel("Cat", r.nextFloat() * 100, List.of())));
+    }
 }
@@ -0,0 +1,49 @@
+package com.udacity.catpoint.image.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder event for one image going through detection. The event duration is the
+ * total time, split into encoding the image and waiting on the network.
+ */
+@Name("com.udacity.catpoint.ImageDetection")
+@Label("Image Detection")
+@Category({"Catpoint", "Image"})
+@Description("An image was checked for cats")
+@StackTrace(false)
+final class ImageDetectionEvent extends Event {
+
+    @Label("Service")
+    String service;
+
+    @Label("Width")
+    int width;
+
+    @Label("Height")
+    int height;
+
+    @Label("Encoded Size")
+    @DataAmount
+    long encodedSize;
+
+    @Label("Encode Time")
+    @Timespan
+    long encodeNanos;
+
+    @Label("Network Time")
+    @Timespan
+    long networkNanos;
+
+    @Label("Labels")
+    int labels;
+
+    @Label("Cat Detected")
+    boolean catDetected;
+}
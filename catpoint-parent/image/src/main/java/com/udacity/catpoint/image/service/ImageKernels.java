@@ -0,0 +1,450 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Preprocessing kernels for local image analysis: luma and RGB conversion, box downscaling,
+ * frame differencing and hashing.
+ * <p>
+ * Images are read straight from the arrays behind their rasters instead of one pixel at a time
+ * through {@link BufferedImage#getRGB}. Packed int images (TYPE_INT_RGB, TYPE_INT_ARGB and the
+ * like), interleaved byte images (TYPE_3BYTE_BGR, TYPE_4BYTE_ABGR and the like) and
+ * TYPE_BYTE_GRAY are read directly, including sub images; anything else, such as indexed color,
+ * goes through getRGB a row at a time. The inner loops are simple counted loops over arrays
+ * without branches, so the JIT can unroll and vectorize them, and none of them allocate when
+ * given destination arrays of the right size.
+ */
+public final class ImageKernels {
+
+    //ITU-R BT.601 luma weights, scaled by 256
+    private static final int LUMA_R = 77;
+    private static final int LUMA_G = 150;
+    private static final int LUMA_B = 29;
+
+    //xxHash64 primes
+    private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME_3 = 0x165667B19E3779F9L;
+    private static final long PRIME_4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME_5 = 0x27D4EB2F165667C5L;
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private ImageKernels() {
+    }
+
+    /**
+     * Converts an image to 8 bit luma, one byte per pixel, row by row.
+     *
+     * @param dest Array to write into, reused if it holds at least width * height bytes, or null
+     * @return the array written into
+     */
+    public static byte[] luma(BufferedImage image, byte[] dest) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        byte[] luma = dest != null && dest.length >= width * height ? dest : new byte[width * height];
+        Layout layout = Layout.of(image);
+        switch (layout.kind) {
+            case Layout.PACKED_INT -> {
+                int[] data = ((DataBufferInt) layout.buffer).getData();
+                for (int y = 0; y < height; y++) {
+                    lumaPacked(data, layout.rowStart(y), layout.redShift, layout.greenShift, layout.blueShift,
+                            luma, y * width, width);
+                }
+            }
+            case Layout.INTERLEAVED_BYTE -> {
+                byte[] data = ((DataBufferByte) layout.buffer).getData();
+                for (int y = 0; y < height; y++) {
+                    int start = layout.rowStart(y);
+                    lumaInterleaved(data, start + layout.red, start + layout.green, start + layout.blue,
+                            layout.pixelStride, luma, y * width, width);
+                }
+            }
+            case Layout.GRAY_BYTE -> {
+                byte[] data = ((DataBufferByte) layout.buffer).getData();
+                for (int y = 0; y < height; y++) {
+                    System.arraycopy(data, layout.rowStart(y), luma, y * width, width);
+                }
+            }
+            default -> {
+                int[] row = new int[width];
+                for (int y = 0; y < height; y++) {
+                    image.getRGB(0, y, width, 1, row, 0, width);
+                    lumaPacked(row, 0, 16, 8, 0, luma, y * width, width);
+                }
+            }
+        }
+        return luma;
+    }
+
+    private static void lumaPacked(int[] src, int from, int redShift, int greenShift, int blueShift,
+                                   byte[] dest, int to, int length) {
+        for (int i = 0; i < length; i++) {
+            int p = src[from + i];
+            int r = p >>> redShift & 0xFF;
+            int g = p >>> greenShift & 0xFF;
+            int b = p >>> blueShift & 0xFF;
+            dest[to + i] = (byte) (LUMA_R * r + LUMA_G * g + LUMA_B * b + 128 >> 8);
+        }
+    }
+
+    private static void lumaInterleaved(byte[] src, int red, int green, int blue, int pixelStride,
+                                        byte[] dest, int to, int length) {
+        for (int i = 0, p = 0; i < length; i++, p += pixelStride) {
+            int r = src[red + p] & 0xFF;
+            int g = src[green + p] & 0xFF;
+            int b = src[blue + p] & 0xFF;
+            dest[to + i] = (byte) (LUMA_R * r + LUMA_G * g + LUMA_B * b + 128 >> 8);
+        }
+    }
+
+    /**
+     * Packs the pixels of an image into 8 bit red, green and blue bytes, row by row, with the
+     * same values {@link BufferedImage#getRGB} gives. Gray and premultiplied images go through
+     * getRGB, which converts them.
+     *
+     * @param dest Array to write into, reused if it holds at least width * height * 3 bytes, or null
+     * @return the array written into
+     */
+    public static byte[] rgb(BufferedImage image, byte[] dest) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        byte[] rgb = dest != null && dest.length >= width * height * 3 ? dest : new byte[width * height * 3];
+        Layout layout = image.isAlphaPremultiplied() ? new Layout(Layout.OTHER) : Layout.of(image);
+        switch (layout.kind) {
+            case Layout.PACKED_INT -> {
+                int[] data = ((DataBufferInt) layout.buffer).getData();
+                for (int y = 0; y < height; y++) {
+                    rgbPacked(data, layout.rowStart(y), layout.redShift, layout.greenShift, layout.blueShift,
+                            rgb, y * width * 3, width);
+                }
+            }
+            case Layout.INTERLEAVED_BYTE -> {
+                byte[] data = ((DataBufferByte) layout.buffer).getData();
+                for (int y = 0; y < height; y++) {
+                    int start = layout.rowStart(y);
+                    rgbInterleaved(data, start + layout.red, start + layout.green, start + layout.blue,
+                            layout.pixelStride, rgb, y * width * 3, width);
+                }
+            }
+            default -> {
+                int[] row = new int[width];
+                for (int y = 0; y < height; y++) {
+                    image.getRGB(0, y, width, 1, row, 0, width);
+                    rgbPacked(row, 0, 16, 8, 0, rgb, y * width * 3, width);
+                }
+            }
+        }
+        return rgb;
+    }
+
+    private static void rgbPacked(int[] src, int from, int redShift, int greenShift, int blueShift,
+                                  byte[] dest, int to, int length) {
+        for (int i = 0, d = to; i < length; i++, d += 3) {
+            int p = src[from + i];
+            dest[d] = (byte) (p >>> redShift);
+            dest[d + 1] = (byte) (p >>> greenShift);
+            dest[d + 2] = (byte) (p >>> blueShift);
+        }
+    }
+
+    private static void rgbInterleaved(byte[] src, int red, int green, int blue, int pixelStride,
+                                       byte[] dest, int to, int length) {
+        for (int i = 0, p = 0, d = to; i < length; i++, p += pixelStride, d += 3) {
+            dest[d] = src[red + p];
+            dest[d + 1] = src[green + p];
+            dest[d + 2] = src[blue + p];
+        }
+    }
+
+    /**
+     * Shrinks an 8 bit plane, such as the output of {@link #luma}, by averaging the block of
+     * source pixels that falls on each destination pixel. Sizes that don't divide evenly get
+     * blocks that differ in size by at most one pixel.
+     *
+     * @param dest Array to write into, reused if it holds at least targetWidth * targetHeight bytes, or null
+     * @return the array written into
+     */
+    public static byte[] downscale(byte[] src, int width, int height, int targetWidth, int targetHeight, byte[] dest) {
+        if (targetWidth < 1 || targetHeight < 1 || targetWidth > width || targetHeight > height) {
+            throw new IllegalArgumentException("Can't downscale " + width + "x" + height
+                    + " to " + targetWidth + "x" + targetHeight);
+        }
+        byte[] scaled = dest != null && dest.length >= targetWidth * targetHeight ? dest : new byte[targetWidth * targetHeight];
+        for (int ty = 0; ty < targetHeight; ty++) {
+            int y0 = (int) ((long) ty * height / targetHeight);
+            int y1 = (int) ((long) (ty + 1) * height / targetHeight);
+            for (int tx = 0; tx < targetWidth; tx++) {
+                int x0 = (int) ((long) tx * width / targetWidth);
+                int x1 = (int) ((long) (tx + 1) * width / targetWidth);
+                int sum = 0;
+                for (int y = y0; y < y1; y++) {
+                    sum += sumBytes(src, y * width + x0, x1 - x0);
+                }
+                int count = (x1 - x0) * (y1 - y0);
+                scaled[ty * targetWidth + tx] = (byte) ((sum + count / 2) / count);
+            }
+        }
+        return scaled;
+    }
+
+    private static int sumBytes(byte[] src, int from, int length) {
+        int sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += src[from + i] & 0xFF;
+        }
+        return sum;
+    }
+
+    /**
+     * Compares two 8 bit planes of the same size, for example the luma of consecutive frames.
+     *
+     * @param diff      Array to write the absolute differences into, or null if only the count is needed
+     * @param threshold Differences larger than this are counted
+     * @return the number of pixels whose difference is larger than the threshold
+     */
+    public static int absDiff(byte[] a, byte[] b, int length, int threshold, byte[] diff) {
+        int count = 0;
+        if (diff == null) {
+            for (int i = 0; i < length; i++) {
+                int d = Math.abs((a[i] & 0xFF) - (b[i] & 0xFF));
+                //1 when d > threshold, without a branch
+                count += threshold - d >>> 31;
+            }
+        } else {
+            for (int i = 0; i < length; i++) {
+                int d = Math.abs((a[i] & 0xFF) - (b[i] & 0xFF));
+                diff[i] = (byte) d;
+                count += threshold - d >>> 31;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Compares two runs of 8 bit samples, which may be in the same array, for example a plane and
+     * the same plane shifted by one pixel or one row.
+     *
+     * @param threshold Differences larger than this are counted
+     * @return the number of samples whose difference is larger than the threshold
+     */
+    public static int absDiff(byte[] a, int aFrom, byte[] b, int bFrom, int length, int threshold) {
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            int d = Math.abs((a[aFrom + i] & 0xFF) - (b[bFrom + i] & 0xFF));
+            count += threshold - d >>> 31;
+        }
+        return count;
+    }
+
+    /**
+     * Hashes the pixels of an image as they are stored, along with its size and type. Equal
+     * frames of the same type get the same hash; different frames get different hashes with
+     * overwhelming probability, which makes the hash suitable as a cache key.
+     */
+    public static long hash(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        long hash = PRIME_5 ^ ((long) width << 32 | height) * PRIME_1 ^ image.getType() * PRIME_2;
+        Layout layout = Layout.of(image);
+        switch (layout.kind) {
+            case Layout.PACKED_INT -> {
+                int[] data = ((DataBufferInt) layout.buffer).getData();
+                for (int y = 0; y < height; y++) {
+                    hash = hash(data, layout.rowStart(y), width, hash);
+                }
+            }
+            case Layout.INTERLEAVED_BYTE, Layout.GRAY_BYTE -> {
+                byte[] data = ((DataBufferByte) layout.buffer).getData();
+                int rowBytes = (width - 1) * layout.pixelStride + layout.pixelBytes;
+                for (int y = 0; y < height; y++) {
+                    hash = hash(data, layout.rowStart(y), rowBytes, hash);
+                }
+            }
+            default -> {
+                int[] row = new int[width];
+                for (int y = 0; y < height; y++) {
+                    image.getRGB(0, y, width, 1, row, 0, width);
+                    hash = hash(row, 0, width, hash);
+                }
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * 64 bit hash of part of an array, in the style of xxHash64: four independent accumulators
+     * take 8 bytes each per step, so consecutive steps don't wait on each other.
+     *
+     * @param seed Starting value, for example the hash of the previous part
+     */
+    public static long hash(byte[] data, int offset, int length, long seed) {
+        long v1 = seed + PRIME_1 + PRIME_2;
+        long v2 = seed + PRIME_2;
+        long v3 = seed;
+        long v4 = seed - PRIME_1;
+        int i = offset;
+        int end = offset + length;
+        for (; i <= end - 32; i += 32) {
+            v1 = round(v1, (long) LONGS.get(data, i));
+            v2 = round(v2, (long) LONGS.get(data, i + 8));
+            v3 = round(v3, (long) LONGS.get(data, i + 16));
+            v4 = round(v4, (long) LONGS.get(data, i + 24));
+        }
+        long h = merge(v1, v2, v3, v4) + length;
+        for (; i <= end - 8; i += 8) {
+            h = Long.rotateLeft(h ^ round(0, (long) LONGS.get(data, i)), 27) * PRIME_1 + PRIME_4;
+        }
+        for (; i < end; i++) {
+            h = Long.rotateLeft(h ^ (data[i] & 0xFF) * PRIME_5, 11) * PRIME_1;
+        }
+        return avalanche(h);
+    }
+
+    /**
+     * Same as {@link #hash(byte[], int, int, long)}, taking two ints per 8 bytes.
+     */
+    public static long hash(int[] data, int offset, int length, long seed) {
+        long v1 = seed + PRIME_1 + PRIME_2;
+        long v2 = seed + PRIME_2;
+        long v3 = seed;
+        long v4 = seed - PRIME_1;
+        int i = offset;
+        int end = offset + length;
+        for (; i <= end - 8; i += 8) {
+            v1 = round(v1, pair(data[i], data[i + 1]));
+            v2 = round(v2, pair(data[i + 2], data[i + 3]));
+            v3 = round(v3, pair(data[i + 4], data[i + 5]));
+            v4 = round(v4, pair(data[i + 6], data[i + 7]));
+        }
+        long h = merge(v1, v2, v3, v4) + (long) length * Integer.BYTES;
+        for (; i < end; i++) {
+            h = Long.rotateLeft(h ^ (data[i] & 0xFFFFFFFFL) * PRIME_1, 23) * PRIME_2 + PRIME_3;
+        }
+        return avalanche(h);
+    }
+
+    private static long pair(int low, int high) {
+        return (long) high << 32 | low & 0xFFFFFFFFL;
+    }
+
+    private static long round(long acc, long input) {
+        return Long.rotateLeft(acc + input * PRIME_2, 31) * PRIME_1;
+    }
+
+    private static long merge(long v1, long v2, long v3, long v4) {
+        long h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+        h = (h ^ round(0, v1)) * PRIME_1 + PRIME_4;
+        h = (h ^ round(0, v2)) * PRIME_1 + PRIME_4;
+        h = (h ^ round(0, v3)) * PRIME_1 + PRIME_4;
+        return (h ^ round(0, v4)) * PRIME_1 + PRIME_4;
+    }
+
+    private static long avalanche(long h) {
+        h ^= h >>> 33;
+        h *= PRIME_2;
+        h ^= h >>> 29;
+        h *= PRIME_3;
+        return h ^ h >>> 32;
+    }
+
+    /**
+     * Where the pixels of an image are in its backing array.
+     */
+    private static final class Layout {
+        static final int OTHER = 0;
+        static final int PACKED_INT = 1;
+        static final int INTERLEAVED_BYTE = 2;
+        static final int GRAY_BYTE = 3;
+
+        private final int kind;
+        private DataBuffer buffer;
+        private int offset;
+        private int scanlineStride;
+        private int pixelStride = 1;
+        private int pixelBytes = 1;
+        //packed int: bit offset of each channel; interleaved byte: index of each channel in a pixel
+        private int redShift;
+        private int greenShift;
+        private int blueShift;
+        private int red;
+        private int green;
+        private int blue;
+
+        private Layout(int kind) {
+            this.kind = kind;
+        }
+
+        int rowStart(int y) {
+            return offset + y * scanlineStride;
+        }
+
+        static Layout of(BufferedImage image) {
+            WritableRaster raster = image.getRaster();
+            DataBuffer buffer = raster.getDataBuffer();
+            SampleModel model = raster.getSampleModel();
+            ColorSpace colorSpace = image.getColorModel().getColorSpace();
+            //sub images share the parent's array and start part way into it
+            int tx = -raster.getSampleModelTranslateX();
+            int ty = -raster.getSampleModelTranslateY();
+            if (buffer.getNumBanks() != 1 || !(colorSpace.isCS_sRGB() || image.getType() == BufferedImage.TYPE_BYTE_GRAY)) {
+                return new Layout(OTHER);
+            }
+
+            if (buffer instanceof DataBufferInt && model instanceof SinglePixelPackedSampleModel && model.getNumBands() >= 3) {
+                SinglePixelPackedSampleModel packed = (SinglePixelPackedSampleModel) model;
+                int[] masks = packed.getBitMasks();
+                if (masks[0] != 0xFF << packed.getBitOffsets()[0] || masks[1] != 0xFF << packed.getBitOffsets()[1]
+                        || masks[2] != 0xFF << packed.getBitOffsets()[2]) {
+                    return new Layout(OTHER);
+                }
+                Layout layout = new Layout(PACKED_INT);
+                layout.buffer = buffer;
+                layout.scanlineStride = packed.getScanlineStride();
+                layout.offset = buffer.getOffset() + ty * layout.scanlineStride + tx;
+                layout.redShift = packed.getBitOffsets()[0];
+                layout.greenShift = packed.getBitOffsets()[1];
+                layout.blueShift = packed.getBitOffsets()[2];
+                return layout;
+            }
+
+            if (buffer instanceof DataBufferByte && model instanceof ComponentSampleModel) {
+                ComponentSampleModel component = (ComponentSampleModel) model;
+                int bands = component.getNumBands();
+                boolean gray = bands == 1 && image.getType() == BufferedImage.TYPE_BYTE_GRAY;
+                if (!gray && bands < 3) {
+                    return new Layout(OTHER);
+                }
+                Layout layout = new Layout(gray ? GRAY_BYTE : INTERLEAVED_BYTE);
+                int[] bandOffsets = component.getBandOffsets();
+                int first = Integer.MAX_VALUE;
+                for (int bandOffset : bandOffsets) {
+                    first = Math.min(first, bandOffset);
+                }
+                layout.buffer = buffer;
+                layout.scanlineStride = component.getScanlineStride();
+                layout.pixelStride = component.getPixelStride();
+                layout.pixelBytes = bands;
+                layout.offset = buffer.getOffset() + ty * layout.scanlineStride + tx * layout.pixelStride + first;
+                if (!gray) {
+                    layout.red = bandOffsets[0] - first;
+                    layout.green = bandOffsets[1] - first;
+                    layout.blue = bandOffsets[2] - first;
+                }
+                return layout;
+            }
+            return new Layout(OTHER);
+        }
+    }
+}
@@ -1,7 +1,22 @@
 package com.udacity.catpoint.image.service;
 
 import java.awt.image.BufferedImage;
+import java.util.List;
 
 public interface ImageService {
     public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold);
+
+    /**
+     * Returns everything the service recognizes in the image, so the result can be checked
+     * against any threshhold later. Services that can only answer yes or no report a "Cat" label
+     * with full confidence if they find a cat at 50% confidence.
+     *
+     * @param image Image to scan
+     * @return the labels found, never null
+     */
+    default DetectionResult detect(BufferedImage image) {
+        return imageContainsCat(image, 50.0f)
+                ? new DetectionResult(List.of(new DetectedLabel("Cat", 100.0f, List.of())))
+                : DetectionResult.NONE;
+    }
 }
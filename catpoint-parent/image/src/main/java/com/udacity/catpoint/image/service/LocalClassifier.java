@@ -0,0 +1,17 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * A cheap classifier that runs in-process, used by {@link CascadingImageService} to avoid
+ * calling an expensive detector for frames it can decide on its own.
+ */
+public interface LocalClassifier {
+
+    /**
+     * @param image Image to score
+     * @return how confident the classifier is that the image shows a cat, from 0 to 100,
+     * on the same scale as the confidence threshhold of {@link ImageService}
+     */
+    float catConfidence(BufferedImage image);
+}
@@ -0,0 +1,40 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Local classifier that scores a frame by how much texture it has. Frames without an animal are
+ * often flat walls, floors and furniture, while fur, eyes and whiskers make edges. Colour isn't
+ * used: cats come in greys and blacks as well as browns, so it can't rule a frame out. It's a
+ * prefilter for discarding featureless frames, not a cat detector in its own right.
+ */
+public class TextureClassifier implements LocalClassifier {
+
+    //the luma plane is shrunk to at most this many pixels along each side, which also evens out sensor noise
+    private static final int GRID = 128;
+    //luma difference between neighbouring pixels that counts as an edge
+    private static final int EDGE_THRESHOLD = 16;
+    //fraction of edges at which the score is saturated
+    private static final float EDGE_SATURATION = 0.20f;
+
+    //scratch planes, one set per calling thread
+    private static final ThreadLocal<byte[][]> buffers = ThreadLocal.withInitial(() -> new byte[2][]);
+
+    @Override
+    public float catConfidence(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int columns = Math.min(GRID, width);
+        int rows = Math.min(GRID, height);
+        byte[][] scratch = buffers.get();
+        scratch[0] = ImageKernels.luma(image, scratch[0]);
+        scratch[1] = ImageKernels.downscale(scratch[0], width, height, columns, rows, scratch[1]);
+        byte[] grid = scratch[1];
+        int samples = columns * rows;
+        //each pixel against its right neighbour, and against the one below; the first also compares
+        //the end of each row with the start of the next, which is too little to matter
+        int edges = ImageKernels.absDiff(grid, 0, grid, 1, samples - 1, EDGE_THRESHOLD)
+                + ImageKernels.absDiff(grid, 0, grid, columns, samples - columns, EDGE_THRESHOLD);
+        return 100f * Math.min(1f, edges / (2f * samples) / EDGE_SATURATION);
+    }
+}
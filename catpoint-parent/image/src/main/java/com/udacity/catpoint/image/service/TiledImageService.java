@@ -0,0 +1,217 @@
+package com.udacity.catpoint.image.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Image service that looks for cats in large images one tile at a time. Downscaling a whole
+ * high resolution frame can lose a small cat in a corner, so frames larger than a tile are split
+ * into overlapping tiles at full resolution and each tile is sent to the wrapped service.
+ * <p>
+ * Tiles are evaluated in parallel on a {@link ForkJoinPool}. The wrapped service usually blocks
+ * on a remote call, so the pool should be a dedicated one rather than the common pool. As soon as
+ * one tile reports a cat the remaining tiles are cancelled. Tiles covering the parts of the frame
+ * that changed since the previous frame are evaluated first; callers that know better can pass
+ * their own priority regions.
+ */
+public class TiledImageService implements ImageService {
+
+    private Logger log = LoggerFactory.getLogger(TiledImageService.class);
+
+    private final ImageService delegate;
+    private final ForkJoinPool pool;
+    private final int tileSize;
+    private final int overlap;
+
+    //luma of the previous frame, averaged over cells of MOTION_CELL pixels, to find where it moved
+    private static final int MOTION_CELL = 32;
+    private static final int MOTION_THRESHOLD = 24;
+    private final Object motionLock = new Object();
+    private byte[] lumaBuffer;
+    private byte[] previousCells;
+    private byte[] currentCells;
+    private byte[] cellDiff;
+    private int previousWidth;
+    private int previousHeight;
+
+    /**
+     * @param delegate The service that evaluates each tile
+     * @param pool     Pool the tiles are evaluated on, whose threads block on the wrapped service
+     * @param tileSize Width and height of a tile in pixels. Smaller images are passed through whole.
+     * @param overlap  Number of pixels neighbouring tiles share, so a cat on a tile edge is seen whole
+     */
+    public TiledImageService(ImageService delegate, ForkJoinPool pool, int tileSize, int overlap) {
+        if (tileSize <= 0 || overlap < 0 || overlap >= tileSize) {
+            throw new IllegalArgumentException("tileSize must be positive and larger than overlap");
+        }
+        this.delegate = delegate;
+        this.pool = pool;
+        this.tileSize = tileSize;
+        this.overlap = overlap;
+    }
+
+    public TiledImageService(ImageService delegate) {
+        this(delegate, new ForkJoinPool(Math.max(4, Runtime.getRuntime().availableProcessors())), 1024, 128);
+    }
+
+    /**
+     * Returns true if any tile of the image contains a cat, starting with the tiles where the
+     * image differs the most from the previous one.
+     */
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        if (image == null || image.getWidth() <= tileSize && image.getHeight() <= tileSize) {
+            return delegate.imageContainsCat(image, confidenceThreshhold);
+        }
+        return imageContainsCat(image, confidenceThreshhold, motionRegions(image));
+    }
+
+    /**
+     * Returns true if any tile of the image contains a cat.
+     *
+     * @param image                Image to scan
+     * @param confidenceThreshhold Minimum threshhold to consider for cat
+     * @param priorityRegions      Regions of the image that most likely show a cat. Tiles overlapping
+     *                             them the most are evaluated first.
+     * @return true if a tile contains a cat
+     */
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold, List<Rectangle> priorityRegions) {
+        if (image == null || image.getWidth() <= tileSize && image.getHeight() <= tileSize) {
+            return delegate.imageContainsCat(image, confidenceThreshhold);
+        }
+        List<Rectangle> tiles = tiles(image.getWidth(), image.getHeight(), priorityRegions);
+
+        //lets tiles that were already picked up by a worker skip the scan once a cat is found
+        AtomicBoolean found = new AtomicBoolean();
+        CompletionService<Boolean> completionService = new ExecutorCompletionService<>(pool);
+        List<Future<Boolean>> futures = new ArrayList<>(tiles.size());
+        for (Rectangle tile : tiles) {
+            //subimages share the raster of the frame, so tiles aren't copied
+            BufferedImage subimage = image.getSubimage(tile.x, tile.y, tile.width, tile.height);
+            futures.add(completionService.submit(() -> {
+                if (found.get()) {
+                    return false;
+                }
+                boolean cat = delegate.imageContainsCat(subimage, confidenceThreshhold);
+                if (cat) {
+                    found.set(true);
+                }
+                return cat;
+            }));
+        }
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    if (completionService.take().get()) {
+                        return true;
+                    }
+                } catch (ExecutionException e) {
+                    //one failed tile must not hide a cat the other tiles would find
+                    log.error("Error scanning image tile", e.getCause());
+                }
+            }
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            futures.forEach(f -> f.cancel(true));
+        }
+    }
+
+    /**
+     * Compares the image with the previous one, cell by cell, and returns the cells whose average
+     * luma changed. The first frame, and a frame of a different size, has no motion. Frames from
+     * several cameras only make the order less useful, since it never decides whether a tile is
+     * scanned.
+     */
+    List<Rectangle> motionRegions(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int cellsWide = Math.max(1, width / MOTION_CELL);
+        int cellsHigh = Math.max(1, height / MOTION_CELL);
+        int cells = cellsWide * cellsHigh;
+        List<Rectangle> regions = new ArrayList<>();
+        synchronized (motionLock) {
+            lumaBuffer = ImageKernels.luma(image, lumaBuffer);
+            currentCells = ImageKernels.downscale(lumaBuffer, width, height, cellsWide, cellsHigh, currentCells);
+            if (previousCells != null && previousWidth == width && previousHeight == height) {
+                cellDiff = cellDiff != null && cellDiff.length >= cells ? cellDiff : new byte[cells];
+                if (ImageKernels.absDiff(previousCells, currentCells, cells, MOTION_THRESHOLD, cellDiff) > 0) {
+                    for (int i = 0; i < cells; i++) {
+                        if ((cellDiff[i] & 0xFF) > MOTION_THRESHOLD) {
+                            regions.add(cell(i % cellsWide, i / cellsWide, width, height, cellsWide, cellsHigh));
+                        }
+                    }
+                }
+            }
+            byte[] swap = previousCells;
+            previousCells = currentCells;
+            currentCells = swap;
+            previousWidth = width;
+            previousHeight = height;
+        }
+        return regions;
+    }
+
+    /**
+     * The pixels a cell was averaged over, matching the blocks of {@link ImageKernels#downscale}.
+     */
+    private static Rectangle cell(int cx, int cy, int width, int height, int cellsWide, int cellsHigh) {
+        int x0 = (int) ((long) cx * width / cellsWide);
+        int x1 = (int) ((long) (cx + 1) * width / cellsWide);
+        int y0 = (int) ((long) cy * height / cellsHigh);
+        int y1 = (int) ((long) (cy + 1) * height / cellsHigh);
+        return new Rectangle(x0, y0, x1 - x0, y1 - y0);
+    }
+
+    /**
+     * Splits an image into overlapping tiles, ordered so the tiles that overlap the priority
+     * regions the most come first. Tiles on the right and bottom edges are shifted inwards so
+     * every tile is full size.
+     */
+    List<Rectangle> tiles(int width, int height, List<Rectangle> priorityRegions) {
+        int stride = tileSize - overlap;
+        List<Rectangle> tiles = new ArrayList<>();
+        for (int y = 0; ; y += stride) {
+            int top = Math.max(0, Math.min(y, height - tileSize));
+            for (int x = 0; ; x += stride) {
+                int left = Math.max(0, Math.min(x, width - tileSize));
+                tiles.add(new Rectangle(left, top, Math.min(tileSize, width), Math.min(tileSize, height)));
+                if (left + tileSize >= width) {
+                    break;
+                }
+            }
+            if (top + tileSize >= height) {
+                break;
+            }
+        }
+        if (!priorityRegions.isEmpty()) {
+            tiles.sort(Comparator.comparingLong((Rectangle tile) -> overlapArea(tile, priorityRegions)).reversed());
+        }
+        return tiles;
+    }
+
+    private static long overlapArea(Rectangle tile, List<Rectangle> regions) {
+        long area = 0;
+        for (Rectangle region : regions) {
+            Rectangle intersection = tile.intersection(region);
+            if (!intersection.isEmpty()) {
+                area += (long) intersection.width * intersection.height;
+            }
+        }
+        return area;
+    }
+}
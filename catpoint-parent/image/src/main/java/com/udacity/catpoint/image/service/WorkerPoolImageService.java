@@ -0,0 +1,492 @@
+package com.udacity.catpoint.image.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Image service that runs detection in a pool of separate {@link DetectionWorker} processes, so
+ * heavy detection work and its garbage stay out of the JVM handling alarms, and a crashing
+ * detector only takes its own process down. Workers connect back over a loopback socket and
+ * frames are exchanged using the {@link DetectionProtocol}.
+ * <p>
+ * Each frame goes to the connected worker with the fewest frames in flight. When a worker
+ * process exits, its frames fail and a replacement is started, waiting longer between attempts
+ * while replacements keep failing. A frame that isn't answered within the request timeout fails
+ * with a {@link TimeoutException}, and a worker that misses the timeout several times in a row is
+ * assumed to be hung, so it is killed and replaced. {@link #detectAsync} returns results as they
+ * come back; {@link #imageContainsCat} waits for them.
+ * <p>
+ * Workers run in the same module or class path as this process, with their own JVM options, so
+ * the pool can be sized and tuned independently of the rest of the application.
+ */
+public class WorkerPoolImageService implements ImageService, AutoCloseable {
+
+    private Logger log = LoggerFactory.getLogger(WorkerPoolImageService.class);
+
+    private static final int HELLO_TIMEOUT_MILLIS = 10_000;
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final long MIN_RESPAWN_DELAY_MILLIS = 100;
+    private static final long MAX_RESPAWN_DELAY_MILLIS = 30_000;
+    private static final int MAX_TIMEOUTS_IN_A_ROW = 3;
+
+    private final String imageServiceClass;
+    private final List<String> jvmOptions;
+    private final long requestTimeoutMillis;
+    private final ServerSocket serverSocket;
+    private final Worker[] workers;
+    private final ScheduledExecutorService respawner;
+    private final Thread acceptThread;
+    private final AtomicLong nextRequestId = new AtomicLong();
+    private final AtomicInteger nextWorker = new AtomicInteger();
+    private volatile boolean closed;
+
+    //metrics
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong respawns = new AtomicLong();
+
+    /**
+     * @param workerCount          Number of worker processes
+     * @param imageServiceClass    Class name of the image service the workers run, which needs a
+     *                             public no-argument constructor
+     * @param jvmOptions           Extra options for the worker JVMs, such as heap size or processor count
+     * @param requestTimeoutMillis How long a worker has to answer a frame
+     */
+    public WorkerPoolImageService(int workerCount, String imageServiceClass, List<String> jvmOptions,
+                                  long requestTimeoutMillis) throws IOException {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("workerCount must be positive: " + workerCount);
+        }
+        this.imageServiceClass = imageServiceClass;
+        this.jvmOptions = List.copyOf(jvmOptions);
+        this.requestTimeoutMillis = requestTimeoutMillis;
+        this.serverSocket = new ServerSocket(0, workerCount, InetAddress.getLoopbackAddress());
+        this.respawner = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "detection-worker-respawn");
+            t.setDaemon(true);
+            return t;
+        });
+        this.workers = new Worker[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Worker(i);
+        }
+        this.acceptThread = new Thread(this::acceptLoop, "detection-worker-accept");
+        this.acceptThread.setDaemon(true);
+        this.acceptThread.start();
+        for (Worker worker : workers) {
+            worker.spawn();
+        }
+    }
+
+    public WorkerPoolImageService(int workerCount, String imageServiceClass) throws IOException {
+        this(workerCount, imageServiceClass, List.of(), 10_000);
+    }
+
+    /**
+     * Returns true if the provided image contains a cat. Returns false if no worker answers in
+     * time or the worker fails.
+     */
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        try {
+            return detectAsync(image, confidenceThreshhold).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                log.warn("No detection result within {} ms", requestTimeoutMillis);
+            } else {
+                log.error("Detection failed", e.getCause());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    /**
+     * Sends the image to the least loaded worker. The image is copied before this method
+     * returns, so the caller may reuse it straight away.
+     *
+     * @return the detection result, or a failed future if no worker is available, the worker
+     * fails or it doesn't answer within the request timeout
+     */
+    public CompletableFuture<Boolean> detectAsync(BufferedImage image, float confidenceThreshhold) {
+        requests.incrementAndGet();
+        Worker worker = leastLoaded();
+        if (worker == null) {
+            failures.incrementAndGet();
+            return CompletableFuture.failedFuture(new IOException("No detection worker is connected"));
+        }
+        return worker.send(nextRequestId.incrementAndGet(), image, confidenceThreshhold);
+    }
+
+    /**
+     * Picks the connected worker with the fewest frames in flight. The search starts at a
+     * different worker every time, so idle workers take turns.
+     */
+    private Worker leastLoaded() {
+        int start = Math.floorMod(nextWorker.getAndIncrement(), workers.length);
+        Worker best = null;
+        int bestLoad = Integer.MAX_VALUE;
+        for (int i = 0; i < workers.length; i++) {
+            Worker worker = workers[(start + i) % workers.length];
+            if (!worker.isConnected()) {
+                continue;
+            }
+            int load = worker.pending.size();
+            if (load < bestLoad) {
+                best = worker;
+                bestLoad = load;
+            }
+        }
+        return best;
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (!closed) {
+                    log.error("Unable to accept detection workers", e);
+                }
+                return;
+            }
+            try {
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout(HELLO_TIMEOUT_MILLIS);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                DetectionProtocol.Header header = new DetectionProtocol.Header();
+                int payload = DetectionProtocol.readHeader(in, header);
+                if (header.type != DetectionProtocol.HELLO || header.id < 0 || header.id >= workers.length
+                        || !workers[(int) header.id].attach(DetectionProtocol.readToken(in, payload), socket, in)) {
+                    socket.close();
+                }
+            } catch (IOException e) {
+                log.warn("Detection worker failed to say hello", e);
+                closeQuietly(socket);
+            }
+        }
+    }
+
+    private List<String> command(int index) {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmOptions);
+        String modulePath = System.getProperty("jdk.module.path");
+        if (modulePath != null && WorkerPoolImageService.class.getModule().isNamed()) {
+            command.add("--module-path");
+            command.add(modulePath);
+            //the worker's image service may live in any module of the application
+            command.add("--add-modules");
+            command.add("ALL-MODULE-PATH");
+            command.add("-m");
+            command.add(DetectionWorker.class.getModule().getName() + "/" + DetectionWorker.class.getName());
+        } else {
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(DetectionWorker.class.getName());
+        }
+        command.add(Integer.toString(serverSocket.getLocalPort()));
+        command.add(Integer.toString(index));
+        command.add(imageServiceClass);
+        return command;
+    }
+
+    public int getWorkerCount() {
+        return workers.length;
+    }
+
+    public int getConnectedWorkerCount() {
+        int connected = 0;
+        for (Worker worker : workers) {
+            if (worker.isConnected()) {
+                connected++;
+            }
+        }
+        return connected;
+    }
+
+    /**
+     * @return the number of frames sent to workers that haven't been answered yet
+     */
+    public int getInFlightCount() {
+        int inFlight = 0;
+        for (Worker worker : workers) {
+            inFlight += worker.pending.size();
+        }
+        return inFlight;
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * @return the number of frames that failed, because no worker was available, the worker
+     * failed or the worker exited before answering
+     */
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    /**
+     * @return the number of frames a worker didn't answer within the request timeout
+     */
+    public long getTimeoutCount() {
+        return timeouts.get();
+    }
+
+    /**
+     * @return the number of worker processes started to replace ones that exited or were killed
+     */
+    public long getRespawnCount() {
+        return respawns.get();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        closeQuietly(serverSocket);
+        respawner.shutdownNow();
+        for (Worker worker : workers) {
+            worker.shutdown();
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            //already closing
+        }
+    }
+
+    /**
+     * One worker slot. The process in the slot changes when it is respawned; each process gets
+     * a new random token, so a late connection from an old process, or any other local process
+     * connecting to the port, is turned away.
+     */
+    private final class Worker {
+        private final int index;
+        private final Map<Long, CompletableFuture<Boolean>> pending = new ConcurrentHashMap<>();
+
+        //guarded by this, socket is also read without the lock to route frames
+        private byte[] token = new byte[0];
+        private Process process;
+        private volatile Socket socket;
+        private DataOutputStream out;
+        private byte[] pixels = new byte[0];
+        private long respawnDelayMillis = MIN_RESPAWN_DELAY_MILLIS;
+        private int timeoutsInARow;
+
+        private Worker(int index) {
+            this.index = index;
+        }
+
+        synchronized void spawn() {
+            if (closed) {
+                return;
+            }
+            token = new byte[DetectionProtocol.TOKEN_SIZE];
+            RANDOM.nextBytes(token);
+            timeoutsInARow = 0;
+            try {
+                ProcessBuilder builder = new ProcessBuilder(command(index)).inheritIO();
+                builder.environment().put(DetectionWorker.TOKEN_VARIABLE, Base64.getEncoder().encodeToString(token));
+                Process started = builder.start();
+                process = started;
+                started.onExit().thenRun(() -> exited(started));
+            } catch (IOException e) {
+                log.error("Unable to start detection worker {}", index, e);
+                scheduleRespawn();
+            }
+        }
+
+        synchronized boolean attach(byte[] token, Socket connection, DataInputStream in) throws IOException {
+            //compared in constant time, so the time it takes tells nothing about the token
+            if (closed || !MessageDigest.isEqual(token, this.token)) {
+                return false;
+            }
+            connection.setSoTimeout(0);
+            socket = connection;
+            out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream(), 64 * 1024));
+            Thread reader = new Thread(() -> readLoop(connection, in), "detection-worker-" + index);
+            reader.setDaemon(true);
+            reader.start();
+            return true;
+        }
+
+        boolean isConnected() {
+            return socket != null;
+        }
+
+        CompletableFuture<Boolean> send(long requestId, BufferedImage image, float threshhold) {
+            CompletableFuture<Boolean> result = new CompletableFuture<>();
+            pending.put(requestId, result);
+            //answers remove the frame from pending before completing it, so only a timeout finds it there
+            result.orTimeout(requestTimeoutMillis, TimeUnit.MILLISECONDS).whenComplete((cat, error) -> {
+                if (pending.remove(requestId) != null) {
+                    timedOut();
+                }
+            });
+            synchronized (this) {
+                try {
+                    if (out == null) {
+                        throw new SocketException("Detection worker " + index + " is not connected");
+                    }
+                    int pixelBytes = image.getWidth() * image.getHeight() * 3;
+                    if (pixels.length < pixelBytes) {
+                        pixels = new byte[pixelBytes];
+                    }
+                    DetectionProtocol.writeDetect(out, requestId, image, threshhold, pixels);
+                } catch (IOException e) {
+                    disconnect(socket);
+                    fail(requestId, e);
+                }
+            }
+            return result;
+        }
+
+        private void readLoop(Socket connection, DataInputStream in) {
+            DetectionProtocol.Header header = new DetectionProtocol.Header();
+            try {
+                while (true) {
+                    int payload = DetectionProtocol.readHeader(in, header);
+                    if (header.type == DetectionProtocol.RESULT) {
+                        boolean cat = in.readBoolean();
+                        CompletableFuture<Boolean> result = pending.remove(header.id);
+                        synchronized (this) {
+                            respawnDelayMillis = MIN_RESPAWN_DELAY_MILLIS;
+                            //an answer that comes too late doesn't show the worker is keeping up
+                            if (result != null) {
+                                timeoutsInARow = 0;
+                            }
+                        }
+                        if (result != null) {
+                            result.complete(cat);
+                        }
+                    } else if (header.type == DetectionProtocol.FAILURE) {
+                        String message = DetectionProtocol.readFailure(in);
+                        if (pending.containsKey(header.id)) {
+                            synchronized (this) {
+                                timeoutsInARow = 0;
+                            }
+                        }
+                        fail(header.id, new IOException("Detection worker " + index + " failed: " + message));
+                    } else {
+                        in.skipNBytes(payload);
+                    }
+                }
+            } catch (IOException e) {
+                //the worker exited or the pool is closing
+            }
+            synchronized (this) {
+                disconnect(connection);
+            }
+        }
+
+        /**
+         * Kills the worker process once it has missed the timeout too often in a row. The process
+         * exiting fails its other frames and starts a replacement.
+         */
+        private synchronized void timedOut() {
+            timeouts.incrementAndGet();
+            if (++timeoutsInARow >= MAX_TIMEOUTS_IN_A_ROW && process != null && process.isAlive()) {
+                log.warn("Detection worker {} missed {} requests in a row, restarting it", index, timeoutsInARow);
+                process.destroyForcibly();
+            }
+        }
+
+        private void fail(long requestId, Throwable cause) {
+            CompletableFuture<Boolean> result = pending.remove(requestId);
+            if (result != null) {
+                failures.incrementAndGet();
+                result.completeExceptionally(cause);
+            }
+        }
+
+        /**
+         * Drops the connection if it is still the current one, failing every frame sent over it.
+         * The process exiting is what triggers a respawn.
+         */
+        private void disconnect(Socket connection) {
+            if (connection == null || connection != socket) {
+                return;
+            }
+            closeQuietly(connection);
+            socket = null;
+            out = null;
+            IOException cause = new IOException("Detection worker " + index + " disconnected");
+            pending.keySet().forEach(requestId -> fail(requestId, cause));
+            if (process != null && process.isAlive()) {
+                //a worker that can't talk to us is of no use
+                process.destroy();
+            }
+        }
+
+        private synchronized void exited(Process exited) {
+            if (exited != process) {
+                return;
+            }
+            disconnect(socket);
+            process = null;
+            if (closed) {
+                return;
+            }
+            log.warn("Detection worker {} exited with status {}", index, exited.exitValue());
+            scheduleRespawn();
+        }
+
+        private void scheduleRespawn() {
+            long delay = respawnDelayMillis;
+            respawnDelayMillis = Math.min(respawnDelayMillis * 2, MAX_RESPAWN_DELAY_MILLIS);
+            try {
+                respawner.schedule(() -> {
+                    respawns.incrementAndGet();
+                    spawn();
+                }, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                //the pool is closing
+            }
+        }
+
+        synchronized void shutdown() {
+            disconnect(socket);
+            if (process != null) {
+                process.destroy();
+            }
+            IOException cause = new IOException("Detection worker pool closed");
+            pending.keySet().forEach(requestId -> fail(requestId, cause));
+        }
+    }
+}
@@ -1,5 +1,6 @@
 module com.udacity.catpoint.image {
     requires java.desktop;
+    requires jdk.jfr;
     requires org.slf4j;
     requires software.amazon.awssdk.auth;
     requires software.amazon.awssdk.services.rekognition;
@@ -0,0 +1,62 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class CachingImageServiceTest {
+
+    private final AtomicInteger detections = new AtomicInteger();
+
+    private final ImageService detectingDelegate = new ImageService() {
+        @Override
+        public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+            return detect(image).containsCat(confidenceThreshhold);
+        }
+
+        @Override
+        public DetectionResult detect(BufferedImage image) {
+            detections.incrementAndGet();
+            return new DetectionResult(List.of(new DetectedLabel("Cat", 70.0f, List.of())));
+        }
+    };
+
+    private static BufferedImage frame(int rgb) {
+        BufferedImage image = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(1, 1, rgb);
+        return image;
+    }
+
+    @Test
+    void sameFrameWithAnotherThreshhold_isAnsweredFromTheCache() {
+        CachingImageService service = new CachingImageService(detectingDelegate, 4);
+
+        Assertions.assertTrue(service.imageContainsCat(frame(0x123456), 60));
+        Assertions.assertFalse(service.imageContainsCat(frame(0x123456), 80));
+        Assertions.assertTrue(service.imageContainsCat(frame(0x654321), 60));
+
+        Assertions.assertEquals(2, detections.get());
+        Assertions.assertEquals(1, service.getHits());
+    }
+
+    @Test
+    void delegateWithoutDetect_isAskedWithTheCallersThreshhold() {
+        CachingImageService service = new CachingImageService((image, threshhold) -> threshhold < 70, 4);
+
+        Assertions.assertTrue(service.imageContainsCat(frame(0), 60));
+        Assertions.assertFalse(service.imageContainsCat(frame(0), 80));
+    }
+
+    @Test
+    void noFrame_goesToTheDelegateUncached() {
+        CachingImageService service = new CachingImageService(detectingDelegate, 4);
+
+        Assertions.assertTrue(service.imageContainsCat(null, 50));
+        Assertions.assertTrue(service.detect(null).containsCat(50));
+        Assertions.assertEquals(2, detections.get());
+        Assertions.assertEquals(0, service.getMisses());
+    }
+}
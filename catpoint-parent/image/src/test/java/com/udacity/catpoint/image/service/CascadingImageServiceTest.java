@@ -0,0 +1,126 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class CascadingImageServiceTest {
+
+    private static final BufferedImage FRAME = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+
+    private final AtomicInteger detectorCalls = new AtomicInteger();
+    private boolean detectorAnswer;
+    private float localScore;
+
+    private final ImageService detector = new ImageService() {
+        @Override
+        public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+            detectorCalls.incrementAndGet();
+            return detectorAnswer;
+        }
+
+        @Override
+        public DetectionResult detect(BufferedImage image) {
+            detectorCalls.incrementAndGet();
+            return detectorAnswer
+                    ? new DetectionResult(List.of(new DetectedLabel("Cat", 87.0f, List.of())))
+                    : DetectionResult.NONE;
+        }
+    };
+
+    /**
+     * Uncertain band from 40 up to, but not including, 70 at a threshhold of 50.
+     */
+    private CascadingImageService cascade(int auditEvery) {
+        return new CascadingImageService(image -> localScore, detector, 10f, 20f, auditEvery);
+    }
+
+    @Test
+    void scoreJustBelowTheBand_isDecidedLocally() {
+        CascadingImageService service = cascade(0);
+        localScore = 39.9f;
+
+        Assertions.assertFalse(service.imageContainsCat(FRAME, 50));
+        Assertions.assertEquals(0, detectorCalls.get());
+        Assertions.assertEquals(1, service.getLocalNegatives());
+    }
+
+    @Test
+    void scoresAtBothEdgesOfTheBand_areEscalated() {
+        CascadingImageService service = cascade(0);
+        detectorAnswer = true;
+
+        localScore = 40f;
+        Assertions.assertTrue(service.imageContainsCat(FRAME, 50));
+        localScore = 69.9f;
+        Assertions.assertTrue(service.imageContainsCat(FRAME, 50));
+
+        Assertions.assertEquals(2, detectorCalls.get());
+        Assertions.assertEquals(2, service.getEscalations());
+        Assertions.assertEquals(1.0, service.getEscalationRate());
+        //the local stage was below the threshhold for the first one
+        Assertions.assertEquals(1, service.getMissedCats());
+        Assertions.assertEquals(0.5, service.getAgreementRate());
+    }
+
+    @Test
+    void scoreAtTheTopOfTheBand_isDecidedLocally() {
+        CascadingImageService service = cascade(0);
+        localScore = 70f;
+
+        Assertions.assertTrue(service.imageContainsCat(FRAME, 50));
+        Assertions.assertEquals(0, detectorCalls.get());
+        Assertions.assertEquals(1, service.getLocalPositives());
+    }
+
+    @Test
+    void infiniteUpperMargin_detectorConfirmsEveryCat() {
+        CascadingImageService service = new CascadingImageService(image -> 100f, detector, 10f,
+                Float.POSITIVE_INFINITY, 0);
+
+        Assertions.assertFalse(service.imageContainsCat(FRAME, 50));
+        Assertions.assertEquals(1, detectorCalls.get());
+        Assertions.assertEquals(0, service.getLocalPositives());
+    }
+
+    @Test
+    void everyNthLocalDecision_isAuditedAgainstTheDetector() {
+        CascadingImageService service = cascade(2);
+        localScore = 10f;
+        detectorAnswer = true;
+
+        for (int i = 0; i < 4; i++) {
+            Assertions.assertFalse(service.imageContainsCat(FRAME, 50));
+        }
+
+        Assertions.assertEquals(2, detectorCalls.get());
+        Assertions.assertEquals(4, service.getFrames());
+        Assertions.assertEquals(2, service.getMissedCats());
+        Assertions.assertEquals(0.0, service.getAgreementRate());
+        Assertions.assertEquals(0.0, service.getEscalationRate());
+    }
+
+    @Test
+    void detect_returnsTheDetectorsLabelsForEscalatedFrames() {
+        CascadingImageService service = cascade(0);
+        localScore = 45f;
+        detectorAnswer = true;
+
+        DetectionResult detection = service.detect(FRAME);
+
+        Assertions.assertEquals(87.0f, detection.getConfidence("cat"));
+        Assertions.assertTrue(detection.containsCat(80));
+    }
+
+    @Test
+    void detect_ruledOutFrameHasNoLabels() {
+        CascadingImageService service = cascade(0);
+        localScore = 5f;
+
+        Assertions.assertEquals(DetectionResult.NONE, service.detect(FRAME));
+        Assertions.assertEquals(0, detectorCalls.get());
+    }
+}
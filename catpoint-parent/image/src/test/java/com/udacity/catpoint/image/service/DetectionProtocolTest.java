@@ -0,0 +1,102 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.Random;
+
+class DetectionProtocolTest {
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream(bytes);
+    private final DetectionProtocol.Header header = new DetectionProtocol.Header();
+
+    private DataInputStream written() {
+        return new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+    @Test
+    void detectFrame_carriesThePixelsOfAnyImageType() throws IOException {
+        BufferedImage image = new BufferedImage(7, 5, BufferedImage.TYPE_3BYTE_BGR);
+        Random random = new Random(42);
+        for (int y = 0; y < 5; y++) {
+            for (int x = 0; x < 7; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+
+        DetectionProtocol.writeDetect(out, 17, image, 62.5f, new byte[7 * 5 * 3]);
+        DataInputStream in = written();
+
+        int payload = DetectionProtocol.readHeader(in, header);
+        Assertions.assertEquals(DetectionProtocol.DETECT, header.type);
+        Assertions.assertEquals(17, header.id);
+        Assertions.assertEquals(Float.BYTES + 2 * Integer.BYTES + 7 * 5 * 3, payload);
+        Assertions.assertEquals(62.5f, in.readFloat());
+        BufferedImage decoded = DetectionProtocol.readImage(in, in.readInt(), in.readInt(), null, new byte[payload]);
+        for (int y = 0; y < 5; y++) {
+            for (int x = 0; x < 7; x++) {
+                Assertions.assertEquals(image.getRGB(x, y) & 0xFFFFFF, decoded.getRGB(x, y) & 0xFFFFFF);
+            }
+        }
+        Assertions.assertEquals(-1, in.read());
+    }
+
+    @Test
+    void resultAndFailureFrames_followEachOther() throws IOException {
+        DetectionProtocol.writeResult(out, 1, true);
+        DetectionProtocol.writeFailure(out, 2, "x".repeat(5_000));
+        byte[] token = new byte[DetectionProtocol.TOKEN_SIZE];
+        new Random(7).nextBytes(token);
+        DetectionProtocol.writeHello(out, 3, token);
+        DataInputStream in = written();
+
+        Assertions.assertEquals(1, DetectionProtocol.readHeader(in, header));
+        Assertions.assertEquals(DetectionProtocol.RESULT, header.type);
+        Assertions.assertTrue(in.readBoolean());
+
+        DetectionProtocol.readHeader(in, header);
+        Assertions.assertEquals(DetectionProtocol.FAILURE, header.type);
+        Assertions.assertEquals(2, header.id);
+        Assertions.assertEquals(1024, DetectionProtocol.readFailure(in).length());
+
+        int payload = DetectionProtocol.readHeader(in, header);
+        Assertions.assertEquals(DetectionProtocol.HELLO, header.type);
+        Assertions.assertEquals(3, header.id);
+        Assertions.assertArrayEquals(token, DetectionProtocol.readToken(in, payload));
+    }
+
+    @Test
+    void helloWithoutAFullToken_isRejected() throws IOException {
+        DetectionProtocol.writeHello(out, 0, new byte[8]);
+        DataInputStream in = written();
+
+        int payload = DetectionProtocol.readHeader(in, header);
+        Assertions.assertThrows(StreamCorruptedException.class, () -> DetectionProtocol.readToken(in, payload));
+    }
+
+    @Test
+    void invalidFrameLength_isRejected() throws IOException {
+        out.writeInt(3);
+        out.writeByte(DetectionProtocol.RESULT);
+
+        Assertions.assertThrows(StreamCorruptedException.class, () -> DetectionProtocol.readHeader(written(), header));
+    }
+
+    @Test
+    void decodingIntoAnImageOfTheRightSize_reusesIt() throws IOException {
+        BufferedImage reuse = new BufferedImage(2, 2, BufferedImage.TYPE_INT_RGB);
+        byte[] pixels = new byte[12];
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(new byte[24]));
+
+        Assertions.assertSame(reuse, DetectionProtocol.readImage(in, 2, 2, reuse, pixels));
+        Assertions.assertNotSame(reuse, DetectionProtocol.readImage(in, 4, 1, reuse, pixels));
+    }
+}
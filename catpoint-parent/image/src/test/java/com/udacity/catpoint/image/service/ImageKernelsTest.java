@@ -0,0 +1,149 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+class ImageKernelsTest {
+
+    //one of each layout the kernels read directly, plus two that go through getRGB
+    private static final int[] TYPES = {
+            BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_BGR,
+            BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_BYTE_GRAY,
+            BufferedImage.TYPE_USHORT_565_RGB, BufferedImage.TYPE_BYTE_INDEXED
+    };
+
+    private static BufferedImage randomImage(int type, int width, int height, long seed) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        Random random = new Random(seed);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Copies the stored samples, since going through getRGB and setRGB isn't lossless for gray images.
+     */
+    private static BufferedImage copy(BufferedImage image) {
+        BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), image.getType());
+        copy.setData(image.getData());
+        return copy;
+    }
+
+    /**
+     * Luma of every pixel read through getRGB. Gray images are stored as luma already, and
+     * getRGB would convert them out of their linear color space, so their samples are the reference.
+     */
+    private static byte[] expectedLuma(BufferedImage image) {
+        int width = image.getWidth();
+        byte[] luma = new byte[width * image.getHeight()];
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < width; x++) {
+                if (image.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+                    luma[y * width + x] = (byte) image.getRaster().getSample(x, y, 0);
+                    continue;
+                }
+                int rgb = image.getRGB(x, y);
+                int r = rgb >> 16 & 0xFF;
+                int g = rgb >> 8 & 0xFF;
+                int b = rgb & 0xFF;
+                luma[y * width + x] = (byte) (77 * r + 150 * g + 29 * b + 128 >> 8);
+            }
+        }
+        return luma;
+    }
+
+    private static byte[] expectedRgb(BufferedImage image) {
+        byte[] rgb = new byte[image.getWidth() * image.getHeight() * 3];
+        int p = 0;
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int pixel = image.getRGB(x, y);
+                rgb[p++] = (byte) (pixel >> 16);
+                rgb[p++] = (byte) (pixel >> 8);
+                rgb[p++] = (byte) pixel;
+            }
+        }
+        return rgb;
+    }
+
+    @Test
+    void luma_matchesGetRgbForEveryImageType() {
+        for (int type : TYPES) {
+            BufferedImage image = randomImage(type, 23, 11, type);
+
+            Assertions.assertArrayEquals(expectedLuma(image), ImageKernels.luma(image, null));
+        }
+    }
+
+    @Test
+    void luma_ofSubImages_readsOnlyTheirPart() {
+        for (int type : TYPES) {
+            BufferedImage sub = randomImage(type, 23, 11, type).getSubimage(5, 3, 13, 6);
+
+            Assertions.assertArrayEquals(expectedLuma(sub), ImageKernels.luma(sub, null));
+        }
+    }
+
+    @Test
+    void rgb_matchesGetRgbForEveryImageType() {
+        for (int type : TYPES) {
+            BufferedImage image = randomImage(type, 23, 11, type);
+            BufferedImage sub = image.getSubimage(5, 3, 13, 6);
+
+            Assertions.assertArrayEquals(expectedRgb(image), ImageKernels.rgb(image, null));
+            Assertions.assertArrayEquals(expectedRgb(sub), ImageKernels.rgb(sub, null));
+        }
+    }
+
+    @Test
+    void luma_reusesALargeEnoughDestination() {
+        BufferedImage image = randomImage(BufferedImage.TYPE_INT_RGB, 4, 4, 1);
+        byte[] dest = new byte[20];
+
+        Assertions.assertSame(dest, ImageKernels.luma(image, dest));
+        Assertions.assertNotSame(dest, ImageKernels.luma(randomImage(BufferedImage.TYPE_INT_RGB, 5, 5, 1), dest));
+    }
+
+    @Test
+    void absDiff_withOffsets_comparesNeighbours() {
+        byte[] plane = {10, 10, 40, 41, (byte) 200, 0};
+
+        Assertions.assertEquals(3, ImageKernels.absDiff(plane, 0, plane, 1, 5, 5));
+        Assertions.assertEquals(2, ImageKernels.absDiff(plane, 0, plane, 3, 3, 35));
+    }
+
+    @Test
+    void hash_isEqualForEqualFramesOfTheSameType() {
+        for (int type : TYPES) {
+            BufferedImage image = randomImage(type, 23, 11, type);
+            BufferedImage sub = image.getSubimage(5, 3, 13, 6);
+
+            Assertions.assertEquals(ImageKernels.hash(image), ImageKernels.hash(copy(image)));
+            Assertions.assertEquals(ImageKernels.hash(sub), ImageKernels.hash(copy(sub)));
+        }
+    }
+
+    @Test
+    void hash_changesWithOnePixel() {
+        for (int type : TYPES) {
+            BufferedImage image = randomImage(type, 23, 11, type);
+            BufferedImage changed = copy(image);
+            changed.setRGB(22, 10, ~image.getRGB(22, 10));
+
+            Assertions.assertNotEquals(ImageKernels.hash(image), ImageKernels.hash(changed));
+        }
+    }
+
+    @Test
+    void hash_dependsOnSize() {
+        BufferedImage image = new BufferedImage(6, 4, BufferedImage.TYPE_INT_RGB);
+
+        Assertions.assertNotEquals(ImageKernels.hash(image), ImageKernels.hash(new BufferedImage(4, 6, BufferedImage.TYPE_INT_RGB)));
+    }
+}
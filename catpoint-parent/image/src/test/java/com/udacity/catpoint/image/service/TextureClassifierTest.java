@@ -0,0 +1,60 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+class TextureClassifierTest {
+
+    private final TextureClassifier classifier = new TextureClassifier();
+
+    /**
+     * A frame of patches in shades between the two colours, like the coarse pattern of fur.
+     */
+    private static BufferedImage patches(Color from, Color to) {
+        BufferedImage image = new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(3);
+        Graphics2D g = image.createGraphics();
+        for (int y = 0; y < 480; y += 8) {
+            for (int x = 0; x < 640; x += 8) {
+                float f = random.nextFloat();
+                g.setColor(new Color((int) (from.getRed() + f * (to.getRed() - from.getRed())),
+                        (int) (from.getGreen() + f * (to.getGreen() - from.getGreen())),
+                        (int) (from.getBlue() + f * (to.getBlue() - from.getBlue()))));
+                g.fillRect(x, y, 8, 8);
+            }
+        }
+        g.dispose();
+        return image;
+    }
+
+    @Test
+    void flatFrame_scoresNearZero() {
+        BufferedImage wall = new BufferedImage(640, 480, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D g = wall.createGraphics();
+        g.setColor(new Color(200, 190, 170));
+        g.fillRect(0, 0, 640, 480);
+        g.dispose();
+
+        Assertions.assertTrue(classifier.catConfidence(wall) < 5);
+    }
+
+    @Test
+    void texturedFrame_scoresTheSameWhateverItsColour() {
+        float grey = classifier.catConfidence(patches(new Color(20, 20, 20), new Color(110, 110, 110)));
+        float brown = classifier.catConfidence(patches(new Color(60, 40, 20), new Color(150, 110, 60)));
+
+        //well clear of the default band, which rules out scores below 20
+        Assertions.assertTrue(grey > 50);
+        Assertions.assertTrue(brown > 50);
+    }
+
+    @Test
+    void tinyFrame_isScored() {
+        Assertions.assertEquals(0f, classifier.catConfidence(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB)));
+    }
+}
@@ -0,0 +1,145 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class TiledImageServiceTest {
+
+    private static final int RED = 0xFF0000;
+    private static final int BLUE = 0x0000FF;
+
+    /**
+     * A 200x100 frame with a red left half and a blue right half, so a delegate can tell the two
+     * 100 pixel tiles apart.
+     */
+    private static BufferedImage twoColourFrame() {
+        BufferedImage image = new BufferedImage(200, 100, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(new Color(RED));
+        g.fillRect(0, 0, 100, 100);
+        g.setColor(new Color(BLUE));
+        g.fillRect(100, 0, 100, 100);
+        g.dispose();
+        return image;
+    }
+
+    private static int colour(BufferedImage tile) {
+        return tile.getRGB(0, 0) & 0xFFFFFF;
+    }
+
+    @Test
+    void tiles_coverTheFrameAndShiftEdgeTilesInwards() {
+        TiledImageService service = new TiledImageService((image, t) -> false, ForkJoinPool.commonPool(), 100, 20);
+
+        List<Rectangle> tiles = service.tiles(250, 100, List.of());
+
+        Assertions.assertEquals(List.of(new Rectangle(0, 0, 100, 100), new Rectangle(80, 0, 100, 100),
+                new Rectangle(150, 0, 100, 100)), tiles);
+    }
+
+    @Test
+    void tiles_overlappingPriorityRegionsComeFirst() {
+        TiledImageService service = new TiledImageService((image, t) -> false, ForkJoinPool.commonPool(), 100, 0);
+
+        List<Rectangle> tiles = service.tiles(200, 200, List.of(new Rectangle(150, 150, 40, 40)));
+
+        Assertions.assertEquals(4, tiles.size());
+        Assertions.assertEquals(new Rectangle(100, 100, 100, 100), tiles.get(0));
+    }
+
+    @Test
+    void smallFrame_isPassedThroughWhole() {
+        AtomicInteger calls = new AtomicInteger();
+        TiledImageService service = new TiledImageService((image, t) -> calls.incrementAndGet() > 0,
+                ForkJoinPool.commonPool(), 100, 0);
+
+        Assertions.assertTrue(service.imageContainsCat(new BufferedImage(80, 60, BufferedImage.TYPE_INT_RGB), 50));
+        Assertions.assertEquals(1, calls.get());
+    }
+
+    @Test
+    void catInOneTile_isFound() {
+        TiledImageService service = new TiledImageService((tile, t) -> colour(tile) == BLUE,
+                ForkJoinPool.commonPool(), 100, 0);
+
+        Assertions.assertTrue(service.imageContainsCat(twoColourFrame(), 50));
+    }
+
+    @Test
+    void failingTile_doesNotHideACatInAnotherTile() {
+        TiledImageService service = new TiledImageService((tile, t) -> {
+            if (colour(tile) == RED) {
+                throw new IllegalStateException("detector failed");
+            }
+            return true;
+        }, ForkJoinPool.commonPool(), 100, 0);
+
+        Assertions.assertTrue(service.imageContainsCat(twoColourFrame(), 50));
+    }
+
+    @Test
+    void everyTileFailing_reportsNoCat() {
+        TiledImageService service = new TiledImageService((tile, t) -> {
+            throw new IllegalStateException("detector failed");
+        }, ForkJoinPool.commonPool(), 100, 0);
+
+        Assertions.assertFalse(service.imageContainsCat(twoColourFrame(), 50));
+    }
+
+    @Test
+    void catInTheFirstTile_stopsTheOtherTilesReachingTheDelegate() {
+        ForkJoinPool pool = new ForkJoinPool(1);
+        AtomicInteger calls = new AtomicInteger();
+        TiledImageService service = new TiledImageService((tile, t) -> calls.incrementAndGet() > 0, pool, 100, 0);
+
+        Assertions.assertTrue(service.imageContainsCat(new BufferedImage(1_000, 100, BufferedImage.TYPE_INT_RGB), 50));
+        pool.shutdown();
+        Assertions.assertTrue(pool.awaitQuiescence(5, TimeUnit.SECONDS));
+
+        Assertions.assertEquals(1, calls.get());
+    }
+
+    @Test
+    void tileThatChangedSinceThePreviousFrame_isScannedFirst() {
+        ForkJoinPool pool = new ForkJoinPool(1);
+        List<Integer> scanned = Collections.synchronizedList(new ArrayList<>());
+        TiledImageService service = new TiledImageService((tile, t) -> scanned.add(colour(tile)), pool, 100, 0);
+        BufferedImage frame = twoColourFrame();
+        BufferedImage moved = twoColourFrame();
+        Graphics2D g = moved.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(140, 40, 40, 40);
+        g.dispose();
+
+        Assertions.assertTrue(service.imageContainsCat(frame, 50));
+        Assertions.assertTrue(service.imageContainsCat(moved, 50));
+        pool.shutdown();
+
+        Assertions.assertEquals(List.of(RED, BLUE), scanned);
+    }
+
+    @Test
+    void motionRegions_coverOnlyWhatChanged() {
+        TiledImageService service = new TiledImageService((image, t) -> false, ForkJoinPool.commonPool(), 100, 0);
+        BufferedImage moved = twoColourFrame();
+        moved.setRGB(10, 10, 0xFFFFFF);
+        Graphics2D g = moved.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(160, 64, 32, 32);
+        g.dispose();
+
+        Assertions.assertEquals(List.of(), service.motionRegions(twoColourFrame()));
+        //the frame is split into 6x3 cells of about 33 pixels, and the single pixel is too small a change
+        Assertions.assertEquals(List.of(new Rectangle(133, 66, 33, 34), new Rectangle(166, 66, 34, 34)),
+                service.motionRegions(moved));
+    }
+}
@@ -0,0 +1,80 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Starts real worker processes, running {@link FakeImageService} so they need nothing but this module.
+ */
+class WorkerPoolImageServiceTest {
+
+    private static final BufferedImage FRAME = new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB);
+
+    private WorkerPoolImageService pool;
+
+    @AfterEach
+    void close() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 20_000;
+        while (!condition.getAsBoolean()) {
+            Assertions.assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void workerThatCantStart_isRespawned() throws Exception {
+        pool = new WorkerPoolImageService(1, FakeImageService.class.getName(), List.of("-XX:+NoSuchOption"), 1_000);
+
+        waitFor(() -> pool.getRespawnCount() >= 2);
+        Assertions.assertEquals(0, pool.getConnectedWorkerCount());
+        Assertions.assertFalse(pool.imageContainsCat(FRAME, 50));
+        Assertions.assertEquals(1, pool.getFailureCount());
+    }
+
+    @Test
+    void connectedWorker_answersFrames() throws Exception {
+        pool = new WorkerPoolImageService(1, FakeImageService.class.getName(), List.of(), 10_000);
+        waitFor(() -> pool.getConnectedWorkerCount() == 1);
+
+        pool.detectAsync(FRAME, 50).get();
+
+        Assertions.assertEquals(0, pool.getInFlightCount());
+        Assertions.assertEquals(0, pool.getTimeoutCount());
+    }
+
+    @Test
+    void workerThatKeepsMissingTheTimeout_isKilledAndReplaced() throws Exception {
+        //with no time at all to answer, every frame times out however healthy the worker is
+        pool = new WorkerPoolImageService(1, FakeImageService.class.getName(), List.of(), 0);
+        waitFor(() -> pool.getConnectedWorkerCount() == 1);
+
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertFalse(pool.imageContainsCat(FRAME, 50));
+        }
+
+        waitFor(() -> pool.getTimeoutCount() == 3);
+        Assertions.assertEquals(0, pool.getInFlightCount());
+        waitFor(() -> pool.getRespawnCount() == 1);
+        waitFor(() -> pool.getConnectedWorkerCount() == 1);
+    }
+
+    @Test
+    void closedPool_failsFramesStraightAway() throws IOException {
+        pool = new WorkerPoolImageService(1, FakeImageService.class.getName(), List.of(), 10_000);
+        pool.close();
+
+        Assertions.assertTrue(pool.detectAsync(FRAME, 50).isCompletedExceptionally());
+    }
+}
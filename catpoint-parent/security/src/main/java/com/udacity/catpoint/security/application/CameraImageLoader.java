@@ -0,0 +1,124 @@
+package com.udacity.catpoint.security.application;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Decodes camera images away from the Swing event thread. Thumbnails are decoded with source
+ * subsampling so a large photo is never fully materialized just to be displayed, and recent
+ * thumbnails are kept in a small LRU cache. Full resolution images are only decoded on request,
+ * for example when a picture is sent for scanning.
+ */
+public class CameraImageLoader {
+
+    private static final int CACHE_SIZE = 16;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "camera-image-loader");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Map<String, BufferedImage> thumbnails = new LinkedHashMap<>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, BufferedImage> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /**
+     * Decodes a thumbnail of the image in the background, or returns it from the cache.
+     *
+     * @param file   The image file
+     * @param width  Width of the thumbnail
+     * @param height Height of the thumbnail
+     * @return a future that completes with the thumbnail, or exceptionally if the file isn't a readable image
+     */
+    public CompletableFuture<BufferedImage> loadThumbnail(File file, int width, int height) {
+        String key = cacheKey(file, width, height);
+        synchronized (thumbnails) {
+            BufferedImage cached = thumbnails.get(key);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached);
+            }
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            BufferedImage thumbnail = scale(decode(file, width, height), width, height);
+            synchronized (thumbnails) {
+                thumbnails.put(key, thumbnail);
+            }
+            return thumbnail;
+        }, executor);
+    }
+
+    /**
+     * Decodes the image at full resolution in the background.
+     *
+     * @param file The image file
+     * @return a future that completes with the image, or exceptionally if the file isn't a readable image
+     */
+    public CompletableFuture<BufferedImage> loadFullResolution(File file) {
+        return CompletableFuture.supplyAsync(() -> decode(file, 0, 0), executor);
+    }
+
+    private static String cacheKey(File file, int width, int height) {
+        return file.getAbsolutePath() + '|' + file.lastModified() + '|' + file.length() + '|' + width + 'x' + height;
+    }
+
+    /**
+     * Decodes an image, skipping source pixels so the result is no smaller than the target size.
+     * A target size of 0 decodes every pixel.
+     */
+    private static BufferedImage decode(File file, int targetWidth, int targetHeight) {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+            if (in == null) {
+                throw new IOException("Unable to open " + file);
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                throw new IOException("No image reader for " + file);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                if (targetWidth > 0 && targetHeight > 0) {
+                    int subsampling = Math.max(1, Math.min(reader.getWidth(0) / targetWidth, reader.getHeight(0) / targetHeight));
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException ioe) {
+            throw new IllegalArgumentException("Invalid image: " + file, ioe);
+        }
+    }
+
+    /**
+     * Scales the (already subsampled) image to its exact display size.
+     */
+    private static BufferedImage scale(BufferedImage image, int width, int height) {
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return scaled;
+    }
+}
@@ -1,12 +1,48 @@
 package com.udacity.catpoint.security.application;
 
+import com.udacity.catpoint.image.service.CachingImageService;
+import com.udacity.catpoint.image.service.CascadingImageService;
+import com.udacity.catpoint.image.service.DetectionResult;
 import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.image.service.ImageService;
+import com.udacity.catpoint.image.service.TiledImageService;
+import com.udacity.catpoint.image.service.WorkerPoolImageService;
+import com.udacity.catpoint.security.data.AckMode;
+import com.udacity.catpoint.security.data.MappedStateWriter;
 import com.udacity.catpoint.security.data.PretendDatabaseSecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.ReplicatedSecurityRepository;
+import com.udacity.catpoint.security.data.ReplicationStandby;
 import com.udacity.catpoint.security.data.SecurityRepository;
+import com.udacity.catpoint.security.data.SensorHistoryStore;
+import com.udacity.catpoint.security.service.AdaptiveFrameRateController;
+import com.udacity.catpoint.security.service.CameraIngestionService;
+import com.udacity.catpoint.security.service.FrameSource;
+import com.udacity.catpoint.security.service.HierarchicalTimingWheel;
+import com.udacity.catpoint.security.service.ImageSequenceFrameSource;
+import com.udacity.catpoint.security.service.MjpegFrameSource;
+import com.udacity.catpoint.security.service.PriorityIntake;
 import com.udacity.catpoint.security.service.SecurityService;
+import com.udacity.catpoint.security.service.SensorDebouncer;
+import com.udacity.catpoint.security.service.SensorSupervisor;
+import com.udacity.catpoint.security.service.StreamingCameraFeed;
+import com.udacity.catpoint.security.service.StyleService;
 import net.miginfocom.swing.MigLayout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
+import java.awt.event.WindowAdapter;
+import java.awt.image.BufferedImage;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * This is the primary JFrame for the application that contains all the top-level JPanels.
@@ -15,28 +51,304 @@ import javax.swing.*;
  * all our dependencies and providing them to other classes as necessary.
  */
 public class CatpointGui extends JFrame {
-    private SecurityRepository securityRepository = new PretendDatabaseSecurityRepositoryImpl();
-    private FakeImageService imageService = new FakeImageService();
-    private SecurityService securityService = new SecurityService(securityRepository, imageService);
-    private DisplayPanel displayPanel = new DisplayPanel(securityService);
-    private ControlPanel controlPanel = new ControlPanel(securityService);
-    private SensorPanel sensorPanel = new SensorPanel(securityService);
-    private ImagePanel imagePanel = new ImagePanel(securityService);
+    private static final Logger log = LoggerFactory.getLogger(CatpointGui.class);
+    private StartupTimer startupTimer = new StartupTimer();
+    private SecurityRepository securityRepository;
+    private ImageService imageService;
+    private SecurityService securityService;
+    private PriorityIntake priorityIntake;
+    private SensorHistoryStore historyStore = new SensorHistoryStore();
+    private HierarchicalTimingWheel timingWheel = new HierarchicalTimingWheel(100, 64, Clock.systemUTC());
+    private JPanel mainPanel = new JPanel();
 
     public CatpointGui() {
         setLocation(100, 100);
         setSize(600, 850);
         setTitle("Very Secure App");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowOpened(WindowEvent e) {
+                startupTimer.mark("window shown");
+            }
 
-        JPanel mainPanel = new JPanel();
+            @Override
+            public void windowClosing(WindowEvent e) {
+                if (priorityIntake != null) {
+                    log.info("Priority intake: {}", priorityIntake.report());
+                }
+            }
+        });
+
+        //the window opens straight away with placeholders, which are swapped for the real panels
+        //once the repository and the image service are ready
+        String primary = System.getProperty("catpoint.replication.primary");
+        String status = primary == null ? "Loading..." : "Standby, taking over when the primary at " + primary + " goes away";
         mainPanel.setLayout(new MigLayout());
-        mainPanel.add(displayPanel, "wrap");
-        mainPanel.add(imagePanel, "wrap");
-        mainPanel.add(controlPanel, "wrap");
-        mainPanel.add(sensorPanel);
+        mainPanel.add(buildPlaceholder("Very Secure Home Security", status), "wrap");
+        mainPanel.add(buildPlaceholder("Camera Feed", status), "wrap");
+        mainPanel.add(buildPlaceholder("System Control", status), "wrap");
+        mainPanel.add(buildPlaceholder("Sensor Management", status));
 
         getContentPane().add(mainPanel);
 
+        startServicesInBackground();
+    }
+
+    /**
+     * Loads the repository and starts the image service on separate background threads, since
+     * neither depends on the other, and finishes startup on the EDT once both are ready.
+     */
+    private void startServicesInBackground() {
+        ExecutorService startupExecutor = Executors.newFixedThreadPool(2, r -> {
+            Thread thread = new Thread(r, "catpoint-startup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletableFuture<SecurityRepository> repository = CompletableFuture.supplyAsync(
+                startupTimer.time("repository", CatpointGui::createRepository), startupExecutor);
+        CompletableFuture<ImageService> images = CompletableFuture.supplyAsync(
+                startupTimer.time("image service", () -> new CachingImageService(createImageService(), 16)), startupExecutor);
+        startupExecutor.shutdown();
+
+        repository.thenAcceptBothAsync(images, this::finishStartup, SwingUtilities::invokeLater)
+                .exceptionally(e -> {
+                    SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null,
+                            "Unable to start: " + e.getCause().getMessage()));
+                    return null;
+                });
+    }
+
+    /**
+     * Builds the security service and the real panels, then starts the optional services. Runs
+     * on the EDT, which owns the security service.
+     */
+    private void finishStartup(SecurityRepository repository, ImageService images) {
+        securityRepository = repository;
+        imageService = images;
+        securityService = new SecurityService(securityRepository, imageService);
+        priorityIntake = new PriorityIntake(securityService, SwingUtilities::invokeLater, 8);
+
+        mainPanel.removeAll();
+        mainPanel.add(new DisplayPanel(securityService), "wrap");
+        mainPanel.add(new ImagePanel(securityService), "wrap");
+        mainPanel.add(new ControlPanel(securityService, priorityIntake), "wrap");
+        mainPanel.add(new SensorPanel(securityService, priorityIntake));
+        mainPanel.revalidate();
+        mainPanel.repaint();
+        startupTimer.mark("panels built");
+
+        //expired delays are handed back to the EDT, which owns the security service
+        securityService.enableAlarmDelays(timingWheel, SwingUtilities::invokeLater, 30_000, 60_000);
+        timingWheel.start();
+        startCameraIngestion();
+        startCameraStream();
+        startStatePublishing();
+        securityService.recordHistoryTo(historyStore);
+        scheduleHistoryMaintenance();
+        startDebouncing();
+        startSensorSupervision();
+        startupTimer.mark("ready");
+        log.info(startupTimer.report());
+    }
+
+    /**
+     * Builds a panel holding a panel's heading and the startup status until the real panel can be built.
+     */
+    private static JPanel buildPlaceholder(String heading, String status) {
+        JPanel p = new JPanel();
+        p.setLayout(new MigLayout());
+        JLabel headingLabel = new JLabel(heading);
+        headingLabel.setFont(StyleService.HEADING_FONT);
+        p.add(headingLabel, "wrap");
+        p.add(new JLabel(status));
+        return p;
+    }
+
+    /**
+     * Builds the repository, taking part in replication if configured with system properties.
+     * With catpoint.replication.primary=host:port this process is a hot standby: its window shows
+     * it as a standby while it mirrors the primary, and it only takes over once the primary it
+     * reached has gone away, or after failing to reach it at all with
+     * catpoint.replication.takeOverWithoutPrimary=true. With
+     * catpoint.replication.port it accepts standbys of its own, acknowledged according to
+     * catpoint.replication.ack (ASYNC or SYNC).
+     */
+    private static SecurityRepository createRepository() {
+        SecurityRepository repository = new PretendDatabaseSecurityRepositoryImpl();
+        String primary = System.getProperty("catpoint.replication.primary");
+        if (primary != null) {
+            int separator = primary.lastIndexOf(':');
+            InetSocketAddress address = new InetSocketAddress(primary.substring(0, separator),
+                    Integer.parseInt(primary.substring(separator + 1)));
+            try (ReplicationStandby standby = new ReplicationStandby(address, repository)) {
+                standby.start();
+                standby.awaitPrimaryFailure(5_000, Boolean.getBoolean("catpoint.replication.takeOverWithoutPrimary"));
+                log.info("Primary unreachable, taking over at sequence {}", standby.getLastAppliedSequence());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        String port = System.getProperty("catpoint.replication.port");
+        if (port != null) {
+            try {
+                return new ReplicatedSecurityRepository(repository, new InetSocketAddress(Integer.parseInt(port)),
+                        AckMode.valueOf(System.getProperty("catpoint.replication.ack", "ASYNC")), 1_000);
+            } catch (IOException ioe) {
+                log.warn("Unable to accept standbys on port {}", port, ioe);
+            }
+        }
+        return repository;
+    }
+
+    /**
+     * Builds the image service. With catpoint.detectionWorkers=n, detection runs in n separate
+     * worker processes, each running the image service class named by catpoint.detectionService.
+     * With catpoint.detectionTileSize=pixels, large frames are scanned one tile at a time.
+     */
+    private static ImageService createImageService() {
+        ImageService imageService = createDetector();
+        String tileSize = System.getProperty("catpoint.detectionTileSize");
+        if (tileSize != null) {
+            int size = Integer.parseInt(tileSize);
+            //tiles block on the detector, so they get their own threads rather than the common pool
+            imageService = new TiledImageService(imageService,
+                    new ForkJoinPool(Math.max(4, Runtime.getRuntime().availableProcessors())), size, size / 8);
+        }
+        if (Boolean.getBoolean("catpoint.cascade")) {
+            //frames the local classifier rules out are never tiled or sent to the detector
+            imageService = new CascadingImageService(imageService);
+        }
+        return imageService;
+    }
+
+    private static ImageService createDetector() {
+        String workers = System.getProperty("catpoint.detectionWorkers");
+        if (workers != null) {
+            String serviceClass = System.getProperty("catpoint.detectionService", FakeImageService.class.getName());
+            try {
+                return new WorkerPoolImageService(Integer.parseInt(workers), serviceClass);
+            } catch (IOException ioe) {
+                log.warn("Unable to start detection workers", ioe);
+            }
+        }
+        return new FakeImageService();
+    }
+
+    /**
+     * Publishes the system state into a memory-mapped file for other processes, if one is
+     * configured with the catpoint.stateFile system property.
+     */
+    private void startStatePublishing() {
+        String stateFile = System.getProperty("catpoint.stateFile");
+        if (stateFile == null) {
+            return;
+        }
+        try {
+            securityService.publishStateTo(new MappedStateWriter(Path.of(stateFile), 256));
+        } catch (IOException ioe) {
+            JOptionPane.showMessageDialog(null, "Unable to publish state to " + stateFile);
+        }
+    }
+
+    /**
+     * Debounces sensor readings before they reach the security service, unless turned off with
+     * catpoint.debounce=false.
+     */
+    private void startDebouncing() {
+        if (!Boolean.parseBoolean(System.getProperty("catpoint.debounce", "true"))) {
+            return;
+        }
+        securityService.debounceReadingsWith(new SensorDebouncer(securityService, timingWheel,
+                SwingUtilities::invokeLater, Clock.systemUTC()));
+    }
+
+    /**
+     * Reports sensors that stop reporting, if enabled with the catpoint.supervision system
+     * property. With catpoint.supervision.escalate=true an offline sensor also escalates the
+     * alarm while armed. Only meant for sensors that check in through
+     * {@link SecurityService#reportSensorHeartbeat}: a sensor that is only ever toggled in the
+     * sensor panel goes offline once it has been left alone for its supervision interval.
+     */
+    private void startSensorSupervision() {
+        if (!Boolean.getBoolean("catpoint.supervision")) {
+            return;
+        }
+        SensorSupervisor supervisor = new SensorSupervisor(securityService, SwingUtilities::invokeLater,
+                Clock.systemUTC(), 60_000);
+        securityService.setEscalateOfflineSensors(Boolean.getBoolean("catpoint.supervision.escalate"));
+        securityService.superviseSensors(supervisor);
+        supervisor.start(timingWheel);
+    }
+
+    /**
+     * Seals and rolls up the sensor history every few minutes, so it is kept in shape while no
+     * sensor changes. The work is handed off, since it can encode a whole chunk.
+     */
+    private void scheduleHistoryMaintenance() {
+        timingWheel.schedule(5 * 60_000, () -> ForkJoinPool.commonPool().execute(() -> {
+            historyStore.maintain();
+            scheduleHistoryMaintenance();
+        }));
+    }
+
+    /**
+     * Streams images from a camera spool directory into detection, if one is configured with
+     * the catpoint.spoolDir system property.
+     */
+    private void startCameraIngestion() {
+        String spoolDir = System.getProperty("catpoint.spoolDir");
+        if (spoolDir == null) {
+            return;
+        }
+        CameraIngestionService ingestionService = new CameraIngestionService(Path.of(spoolDir), this::detectAndProcess,
+                Runtime.getRuntime().availableProcessors(), 8);
+        try {
+            ingestionService.start();
+        } catch (IOException ioe) {
+            JOptionPane.showMessageDialog(null, "Unable to watch camera spool directory " + spoolDir);
+        }
+    }
+
+    /**
+     * Feeds a camera stream into detection when catpoint.cameraStream is set, either to a
+     * directory of frames or an MJPEG file, which are played back at about 15 frames per second,
+     * or to the host:port of a live MJPEG camera.
+     */
+    private void startCameraStream() {
+        String stream = System.getProperty("catpoint.cameraStream");
+        if (stream == null) {
+            return;
+        }
+        try {
+            FrameSource source;
+            long frameIntervalMillis = 66;
+            Path path = Path.of(stream);
+            if (Files.isDirectory(path)) {
+                source = new ImageSequenceFrameSource(path);
+            } else if (Files.isRegularFile(path)) {
+                source = MjpegFrameSource.fromFile(path);
+            } else {
+                int colon = stream.lastIndexOf(':');
+                source = MjpegFrameSource.fromSocket(stream.substring(0, colon),
+                        Integer.parseInt(stream.substring(colon + 1)));
+                frameIntervalMillis = 0;
+            }
+            //frames are sampled so detection lags the camera by at most half a second
+            new StreamingCameraFeed(source, this::detectAndProcess,
+                    new AdaptiveFrameRateController(500, 0, 5_000), frameIntervalMillis).start();
+        } catch (IOException | RuntimeException e) {
+            JOptionPane.showMessageDialog(null, "Unable to open camera stream " + stream);
+        }
+    }
+
+    /**
+     * Runs detection on the calling camera thread and hands only the result to the EDT, through
+     * the priority intake so cats seen while armed go ahead of bulk work. Waiting for the result
+     * to be applied is what lets the cameras apply backpressure.
+     */
+    private void detectAndProcess(BufferedImage image) {
+        DetectionResult detection = imageService.detect(image);
+        priorityIntake.processDetection(detection).join();
     }
 }
@@ -1,6 +1,7 @@
 package com.udacity.catpoint.security.application;
 
 import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.service.PriorityIntake;
 import com.udacity.catpoint.security.service.SecurityService;
 import com.udacity.catpoint.security.service.StyleService;
 import net.miginfocom.swing.MigLayout;
@@ -11,18 +12,21 @@ import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
- * JPanel containing the buttons to manipulate arming status of the system.
+ * JPanel containing the buttons to manipulate arming status of the system. Arming changes go
+ * through the priority intake like every other command.
  */
 public class ControlPanel extends JPanel {
 
     private SecurityService securityService;
+    private PriorityIntake priorityIntake;
     private Map<ArmingStatus, JButton> buttonMap;
 
 
-    public ControlPanel(SecurityService securityService) {
+    public ControlPanel(SecurityService securityService, PriorityIntake priorityIntake) {
         super();
         setLayout(new MigLayout());
         this.securityService = securityService;
+        this.priorityIntake = priorityIntake;
 
         JLabel panelLabel = new JLabel("System Control");
         panelLabel.setFont(StyleService.HEADING_FONT);
@@ -39,7 +43,7 @@ public class ControlPanel extends JPanel {
             v.setContentAreaFilled(true);
             v.setOpaque(true);
             v.addActionListener(e -> {
-                securityService.setArmingStatus(k);
+                priorityIntake.setArmingStatus(k);
                 buttonMap.forEach((status, button) -> button.setBackground(status == k ? status.getColor() : null));
             });
         });
@@ -5,12 +5,9 @@ import com.udacity.catpoint.security.service.SecurityService;
 import com.udacity.catpoint.security.service.StyleService;
 import net.miginfocom.swing.MigLayout;
 
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
-import java.awt.image.BufferedImage;
 import java.io.File;
-import java.io.IOException;
 
 /**
  * Panel containing the 'camera' output. Allows users to 'refresh' the camera
@@ -21,7 +18,8 @@ public class ImagePanel extends JPanel implements StatusListener {
 
     private JLabel cameraHeader;
     private JLabel cameraLabel;
-    private BufferedImage currentCameraImage;
+    private File currentCameraFile;
+    private CameraImageLoader imageLoader = new CameraImageLoader();
 
     private int IMAGE_WIDTH = 300;
     private int IMAGE_HEIGHT = 225;
@@ -50,20 +48,35 @@ public class ImagePanel extends JPanel implements StatusListener {
             if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
                 return;
             }
-            try {
-                currentCameraImage = ImageIO.read(chooser.getSelectedFile());
-                Image tmp = new ImageIcon(currentCameraImage).getImage();
-                cameraLabel.setIcon(new ImageIcon(tmp.getScaledInstance(IMAGE_WIDTH, IMAGE_HEIGHT, Image.SCALE_SMOOTH)));
-            } catch (IOException | NullPointerException ioe) {
-                JOptionPane.showMessageDialog(null, "Invalid image selected.");
-            }
-            repaint();
+            //decode off the EDT, then hop back to show the thumbnail
+            File selected = chooser.getSelectedFile();
+            imageLoader.loadThumbnail(selected, IMAGE_WIDTH, IMAGE_HEIGHT).whenComplete((thumbnail, ex) ->
+                    SwingUtilities.invokeLater(() -> {
+                        if (ex != null) {
+                            JOptionPane.showMessageDialog(null, "Invalid image selected.");
+                            return;
+                        }
+                        currentCameraFile = selected;
+                        cameraLabel.setIcon(new ImageIcon(thumbnail));
+                        repaint();
+                    }));
         });
 
-        //button that sends the image to the image service
+        //button that sends the image to the image service, the full resolution image is only decoded now
         JButton scanPictureButton = new JButton("Scan Picture");
         scanPictureButton.addActionListener(e -> {
-            securityService.processImage(currentCameraImage);
+            if (currentCameraFile == null) {
+                securityService.processImage(null);
+                return;
+            }
+            imageLoader.loadFullResolution(currentCameraFile).whenComplete((image, ex) ->
+                    SwingUtilities.invokeLater(() -> {
+                        if (ex != null) {
+                            JOptionPane.showMessageDialog(null, "Invalid image selected.");
+                            return;
+                        }
+                        securityService.processImage(image);
+                    }));
         });
 
         add(cameraHeader, "span 3, wrap");
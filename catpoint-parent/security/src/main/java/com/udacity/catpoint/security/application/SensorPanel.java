@@ -3,39 +3,52 @@ package com.udacity.catpoint.security.application;
 import com.udacity.catpoint.security.data.AlarmStatus;
 import com.udacity.catpoint.security.data.Sensor;
 import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.service.PriorityIntake;
 import com.udacity.catpoint.security.service.SecurityService;
 import com.udacity.catpoint.security.service.StyleService;
 import net.miginfocom.swing.MigLayout;
 
 import javax.swing.*;
+import java.util.Iterator;
 
 /**
  * Panel that allows users to add sensors to their system. Sensors may be
- * manually set to "active" and "inactive" to test the system.
+ * manually set to "active" and "inactive" to test the system. Changes go through the priority
+ * intake, so activations while armed are handled ahead of bulk work.
  */
 public class SensorPanel extends JPanel implements StatusListener {
 
     private SecurityService securityService;
+    private PriorityIntake priorityIntake;
 
     private JLabel panelLabel = new JLabel("Sensor Management");
     private JLabel newSensorName = new JLabel("Name:");
     private JLabel newSensorType = new JLabel("Sensor Type:");
     private JTextField newSensorNameField = new JTextField();
     private JComboBox newSensorTypeDropdown = new JComboBox(SensorType.values());
+    private JLabel newSensorZone = new JLabel("Zone:");
+    private JTextField newSensorZoneField = new JTextField();
     private JButton addNewSensorButton = new JButton("Add New Sensor");
 
     private JPanel sensorListPanel;
     private JPanel newSensorPanel;
+    private long drawnSensorsVersion = -1;
+    private Iterator<Sensor> pendingRows;
 
-    public SensorPanel(SecurityService securityService) {
+    //rows drawn per EDT event, so a large sensor list fills in without freezing the window
+    private static final int ROWS_PER_BATCH = 100;
+
+    public SensorPanel(SecurityService securityService, PriorityIntake priorityIntake) {
         super();
         setLayout(new MigLayout());
         this.securityService = securityService;
+        this.priorityIntake = priorityIntake;
         securityService.addStatusListener(this);
         panelLabel.setFont(StyleService.HEADING_FONT);
         addNewSensorButton.addActionListener(e ->
                 addSensor(new Sensor(newSensorNameField.getText(),
-                        SensorType.valueOf(newSensorTypeDropdown.getSelectedItem().toString()))));
+                        SensorType.valueOf(newSensorTypeDropdown.getSelectedItem().toString()),
+                        newSensorZoneField.getText().isBlank() ? null : newSensorZoneField.getText().trim())));
 
         newSensorPanel = buildAddSensorPanel();
         sensorListPanel = new JPanel();
@@ -58,45 +71,76 @@ public class SensorPanel extends JPanel implements StatusListener {
         p.add(newSensorNameField, "width 50:100:200");
         p.add(newSensorType);
         p.add(newSensorTypeDropdown, "wrap");
+        p.add(newSensorZone);
+        p.add(newSensorZoneField, "width 50:100:200, wrap");
         p.add(addNewSensorButton, "span 3");
         return p;
     }
 
     /**
      * Requests the current list of sensors and updates the provided panel to display them. Sensors
-     * will display in the order that they are created.
+     * will display in the order that they are created. Nothing is redrawn if the sensors haven't
+     * changed since the last update. Rows are added a batch at a time, so the window stays
+     * responsive while a large list fills in.
      *
      * @param p The Panel to populate with the current list of sensors
      */
     private void updateSensorList(JPanel p) {
+        long version = securityService.getSensorsVersion();
+        if (version == drawnSensorsVersion) {
+            return;
+        }
+        drawnSensorsVersion = version;
         p.removeAll();
-        securityService.getSensors().stream().sorted().forEach(s -> {
-            JLabel sensorLabel = new JLabel(String.format("%s(%s): %s", s.getName(), s.getSensorType().toString(), (s.getActive() ? "Active" : "Inactive")));
-            JButton sensorToggleButton = new JButton((s.getActive() ? "Deactivate" : "Activate"));
-            JButton sensorRemoveButton = new JButton("Remove Sensor");
-
-            sensorToggleButton.addActionListener(e -> setSensorActivity(s, !s.getActive()));
-            sensorRemoveButton.addActionListener(e -> removeSensor(s));
+        pendingRows = securityService.getSensors().stream().sorted().iterator();
+        drawNextRows(p, pendingRows);
+    }
 
-            //hard code some sizes, tsk tsk
-            p.add(sensorLabel, "width 300:300:300");
-            p.add(sensorToggleButton, "width 100:100:100");
-            p.add(sensorRemoveButton, "wrap");
-        });
+    /**
+     * Draws the next batch of rows and queues the batch after it, unless a newer update has
+     * replaced the rows being drawn.
+     */
+    private void drawNextRows(JPanel p, Iterator<Sensor> rows) {
+        if (rows != pendingRows) {
+            return;
+        }
+        for (int i = 0; i < ROWS_PER_BATCH && rows.hasNext(); i++) {
+            addSensorRow(p, rows.next());
+        }
+        if (rows.hasNext()) {
+            SwingUtilities.invokeLater(() -> drawNextRows(p, rows));
+        }
 
         repaint();
         revalidate();
     }
 
+    private void addSensorRow(JPanel p, Sensor s) {
+        JLabel sensorLabel = new JLabel(String.format("%s(%s%s): %s", s.getName(), s.getSensorType().toString(),
+                (s.getZone() == null ? "" : ", " + s.getZone()),
+                (securityService.isSensorOffline(s) ? "Offline" : s.getActive() ? "Active" : "Inactive")));
+        JButton sensorToggleButton = new JButton((s.getActive() ? "Deactivate" : "Activate"));
+        JButton sensorRemoveButton = new JButton("Remove Sensor");
+
+        sensorToggleButton.addActionListener(e -> setSensorActivity(s, !s.getActive()));
+        sensorRemoveButton.addActionListener(e -> removeSensor(s));
+
+        //hard code some sizes, tsk tsk
+        p.add(sensorLabel, "width 300:300:300");
+        p.add(sensorToggleButton, "width 100:100:100");
+        p.add(sensorRemoveButton, "wrap");
+    }
+
     /**
-     * Asks the securityService to change a sensor activation status and then rebuilds the current sensor list
+     * Reports the new sensor activation status to the securityService as a reading and then rebuilds
+     * the current sensor list once the intake has run it. A debounced reading redraws the list
+     * again once it settles
      *
      * @param sensor   The sensor to update
      * @param isActive The sensor's activation status
      */
     private void setSensorActivity(Sensor sensor, Boolean isActive) {
-        securityService.changeSensorActivationStatus(sensor, isActive);
-        updateSensorList(sensorListPanel);
+        priorityIntake.reportSensorReading(sensor, isActive).thenRun(() -> updateSensorList(sensorListPanel));
     }
 
     /**
@@ -106,8 +150,7 @@ public class SensorPanel extends JPanel implements StatusListener {
      */
     private void addSensor(Sensor sensor) {
         if (securityService.getSensors().size() < 4) {
-            securityService.addSensor(sensor);
-            updateSensorList(sensorListPanel);
+            priorityIntake.addSensor(sensor).thenRun(() -> updateSensorList(sensorListPanel));
         } else {
             JOptionPane.showMessageDialog(null, "To add more than 4 sensors, please subscribe to our Premium Membership!");
         }
@@ -119,8 +162,7 @@ public class SensorPanel extends JPanel implements StatusListener {
      * @param sensor The sensor to remove
      */
     private void removeSensor(Sensor sensor) {
-        securityService.removeSensor(sensor);
-        updateSensorList(sensorListPanel);
+        priorityIntake.removeSensor(sensor).thenRun(() -> updateSensorList(sensorListPanel));
     }
 
     @Override
@@ -138,4 +180,11 @@ public class SensorPanel extends JPanel implements StatusListener {
         
     }
 
+    @Override
+    public void sensorOnlineChanged(Sensor sensor, boolean online) {
+        //going offline doesn't change the sensors themselves, so force a redraw
+        drawnSensorsVersion = -1;
+        updateSensorList(sensorListPanel);
+    }
+
 }
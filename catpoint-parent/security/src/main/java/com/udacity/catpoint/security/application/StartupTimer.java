@@ -0,0 +1,48 @@
+package com.udacity.catpoint.security.application;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Records when each phase of application startup began and ended, relative to the timer's
+ * creation, so the startup report shows which phases ran at the same time.
+ */
+class StartupTimer {
+
+    private final long startNanos = System.nanoTime();
+    private final List<String> phases = new ArrayList<>(); //guarded by this
+
+    /**
+     * Wraps a task so the time it runs is recorded under the given phase name.
+     */
+    <T> Supplier<T> time(String phase, Supplier<T> task) {
+        return () -> {
+            long begin = elapsedMillis();
+            try {
+                return task.get();
+            } finally {
+                record(String.format("%s %d-%d ms", phase, begin, elapsedMillis()));
+            }
+        };
+    }
+
+    /**
+     * Records a point in startup, such as the window appearing.
+     */
+    void mark(String milestone) {
+        record(String.format("%s at %d ms", milestone, elapsedMillis()));
+    }
+
+    private synchronized void record(String phase) {
+        phases.add(phase);
+    }
+
+    private long elapsedMillis() {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    synchronized String report() {
+        return "Startup: " + String.join(", ", phases);
+    }
+}
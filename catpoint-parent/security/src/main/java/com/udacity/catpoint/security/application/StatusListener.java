@@ -1,6 +1,7 @@
 package com.udacity.catpoint.security.application;
 
 import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.Sensor;
 
 /**
  * Identifies a component that should be notified whenever the system status changes
@@ -11,4 +12,10 @@ public interface StatusListener {
     void catDetected(boolean catDetected);
 
     void sensorStatusChanged();
+
+    /**
+     * Called when sensor supervision finds a sensor has stopped reporting, and when it reports again.
+     */
+    default void sensorOnlineChanged(Sensor sensor, boolean online) {
+    }
 }
@@ -0,0 +1,15 @@
+package com.udacity.catpoint.security.data;
+
+/**
+ * How long a {@link ReplicatedSecurityRepository} waits for standbys after a change.
+ */
+public enum AckMode {
+    /**
+     * Return once the change is applied locally and queued for the standbys.
+     */
+    ASYNC,
+    /**
+     * Return once every connected standby has acknowledged the change, or the ack timeout passes.
+     */
+    SYNC
+}
@@ -0,0 +1,185 @@
+package com.udacity.catpoint.security.data;
+
+import java.util.Arrays;
+
+/**
+ * Raw sensor history for one time partition, stored column by column. Timestamps are varint
+ * encoded deltas from the partition start, sensors are dictionary codes packed into as few
+ * bits as the largest code needs, and states are a bitset. Scans decode the columns on the
+ * fly and never expand them into objects.
+ */
+final class HistoryChunk implements HistoryPartition {
+
+    private final long startMillis;
+    private final long endMillis;
+    private final int rowCount;
+    private final byte[] timestampDeltas;
+    private final long[] codes;
+    private final int bitsPerCode;
+    private final long[] states;
+
+    private HistoryChunk(long startMillis, long endMillis, int rowCount, byte[] timestampDeltas,
+                         long[] codes, int bitsPerCode, long[] states) {
+        this.startMillis = startMillis;
+        this.endMillis = endMillis;
+        this.rowCount = rowCount;
+        this.timestampDeltas = timestampDeltas;
+        this.codes = codes;
+        this.bitsPerCode = bitsPerCode;
+        this.states = states;
+    }
+
+    /**
+     * Encodes rows that are already in timestamp order.
+     */
+    static HistoryChunk encode(long startMillis, long endMillis, long[] timestamps, int[] sensorCodes,
+                               boolean[] active, int rowCount) {
+        int maxCode = 0;
+        for (int row = 0; row < rowCount; row++) {
+            maxCode = Math.max(maxCode, sensorCodes[row]);
+        }
+        int bits = Math.max(1, 32 - Integer.numberOfLeadingZeros(maxCode));
+        long[] packedCodes = new long[(int) (((long) rowCount * bits + 63) >>> 6)];
+        long[] packedStates = new long[(rowCount + 63) >>> 6];
+        byte[] deltas = new byte[rowCount * 10];
+        int position = 0;
+        long previous = startMillis;
+        for (int row = 0; row < rowCount; row++) {
+            long delta = timestamps[row] - previous;
+            previous = timestamps[row];
+            while ((delta & ~0x7FL) != 0) {
+                deltas[position++] = (byte) ((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            deltas[position++] = (byte) delta;
+
+            long bit = (long) row * bits;
+            int word = (int) (bit >>> 6);
+            int shift = (int) (bit & 63);
+            packedCodes[word] |= (long) sensorCodes[row] << shift;
+            if (shift + bits > 64) {
+                packedCodes[word + 1] |= (long) sensorCodes[row] >>> (64 - shift);
+            }
+            if (active[row]) {
+                packedStates[row >>> 6] |= 1L << row;
+            }
+        }
+        return new HistoryChunk(startMillis, endMillis, rowCount, Arrays.copyOf(deltas, position),
+                packedCodes, bits, packedStates);
+    }
+
+    int code(int row) {
+        long bit = (long) row * bitsPerCode;
+        int word = (int) (bit >>> 6);
+        int shift = (int) (bit & 63);
+        long value = codes[word] >>> shift;
+        if (shift + bitsPerCode > 64) {
+            value |= codes[word + 1] << (64 - shift);
+        }
+        return (int) (value & ((1L << bitsPerCode) - 1));
+    }
+
+    boolean active(int row) {
+        return (states[row >>> 6] & (1L << row)) != 0;
+    }
+
+    /**
+     * Calls the visitor for every activation in [from, to), in timestamp order.
+     */
+    private void forEachActivation(long fromMillis, long toMillis, ActivationVisitor visitor) {
+        int position = 0;
+        long timestamp = startMillis;
+        for (int row = 0; row < rowCount; row++) {
+            long delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = timestampDeltas[position++];
+                delta |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            timestamp += delta;
+            if (timestamp >= toMillis) {
+                return;
+            }
+            if (timestamp >= fromMillis && active(row)) {
+                visitor.visit(timestamp, code(row));
+            }
+        }
+    }
+
+    @Override
+    public void countActivations(long fromMillis, long toMillis, long bucketMillis, long[][] counts) {
+        forEachActivation(fromMillis, toMillis,
+                (timestamp, code) -> counts[code][(int) ((timestamp - fromMillis) / bucketMillis)]++);
+    }
+
+    @Override
+    public void countActivationsBeforeAlarms(long fromMillis, long toMillis, long[] alarms, long windowMillis, long[] counts) {
+        forEachActivation(fromMillis, toMillis, (timestamp, code) -> {
+            //first alarm strictly after the activation
+            int index = Arrays.binarySearch(alarms, timestamp + 1);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            if (index < alarms.length && alarms[index] <= timestamp + windowMillis) {
+                counts[code]++;
+            }
+        });
+    }
+
+    /**
+     * Summarizes the chunk as activation counts per sensor and bucket.
+     */
+    HistoryRollup rollUp(long rollupStartMillis, long rollupEndMillis, long bucketMillis) {
+        int[] rollupCodes = new int[rowCount];
+        int[] rollupBuckets = new int[rowCount];
+        int[] rollupCounts = new int[rowCount];
+        int[] entries = {0};
+        int[] lastEntryForCode = new int[1 << Math.min(bitsPerCode, 16)];
+        Arrays.fill(lastEntryForCode, -1);
+        forEachActivation(startMillis, endMillis, (timestamp, code) -> {
+            int bucket = (int) ((timestamp - rollupStartMillis) / bucketMillis);
+            //rows are in time order, so a sensor's current bucket is always its last entry
+            int last = code < lastEntryForCode.length ? lastEntryForCode[code] : -1;
+            if (last >= 0 && rollupBuckets[last] == bucket) {
+                rollupCounts[last]++;
+                return;
+            }
+            int entry = entries[0]++;
+            rollupCodes[entry] = code;
+            rollupBuckets[entry] = bucket;
+            rollupCounts[entry] = 1;
+            if (code < lastEntryForCode.length) {
+                lastEntryForCode[code] = entry;
+            }
+        });
+        int size = entries[0];
+        return new HistoryRollup(rollupStartMillis, rollupEndMillis, bucketMillis, rowCount,
+                Arrays.copyOf(rollupCodes, size), Arrays.copyOf(rollupBuckets, size), Arrays.copyOf(rollupCounts, size));
+    }
+
+    @Override
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    @Override
+    public long getEndMillis() {
+        return endMillis;
+    }
+
+    @Override
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public long getSizeBytes() {
+        return timestampDeltas.length + codes.length * 8L + states.length * 8L;
+    }
+
+    private interface ActivationVisitor {
+        void visit(long timestamp, int code);
+    }
+}
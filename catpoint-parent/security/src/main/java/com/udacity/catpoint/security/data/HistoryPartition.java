@@ -0,0 +1,43 @@
+package com.udacity.catpoint.security.data;
+
+/**
+ * A time range of sensor history in {@link SensorHistoryStore}, either raw or rolled up.
+ * Sensors are identified by their dictionary code.
+ */
+interface HistoryPartition {
+
+    /**
+     * @return the first millisecond covered by the partition
+     */
+    long getStartMillis();
+
+    /**
+     * @return the first millisecond after the partition
+     */
+    long getEndMillis();
+
+    /**
+     * @return the number of activation changes the partition stands for
+     */
+    long getRowCount();
+
+    /**
+     * @return the approximate size of the partition's data in bytes
+     */
+    long getSizeBytes();
+
+    /**
+     * Adds the partition's activations in [from, to) to per-sensor, per-bucket counts.
+     *
+     * @param counts Counts indexed by sensor code, then by bucket
+     */
+    void countActivations(long fromMillis, long toMillis, long bucketMillis, long[][] counts);
+
+    /**
+     * Counts, per sensor, the activations that were followed by an alarm within the window.
+     *
+     * @param alarms Sorted alarm times
+     * @param counts Counts indexed by sensor code
+     */
+    void countActivationsBeforeAlarms(long fromMillis, long toMillis, long[] alarms, long windowMillis, long[] counts);
+}
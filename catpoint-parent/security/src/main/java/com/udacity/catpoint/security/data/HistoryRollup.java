@@ -0,0 +1,82 @@
+package com.udacity.catpoint.security.data;
+
+import java.util.Arrays;
+
+/**
+ * Old sensor history reduced to activation counts per sensor and bucket. Individual
+ * timestamps are gone, so activations are counted at the start of their bucket.
+ */
+final class HistoryRollup implements HistoryPartition {
+
+    private final long startMillis;
+    private final long endMillis;
+    private final long bucketMillis;
+    private final long rowCount;
+    //one entry per sensor and bucket, ordered by bucket
+    private final int[] codes;
+    private final int[] buckets;
+    private final int[] counts;
+
+    HistoryRollup(long startMillis, long endMillis, long bucketMillis, long rowCount,
+                  int[] codes, int[] buckets, int[] counts) {
+        this.startMillis = startMillis;
+        this.endMillis = endMillis;
+        this.bucketMillis = bucketMillis;
+        this.rowCount = rowCount;
+        this.codes = codes;
+        this.buckets = buckets;
+        this.counts = counts;
+    }
+
+    /**
+     * Combines this rollup with a later one over the same range and bucket size.
+     */
+    HistoryRollup plus(HistoryRollup later) {
+        int size = codes.length + later.codes.length;
+        int[] mergedCodes = Arrays.copyOf(codes, size);
+        int[] mergedBuckets = Arrays.copyOf(buckets, size);
+        int[] mergedCounts = Arrays.copyOf(counts, size);
+        System.arraycopy(later.codes, 0, mergedCodes, codes.length, later.codes.length);
+        System.arraycopy(later.buckets, 0, mergedBuckets, buckets.length, later.buckets.length);
+        System.arraycopy(later.counts, 0, mergedCounts, counts.length, later.counts.length);
+        return new HistoryRollup(startMillis, endMillis, bucketMillis, rowCount + later.rowCount,
+                mergedCodes, mergedBuckets, mergedCounts);
+    }
+
+    @Override
+    public void countActivations(long fromMillis, long toMillis, long bucketMillis, long[][] counts) {
+        for (int entry = 0; entry < codes.length; entry++) {
+            long timestamp = startMillis + buckets[entry] * this.bucketMillis;
+            if (timestamp >= fromMillis && timestamp < toMillis) {
+                counts[codes[entry]][(int) ((timestamp - fromMillis) / bucketMillis)] += this.counts[entry];
+            }
+        }
+    }
+
+    /**
+     * Rolled up history is too coarse to relate to alarms, so it never counts.
+     */
+    @Override
+    public void countActivationsBeforeAlarms(long fromMillis, long toMillis, long[] alarms, long windowMillis, long[] counts) {
+    }
+
+    @Override
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    @Override
+    public long getEndMillis() {
+        return endMillis;
+    }
+
+    @Override
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public long getSizeBytes() {
+        return codes.length * 12L;
+    }
+}
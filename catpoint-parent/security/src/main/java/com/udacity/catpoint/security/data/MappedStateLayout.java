@@ -0,0 +1,69 @@
+package com.udacity.catpoint.security.data;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Fixed layout of the memory-mapped state file, in native byte order. The header is followed
+ * by one slot per sensor.
+ * <pre>
+ *  0  int   magic
+ *  4  int   layout version
+ *  8  long  sequence, odd while the writer is updating the file
+ * 16  long  time of the last update, epoch millis
+ * 24  int   alarm status of the whole site, the most severe of the system and zone statuses
+ * 28  int   system-wide alarm status
+ * 32  int   arming status
+ * 36  int   1 if a cat is detected
+ * 40  int   number of sensors, may be more than the slots
+ * 44  int   number of active sensors
+ * 48  long  sensors version from the repository
+ * 56  int   number of sensor slots
+ *
+ * sensor slot:
+ *  0  long  sensor id, most significant bits
+ *  8  long  sensor id, least significant bits
+ * 16  byte  sensor type
+ * 17  byte  1 if active
+ * 18  byte  length of the name in bytes
+ * 20        name, UTF-8, truncated to fit
+ * </pre>
+ * Statuses are stored as ordinals, or -1 if unknown.
+ */
+final class MappedStateLayout {
+
+    static final int MAGIC = 0x43415450; //"CATP"
+    static final int LAYOUT_VERSION = 1;
+
+    static final int MAGIC_OFFSET = 0;
+    static final int LAYOUT_VERSION_OFFSET = 4;
+    static final int SEQUENCE_OFFSET = 8;
+    static final int TIMESTAMP_OFFSET = 16;
+    static final int SITE_ALARM_OFFSET = 24;
+    static final int SYSTEM_ALARM_OFFSET = 28;
+    static final int ARMING_OFFSET = 32;
+    static final int CAT_DETECTED_OFFSET = 36;
+    static final int SENSOR_COUNT_OFFSET = 40;
+    static final int ACTIVE_COUNT_OFFSET = 44;
+    static final int SENSORS_VERSION_OFFSET = 48;
+    static final int CAPACITY_OFFSET = 56;
+    static final int HEADER_SIZE = 64;
+
+    static final int SLOT_SIZE = 64;
+    static final int SLOT_TYPE_OFFSET = 16;
+    static final int SLOT_ACTIVE_OFFSET = 17;
+    static final int SLOT_NAME_LENGTH_OFFSET = 18;
+    static final int SLOT_NAME_OFFSET = 20;
+    static final int MAX_NAME_BYTES = SLOT_SIZE - SLOT_NAME_OFFSET;
+
+    //gives the sequence acquire/release semantics, which plain buffer access doesn't have
+    static final VarHandle SEQUENCE = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private MappedStateLayout() {
+    }
+
+    static long fileSize(int capacity) {
+        return HEADER_SIZE + (long) capacity * SLOT_SIZE;
+    }
+}
@@ -0,0 +1,121 @@
+package com.udacity.catpoint.security.data;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static com.udacity.catpoint.security.data.MappedStateLayout.*;
+
+/**
+ * Reads the state published by a {@link MappedStateWriter}, usually from another process.
+ * Reads never lock: the file is copied, and the copy is only used if the writer's sequence
+ * was even and unchanged across the copy. Otherwise the read is retried.
+ */
+public class MappedStateReader implements AutoCloseable {
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+
+    public MappedStateReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        buffer.order(ByteOrder.nativeOrder());
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(MAGIC_OFFSET) != MAGIC) {
+            channel.close();
+            throw new IOException("Not a catpoint state file: " + file);
+        }
+        if (buffer.getInt(LAYOUT_VERSION_OFFSET) != LAYOUT_VERSION) {
+            channel.close();
+            throw new IOException("Unsupported state file layout " + buffer.getInt(LAYOUT_VERSION_OFFSET));
+        }
+        int slots = buffer.getInt(CAPACITY_OFFSET);
+        capacity = Math.min(Math.max(slots, 0), (buffer.capacity() - HEADER_SIZE) / SLOT_SIZE);
+    }
+
+    /**
+     * @return a consistent copy of the header and all sensor slots
+     */
+    public StateSnapshot read() {
+        return read(true);
+    }
+
+    /**
+     * Cheaper than {@link #read()} for callers that only need the statuses and counts.
+     *
+     * @return a consistent copy of the header, with an empty sensor list
+     */
+    public StateSnapshot readHeader() {
+        return read(false);
+    }
+
+    /**
+     * Lets a poller skip reading when nothing has changed.
+     *
+     * @return the current sequence, odd while an update is in progress
+     */
+    public long getSequence() {
+        return (long) SEQUENCE.getAcquire(buffer, SEQUENCE_OFFSET);
+    }
+
+    private StateSnapshot read(boolean includeSensors) {
+        byte[] copy = new byte[HEADER_SIZE + (includeSensors ? capacity * SLOT_SIZE : 0)];
+        while (true) {
+            long before = (long) SEQUENCE.getAcquire(buffer, SEQUENCE_OFFSET);
+            if ((before & 1) == 0) {
+                int slots = 0;
+                if (includeSensors) {
+                    slots = Math.min(Math.max(buffer.getInt(SENSOR_COUNT_OFFSET), 0), capacity);
+                }
+                buffer.get(0, copy, 0, HEADER_SIZE + slots * SLOT_SIZE);
+                VarHandle.loadLoadFence();
+                long after = (long) SEQUENCE.getOpaque(buffer, SEQUENCE_OFFSET);
+                if (before == after) {
+                    return decode(ByteBuffer.wrap(copy).order(ByteOrder.nativeOrder()), before, slots);
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    private static StateSnapshot decode(ByteBuffer state, long sequence, int slots) {
+        List<StateSnapshot.SensorState> sensors = new ArrayList<>(slots);
+        for (int slot = 0; slot < slots; slot++) {
+            int offset = HEADER_SIZE + slot * SLOT_SIZE;
+            UUID id = new UUID(state.getLong(offset), state.getLong(offset + 8));
+            int nameLength = Math.min(state.get(offset + SLOT_NAME_LENGTH_OFFSET) & 0xFF, MAX_NAME_BYTES);
+            String name = new String(state.array(), offset + SLOT_NAME_OFFSET, nameLength, StandardCharsets.UTF_8);
+            sensors.add(new StateSnapshot.SensorState(id, name,
+                    valueOf(SensorType.values(), state.get(offset + SLOT_TYPE_OFFSET)),
+                    state.get(offset + SLOT_ACTIVE_OFFSET) == 1));
+        }
+        return new StateSnapshot(sequence,
+                state.getLong(TIMESTAMP_OFFSET),
+                valueOf(AlarmStatus.values(), state.getInt(SITE_ALARM_OFFSET)),
+                valueOf(AlarmStatus.values(), state.getInt(SYSTEM_ALARM_OFFSET)),
+                valueOf(ArmingStatus.values(), state.getInt(ARMING_OFFSET)),
+                state.getInt(CAT_DETECTED_OFFSET) == 1,
+                state.getInt(SENSOR_COUNT_OFFSET),
+                state.getInt(ACTIVE_COUNT_OFFSET),
+                state.getLong(SENSORS_VERSION_OFFSET),
+                List.copyOf(sensors));
+    }
+
+    private static <E> E valueOf(E[] values, int ordinal) {
+        return ordinal >= 0 && ordinal < values.length ? values[ordinal] : null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
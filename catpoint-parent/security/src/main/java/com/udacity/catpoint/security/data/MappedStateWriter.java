@@ -0,0 +1,144 @@
+package com.udacity.catpoint.security.data;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+
+import static com.udacity.catpoint.security.data.MappedStateLayout.*;
+
+/**
+ * Publishes the system state into a memory-mapped file that other processes on the host can
+ * read with a {@link MappedStateReader}. Updates are guarded by a seqlock: the sequence is odd
+ * while an update is in progress, so readers never block the writer and simply retry if the
+ * sequence changed while they were reading.
+ */
+public class MappedStateWriter implements AutoCloseable {
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private long sequence;
+    private long writtenSensorsVersion = -1;
+    private int activeSensorCount;
+
+    /**
+     * @param file     The state file, created if it doesn't exist
+     * @param capacity How many sensors the file has room for
+     */
+    public MappedStateWriter(Path file, int capacity) throws IOException {
+        this.capacity = capacity;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize(capacity));
+        buffer.order(ByteOrder.nativeOrder());
+
+        //carry on from a previous writer's sequence, so readers never see it go backwards.
+        // Rounding up to even also recovers from a writer that died halfway through an update
+        long previous = buffer.getInt(MAGIC_OFFSET) == MAGIC ? (long) SEQUENCE.getAcquire(buffer, SEQUENCE_OFFSET) : 0;
+        sequence = (previous + 2) & ~1L;
+        SEQUENCE.setOpaque(buffer, SEQUENCE_OFFSET, sequence + 1);
+        VarHandle.storeStoreFence();
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+        buffer.putInt(LAYOUT_VERSION_OFFSET, LAYOUT_VERSION);
+        buffer.putInt(CAPACITY_OFFSET, capacity);
+        SEQUENCE.setRelease(buffer, SEQUENCE_OFFSET, sequence);
+    }
+
+    /**
+     * Publish a new state. The sensor slots are only rewritten when the sensors version changed.
+     *
+     * @param siteAlarmStatus   The most severe of the system-wide and zone alarm statuses
+     * @param systemAlarmStatus The system-wide alarm status
+     * @param armingStatus      The system-wide arming status
+     * @param catDetected       Whether the camera currently shows a cat
+     * @param sensorsVersion    Version of the sensor collection, see {@link SecurityRepository#getSensorsVersion()}
+     * @param sensors           The sensors at that version
+     */
+    public synchronized void write(AlarmStatus siteAlarmStatus, AlarmStatus systemAlarmStatus, ArmingStatus armingStatus,
+                                   boolean catDetected, long sensorsVersion, Collection<Sensor> sensors) {
+        SEQUENCE.setOpaque(buffer, SEQUENCE_OFFSET, sequence + 1);
+        VarHandle.storeStoreFence();
+
+        buffer.putLong(TIMESTAMP_OFFSET, System.currentTimeMillis());
+        buffer.putInt(SITE_ALARM_OFFSET, ordinal(siteAlarmStatus));
+        buffer.putInt(SYSTEM_ALARM_OFFSET, ordinal(systemAlarmStatus));
+        buffer.putInt(ARMING_OFFSET, ordinal(armingStatus));
+        buffer.putInt(CAT_DETECTED_OFFSET, catDetected ? 1 : 0);
+        if (sensorsVersion != writtenSensorsVersion) {
+            writeSensors(sensors);
+            writtenSensorsVersion = sensorsVersion;
+        }
+        buffer.putInt(SENSOR_COUNT_OFFSET, sensors.size());
+        buffer.putInt(ACTIVE_COUNT_OFFSET, activeSensorCount);
+        buffer.putLong(SENSORS_VERSION_OFFSET, sensorsVersion);
+
+        sequence += 2;
+        SEQUENCE.setRelease(buffer, SEQUENCE_OFFSET, sequence);
+    }
+
+    private void writeSensors(Collection<Sensor> sensors) {
+        int slot = 0;
+        activeSensorCount = 0;
+        for (Sensor sensor : sensors) {
+            boolean active = Boolean.TRUE.equals(sensor.getActive());
+            if (active) {
+                activeSensorCount++;
+            }
+            if (slot == capacity) {
+                continue;
+            }
+            int offset = HEADER_SIZE + slot * SLOT_SIZE;
+            buffer.putLong(offset, sensor.getSensorId().getMostSignificantBits());
+            buffer.putLong(offset + 8, sensor.getSensorId().getLeastSignificantBits());
+            buffer.put(offset + SLOT_TYPE_OFFSET, (byte) ordinal(sensor.getSensorType()));
+            buffer.put(offset + SLOT_ACTIVE_OFFSET, (byte) (active ? 1 : 0));
+            byte[] name = truncatedName(sensor.getName());
+            buffer.put(offset + SLOT_NAME_LENGTH_OFFSET, (byte) name.length);
+            for (int i = 0; i < name.length; i++) {
+                buffer.put(offset + SLOT_NAME_OFFSET + i, name[i]);
+            }
+            slot++;
+        }
+    }
+
+    private static byte[] truncatedName(String name) {
+        if (name == null) {
+            return new byte[0];
+        }
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= MAX_NAME_BYTES) {
+            return bytes;
+        }
+        //cut at a character boundary
+        int length = MAX_NAME_BYTES;
+        while (length > 0 && (bytes[length] & 0xC0) == 0x80) {
+            length--;
+        }
+        byte[] truncated = new byte[length];
+        System.arraycopy(bytes, 0, truncated, 0, length);
+        return truncated;
+    }
+
+    private static int ordinal(Enum<?> value) {
+        return value == null ? -1 : value.ordinal();
+    }
+
+    /**
+     * @return the sequence of the last published state
+     */
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        //the mapping itself stays valid until the buffer is garbage collected
+        channel.close();
+    }
+}
@@ -0,0 +1,208 @@
+package com.udacity.catpoint.security.data;
+
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable sorted set backed by a persistent AVL tree. {@link #plus(Comparable)} and
+ * {@link #minus(Comparable)} return a new set in O(log n) that shares every untouched node with
+ * the original, so old versions stay valid and can be read from any thread without locking or
+ * copying. The {@link java.util.Set} mutators are not supported.
+ *
+ * @param <E> element type, ordered by its natural ordering
+ */
+public final class PersistentSortedSet<E extends Comparable<? super E>> extends AbstractSet<E> {
+
+    @SuppressWarnings("rawtypes")
+    private static final PersistentSortedSet EMPTY = new PersistentSortedSet<>(null);
+
+    private final Node<E> root;
+
+    private PersistentSortedSet(Node<E> root) {
+        this.root = root;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <E extends Comparable<? super E>> PersistentSortedSet<E> empty() {
+        return (PersistentSortedSet<E>) EMPTY;
+    }
+
+    public static <E extends Comparable<? super E>> PersistentSortedSet<E> of(Collection<? extends E> elements) {
+        PersistentSortedSet<E> set = empty();
+        for (E element : elements) {
+            set = set.plus(element);
+        }
+        return set;
+    }
+
+    /**
+     * @return a set that also contains the element. An existing element that compares equal is replaced.
+     */
+    public PersistentSortedSet<E> plus(E element) {
+        return new PersistentSortedSet<>(insert(root, element));
+    }
+
+    /**
+     * @return a set without the element, or this set if it didn't contain it
+     */
+    public PersistentSortedSet<E> minus(E element) {
+        Node<E> removed = delete(root, element);
+        return removed == root ? this : new PersistentSortedSet<>(removed);
+    }
+
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(Object o) {
+        if (o == null) {
+            return false;
+        }
+        E element;
+        try {
+            element = (E) o;
+            Node<E> node = root;
+            while (node != null) {
+                int c = element.compareTo(node.element);
+                if (c == 0) {
+                    return true;
+                }
+                node = c < 0 ? node.left : node.right;
+            }
+        } catch (ClassCastException e) {
+            return false;
+        }
+        return false;
+    }
+
+    /**
+     * Iterates in ascending order.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<>() {
+            private final Deque<Node<E>> stack = new ArrayDeque<>();
+
+            {
+                pushLeft(root);
+            }
+
+            private void pushLeft(Node<E> node) {
+                while (node != null) {
+                    stack.push(node);
+                    node = node.left;
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !stack.isEmpty();
+            }
+
+            @Override
+            public E next() {
+                if (stack.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Node<E> node = stack.pop();
+                pushLeft(node.right);
+                return node.element;
+            }
+        };
+    }
+
+    private static <E extends Comparable<? super E>> Node<E> insert(Node<E> node, E element) {
+        if (node == null) {
+            return new Node<>(element, null, null);
+        }
+        int c = element.compareTo(node.element);
+        if (c == 0) {
+            return new Node<>(element, node.left, node.right);
+        }
+        return c < 0
+                ? balance(node.element, insert(node.left, element), node.right)
+                : balance(node.element, node.left, insert(node.right, element));
+    }
+
+    private static <E extends Comparable<? super E>> Node<E> delete(Node<E> node, E element) {
+        if (node == null) {
+            return null;
+        }
+        int c = element.compareTo(node.element);
+        if (c < 0) {
+            Node<E> left = delete(node.left, element);
+            return left == node.left ? node : balance(node.element, left, node.right);
+        }
+        if (c > 0) {
+            Node<E> right = delete(node.right, element);
+            return right == node.right ? node : balance(node.element, node.left, right);
+        }
+        if (node.left == null) {
+            return node.right;
+        }
+        if (node.right == null) {
+            return node.left;
+        }
+        Node<E> successor = node.right;
+        while (successor.left != null) {
+            successor = successor.left;
+        }
+        return balance(successor.element, node.left, delete(node.right, successor.element));
+    }
+
+    private static <E> Node<E> balance(E element, Node<E> left, Node<E> right) {
+        int diff = height(left) - height(right);
+        if (diff > 1) {
+            if (height(left.left) < height(left.right)) {
+                left = rotateLeft(left.element, left.left, left.right);
+            }
+            return rotateRight(element, left, right);
+        }
+        if (diff < -1) {
+            if (height(right.right) < height(right.left)) {
+                right = rotateRight(right.element, right.left, right.right);
+            }
+            return rotateLeft(element, left, right);
+        }
+        return new Node<>(element, left, right);
+    }
+
+    private static <E> Node<E> rotateRight(E element, Node<E> left, Node<E> right) {
+        return new Node<>(left.element, left.left, new Node<>(element, left.right, right));
+    }
+
+    private static <E> Node<E> rotateLeft(E element, Node<E> left, Node<E> right) {
+        return new Node<>(right.element, new Node<>(element, left, right.left), right.right);
+    }
+
+    private static int height(Node<?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static final class Node<E> {
+        private final E element;
+        private final Node<E> left;
+        private final Node<E> right;
+        private final int height;
+        private final int size;
+
+        private Node(E element, Node<E> left, Node<E> right) {
+            this.element = element;
+            this.left = left;
+            this.right = right;
+            this.height = Math.max(height(left), height(right)) + 1;
+            this.size = size(left) + size(right) + 1;
+        }
+    }
+}
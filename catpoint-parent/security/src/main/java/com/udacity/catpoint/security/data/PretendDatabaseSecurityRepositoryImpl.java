@@ -4,8 +4,21 @@ import com.google.common.reflect.TypeToken;
 import com.google.gson.Gson;
 
 import java.lang.reflect.Type;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.prefs.Preferences;
 
 /**
@@ -15,72 +28,285 @@ import java.util.prefs.Preferences;
  */
 public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository {
 
-    private Set<Sensor> sensors;
+    //readers get the current snapshot without locking, writers replace it while holding the lock.
+    //The sensors in it are the repository's own copies, which are never changed or handed out
+    private volatile SensorSnapshot sensors;
     private AlarmStatus alarmStatus;
     private ArmingStatus armingStatus;
 
+    //per-zone state. Sensors without a zone are tracked under DEFAULT_ZONE and use the system-wide status
+    private final Map<String, ZoneState> zones = new ConcurrentHashMap<>();
+    private final Map<UUID, String> sensorZones = new HashMap<>();
+    private final int[] zoneAlarmCounts = new int[AlarmStatus.values().length];
+    private volatile int activeSensors;
+    private static final String DEFAULT_ZONE = "";
+
+    //sensors are persisted in small buckets so a change only rewrites the buckets it touched
+    private final List<Map<UUID, Sensor>> buckets = new ArrayList<>();
+    private final Map<UUID, Integer> sensorBuckets = new HashMap<>();
+    private int persistedBucketCount;
+    private static final int BUCKET_SIZE = 32;
+
     //preference keys
-    private static final String SENSORS = "SENSORS";
+    private static final String SENSORS = "SENSORS"; //legacy single-value sensor set, migrated on load
+    private static final String SENSOR_BUCKETS = "SENSOR_BUCKETS";
+    private static final String SENSOR_BUCKET_PREFIX = "SENSORS_";
     private static final String ALARM_STATUS = "ALARM_STATUS";
     private static final String ARMING_STATUS = "ARMING_STATUS";
+    private static final String ZONE_ARMING_STATUS = "ZONE_ARMING_STATUS";
+    private static final String ZONE_ALARM_STATUS = "ZONE_ALARM_STATUS";
 
-    private static final Preferences prefs = Preferences.userNodeForPackage(PretendDatabaseSecurityRepositoryImpl.class);
+    private final Preferences prefs;
     private static final Gson gson = new Gson(); //used to serialize objects into JSON
+    private static final Type SENSOR_SET_TYPE = new TypeToken<Set<Sensor>>() {
+    }.getType();
+    private static final Type SENSOR_LIST_TYPE = new TypeToken<List<Sensor>>() {
+    }.getType();
+    private static final Type ZONE_STATUS_TYPE = new TypeToken<Map<String, String>>() {
+    }.getType();
 
 
     public PretendDatabaseSecurityRepositoryImpl() {
+        this(Preferences.userNodeForPackage(PretendDatabaseSecurityRepositoryImpl.class));
+    }
+
+    /**
+     * @param prefs The preferences node to load from and persist to
+     */
+    PretendDatabaseSecurityRepositoryImpl(Preferences prefs) {
+        this.prefs = prefs;
         //load system state from prefs, or else default
         alarmStatus = AlarmStatus.valueOf(prefs.get(ALARM_STATUS, AlarmStatus.NO_ALARM.toString()));
         armingStatus = ArmingStatus.valueOf(prefs.get(ARMING_STATUS, ArmingStatus.DISARMED.toString()));
 
         //we've serialized our sensor objects for storage, which should be a good warning sign that
         // this is likely an impractical solution for a real system
-        String sensorString = prefs.get(SENSORS, null);
-        if (sensorString == null) {
-            sensors = new TreeSet<>();
-        } else {
-            Type type = new TypeToken<Set<Sensor>>() {
-            }.getType();
-            sensors = gson.fromJson(sensorString, type);
+        List<Sensor> stored = new ArrayList<>();
+        persistedBucketCount = prefs.getInt(SENSOR_BUCKETS, 0);
+        for (int i = 0; i < persistedBucketCount; i++) {
+            List<Sensor> bucket = gson.fromJson(prefs.get(SENSOR_BUCKET_PREFIX + i, "[]"), SENSOR_LIST_TYPE);
+            for (Sensor sensor : bucket) {
+                place(sensor, i);
+            }
+            stored.addAll(bucket);
         }
+        sensors = new SensorSnapshot(0, PersistentSortedSet.of(stored));
+        sensors.sensors.forEach(sensor -> track(null, sensor));
 
+        String legacy = prefs.get(SENSORS, null);
+        if (legacy != null) {
+            Set<Sensor> legacySensors = gson.fromJson(legacy, SENSOR_SET_TYPE);
+            addSensors(legacySensors);
+            prefs.remove(SENSORS);
+        }
 
+        Map<String, String> zoneArming = gson.fromJson(prefs.get(ZONE_ARMING_STATUS, "{}"), ZONE_STATUS_TYPE);
+        zoneArming.forEach((zone, status) -> zoneState(zone).arming = ArmingStatus.valueOf(status));
+        Map<String, String> zoneAlarm = gson.fromJson(prefs.get(ZONE_ALARM_STATUS, "{}"), ZONE_STATUS_TYPE);
+        zoneAlarm.forEach((zone, status) -> changeZoneAlarm(zoneState(zone), AlarmStatus.valueOf(status)));
     }
 
     @Override
-    public void addSensor(Sensor sensor) {
-        sensors.add(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+    public synchronized void addSensor(Sensor sensor) {
+        updateSensor(sensor);
     }
 
+    /**
+     * Adds all sensors as one new version, persisting each touched bucket once.
+     */
     @Override
-    public void removeSensor(Sensor sensor) {
-        sensors.remove(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+    public synchronized void addSensors(Collection<Sensor> added) {
+        PersistentSortedSet<Sensor> updated = sensors.sensors;
+        Set<Integer> dirty = new TreeSet<>();
+        for (Sensor sensor : added) {
+            Sensor stored = copyOf(sensor);
+            Sensor previous = stored(stored.getSensorId());
+            track(previous, stored);
+            updated = (previous == null ? updated : updated.minus(previous)).plus(stored);
+            dirty.add(place(stored));
+        }
+        publish(updated, dirty);
     }
 
     @Override
-    public void updateSensor(Sensor sensor) {
-        sensors.remove(sensor);
-        sensors.add(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+    public synchronized void removeSensor(Sensor sensor) {
+        Sensor previous = stored(sensor.getSensorId());
+        Sensor existing = previous == null ? sensor : previous;
+        String zone = sensorZones.remove(sensor.getSensorId());
+        if (zone != null) {
+            untrack(zone, existing);
+        }
+        Integer bucket = sensorBuckets.remove(sensor.getSensorId());
+        if (bucket != null) {
+            buckets.get(bucket).remove(sensor.getSensorId());
+        }
+        publish(sensors.sensors.minus(existing), bucket == null ? Set.of() : Set.of(bucket));
+    }
+
+    /**
+     * Stores a copy of the sensor in a new version, so versions already handed out never change.
+     */
+    @Override
+    public synchronized void updateSensor(Sensor sensor) {
+        Sensor stored = copyOf(sensor);
+        Sensor previous = stored(stored.getSensorId());
+        track(previous, stored);
+        //the previous copy is removed by itself, since a renamed sensor sorts elsewhere
+        PersistentSortedSet<Sensor> current = previous == null ? sensors.sensors : sensors.sensors.minus(previous);
+        publish(current.plus(stored), Set.of(place(stored)));
+    }
+
+    private static Sensor copyOf(Sensor sensor) {
+        Sensor copy = new Sensor();
+        copy.setSensorId(sensor.getSensorId());
+        copy.setName(sensor.getName());
+        copy.setSensorType(sensor.getSensorType());
+        copy.setZone(sensor.getZone());
+        copy.setActive(sensor.getActive());
+        return copy;
+    }
+
+    /**
+     * @return the repository's copy of a sensor, or null if it isn't stored
+     */
+    private Sensor stored(UUID sensorId) {
+        Integer bucket = sensorBuckets.get(sensorId);
+        return bucket == null ? null : buckets.get(bucket).get(sensorId);
+    }
+
+    /**
+     * Stores the sensor in the bucket it already belongs to, or else in the last bucket with room.
+     *
+     * @return the index of the bucket
+     */
+    private int place(Sensor sensor) {
+        Integer existing = sensorBuckets.get(sensor.getSensorId());
+        if (existing != null) {
+            buckets.get(existing).put(sensor.getSensorId(), sensor);
+            return existing;
+        }
+        if (buckets.isEmpty() || buckets.get(buckets.size() - 1).size() >= BUCKET_SIZE) {
+            buckets.add(new LinkedHashMap<>());
+        }
+        int index = buckets.size() - 1;
+        place(sensor, index);
+        return index;
+    }
+
+    private void place(Sensor sensor, int index) {
+        while (buckets.size() <= index) {
+            buckets.add(new LinkedHashMap<>());
+        }
+        buckets.get(index).put(sensor.getSensorId(), sensor);
+        sensorBuckets.put(sensor.getSensorId(), index);
+    }
+
+    /**
+     * Updates the zone a sensor belongs to and the zone's active sensor count. Only the
+     * sensor's own zone, and the zone it left if it moved, are touched.
+     *
+     * @param previous The copy of the sensor being replaced, or null if it is new
+     */
+    private void track(Sensor previous, Sensor sensor) {
+        String zone = sensor.getZone() == null ? DEFAULT_ZONE : sensor.getZone();
+        String previousZone = sensorZones.put(sensor.getSensorId(), zone);
+        if (previousZone != null && !previousZone.equals(zone)) {
+            untrack(previousZone, previous == null ? sensor : previous);
+        }
+        ZoneState state = zoneState(zone);
+        state.sensors = (previous == null ? state.sensors : state.sensors.minus(previous)).plus(sensor);
+        boolean active = Boolean.TRUE.equals(sensor.getActive());
+        if (active ? state.activeIds.add(sensor.getSensorId()) : state.activeIds.remove(sensor.getSensorId())) {
+            int delta = active ? 1 : -1;
+            state.activeCount += delta;
+            activeSensors += delta;
+        }
+    }
+
+    private void untrack(String zone, Sensor sensor) {
+        ZoneState state = zoneState(zone);
+        state.sensors = state.sensors.minus(sensor);
+        if (state.activeIds.remove(sensor.getSensorId())) {
+            state.activeCount--;
+            activeSensors--;
+        }
+    }
+
+    private ZoneState zoneState(String zone) {
+        return zones.computeIfAbsent(zone, z -> {
+            ZoneState state = new ZoneState();
+            //the default zone uses the system-wide alarm status and is left out of the zone counts
+            if (!z.equals(DEFAULT_ZONE)) {
+                zoneAlarmCounts[state.alarm.ordinal()]++;
+            }
+            return state;
+        });
+    }
+
+    private void changeZoneAlarm(ZoneState state, AlarmStatus alarm) {
+        zoneAlarmCounts[state.alarm.ordinal()]--;
+        zoneAlarmCounts[alarm.ordinal()]++;
+        state.alarm = alarm;
+    }
+
+    /**
+     * Publishes a new version of the sensor collection and persists the buckets that changed.
+     */
+    private void publish(PersistentSortedSet<Sensor> updated, Set<Integer> dirtyBuckets) {
+        sensors = new SensorSnapshot(sensors.version + 1, updated);
+        Deque<Integer> pending = new ArrayDeque<>(dirtyBuckets);
+        while (!pending.isEmpty()) {
+            int index = pending.poll();
+            Map<UUID, Sensor> bucket = buckets.get(index);
+            String json = gson.toJson(new ArrayList<>(bucket.values()), SENSOR_LIST_TYPE);
+            if (json.length() > Preferences.MAX_VALUE_LENGTH) {
+                //long sensor names, move half of the bucket into a new one and try again
+                if (bucket.size() == 1) {
+                    throw new IllegalArgumentException("Sensor is too large to store: " + bucket.keySet());
+                }
+                List<Sensor> moved = new ArrayList<>(bucket.values()).subList(bucket.size() / 2, bucket.size());
+                int target = buckets.size();
+                for (Sensor sensor : moved) {
+                    bucket.remove(sensor.getSensorId());
+                    place(sensor, target);
+                }
+                pending.push(target);
+                pending.push(index);
+                continue;
+            }
+            persist(SENSOR_BUCKET_PREFIX + index, json);
+        }
+        if (buckets.size() != persistedBucketCount) {
+            persistedBucketCount = buckets.size();
+            persist(SENSOR_BUCKETS, Integer.toString(persistedBucketCount));
+        }
     }
 
     @Override
     public void setAlarmStatus(AlarmStatus alarmStatus) {
         this.alarmStatus = alarmStatus;
-        prefs.put(ALARM_STATUS, this.alarmStatus.toString());
+        persist(ALARM_STATUS, this.alarmStatus.toString());
     }
 
     @Override
     public void setArmingStatus(ArmingStatus armingStatus) {
         this.armingStatus = armingStatus;
-        prefs.put(ARMING_STATUS, this.armingStatus.toString());
+        persist(ARMING_STATUS, this.armingStatus.toString());
     }
 
+    /**
+     * @return an immutable snapshot of the sensors, safe to iterate while other threads make
+     * changes. Each sensor is a copy, so changing it has no effect until it is passed to
+     * {@link #updateSensor(Sensor)}.
+     */
     @Override
     public Set<Sensor> getSensors() {
-        return sensors;
+        return new SensorCopies(sensors.sensors);
+    }
+
+    @Override
+    public long getSensorsVersion() {
+        return sensors.version;
     }
 
     @Override
@@ -98,12 +324,163 @@ public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository
      */
     @Override
     public boolean getSensorsState() {
-        for (Sensor sensor : getSensors()) {
-            if (sensor.getActive()) {
-                return true;
+        return activeSensors > 0;
+    }
+
+    @Override
+    public Set<String> getZones() {
+        Set<String> names = new TreeSet<>(zones.keySet());
+        names.remove(DEFAULT_ZONE);
+        return names;
+    }
+
+    @Override
+    public Set<Sensor> getSensorsInZone(String zone) {
+        ZoneState state = zones.get(zone == null ? DEFAULT_ZONE : zone);
+        return new SensorCopies(state == null ? PersistentSortedSet.empty() : state.sensors);
+    }
+
+    @Override
+    public int getActiveSensorCount(String zone) {
+        ZoneState state = zones.get(zone == null ? DEFAULT_ZONE : zone);
+        return state == null ? 0 : state.activeCount;
+    }
+
+    @Override
+    public ArmingStatus getZoneArmingStatus(String zone) {
+        if (zone == null) {
+            return armingStatus;
+        }
+        ZoneState state = zones.get(zone);
+        return state == null ? null : state.arming;
+    }
+
+    @Override
+    public synchronized void setZoneArmingStatus(String zone, ArmingStatus armingStatus) {
+        if (zone == null) {
+            setArmingStatus(armingStatus);
+            return;
+        }
+        zoneState(zone).arming = armingStatus;
+        persistZoneStatus();
+    }
+
+    @Override
+    public AlarmStatus getZoneAlarmStatus(String zone) {
+        if (zone == null) {
+            return alarmStatus;
+        }
+        ZoneState state = zones.get(zone);
+        return state == null ? AlarmStatus.NO_ALARM : state.alarm;
+    }
+
+    @Override
+    public synchronized void setZoneAlarmStatus(String zone, AlarmStatus alarmStatus) {
+        if (zone == null) {
+            setAlarmStatus(alarmStatus);
+            return;
+        }
+        changeZoneAlarm(zoneState(zone), alarmStatus);
+        persistZoneStatus();
+    }
+
+    @Override
+    public synchronized AlarmStatus getHighestZoneAlarmStatus() {
+        AlarmStatus[] statuses = AlarmStatus.values();
+        for (int i = statuses.length - 1; i > 0; i--) {
+            if (zoneAlarmCounts[i] > 0) {
+                return statuses[i];
             }
         }
-        return false;
+        return AlarmStatus.NO_ALARM;
     }
 
+    private void persistZoneStatus() {
+        Map<String, String> arming = new HashMap<>();
+        Map<String, String> alarm = new HashMap<>();
+        zones.forEach((zone, state) -> {
+            if (zone.equals(DEFAULT_ZONE)) {
+                return;
+            }
+            if (state.arming != null) {
+                arming.put(zone, state.arming.toString());
+            }
+            alarm.put(zone, state.alarm.toString());
+        });
+        persist(ZONE_ARMING_STATUS, gson.toJson(arming, ZONE_STATUS_TYPE));
+        persist(ZONE_ALARM_STATUS, gson.toJson(alarm, ZONE_STATUS_TYPE));
+    }
+
+    private void persist(String key, String value) {
+        RepositoryPersistEvent event = new RepositoryPersistEvent();
+        event.begin();
+        prefs.put(key, value);
+        if (event.shouldCommit()) {
+            event.key = key;
+            event.size = value.length();
+            event.commit();
+        }
+    }
+
+    /**
+     * Sensors and status of one zone. Written while holding the repository lock.
+     */
+    private static final class ZoneState {
+        private volatile PersistentSortedSet<Sensor> sensors = PersistentSortedSet.empty();
+        private final Set<UUID> activeIds = new HashSet<>();
+        private volatile int activeCount;
+        private volatile ArmingStatus arming;
+        private volatile AlarmStatus alarm = AlarmStatus.NO_ALARM;
+    }
+
+    /**
+     * Read-only view of a version of the sensors that hands out a copy of each sensor it iterates
+     * over, so callers can't change the stored sensors behind the repository's back.
+     */
+    private static final class SensorCopies extends AbstractSet<Sensor> {
+        private final PersistentSortedSet<Sensor> sensors;
+
+        private SensorCopies(PersistentSortedSet<Sensor> sensors) {
+            this.sensors = sensors;
+        }
+
+        @Override
+        public int size() {
+            return sensors.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return sensors.contains(o);
+        }
+
+        @Override
+        public Iterator<Sensor> iterator() {
+            Iterator<Sensor> iterator = sensors.iterator();
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public Sensor next() {
+                    return copyOf(iterator.next());
+                }
+            };
+        }
+    }
+
+    /**
+     * A published version of the sensor collection. Never modified after construction.
+     */
+    private static final class SensorSnapshot {
+        private final long version;
+        private final PersistentSortedSet<Sensor> sensors;
+
+        private SensorSnapshot(long version, PersistentSortedSet<Sensor> sensors) {
+            this.version = version;
+            this.sensors = sensors;
+        }
+    }
 }
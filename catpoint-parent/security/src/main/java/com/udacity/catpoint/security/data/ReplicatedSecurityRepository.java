@@ -0,0 +1,179 @@
+package com.udacity.catpoint.security.data;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Repository that makes another repository the primary of a hot standby setup. Every change
+ * is applied to the wrapped repository and appended to a change log that is streamed to the
+ * connected {@link ReplicationStandby standbys}. Reads go straight to the wrapped repository.
+ */
+public class ReplicatedSecurityRepository implements SecurityRepository, AutoCloseable {
+
+    private static final int RETAINED_RECORDS = 10_000;
+
+    private final SecurityRepository delegate;
+    private final ReplicationPrimary primary;
+    private final AckMode ackMode;
+    private final long ackTimeoutMillis;
+    private final AtomicLong ackTimeouts = new AtomicLong();
+
+    /**
+     * @param delegate         The repository holding the primary's state
+     * @param address          Address to accept standbys on
+     * @param ackMode          Whether changes wait for standbys to acknowledge them
+     * @param ackTimeoutMillis How long a {@link AckMode#SYNC} change waits for standbys. A standby
+     *                         that misses it isn't waited for again until it has caught up
+     */
+    public ReplicatedSecurityRepository(SecurityRepository delegate, InetSocketAddress address,
+                                        AckMode ackMode, long ackTimeoutMillis) throws IOException {
+        this.delegate = delegate;
+        this.ackMode = ackMode;
+        this.ackTimeoutMillis = ackTimeoutMillis;
+        this.primary = new ReplicationPrimary(address, sequence -> ReplicationRecord.snapshotOf(delegate, sequence), RETAINED_RECORDS);
+        this.primary.start();
+    }
+
+    private void replicate(ReplicationRecord record, Runnable applyLocally) {
+        long sequence = primary.append(record, applyLocally);
+        if (ackMode == AckMode.SYNC && !primary.awaitAcks(sequence, ackTimeoutMillis)) {
+            //the change stays applied, a standby that missed it catches up when it reconnects
+            ackTimeouts.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void addSensor(Sensor sensor) {
+        replicate(ReplicationRecord.sensor(ReplicationRecord.Operation.ADD_SENSOR, sensor), () -> delegate.addSensor(sensor));
+    }
+
+    @Override
+    public void addSensors(Collection<Sensor> sensors) {
+        replicate(ReplicationRecord.sensors(sensors), () -> delegate.addSensors(sensors));
+    }
+
+    @Override
+    public void removeSensor(Sensor sensor) {
+        replicate(ReplicationRecord.sensor(ReplicationRecord.Operation.REMOVE_SENSOR, sensor), () -> delegate.removeSensor(sensor));
+    }
+
+    @Override
+    public void updateSensor(Sensor sensor) {
+        replicate(ReplicationRecord.sensor(ReplicationRecord.Operation.UPDATE_SENSOR, sensor), () -> delegate.updateSensor(sensor));
+    }
+
+    @Override
+    public void setAlarmStatus(AlarmStatus alarmStatus) {
+        replicate(ReplicationRecord.alarmStatus(null, alarmStatus), () -> delegate.setAlarmStatus(alarmStatus));
+    }
+
+    @Override
+    public void setArmingStatus(ArmingStatus armingStatus) {
+        replicate(ReplicationRecord.armingStatus(null, armingStatus), () -> delegate.setArmingStatus(armingStatus));
+    }
+
+    @Override
+    public void setZoneArmingStatus(String zone, ArmingStatus armingStatus) {
+        replicate(ReplicationRecord.armingStatus(zone, armingStatus), () -> delegate.setZoneArmingStatus(zone, armingStatus));
+    }
+
+    @Override
+    public void setZoneAlarmStatus(String zone, AlarmStatus alarmStatus) {
+        replicate(ReplicationRecord.alarmStatus(zone, alarmStatus), () -> delegate.setZoneAlarmStatus(zone, alarmStatus));
+    }
+
+    @Override
+    public Set<Sensor> getSensors() {
+        return delegate.getSensors();
+    }
+
+    @Override
+    public long getSensorsVersion() {
+        return delegate.getSensorsVersion();
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return delegate.getAlarmStatus();
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return delegate.getArmingStatus();
+    }
+
+    @Override
+    public boolean getSensorsState() {
+        return delegate.getSensorsState();
+    }
+
+    @Override
+    public Set<String> getZones() {
+        return delegate.getZones();
+    }
+
+    @Override
+    public Set<Sensor> getSensorsInZone(String zone) {
+        return delegate.getSensorsInZone(zone);
+    }
+
+    @Override
+    public int getActiveSensorCount(String zone) {
+        return delegate.getActiveSensorCount(zone);
+    }
+
+    @Override
+    public ArmingStatus getZoneArmingStatus(String zone) {
+        return delegate.getZoneArmingStatus(zone);
+    }
+
+    @Override
+    public AlarmStatus getZoneAlarmStatus(String zone) {
+        return delegate.getZoneAlarmStatus(zone);
+    }
+
+    @Override
+    public AlarmStatus getHighestZoneAlarmStatus() {
+        return delegate.getHighestZoneAlarmStatus();
+    }
+
+    /**
+     * @return the address standbys connect to, useful when binding to port 0
+     */
+    public InetSocketAddress getLocalAddress() throws IOException {
+        return primary.getLocalAddress();
+    }
+
+    public int getStandbyCount() {
+        return primary.getStandbyCount();
+    }
+
+    /**
+     * @return the sequence of the last change appended to the log
+     */
+    public long getLastSequence() {
+        return primary.getLastSequence();
+    }
+
+    /**
+     * @return the number of standbys that missed an ack timeout and haven't caught up since
+     */
+    public int getSlowStandbyCount() {
+        return primary.getSlowStandbyCount();
+    }
+
+    /**
+     * @return the number of synchronous changes that gave up waiting for standbys
+     */
+    public long getAckTimeouts() {
+        return ackTimeouts.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        primary.close();
+    }
+}
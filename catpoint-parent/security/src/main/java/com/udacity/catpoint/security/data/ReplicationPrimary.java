@@ -0,0 +1,336 @@
+package com.udacity.catpoint.security.data;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongFunction;
+
+/**
+ * Primary side of replication. Keeps the tail of the change log and streams it to every
+ * connected standby from a single selector thread. A standby that connects asks for the
+ * records after the last one it applied. It is sent a snapshot instead if it has applied
+ * nothing yet, if its sequence belongs to the log of another primary, or if those records are
+ * no longer in the log.
+ */
+final class ReplicationPrimary implements AutoCloseable {
+
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final Thread selectorThread;
+    private final LongFunction<ReplicationRecord> snapshots;
+    private final int retainedRecords;
+    //tells this primary's log apart from the log of an earlier run or another primary
+    private final long epoch = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+    private final List<Peer> peers = new CopyOnWriteArrayList<>();
+    private final Object ackLock = new Object();
+    private volatile boolean running = true;
+
+    //guarded by this. The oldest frame in the log has sequence lastSequence - log.size() + 1
+    private final ArrayDeque<ByteBuffer> log = new ArrayDeque<>();
+    private long lastSequence;
+
+    /**
+     * @param address         Address to accept standbys on
+     * @param snapshots       Takes a snapshot of the repository as of the given sequence
+     * @param retainedRecords How many records to keep for standbys that reconnect
+     */
+    ReplicationPrimary(InetSocketAddress address, LongFunction<ReplicationRecord> snapshots, int retainedRecords) throws IOException {
+        this.snapshots = snapshots;
+        this.retainedRecords = retainedRecords;
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(address);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        selectorThread = new Thread(this::selectLoop, "catpoint-replication-primary");
+        selectorThread.setDaemon(true);
+    }
+
+    void start() {
+        selectorThread.start();
+    }
+
+    InetSocketAddress getLocalAddress() throws IOException {
+        return (InetSocketAddress) server.getLocalAddress();
+    }
+
+    /**
+     * Applies a change locally and adds it to the log in one step, so snapshots and
+     * records never disagree about which changes they include.
+     *
+     * @return the sequence assigned to the record
+     */
+    synchronized long append(ReplicationRecord record, Runnable applyLocally) {
+        applyLocally.run();
+        record.setSequence(++lastSequence);
+        ByteBuffer frame = ReplicationProtocol.encodeRecord(record);
+        log.add(frame);
+        if (log.size() > retainedRecords) {
+            log.poll();
+        }
+        for (Peer peer : peers) {
+            //a standby this far behind is cheaper to catch up from a snapshot
+            if (peer.queuedFrames.get() >= retainedRecords) {
+                peer.lagging = true;
+            } else {
+                peer.enqueue(frame.duplicate());
+            }
+        }
+        selector.wakeup();
+        return lastSequence;
+    }
+
+    synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    int getStandbyCount() {
+        return peers.size();
+    }
+
+    /**
+     * @return the number of standbys that missed an ack timeout and haven't caught up since
+     */
+    int getSlowStandbyCount() {
+        int slow = 0;
+        for (Peer peer : peers) {
+            if (peer.slow) {
+                slow++;
+            }
+        }
+        return slow;
+    }
+
+    /**
+     * Waits for every connected standby to acknowledge a record. Standbys that disconnect
+     * while waiting no longer count. Standbys that haven't acknowledged it when the timeout
+     * passes are marked slow and not waited for again until they acknowledge the latest record,
+     * so one slow standby costs one timeout rather than one per change.
+     *
+     * @return false if the timeout passed first
+     */
+    boolean awaitAcks(long sequence, long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (ackLock) {
+            while (!allAcked(sequence)) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    for (Peer peer : peers) {
+                        if (peer.ackedSequence < sequence) {
+                            peer.slow = true;
+                        }
+                    }
+                    return false;
+                }
+                try {
+                    ackLock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private boolean allAcked(long sequence) {
+        for (Peer peer : peers) {
+            if (!peer.slow && peer.ackedSequence < sequence) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void selectLoop() {
+        try {
+            while (running) {
+                selector.select(1000);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else if (key.isReadable()) {
+                            read((Peer) key.attachment());
+                        }
+                    } catch (IOException e) {
+                        if (key.attachment() != null) {
+                            drop((Peer) key.attachment());
+                        }
+                    }
+                }
+                for (Peer peer : peers) {
+                    try {
+                        if (peer.lagging) {
+                            drop(peer);
+                            continue;
+                        }
+                        flush(peer);
+                    } catch (IOException e) {
+                        drop(peer);
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            //nothing is streamed without this thread, so let standbys see the primary as gone
+            peers.forEach(this::drop);
+            try {
+                server.close();
+            } catch (IOException ignored) {
+                //closing anyway
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        Peer peer = new Peer(channel);
+        peer.key = channel.register(selector, SelectionKey.OP_READ, peer);
+    }
+
+    private void read(Peer peer) throws IOException {
+        if (peer.reader.read(peer.channel) < 0) {
+            drop(peer);
+            return;
+        }
+        ByteBuffer frame;
+        while ((frame = peer.reader.nextFrame()) != null) {
+            byte type = frame.get();
+            if (type == ReplicationProtocol.HELLO) {
+                long standbyEpoch = frame.getLong();
+                catchUp(peer, standbyEpoch, frame.getLong());
+            } else if (type == ReplicationProtocol.ACK) {
+                long sequence = frame.getLong();
+                //a slow standby counts again once it has caught up
+                boolean caughtUp = sequence >= getLastSequence();
+                synchronized (ackLock) {
+                    peer.ackedSequence = Math.max(peer.ackedSequence, sequence);
+                    if (caughtUp) {
+                        peer.slow = false;
+                    }
+                    ackLock.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Queues whatever the standby is missing and starts streaming new records to it.
+     */
+    private synchronized void catchUp(Peer peer, long standbyEpoch, long appliedSequence) {
+        long beforeOldest = lastSequence - log.size();
+        //state loaded before replication started is only in snapshots, never in the log
+        if (appliedSequence > 0 && standbyEpoch == epoch
+                && appliedSequence >= beforeOldest && appliedSequence <= lastSequence) {
+            long skip = appliedSequence - beforeOldest;
+            for (ByteBuffer frame : log) {
+                if (skip-- <= 0) {
+                    peer.enqueue(frame.duplicate());
+                }
+            }
+            peer.ackedSequence = appliedSequence;
+        } else {
+            ReplicationRecord snapshot = snapshots.apply(lastSequence);
+            snapshot.setEpoch(epoch);
+            peer.enqueue(ReplicationProtocol.encodeRecord(snapshot));
+        }
+        peers.add(peer);
+    }
+
+    private void flush(Peer peer) throws IOException {
+        ByteBuffer buffer;
+        while ((buffer = peer.outbound.peek()) != null) {
+            peer.channel.write(buffer);
+            if (buffer.hasRemaining()) {
+                peer.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                return;
+            }
+            peer.outbound.poll();
+            peer.queuedFrames.decrementAndGet();
+        }
+        peer.key.interestOps(SelectionKey.OP_READ);
+    }
+
+    private void drop(Peer peer) {
+        peers.remove(peer);
+        peer.key.cancel();
+        try {
+            peer.channel.close();
+        } catch (IOException ignored) {
+            //already gone
+        }
+        synchronized (ackLock) {
+            ackLock.notifyAll();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        server.close();
+        //includes standbys that connected but haven't said hello yet
+        for (SelectionKey key : selector.keys()) {
+            try {
+                key.channel().close();
+            } catch (IOException ignored) {
+                //closing anyway
+            }
+        }
+        peers.clear();
+        synchronized (ackLock) {
+            ackLock.notifyAll();
+        }
+        selector.close();
+    }
+
+    private static final class Peer {
+        private final SocketChannel channel;
+        private final ReplicationProtocol.FrameReader reader = new ReplicationProtocol.FrameReader();
+        private final Queue<ByteBuffer> outbound = new ConcurrentLinkedQueue<>();
+        //size of outbound, which the queue itself can only count by walking it
+        private final AtomicInteger queuedFrames = new AtomicInteger();
+        private SelectionKey key;
+        private volatile long ackedSequence = -1;
+        private volatile boolean lagging;
+        //guarded by ackLock, set when it missed an ack timeout
+        private volatile boolean slow;
+
+        private Peer(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        private void enqueue(ByteBuffer frame) {
+            outbound.add(frame);
+            queuedFrames.incrementAndGet();
+        }
+    }
+}
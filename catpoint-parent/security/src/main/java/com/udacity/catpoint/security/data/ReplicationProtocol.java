@@ -0,0 +1,108 @@
+package com.udacity.catpoint.security.data;
+
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Wire format shared by the replication primary and standbys. Every frame is a 4 byte length,
+ * a 1 byte type and the payload. Records are sent as JSON, acks as a log sequence and hellos
+ * as the primary epoch followed by a log sequence.
+ */
+final class ReplicationProtocol {
+
+    //standby to primary: the epoch of the primary whose log the standby follows, and the last
+    //sequence it has applied
+    static final byte HELLO = 1;
+    //primary to standby: a change log record or snapshot
+    static final byte RECORD = 2;
+    //standby to primary: the last sequence the standby has applied
+    static final byte ACK = 3;
+
+    private static final int MAX_FRAME_LENGTH = 64 << 20;
+    private static final Gson gson = new Gson();
+
+    private ReplicationProtocol() {
+    }
+
+    static ByteBuffer encodeRecord(ReplicationRecord record) {
+        byte[] json = gson.toJson(record).getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = ByteBuffer.allocate(5 + json.length);
+        frame.putInt(1 + json.length).put(RECORD).put(json).flip();
+        return frame;
+    }
+
+    static ByteBuffer encodeHello(long epoch, long sequence) {
+        ByteBuffer frame = ByteBuffer.allocate(21);
+        frame.putInt(17).put(HELLO).putLong(epoch).putLong(sequence).flip();
+        return frame;
+    }
+
+    static ByteBuffer encodeSequence(byte type, long sequence) {
+        ByteBuffer frame = ByteBuffer.allocate(13);
+        frame.putInt(9).put(type).putLong(sequence).flip();
+        return frame;
+    }
+
+    /**
+     * @param frame A frame from {@link FrameReader#nextFrame()}, positioned after the type
+     */
+    static ReplicationRecord decodeRecord(ByteBuffer frame) {
+        String json = new String(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining(), StandardCharsets.UTF_8);
+        return gson.fromJson(json, ReplicationRecord.class);
+    }
+
+    /**
+     * Collects bytes from a channel and splits them into frames.
+     */
+    static final class FrameReader {
+        private ByteBuffer buffer = ByteBuffer.allocate(8192);
+
+        /**
+         * @return the number of bytes read, or -1 at end of stream
+         */
+        int read(ReadableByteChannel channel) throws IOException {
+            if (!buffer.hasRemaining()) {
+                ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+            }
+            return channel.read(buffer);
+        }
+
+        /**
+         * @return the next complete frame, starting at its type byte, or null if more bytes are needed
+         */
+        ByteBuffer nextFrame() throws IOException {
+            if (buffer.position() < 4) {
+                return null;
+            }
+            int length = buffer.getInt(0);
+            if (length < 1 || length > MAX_FRAME_LENGTH) {
+                throw new IOException("Invalid replication frame length " + length);
+            }
+            if (buffer.position() < 4 + length) {
+                if (buffer.capacity() < 4 + length) {
+                    ByteBuffer larger = ByteBuffer.allocate(4 + length);
+                    buffer.flip();
+                    larger.put(buffer);
+                    buffer = larger;
+                }
+                return null;
+            }
+            ByteBuffer frame = ByteBuffer.allocate(length);
+            buffer.flip();
+            buffer.position(4);
+            int limit = buffer.limit();
+            buffer.limit(4 + length);
+            frame.put(buffer).flip();
+            buffer.limit(limit);
+            buffer.compact();
+            return frame;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.udacity.catpoint.security.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One entry of the replication change log, or a full snapshot of a repository. Serialized to
+ * JSON on the wire, the same way the repository persists sensors.
+ */
+final class ReplicationRecord {
+
+    enum Operation {
+        ADD_SENSOR, ADD_SENSORS, REMOVE_SENSOR, UPDATE_SENSOR,
+        ALARM_STATUS, ARMING_STATUS, ZONE_ALARM_STATUS, ZONE_ARMING_STATUS,
+        SNAPSHOT
+    }
+
+    private long sequence;
+    //snapshot only, the primary the sequence belongs to
+    private long epoch;
+    private Operation operation;
+    private Sensor sensor;
+    private String zone;
+    private AlarmStatus alarmStatus;
+    private ArmingStatus armingStatus;
+
+    //snapshot and bulk add only
+    private List<Sensor> sensors;
+    private Map<String, ArmingStatus> zoneArmingStatus;
+    private Map<String, AlarmStatus> zoneAlarmStatus;
+
+    private ReplicationRecord() {
+    }
+
+    private static ReplicationRecord of(Operation operation) {
+        ReplicationRecord record = new ReplicationRecord();
+        record.operation = operation;
+        return record;
+    }
+
+    static ReplicationRecord sensor(Operation operation, Sensor sensor) {
+        ReplicationRecord record = of(operation);
+        record.sensor = sensor;
+        return record;
+    }
+
+    static ReplicationRecord sensors(Collection<Sensor> sensors) {
+        ReplicationRecord record = of(Operation.ADD_SENSORS);
+        record.sensors = new ArrayList<>(sensors);
+        return record;
+    }
+
+    static ReplicationRecord alarmStatus(String zone, AlarmStatus alarmStatus) {
+        ReplicationRecord record = of(zone == null ? Operation.ALARM_STATUS : Operation.ZONE_ALARM_STATUS);
+        record.zone = zone;
+        record.alarmStatus = alarmStatus;
+        return record;
+    }
+
+    static ReplicationRecord armingStatus(String zone, ArmingStatus armingStatus) {
+        ReplicationRecord record = of(zone == null ? Operation.ARMING_STATUS : Operation.ZONE_ARMING_STATUS);
+        record.zone = zone;
+        record.armingStatus = armingStatus;
+        return record;
+    }
+
+    /**
+     * Captures everything a standby needs to catch up, as of the given log sequence.
+     */
+    static ReplicationRecord snapshotOf(SecurityRepository repository, long sequence) {
+        ReplicationRecord record = of(Operation.SNAPSHOT);
+        record.sequence = sequence;
+        record.sensors = new ArrayList<>(repository.getSensors());
+        record.alarmStatus = repository.getAlarmStatus();
+        record.armingStatus = repository.getArmingStatus();
+        record.zoneArmingStatus = new HashMap<>();
+        record.zoneAlarmStatus = new HashMap<>();
+        for (String zone : repository.getZones()) {
+            ArmingStatus zoneArming = repository.getZoneArmingStatus(zone);
+            if (zoneArming != null) {
+                record.zoneArmingStatus.put(zone, zoneArming);
+            }
+            record.zoneAlarmStatus.put(zone, repository.getZoneAlarmStatus(zone));
+        }
+        return record;
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    long getEpoch() {
+        return epoch;
+    }
+
+    void setEpoch(long epoch) {
+        this.epoch = epoch;
+    }
+
+    Operation getOperation() {
+        return operation;
+    }
+
+    /**
+     * Applies the change to a repository. A snapshot replaces the repository's state entirely.
+     */
+    void applyTo(SecurityRepository repository) {
+        switch (operation) {
+            case ADD_SENSOR -> repository.addSensor(sensor);
+            case ADD_SENSORS -> repository.addSensors(sensors);
+            case REMOVE_SENSOR -> repository.removeSensor(sensor);
+            case UPDATE_SENSOR -> repository.updateSensor(sensor);
+            case ALARM_STATUS -> repository.setAlarmStatus(alarmStatus);
+            case ARMING_STATUS -> repository.setArmingStatus(armingStatus);
+            case ZONE_ALARM_STATUS -> repository.setZoneAlarmStatus(zone, alarmStatus);
+            case ZONE_ARMING_STATUS -> repository.setZoneArmingStatus(zone, armingStatus);
+            case SNAPSHOT -> restore(repository);
+        }
+    }
+
+    private void restore(SecurityRepository repository) {
+        for (Sensor existing : repository.getSensors()) {
+            repository.removeSensor(existing);
+        }
+        repository.addSensors(sensors);
+        repository.setAlarmStatus(alarmStatus);
+        repository.setArmingStatus(armingStatus);
+        Set<String> zones = new HashSet<>(repository.getZones());
+        zones.addAll(zoneAlarmStatus.keySet());
+        for (String zone : zones) {
+            repository.setZoneArmingStatus(zone, zoneArmingStatus.get(zone));
+            repository.setZoneAlarmStatus(zone, zoneAlarmStatus.getOrDefault(zone, AlarmStatus.NO_ALARM));
+        }
+    }
+}
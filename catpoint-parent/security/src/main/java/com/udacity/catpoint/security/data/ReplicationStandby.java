@@ -0,0 +1,184 @@
+package com.udacity.catpoint.security.data;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Standby side of replication. Connects to a primary, applies its change log to a local
+ * repository and acknowledges every record. After a disconnect it keeps reconnecting, and
+ * the primary either resends the records it missed or a full snapshot.
+ * <p>
+ * To fail over, wait for {@link #awaitPrimaryFailure(long)}, close the standby and start using the
+ * local repository, usually by wrapping it in a {@link ReplicatedSecurityRepository} for the
+ * remaining standbys.
+ */
+public class ReplicationStandby implements AutoCloseable {
+
+    private static final long MAX_BACKOFF_MILLIS = 2_000;
+
+    private final InetSocketAddress primaryAddress;
+    private final SecurityRepository repository;
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile SocketChannel channel;
+    private volatile long lastAppliedSequence;
+    //epoch of the primary the applied sequence belongs to, 0 until the first snapshot
+    private volatile long primaryEpoch;
+
+    //guarded by this, 0 while connected
+    private long disconnectedSinceMillis;
+    private boolean reachedPrimary;
+
+    /**
+     * @param primaryAddress Where the primary accepts standbys
+     * @param repository     The local repository the change log is applied to
+     */
+    public ReplicationStandby(InetSocketAddress primaryAddress, SecurityRepository repository) {
+        this.primaryAddress = primaryAddress;
+        this.repository = repository;
+        this.thread = new Thread(this::run, "catpoint-replication-standby");
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        synchronized (this) {
+            disconnectedSinceMillis = System.currentTimeMillis();
+        }
+        thread.start();
+    }
+
+    private void run() {
+        long backoff = 100;
+        while (running) {
+            try (SocketChannel connection = SocketChannel.open(primaryAddress)) {
+                channel = connection;
+                connected(true);
+                backoff = 100;
+                replicate(connection);
+            } catch (IOException e) {
+                //primary unreachable or gone, retry below
+            } finally {
+                channel = null;
+                connected(false);
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                return;
+            }
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+        }
+    }
+
+    private void replicate(SocketChannel connection) throws IOException {
+        write(connection, ReplicationProtocol.encodeHello(primaryEpoch, lastAppliedSequence));
+        ReplicationProtocol.FrameReader reader = new ReplicationProtocol.FrameReader();
+        while (running) {
+            ByteBuffer frame = reader.nextFrame();
+            if (frame == null) {
+                if (reader.read(connection) < 0) {
+                    return;
+                }
+                continue;
+            }
+            if (frame.get() != ReplicationProtocol.RECORD) {
+                continue;
+            }
+            ReplicationRecord record = ReplicationProtocol.decodeRecord(frame);
+            if (record.getOperation() == ReplicationRecord.Operation.SNAPSHOT
+                    || record.getSequence() == lastAppliedSequence + 1) {
+                record.applyTo(repository);
+                if (record.getOperation() == ReplicationRecord.Operation.SNAPSHOT) {
+                    primaryEpoch = record.getEpoch();
+                }
+                lastAppliedSequence = record.getSequence();
+            } else if (record.getSequence() > lastAppliedSequence) {
+                //a gap in the log, reconnecting makes the primary send what's missing
+                throw new IOException("Missing replication records after " + lastAppliedSequence);
+            }
+            write(connection, ReplicationProtocol.encodeSequence(ReplicationProtocol.ACK, lastAppliedSequence));
+        }
+    }
+
+    private static void write(SocketChannel connection, ByteBuffer frame) throws IOException {
+        while (frame.hasRemaining()) {
+            connection.write(frame);
+        }
+    }
+
+    private synchronized void connected(boolean connected) {
+        disconnectedSinceMillis = connected ? 0 : System.currentTimeMillis();
+        reachedPrimary |= connected;
+        notifyAll();
+    }
+
+    /**
+     * Blocks until the primary, having been reached at least once, has been unreachable for the
+     * whole grace period, which is the signal to take over. A primary that could never be reached
+     * may just be on the other side of a network problem, and taking over then risks two primaries.
+     *
+     * @param graceMillis How long the primary must stay unreachable
+     * @return true once the primary is considered failed, false if the standby was closed first
+     */
+    public boolean awaitPrimaryFailure(long graceMillis) throws InterruptedException {
+        return awaitPrimaryFailure(graceMillis, false);
+    }
+
+    /**
+     * @param evenIfNeverReached Whether to take over from a primary that could never be reached
+     * @see #awaitPrimaryFailure(long)
+     */
+    public synchronized boolean awaitPrimaryFailure(long graceMillis, boolean evenIfNeverReached) throws InterruptedException {
+        while (running) {
+            if (disconnectedSinceMillis == 0 || !(reachedPrimary || evenIfNeverReached)) {
+                wait();
+                continue;
+            }
+            long remaining = disconnectedSinceMillis + graceMillis - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return true;
+            }
+            wait(remaining);
+        }
+        return false;
+    }
+
+    public synchronized boolean isConnected() {
+        return disconnectedSinceMillis == 0 && running;
+    }
+
+    /**
+     * @return the sequence of the last change log record applied to the local repository
+     */
+    public long getLastAppliedSequence() {
+        return lastAppliedSequence;
+    }
+
+    public SecurityRepository getRepository() {
+        return repository;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        SocketChannel connection = channel;
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (IOException ignored) {
+                //closing anyway
+            }
+        }
+        thread.interrupt();
+        synchronized (this) {
+            notifyAll();
+        }
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.udacity.catpoint.security.data;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for the repository writing state to storage.
+ */
+@Name("com.udacity.catpoint.RepositoryPersist")
+@Label("Repository Persist")
+@Category({"Catpoint", "Repository"})
+@Description("Repository state was written to storage")
+@StackTrace(false)
+final class RepositoryPersistEvent extends Event {
+
+    @Label("Key")
+    String key;
+
+    @Label("Size")
+    @DataAmount
+    long size;
+}
@@ -1,5 +1,6 @@
 package com.udacity.catpoint.security.data;
 
+import java.util.Collection;
 import java.util.Set;
 
 /**
@@ -8,6 +9,14 @@ import java.util.Set;
 public interface SecurityRepository {
     void addSensor(Sensor sensor);
 
+    /**
+     * Adds several sensors as one change. Implementations that persist their state should
+     * override this to write once for the whole batch instead of once per sensor.
+     */
+    default void addSensors(Collection<Sensor> sensors) {
+        sensors.forEach(this::addSensor);
+    }
+
     void removeSensor(Sensor sensor);
 
     void updateSensor(Sensor sensor);
@@ -16,11 +25,57 @@ public interface SecurityRepository {
 
     void setArmingStatus(ArmingStatus armingStatus);
 
+    /**
+     * @return the current sensors. The returned set is an immutable snapshot that later changes don't affect.
+     */
     Set<Sensor> getSensors();
 
+    /**
+     * @return a number that changes whenever a sensor is added, removed or updated
+     */
+    long getSensorsVersion();
+
     AlarmStatus getAlarmStatus();
 
     ArmingStatus getArmingStatus();
 
     public boolean getSensorsState();
+
+    /**
+     * @return the names of all zones that have sensors or their own status
+     */
+    Set<String> getZones();
+
+    /**
+     * @param zone The zone, or null for sensors without a zone
+     * @return an immutable snapshot of the sensors in the zone
+     */
+    Set<Sensor> getSensorsInZone(String zone);
+
+    /**
+     * @param zone The zone, or null for sensors without a zone
+     * @return the number of active sensors in the zone
+     */
+    int getActiveSensorCount(String zone);
+
+    /**
+     * @param zone The zone, or null for the system-wide status
+     * @return the arming status of the zone, or null if the zone follows the system-wide arming status
+     */
+    ArmingStatus getZoneArmingStatus(String zone);
+
+    void setZoneArmingStatus(String zone, ArmingStatus armingStatus);
+
+    /**
+     * @param zone The zone, or null for the system-wide status
+     * @return the alarm status of the zone
+     */
+    AlarmStatus getZoneAlarmStatus(String zone);
+
+    void setZoneAlarmStatus(String zone, AlarmStatus alarmStatus);
+
+    /**
+     * @return the most severe alarm status of any zone, not including the system-wide status
+     */
+    AlarmStatus getHighestZoneAlarmStatus();
 }
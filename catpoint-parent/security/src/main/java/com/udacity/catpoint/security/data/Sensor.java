@@ -14,6 +14,7 @@ public class Sensor implements Comparable<Sensor> {
     private String name;
     private Boolean active;
     private SensorType sensorType;
+    private String zone;
 
     public Sensor() {
     }
@@ -25,6 +26,14 @@ public class Sensor implements Comparable<Sensor> {
         this.active = Boolean.FALSE;
     }
 
+    /**
+     * @param zone The zone the sensor belongs to, or null if it only follows the system-wide status
+     */
+    public Sensor(String name, SensorType sensorType, String zone) {
+        this(name, sensorType);
+        this.zone = zone;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -62,6 +71,17 @@ public class Sensor implements Comparable<Sensor> {
         this.sensorType = sensorType;
     }
 
+    /**
+     * @return the zone the sensor belongs to, or null if it only follows the system-wide status
+     */
+    public String getZone() {
+        return zone;
+    }
+
+    public void setZone(String zone) {
+        this.zone = zone;
+    }
+
     public UUID getSensorId() {
         return sensorId;
     }
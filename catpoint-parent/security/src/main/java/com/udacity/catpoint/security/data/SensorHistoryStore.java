@@ -0,0 +1,307 @@
+package com.udacity.catpoint.security.data;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Embedded, in-memory history of sensor activation changes and alarms. New changes go into an
+ * open chunk for the current time partition. When the partition ends the chunk is sealed into
+ * compressed columns, and chunks older than the rollup age are reduced to per-sensor activation
+ * counts. Queries scan the partitions in parallel without decompressing them.
+ * <p>
+ * Changes are expected in time order. A change that arrives late is recorded at the latest time
+ * seen so far, which keeps the timestamp column cheap to encode and scan.
+ * <p>
+ * History lives only as long as the process: nothing is written to disk, so a restarted
+ * application starts with an empty history. Sealing and rollup happen when a change is recorded;
+ * call {@link #maintain()} periodically so they also happen while no sensor changes.
+ */
+public class SensorHistoryStore {
+
+    private static final int MAX_CHUNK_ROWS = 1 << 16;
+
+    private final Clock clock;
+    private final long partitionMillis;
+    private final long rollupAfterMillis;
+    private final long rollupBucketMillis;
+    private final long rollupPartitionMillis;
+
+    //guarded by this
+    private final List<UUID> dictionary = new ArrayList<>();
+    private final Map<UUID, Integer> codes = new HashMap<>();
+    private List<HistoryPartition> partitions = List.of();
+    private long[] alarms = new long[16];
+    private int alarmCount;
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    //open chunk, guarded by this
+    private long openStartMillis;
+    private long[] timestamps = new long[1024];
+    private int[] rowCodes = new int[1024];
+    private boolean[] rowActive = new boolean[1024];
+    private int openRows;
+
+    /**
+     * Hourly partitions, rolled up to hourly counts per day after a week.
+     */
+    public SensorHistoryStore() {
+        this(Clock.systemUTC(), Duration.ofHours(1).toMillis(), Duration.ofDays(7).toMillis(),
+                Duration.ofHours(1).toMillis(), Duration.ofDays(1).toMillis());
+    }
+
+    /**
+     * @param clock                 Time source for changes recorded without a timestamp
+     * @param partitionMillis       Time range of each raw chunk
+     * @param rollupAfterMillis     Age after which raw chunks are rolled up
+     * @param rollupBucketMillis    Resolution of rolled up counts
+     * @param rollupPartitionMillis Time range of each rolled up partition
+     */
+    public SensorHistoryStore(Clock clock, long partitionMillis, long rollupAfterMillis,
+                              long rollupBucketMillis, long rollupPartitionMillis) {
+        this.clock = clock;
+        this.partitionMillis = partitionMillis;
+        this.rollupAfterMillis = rollupAfterMillis;
+        this.rollupBucketMillis = rollupBucketMillis;
+        this.rollupPartitionMillis = rollupPartitionMillis;
+    }
+
+    /**
+     * Record a sensor being activated or deactivated now.
+     */
+    public void record(UUID sensorId, boolean active) {
+        record(sensorId, active, clock.millis());
+    }
+
+    public synchronized void record(UUID sensorId, boolean active, long timestampMillis) {
+        long timestamp = Math.max(timestampMillis, lastTimestamp);
+        if (openRows > 0 && (timestamp >= openStartMillis + partitionMillis || openRows == MAX_CHUNK_ROWS)) {
+            seal(timestamp);
+        }
+        if (openRows == 0) {
+            openStartMillis = Math.floorDiv(timestamp, partitionMillis) * partitionMillis;
+        }
+        if (openRows == timestamps.length) {
+            timestamps = Arrays.copyOf(timestamps, openRows * 2);
+            rowCodes = Arrays.copyOf(rowCodes, openRows * 2);
+            rowActive = Arrays.copyOf(rowActive, openRows * 2);
+        }
+        timestamps[openRows] = timestamp;
+        rowCodes[openRows] = codes.computeIfAbsent(sensorId, id -> {
+            dictionary.add(id);
+            return dictionary.size() - 1;
+        });
+        rowActive[openRows] = active;
+        openRows++;
+        lastTimestamp = timestamp;
+    }
+
+    /**
+     * Record the alarm going off now.
+     */
+    public void recordAlarm() {
+        recordAlarm(clock.millis());
+    }
+
+    public synchronized void recordAlarm(long timestampMillis) {
+        if (alarmCount == alarms.length) {
+            alarms = Arrays.copyOf(alarms, alarmCount * 2);
+        }
+        long previous = alarmCount == 0 ? Long.MIN_VALUE : alarms[alarmCount - 1];
+        alarms[alarmCount++] = Math.max(timestampMillis, previous);
+    }
+
+    /**
+     * Seals the open chunk if its partition has ended, rolls up chunks older than the rollup age
+     * and drops the alarms no raw history can precede any more.
+     */
+    public void maintain() {
+        maintain(clock.millis());
+    }
+
+    public synchronized void maintain(long nowMillis) {
+        if (openRows > 0 && nowMillis >= openStartMillis + partitionMillis) {
+            seal(nowMillis);
+        } else {
+            partitions = rollUp(partitions, nowMillis - rollupAfterMillis);
+            trimAlarms(nowMillis);
+        }
+    }
+
+    private void seal(long nowMillis) {
+        List<HistoryPartition> sealed = new ArrayList<>(partitions);
+        sealed.add(encodeOpenChunk());
+        openRows = 0;
+        partitions = rollUp(sealed, nowMillis - rollupAfterMillis);
+        trimAlarms(nowMillis);
+    }
+
+    /**
+     * Alarms only count after an activation in raw history, so alarms before the oldest raw
+     * chunk are never read again. Without raw history, changes still to come are recorded no
+     * earlier than the latest one, and are rolled up anyway if their chunk is past the rollup age.
+     */
+    private void trimAlarms(long nowMillis) {
+        long oldest = openRows > 0 ? openStartMillis
+                : Math.max(lastTimestamp, nowMillis - rollupAfterMillis - partitionMillis);
+        for (HistoryPartition partition : partitions) {
+            if (partition instanceof HistoryChunk) {
+                oldest = Math.min(oldest, partition.getStartMillis());
+            }
+        }
+        int drop = 0;
+        while (drop < alarmCount && alarms[drop] < oldest) {
+            drop++;
+        }
+        if (drop > 0) {
+            alarmCount -= drop;
+            System.arraycopy(alarms, drop, alarms, 0, alarmCount);
+        }
+    }
+
+    private HistoryChunk encodeOpenChunk() {
+        return HistoryChunk.encode(openStartMillis, openStartMillis + partitionMillis, timestamps, rowCodes, rowActive, openRows);
+    }
+
+    /**
+     * Replaces raw chunks that ended before the cutoff with rollups, merging rollups that
+     * cover the same rollup partition.
+     */
+    private List<HistoryPartition> rollUp(List<HistoryPartition> sealed, long cutoffMillis) {
+        List<HistoryPartition> result = new ArrayList<>(sealed.size());
+        for (HistoryPartition partition : sealed) {
+            if (!(partition instanceof HistoryChunk) || partition.getEndMillis() > cutoffMillis) {
+                result.add(partition);
+                continue;
+            }
+            long start = Math.floorDiv(partition.getStartMillis(), rollupPartitionMillis) * rollupPartitionMillis;
+            HistoryRollup rollup = ((HistoryChunk) partition).rollUp(start, start + rollupPartitionMillis, rollupBucketMillis);
+            HistoryPartition last = result.isEmpty() ? null : result.get(result.size() - 1);
+            if (last instanceof HistoryRollup && last.getStartMillis() == start) {
+                result.set(result.size() - 1, ((HistoryRollup) last).plus(rollup));
+            } else {
+                result.add(rollup);
+            }
+        }
+        return List.copyOf(result);
+    }
+
+    /**
+     * Everything a query needs, taken together so partitions never hold codes the
+     * dictionary copy doesn't know.
+     */
+    private synchronized Snapshot snapshot() {
+        List<HistoryPartition> all = new ArrayList<>(partitions);
+        if (openRows > 0) {
+            all.add(encodeOpenChunk());
+        }
+        return new Snapshot(all, List.copyOf(dictionary), Arrays.copyOf(alarms, alarmCount));
+    }
+
+    /**
+     * Counts activations per sensor in buckets of the given size. Rolled up history is counted
+     * at the start of its rollup bucket.
+     *
+     * @return activation counts per bucket, for every sensor activated in the range
+     */
+    public Map<UUID, long[]> activationsPerSensor(long fromMillis, long toMillis, long bucketMillis) {
+        Snapshot snapshot = snapshot();
+        int sensors = snapshot.dictionary.size();
+        int bucketCount = (int) ((toMillis - fromMillis + bucketMillis - 1) / bucketMillis);
+        long[][] counts = snapshot.partitions.parallelStream()
+                .filter(p -> p.getEndMillis() > fromMillis && p.getStartMillis() < toMillis)
+                .collect(() -> new long[sensors][bucketCount],
+                        (acc, p) -> p.countActivations(fromMillis, toMillis, bucketMillis, acc),
+                        (left, right) -> {
+                            for (int code = 0; code < sensors; code++) {
+                                for (int bucket = 0; bucket < bucketCount; bucket++) {
+                                    left[code][bucket] += right[code][bucket];
+                                }
+                            }
+                        });
+        Map<UUID, long[]> result = new HashMap<>();
+        for (int code = 0; code < sensors; code++) {
+            if (Arrays.stream(counts[code]).anyMatch(c -> c > 0)) {
+                result.put(snapshot.dictionary.get(code), counts[code]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds the sensors that tend to fire shortly before an alarm. Only history that hasn't
+     * been rolled up is precise enough to count.
+     *
+     * @param windowMillis How soon after an activation an alarm must follow to count
+     * @return per sensor, the number of its activations in the range that were followed by an alarm
+     */
+    public Map<UUID, Long> activationsBeforeAlarms(long fromMillis, long toMillis, long windowMillis) {
+        Snapshot snapshot = snapshot();
+        int sensors = snapshot.dictionary.size();
+        long[] counts = snapshot.partitions.parallelStream()
+                .filter(p -> p.getEndMillis() > fromMillis && p.getStartMillis() < toMillis)
+                .collect(() -> new long[sensors],
+                        (acc, p) -> p.countActivationsBeforeAlarms(fromMillis, toMillis, snapshot.alarms, windowMillis, acc),
+                        (left, right) -> {
+                            for (int code = 0; code < sensors; code++) {
+                                left[code] += right[code];
+                            }
+                        });
+        Map<UUID, Long> result = new HashMap<>();
+        for (int code = 0; code < sensors; code++) {
+            if (counts[code] > 0) {
+                result.put(snapshot.dictionary.get(code), counts[code]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of activation changes recorded, including rolled up ones
+     */
+    public synchronized long getRowCount() {
+        return partitions.stream().mapToLong(HistoryPartition::getRowCount).sum() + openRows;
+    }
+
+    /**
+     * @return the number of alarms kept to match against raw history
+     */
+    public synchronized int getAlarmCount() {
+        return alarmCount;
+    }
+
+    /**
+     * @return the number of sealed partitions, raw and rolled up
+     */
+    public synchronized int getPartitionCount() {
+        return partitions.size();
+    }
+
+    public synchronized int getRollupCount() {
+        return (int) partitions.stream().filter(p -> p instanceof HistoryRollup).count();
+    }
+
+    /**
+     * @return the approximate size of the sealed partitions in bytes
+     */
+    public synchronized long getSizeBytes() {
+        return partitions.stream().mapToLong(HistoryPartition::getSizeBytes).sum();
+    }
+
+    private static final class Snapshot {
+        private final List<HistoryPartition> partitions;
+        private final List<UUID> dictionary;
+        private final long[] alarms;
+
+        private Snapshot(List<HistoryPartition> partitions, List<UUID> dictionary, long[] alarms) {
+            this.partitions = partitions;
+            this.dictionary = dictionary;
+            this.alarms = alarms;
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package com.udacity.catpoint.security.data;
 
 /**
- * List of available sensor types. Not currently used by system, other than for display.
+ * List of available sensor types. Used for display and as a condition in alarm rules.
  */
 public enum SensorType {
     DOOR, WINDOW, MOTION
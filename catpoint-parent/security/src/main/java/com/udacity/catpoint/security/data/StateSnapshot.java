@@ -0,0 +1,124 @@
+package com.udacity.catpoint.security.data;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A consistent copy of the state published in a memory-mapped state file.
+ */
+public final class StateSnapshot {
+
+    private final long sequence;
+    private final long timestampMillis;
+    private final AlarmStatus siteAlarmStatus;
+    private final AlarmStatus systemAlarmStatus;
+    private final ArmingStatus armingStatus;
+    private final boolean catDetected;
+    private final int sensorCount;
+    private final int activeSensorCount;
+    private final long sensorsVersion;
+    private final List<SensorState> sensors;
+
+    StateSnapshot(long sequence, long timestampMillis, AlarmStatus siteAlarmStatus, AlarmStatus systemAlarmStatus,
+                  ArmingStatus armingStatus, boolean catDetected, int sensorCount, int activeSensorCount,
+                  long sensorsVersion, List<SensorState> sensors) {
+        this.sequence = sequence;
+        this.timestampMillis = timestampMillis;
+        this.siteAlarmStatus = siteAlarmStatus;
+        this.systemAlarmStatus = systemAlarmStatus;
+        this.armingStatus = armingStatus;
+        this.catDetected = catDetected;
+        this.sensorCount = sensorCount;
+        this.activeSensorCount = activeSensorCount;
+        this.sensorsVersion = sensorsVersion;
+        this.sensors = sensors;
+    }
+
+    /**
+     * @return the seqlock sequence the snapshot was read at, increases with every update
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    /**
+     * @return the most severe of the system-wide and zone alarm statuses
+     */
+    public AlarmStatus getSiteAlarmStatus() {
+        return siteAlarmStatus;
+    }
+
+    public AlarmStatus getSystemAlarmStatus() {
+        return systemAlarmStatus;
+    }
+
+    public ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+
+    public boolean isCatDetected() {
+        return catDetected;
+    }
+
+    /**
+     * @return the number of sensors, which can be more than {@link #getSensors()} holds
+     */
+    public int getSensorCount() {
+        return sensorCount;
+    }
+
+    public int getActiveSensorCount() {
+        return activeSensorCount;
+    }
+
+    public long getSensorsVersion() {
+        return sensorsVersion;
+    }
+
+    /**
+     * @return the sensors that fit in the file, empty if only the header was read
+     */
+    public List<SensorState> getSensors() {
+        return sensors;
+    }
+
+    /**
+     * Activity of one sensor as published in the state file.
+     */
+    public static final class SensorState {
+        private final UUID sensorId;
+        private final String name;
+        private final SensorType sensorType;
+        private final boolean active;
+
+        SensorState(UUID sensorId, String name, SensorType sensorType, boolean active) {
+            this.sensorId = sensorId;
+            this.name = name;
+            this.sensorType = sensorType;
+            this.active = active;
+        }
+
+        public UUID getSensorId() {
+            return sensorId;
+        }
+
+        /**
+         * @return the sensor name, possibly truncated
+         */
+        public String getName() {
+            return name;
+        }
+
+        public SensorType getSensorType() {
+            return sensorType;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+    }
+}
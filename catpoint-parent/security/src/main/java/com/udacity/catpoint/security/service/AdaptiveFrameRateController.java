@@ -0,0 +1,83 @@
+package com.udacity.catpoint.security.service;
+
+/**
+ * Decides how often frames are sampled from a camera stream so the lag between a frame arriving
+ * and its detection finishing stays under a budget.
+ * <p>
+ * The sampling interval backs off multiplicatively whenever a frame goes over the budget and
+ * creeps back down while there is plenty of headroom. It never drops below the average detector
+ * latency, since sampling faster than the detector can keep up only makes frames wait.
+ */
+public class AdaptiveFrameRateController {
+
+    //weight of the newest sample in the moving average of detector latency
+    private static final double LATENCY_SMOOTHING = 0.2;
+
+    private final long lagBudgetMillis;
+    private final long minIntervalMillis;
+    private final long maxIntervalMillis;
+
+    private volatile long intervalMillis;
+    private volatile double averageLatencyMillis;
+    private volatile long lastLagMillis;
+
+    /**
+     * @param lagBudgetMillis   Target upper bound for end-to-end lag
+     * @param minIntervalMillis Shortest interval between sampled frames, i.e. the highest frame rate
+     * @param maxIntervalMillis Longest interval between sampled frames, i.e. the lowest frame rate
+     */
+    public AdaptiveFrameRateController(long lagBudgetMillis, long minIntervalMillis, long maxIntervalMillis) {
+        if (lagBudgetMillis <= 0 || minIntervalMillis < 0 || maxIntervalMillis < minIntervalMillis) {
+            throw new IllegalArgumentException("Invalid frame rate limits");
+        }
+        this.lagBudgetMillis = lagBudgetMillis;
+        this.minIntervalMillis = minIntervalMillis;
+        this.maxIntervalMillis = maxIntervalMillis;
+        this.intervalMillis = minIntervalMillis;
+    }
+
+    /**
+     * Records a processed frame and adjusts the sampling interval.
+     *
+     * @param lagMillis     Time from the frame arriving to detection finishing
+     * @param latencyMillis Time the detector took on the frame
+     */
+    public void record(long lagMillis, long latencyMillis) {
+        lastLagMillis = lagMillis;
+        averageLatencyMillis = averageLatencyMillis == 0
+                ? latencyMillis
+                : averageLatencyMillis + LATENCY_SMOOTHING * (latencyMillis - averageLatencyMillis);
+
+        long interval = intervalMillis;
+        if (lagMillis > lagBudgetMillis) {
+            interval = Math.max(interval * 2, 1);
+        } else if (lagMillis < lagBudgetMillis / 2) {
+            interval -= Math.max(1, interval / 10);
+        }
+        interval = Math.max(interval, (long) averageLatencyMillis);
+        intervalMillis = Math.max(minIntervalMillis, Math.min(maxIntervalMillis, interval));
+    }
+
+    /**
+     * @return the minimum time between the start of two sampled frames
+     */
+    public long getSampleIntervalMillis() {
+        return intervalMillis;
+    }
+
+    /**
+     * @return the sampled frame rate in frames per second, or 0 if frames aren't limited
+     */
+    public double getSampledFrameRate() {
+        long interval = intervalMillis;
+        return interval == 0 ? 0 : 1000.0 / interval;
+    }
+
+    public double getAverageLatencyMillis() {
+        return averageLatencyMillis;
+    }
+
+    public long getLastLagMillis() {
+        return lastLagMillis;
+    }
+}
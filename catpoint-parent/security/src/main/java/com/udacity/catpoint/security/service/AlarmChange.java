@@ -0,0 +1,38 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+
+/**
+ * Published by {@link SecurityService#alarmChanges()} whenever an alarm status is set.
+ */
+public final class AlarmChange {
+    private final String zone;
+    private final AlarmStatus alarmStatus;
+    private final long timestampMillis;
+
+    public AlarmChange(String zone, AlarmStatus alarmStatus, long timestampMillis) {
+        this.zone = zone;
+        this.alarmStatus = alarmStatus;
+        this.timestampMillis = timestampMillis;
+    }
+
+    /**
+     * @return the zone whose status changed, or null for the system-wide status
+     */
+    public String getZone() {
+        return zone;
+    }
+
+    public AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "AlarmChange{zone=" + zone + ", alarmStatus=" + alarmStatus + ", timestampMillis=" + timestampMillis + '}';
+    }
+}
@@ -0,0 +1,88 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.SensorType;
+
+import java.util.List;
+
+/**
+ * Flat lookup table compiled from a list of {@link AlarmRule}s. Every possible combination
+ * of inputs is resolved once at compile time, so a lookup is a single array read.
+ * <p>
+ * Instances are immutable and safe to share between threads.
+ */
+final class AlarmDecisionTable {
+
+    private static final AlarmStatus[] ALARM_STATUSES = AlarmStatus.values();
+
+    private static final int EVENTS = AlarmEvent.values().length;
+    private static final int ARMING_SLOTS = ArmingStatus.values().length + 1;
+    private static final int ALARM_SLOTS = ALARM_STATUSES.length + 1;
+    private static final int SENSOR_TYPE_SLOTS = SensorType.values().length + 1;
+
+    //0 means "keep the current status", otherwise the AlarmStatus ordinal + 1
+    private final byte[] cells = new byte[EVENTS * ARMING_SLOTS * ALARM_SLOTS * SENSOR_TYPE_SLOTS * 4];
+    //events for which at least one rule looks at whether any sensor is active
+    private final boolean[] usesSensorState = new boolean[EVENTS];
+
+    /**
+     * Resolves every cell against the rules. The first matching rule wins, cells that match
+     * no rule keep the current status.
+     *
+     * @param rules The rules in priority order
+     */
+    AlarmDecisionTable(List<AlarmRule> rules) {
+        for (AlarmRule rule : rules) {
+            for (int event = 0; event < EVENTS; event++) {
+                usesSensorState[event] |= rule.usesSensorState(event);
+            }
+        }
+        for (int event = 0; event < EVENTS; event++) {
+            for (int arming = 0; arming < ARMING_SLOTS; arming++) {
+                for (int alarm = 0; alarm < ALARM_SLOTS; alarm++) {
+                    for (int type = 0; type < SENSOR_TYPE_SLOTS; type++) {
+                        for (int cat = 0; cat < 2; cat++) {
+                            for (int active = 0; active < 2; active++) {
+                                cells[index(event, arming, alarm, type, cat, active)] =
+                                        resolve(rules, event, arming, alarm, type, cat, active);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static byte resolve(List<AlarmRule> rules, int event, int arming, int alarm, int type, int cat, int active) {
+        for (AlarmRule rule : rules) {
+            if (rule.matches(event, arming, alarm, type, cat, active)) {
+                AlarmStatus outcome = rule.getOutcome();
+                return (byte) (outcome == null ? 0 : outcome.ordinal() + 1);
+            }
+        }
+        return 0;
+    }
+
+    private static int index(int event, int arming, int alarm, int type, int cat, int active) {
+        return ((((event * ARMING_SLOTS + arming) * ALARM_SLOTS + alarm) * SENSOR_TYPE_SLOTS + type) * 2 + cat) * 2 + active;
+    }
+
+    private static int slot(Enum<?> value) {
+        return value == null ? 0 : value.ordinal() + 1;
+    }
+
+    boolean usesSensorState(AlarmEvent event) {
+        return usesSensorState[event.ordinal()];
+    }
+
+    /**
+     * @return the alarm status to move to, or null if the current status should be kept
+     */
+    AlarmStatus lookup(AlarmEvent event, ArmingStatus armingStatus, AlarmStatus alarmStatus,
+                       SensorType sensorType, boolean catDetected, boolean anySensorActive) {
+        byte cell = cells[index(event.ordinal(), slot(armingStatus), slot(alarmStatus), slot(sensorType),
+                catDetected ? 1 : 0, anySensorActive ? 1 : 0)];
+        return cell == 0 ? null : ALARM_STATUSES[cell - 1];
+    }
+}
@@ -0,0 +1,18 @@
+package com.udacity.catpoint.security.service;
+
+/**
+ * Events that can cause the alarm status to change. Each event is evaluated against the
+ * current {@link AlarmRuleEngine} rules to decide the next alarm status.
+ */
+public enum AlarmEvent {
+    SENSOR_ACTIVATED,
+    //a sensor activated while the exit delay is running, as people leaving trip sensors on their way out
+    SENSOR_ACTIVATED_DURING_EXIT,
+    SENSOR_DEACTIVATED,
+    CAT_DETECTED,
+    CAT_CLEARED,
+    ARMING_CHANGED,
+    ENTRY_DELAY_EXPIRED,
+    EXIT_DELAY_EXPIRED,
+    SENSOR_OFFLINE
+}
@@ -0,0 +1,152 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.SensorType;
+
+/**
+ * A single declarative alarm rule. A rule matches a combination of event, arming status,
+ * alarm status, sensor type, cat state and sensor state, and names the alarm status the
+ * system should move to. Conditions that are not specified match any value.
+ * <p>
+ * Rules are built with {@link #on(AlarmEvent...)}, for example:
+ * <pre>
+ * AlarmRule.on(AlarmEvent.SENSOR_ACTIVATED)
+ *         .whenSensorType(SensorType.MOTION)
+ *         .whenArming(ArmingStatus.ARMED_HOME)
+ *         .keep();
+ * </pre>
+ */
+public final class AlarmRule {
+
+    static final int ANY = -1;
+
+    private final int events;
+    private final int arming;
+    private final int alarm;
+    private final int sensorTypes;
+    private final int catDetected;
+    private final int anySensorActive;
+    private final AlarmStatus outcome;
+
+    private AlarmRule(Builder builder, AlarmStatus outcome) {
+        this.events = builder.events;
+        this.arming = builder.arming;
+        this.alarm = builder.alarm;
+        this.sensorTypes = builder.sensorTypes;
+        this.catDetected = builder.catDetected;
+        this.anySensorActive = builder.anySensorActive;
+        this.outcome = outcome;
+    }
+
+    /**
+     * Starts a rule that applies to the given events.
+     *
+     * @param events The events this rule reacts to
+     */
+    public static Builder on(AlarmEvent... events) {
+        int mask = 0;
+        for (AlarmEvent event : events) {
+            mask |= 1 << event.ordinal();
+        }
+        return new Builder(mask);
+    }
+
+    /**
+     * @return the alarm status this rule moves to, or null if the rule keeps the current status
+     */
+    public AlarmStatus getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * Checks a single cell of the decision table. Enum dimensions are addressed by slot, where
+     * slot 0 means "unknown / not applicable" and slot n is the enum constant with ordinal n - 1.
+     */
+    boolean matches(int event, int armingSlot, int alarmSlot, int sensorTypeSlot, int cat, int active) {
+        return (events & (1 << event)) != 0
+                && (arming & (1 << armingSlot)) != 0
+                && (alarm & (1 << alarmSlot)) != 0
+                && (sensorTypes & (1 << sensorTypeSlot)) != 0
+                && (catDetected & (1 << cat)) != 0
+                && (anySensorActive & (1 << active)) != 0;
+    }
+
+    /**
+     * @return true if this rule applies to the event and depends on whether any sensor is active
+     */
+    boolean usesSensorState(int event) {
+        return (events & (1 << event)) != 0 && anySensorActive != ANY;
+    }
+
+    private static int slotMask(Enum<?>[] values) {
+        int mask = 0;
+        for (Enum<?> value : values) {
+            mask |= 1 << (value.ordinal() + 1);
+        }
+        return mask;
+    }
+
+    private static int flagMask(boolean value) {
+        return 1 << (value ? 1 : 0);
+    }
+
+    /**
+     * Collects the conditions of a rule. Finish with {@link #then(AlarmStatus)} or {@link #keep()}.
+     */
+    public static final class Builder {
+        private final int events;
+        private int arming = ANY;
+        private int alarm = ANY;
+        private int sensorTypes = ANY;
+        private int catDetected = ANY;
+        private int anySensorActive = ANY;
+
+        private Builder(int events) {
+            this.events = events;
+        }
+
+        public Builder whenArming(ArmingStatus... statuses) {
+            this.arming = slotMask(statuses);
+            return this;
+        }
+
+        public Builder whenAlarm(AlarmStatus... statuses) {
+            this.alarm = slotMask(statuses);
+            return this;
+        }
+
+        public Builder whenSensorType(SensorType... types) {
+            this.sensorTypes = slotMask(types);
+            return this;
+        }
+
+        public Builder whenCatDetected(boolean detected) {
+            this.catDetected = flagMask(detected);
+            return this;
+        }
+
+        public Builder whenAnySensorActive(boolean active) {
+            this.anySensorActive = flagMask(active);
+            return this;
+        }
+
+        /**
+         * Finishes the rule so that a match moves the system to the given alarm status.
+         */
+        public AlarmRule then(AlarmStatus outcome) {
+            if (outcome == null) {
+                throw new IllegalArgumentException("Rule outcome cannot be null, use keep() instead");
+            }
+            return new AlarmRule(this, outcome);
+        }
+
+        /**
+         * Finishes the rule so that a match leaves the alarm status untouched. Useful to shadow
+         * rules declared further down the list.
+         */
+        public AlarmRule keep() {
+            return new AlarmRule(this, null);
+        }
+    }
+}
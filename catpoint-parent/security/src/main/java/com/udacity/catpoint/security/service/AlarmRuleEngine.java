@@ -0,0 +1,114 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.SensorType;
+
+import java.util.List;
+
+/**
+ * Decides how the alarm status reacts to events. Rules are compiled into an
+ * {@link AlarmDecisionTable} when they are loaded, so evaluating an event is a constant-time
+ * lookup that does not allocate.
+ * <p>
+ * Rules can be replaced at any time with {@link #reload(List)}. The new table is built on the
+ * calling thread and then swapped in, so events being evaluated concurrently are never blocked.
+ */
+public class AlarmRuleEngine {
+
+    private volatile AlarmDecisionTable table;
+
+    public AlarmRuleEngine(List<AlarmRule> rules) {
+        this.table = new AlarmDecisionTable(List.copyOf(rules));
+    }
+
+    /**
+     * @return an engine loaded with {@link #defaultRules()}
+     */
+    public static AlarmRuleEngine withDefaultRules() {
+        return new AlarmRuleEngine(defaultRules());
+    }
+
+    /**
+     * The standard alarm policy for the system:
+     * <ul>
+     *     <li>Activating a sensor while armed moves NO_ALARM to PENDING_ALARM and PENDING_ALARM to ALARM</li>
+     *     <li>Activating a sensor during the exit delay only ever makes the alarm pending</li>
+     *     <li>Deactivating a sensor while pending returns to NO_ALARM</li>
+     *     <li>A cat seen while ARMED_HOME raises the alarm</li>
+     *     <li>Arming the system while a cat is in view raises the alarm, disarming clears it</li>
+     *     <li>A pending alarm that outlives the entry delay becomes an alarm</li>
+     *     <li>When the exit delay ends a pending alarm stays pending if a sensor is still active,
+     *     so the entry delay starts, otherwise it is cancelled</li>
+     *     <li>A sensor going offline while armed escalates like an activation, if the service
+     *     escalates offline sensors at all</li>
+     * </ul>
+     */
+    public static List<AlarmRule> defaultRules() {
+        return List.of(
+                //sensor changes don't matter once the alarm is going off
+                AlarmRule.on(AlarmEvent.SENSOR_ACTIVATED, AlarmEvent.SENSOR_ACTIVATED_DURING_EXIT, AlarmEvent.SENSOR_DEACTIVATED)
+                        .whenAlarm(AlarmStatus.ALARM).keep(),
+                //no problem if the system is disarmed
+                AlarmRule.on(AlarmEvent.SENSOR_ACTIVATED, AlarmEvent.SENSOR_ACTIVATED_DURING_EXIT)
+                        .whenArming(ArmingStatus.DISARMED).keep(),
+                //someone leaving may trip several sensors, which is resolved when the exit delay ends
+                AlarmRule.on(AlarmEvent.SENSOR_ACTIVATED_DURING_EXIT).then(AlarmStatus.PENDING_ALARM),
+                AlarmRule.on(AlarmEvent.SENSOR_ACTIVATED).whenAlarm(AlarmStatus.NO_ALARM).then(AlarmStatus.PENDING_ALARM),
+                AlarmRule.on(AlarmEvent.SENSOR_ACTIVATED).whenAlarm(AlarmStatus.PENDING_ALARM).then(AlarmStatus.ALARM),
+                AlarmRule.on(AlarmEvent.SENSOR_DEACTIVATED).whenAlarm(AlarmStatus.PENDING_ALARM).then(AlarmStatus.NO_ALARM),
+
+                AlarmRule.on(AlarmEvent.CAT_DETECTED).whenArming(ArmingStatus.ARMED_HOME).then(AlarmStatus.ALARM),
+                AlarmRule.on(AlarmEvent.CAT_CLEARED).whenAnySensorActive(true).then(AlarmStatus.ALARM),
+                AlarmRule.on(AlarmEvent.CAT_DETECTED, AlarmEvent.CAT_CLEARED).then(AlarmStatus.NO_ALARM),
+
+                AlarmRule.on(AlarmEvent.ARMING_CHANGED).whenArming(ArmingStatus.DISARMED).then(AlarmStatus.NO_ALARM),
+                AlarmRule.on(AlarmEvent.ARMING_CHANGED).whenCatDetected(true).then(AlarmStatus.ALARM),
+
+                AlarmRule.on(AlarmEvent.ENTRY_DELAY_EXPIRED).whenAlarm(AlarmStatus.PENDING_ALARM).then(AlarmStatus.ALARM),
+                AlarmRule.on(AlarmEvent.EXIT_DELAY_EXPIRED).whenAlarm(AlarmStatus.PENDING_ALARM)
+                        .whenAnySensorActive(true).keep(),
+                AlarmRule.on(AlarmEvent.EXIT_DELAY_EXPIRED).whenAlarm(AlarmStatus.PENDING_ALARM).then(AlarmStatus.NO_ALARM),
+
+                //a sensor that stops reporting may have been tampered with
+                AlarmRule.on(AlarmEvent.SENSOR_OFFLINE).whenArming(ArmingStatus.DISARMED).keep(),
+                AlarmRule.on(AlarmEvent.SENSOR_OFFLINE).whenAlarm(AlarmStatus.NO_ALARM).then(AlarmStatus.PENDING_ALARM),
+                AlarmRule.on(AlarmEvent.SENSOR_OFFLINE).whenAlarm(AlarmStatus.PENDING_ALARM).then(AlarmStatus.ALARM)
+        );
+    }
+
+    /**
+     * Compiles a new set of rules and swaps it in once it is ready.
+     *
+     * @param rules The rules in priority order, the first matching rule wins
+     */
+    public void reload(List<AlarmRule> rules) {
+        table = new AlarmDecisionTable(List.copyOf(rules));
+    }
+
+    /**
+     * Callers can skip working out whether any sensor is active when no rule for the event
+     * looks at it.
+     *
+     * @return true if a rule for this event depends on whether any sensor is active
+     */
+    public boolean dependsOnSensorState(AlarmEvent event) {
+        return table.usesSensorState(event);
+    }
+
+    /**
+     * Looks up the alarm status the system should move to for an event.
+     *
+     * @param event           The event that happened
+     * @param armingStatus    The arming status, or the new arming status for {@link AlarmEvent#ARMING_CHANGED}
+     * @param alarmStatus     The current alarm status
+     * @param sensorType      The type of the sensor involved, or null if the event isn't about a sensor
+     * @param catDetected     True if the camera currently shows a cat
+     * @param anySensorActive True if at least one sensor is active
+     * @return the new alarm status, or null if the alarm status should not change
+     */
+    public AlarmStatus evaluate(AlarmEvent event, ArmingStatus armingStatus, AlarmStatus alarmStatus,
+                                SensorType sensorType, boolean catDetected, boolean anySensorActive) {
+        return table.lookup(event, armingStatus, alarmStatus, sensorType, catDetected, anySensorActive);
+    }
+}
@@ -0,0 +1,26 @@
+package com.udacity.catpoint.security.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for an alarm status being set. The duration covers writing the
+ * repository and notifying listeners.
+ */
+@Name("com.udacity.catpoint.AlarmStatusChange")
+@Label("Alarm Status Change")
+@Category({"Catpoint", "Security"})
+@Description("The alarm status of the system or a zone was set")
+@StackTrace(false)
+final class AlarmStatusChangeEvent extends Event {
+
+    @Label("Zone")
+    String zone;
+
+    @Label("Alarm Status")
+    String alarmStatus;
+}
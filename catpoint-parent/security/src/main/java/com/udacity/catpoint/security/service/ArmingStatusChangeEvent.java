@@ -0,0 +1,26 @@
+package com.udacity.catpoint.security.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for the system or a zone being armed or disarmed. The duration
+ * includes resetting the sensors.
+ */
+@Name("com.udacity.catpoint.ArmingStatusChange")
+@Label("Arming Status Change")
+@Category({"Catpoint", "Security"})
+@Description("The arming status of the system or a zone was set")
+@StackTrace(false)
+final class ArmingStatusChangeEvent extends Event {
+
+    @Label("Zone")
+    String zone;
+
+    @Label("Arming Status")
+    String armingStatus;
+}
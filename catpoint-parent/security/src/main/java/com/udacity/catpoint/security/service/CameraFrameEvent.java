@@ -0,0 +1,31 @@
+package com.udacity.catpoint.security.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder event for a camera frame going through detection. Image service events
+ * recorded on the same thread during this event belong to the same frame.
+ */
+@Name("com.udacity.catpoint.CameraFrame")
+@Label("Camera Frame")
+@Category({"Catpoint", "Camera"})
+@Description("A camera frame was passed to the detector")
+@StackTrace(false)
+final class CameraFrameEvent extends Event {
+
+    @Label("Camera Id")
+    String cameraId;
+
+    @Label("Lag")
+    @Timespan(Timespan.MILLISECONDS)
+    long lag;
+
+    @Label("Failed")
+    boolean failed;
+}
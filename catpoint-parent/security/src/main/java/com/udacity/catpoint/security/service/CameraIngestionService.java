@@ -0,0 +1,357 @@
+package com.udacity.catpoint.security.service;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Watches a spool directory that cameras drop images into and streams new images into detection.
+ * <p>
+ * Images are decoded in parallel, but at most {@code maxInFlight} frames are being decoded or
+ * waiting for detection at any time. When detection falls behind, only the newest frame of each
+ * camera is kept and older ones are dropped, both before and after decoding. Frames are handed to
+ * the detector one at a time.
+ * <p>
+ * Cameras should write images under a temporary name (starting with '.' or ending in '.tmp')
+ * and rename them when complete, so half-written files are never picked up. Files already in the
+ * directory when the service starts are ignored.
+ * <p>
+ * Images are decoded into buffers from a {@link FrameBufferPool}, which are reused once the
+ * detector has finished with them, so the detector must not keep a reference to an image after
+ * it returns.
+ */
+public class CameraIngestionService implements AutoCloseable {
+
+    private final Path spoolDirectory;
+    private final Consumer<BufferedImage> detector;
+    private final Function<Path, String> cameraIdResolver;
+    private final int maxInFlight;
+    private final ExecutorService decodePool;
+    private final FrameBufferPool framePool;
+    private final ThreadLocal<FrameDecoder> decoders;
+
+    private WatchService watchService;
+    private Thread watchThread;
+    private Thread detectionThread;
+    private volatile boolean running;
+
+    //guarded by this
+    private final Map<String, PendingFile> undecoded = new LinkedHashMap<>();
+    private final Map<String, Frame> decoded = new LinkedHashMap<>();
+    private int inFlight;
+    private long nextSequence;
+
+    //metrics, guarded by this
+    private long processedFrames;
+    private long droppedFrames;
+    private long failedFrames;
+    private long lastLagMillis;
+    private long maxLagMillis;
+
+    /**
+     * @param spoolDirectory The directory to watch
+     * @param detector       Receives decoded frames one at a time, usually {@link SecurityService#processImage}
+     * @param decodeThreads  Number of threads decoding images in parallel
+     * @param maxInFlight    Maximum number of frames being decoded or waiting for detection
+     */
+    public CameraIngestionService(Path spoolDirectory, Consumer<BufferedImage> detector, int decodeThreads, int maxInFlight) {
+        this(spoolDirectory, detector, decodeThreads, maxInFlight, CameraIngestionService::cameraIdFromFileName);
+    }
+
+    /**
+     * @param cameraIdResolver Works out which camera produced a file
+     */
+    public CameraIngestionService(Path spoolDirectory, Consumer<BufferedImage> detector, int decodeThreads,
+                                  int maxInFlight, Function<Path, String> cameraIdResolver) {
+        this(spoolDirectory, detector, decodeThreads, maxInFlight, cameraIdResolver, new FrameBufferPool());
+    }
+
+    /**
+     * @param framePool Pool to decode images into, which may be shared with other camera feeds
+     */
+    public CameraIngestionService(Path spoolDirectory, Consumer<BufferedImage> detector, int decodeThreads,
+                                  int maxInFlight, Function<Path, String> cameraIdResolver, FrameBufferPool framePool) {
+        if (decodeThreads < 1 || maxInFlight < 1) {
+            throw new IllegalArgumentException("decodeThreads and maxInFlight must be positive");
+        }
+        this.spoolDirectory = spoolDirectory;
+        this.detector = detector;
+        this.maxInFlight = maxInFlight;
+        this.cameraIdResolver = cameraIdResolver;
+        this.framePool = framePool;
+        this.decoders = ThreadLocal.withInitial(() -> new FrameDecoder(framePool));
+        this.decodePool = Executors.newFixedThreadPool(decodeThreads, r -> {
+            Thread t = new Thread(r, "camera-decode");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Default camera naming convention: everything before the first '_' of the file name,
+     * for example {@code frontdoor_000123.jpg} comes from camera {@code frontdoor}.
+     */
+    public static String cameraIdFromFileName(Path file) {
+        String name = file.getFileName().toString();
+        int separator = name.indexOf('_');
+        return separator > 0 ? name.substring(0, separator) : "default";
+    }
+
+    /**
+     * Starts watching the spool directory.
+     *
+     * @throws IOException if the directory cannot be watched
+     */
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        watchService = FileSystems.getDefault().newWatchService();
+        spoolDirectory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE);
+        running = true;
+        watchThread = new Thread(this::watchLoop, "camera-spool-watch");
+        watchThread.setDaemon(true);
+        watchThread.start();
+        detectionThread = new Thread(this::detectionLoop, "camera-detection");
+        detectionThread.setDaemon(true);
+        detectionThread.start();
+    }
+
+    private void watchLoop() {
+        try {
+            while (running) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        continue;
+                    }
+                    Path name = (Path) event.context();
+                    String fileName = name.toString();
+                    if (fileName.startsWith(".") || fileName.endsWith(".tmp")) {
+                        continue;
+                    }
+                    offer(spoolDirectory.resolve(name));
+                }
+                if (!key.reset()) {
+                    break;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            //shutting down
+        }
+    }
+
+    /**
+     * Queues a new file for decoding. If the camera already has a file waiting to be decoded,
+     * that older file is dropped.
+     */
+    synchronized void offer(Path file) {
+        String cameraId = cameraIdResolver.apply(file);
+        PendingFile previous = undecoded.put(cameraId, new PendingFile(file, nextSequence++, System.currentTimeMillis()));
+        if (previous != null && !previous.file.equals(file)) {
+            droppedFrames++;
+        }
+        dispatchDecodes();
+    }
+
+    /**
+     * Starts decoding waiting files while there is room in flight.
+     */
+    private void dispatchDecodes() {
+        Iterator<Map.Entry<String, PendingFile>> it = undecoded.entrySet().iterator();
+        while (inFlight < maxInFlight && it.hasNext()) {
+            Map.Entry<String, PendingFile> entry = it.next();
+            it.remove();
+            inFlight++;
+            String cameraId = entry.getKey();
+            PendingFile pending = entry.getValue();
+            decodePool.execute(() -> decode(cameraId, pending));
+        }
+    }
+
+    private void decode(String cameraId, PendingFile pending) {
+        PooledFrame image = null;
+        try {
+            image = decoders.get().decode(pending.file);
+        } catch (IOException | RuntimeException e) {
+            //counted as failed below
+        }
+        synchronized (this) {
+            if (image == null) {
+                failedFrames++;
+                inFlight--;
+            } else if (!running) {
+                //shutting down, nobody will detect it
+                image.release();
+                inFlight--;
+            } else {
+                Frame frame = new Frame(image, pending.sequence, pending.arrivedMillis);
+                Frame previous = decoded.get(cameraId);
+                if (previous == null || previous.sequence < frame.sequence) {
+                    decoded.put(cameraId, frame);
+                }
+                if (previous != null) {
+                    //one of the two frames is stale, whichever finished decoding first
+                    (previous.sequence < frame.sequence ? previous : frame).image.release();
+                    droppedFrames++;
+                    inFlight--;
+                }
+                notifyAll();
+            }
+            dispatchDecodes();
+        }
+    }
+
+    private void detectionLoop() {
+        while (running) {
+            Frame frame;
+            String cameraId;
+            synchronized (this) {
+                while (running && decoded.isEmpty()) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (!running) {
+                    return;
+                }
+                Iterator<Map.Entry<String, Frame>> it = decoded.entrySet().iterator();
+                Map.Entry<String, Frame> next = it.next();
+                cameraId = next.getKey();
+                frame = next.getValue();
+                it.remove();
+            }
+            CameraFrameEvent event = new CameraFrameEvent();
+            event.begin();
+            boolean failed = false;
+            try {
+                detector.accept(frame.image.getImage());
+            } catch (RuntimeException e) {
+                failed = true;
+            } finally {
+                frame.image.release();
+            }
+            long lag = System.currentTimeMillis() - frame.arrivedMillis;
+            if (event.shouldCommit()) {
+                event.cameraId = cameraId;
+                event.lag = lag;
+                event.failed = failed;
+                event.commit();
+            }
+            synchronized (this) {
+                if (failed) {
+                    failedFrames++;
+                } else {
+                    processedFrames++;
+                }
+                lastLagMillis = lag;
+                maxLagMillis = Math.max(maxLagMillis, lag);
+                inFlight--;
+                dispatchDecodes();
+            }
+        }
+    }
+
+    /**
+     * @return the number of frames handed to the detector
+     */
+    public synchronized long getProcessedFrameCount() {
+        return processedFrames;
+    }
+
+    /**
+     * @return the number of stale frames dropped because a newer frame from the same camera arrived
+     */
+    public synchronized long getDroppedFrameCount() {
+        return droppedFrames;
+    }
+
+    /**
+     * @return the number of files that could not be decoded, or that the detector failed on
+     */
+    public synchronized long getFailedFrameCount() {
+        return failedFrames;
+    }
+
+    /**
+     * @return milliseconds between the most recently detected file arriving and its detection finishing
+     */
+    public synchronized long getLastLagMillis() {
+        return lastLagMillis;
+    }
+
+    /**
+     * @return the largest lag seen so far, in milliseconds
+     */
+    public synchronized long getMaxLagMillis() {
+        return maxLagMillis;
+    }
+
+    /**
+     * @return the number of frames currently being decoded or waiting for detection
+     */
+    public synchronized int getInFlightCount() {
+        return inFlight;
+    }
+
+    /**
+     * @return the pool images are decoded into, for its allocation metrics
+     */
+    public FrameBufferPool getFramePool() {
+        return framePool;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            running = false;
+            //frames nobody will detect any more go back to the pool
+            decoded.values().forEach(frame -> frame.image.release());
+            decoded.clear();
+            notifyAll();
+        }
+        if (watchService != null) {
+            watchService.close();
+        }
+        decodePool.shutdownNow();
+    }
+
+    private static final class PendingFile {
+        private final Path file;
+        private final long sequence;
+        private final long arrivedMillis;
+
+        private PendingFile(Path file, long sequence, long arrivedMillis) {
+            this.file = file;
+            this.sequence = sequence;
+            this.arrivedMillis = arrivedMillis;
+        }
+    }
+
+    private static final class Frame {
+        private final PooledFrame image;
+        private final long sequence;
+        private final long arrivedMillis;
+
+        private Frame(PooledFrame image, long sequence, long arrivedMillis) {
+            this.image = image;
+            this.sequence = sequence;
+            this.arrivedMillis = arrivedMillis;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.udacity.catpoint.security.service;
+
+/**
+ * Published by {@link SecurityService#detections()} for every camera image that is processed.
+ */
+public final class CatDetection {
+    private final boolean catDetected;
+    private final long timestampMillis;
+
+    public CatDetection(boolean catDetected, long timestampMillis) {
+        this.catDetected = catDetected;
+        this.timestampMillis = timestampMillis;
+    }
+
+    public boolean isCatDetected() {
+        return catDetected;
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "CatDetection{catDetected=" + catDetected + ", timestampMillis=" + timestampMillis + '}';
+    }
+}
@@ -0,0 +1,270 @@
+package com.udacity.catpoint.security.service;
+
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes events to any number of subscribers without ever blocking the publisher. Each
+ * subscriber has its own bounded buffer and only receives as many events as it has requested.
+ * When a buffer fills up, the subscriber's {@link OverflowPolicy} decides what happens, so a
+ * slow subscriber never holds up the security service or the other subscribers.
+ * <p>
+ * Signals to one subscriber are delivered in order by tasks on the executor, never on the
+ * thread calling {@link #submit}, unless the executor itself runs tasks inline.
+ *
+ * @param <T> The type of event
+ */
+public class EventPublisher<T> implements Flow.Publisher<T>, AutoCloseable {
+
+    private final Executor executor;
+    private final int defaultCapacity;
+    private final OverflowPolicy defaultPolicy;
+    private final CopyOnWriteArrayList<BufferedSubscription<T>> subscriptions = new CopyOnWriteArrayList<>();
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * @param executor        Runs the delivery to subscribers
+     * @param defaultCapacity Buffer size for subscribers that don't choose their own
+     * @param defaultPolicy   Overflow policy for subscribers that don't choose their own
+     */
+    public EventPublisher(Executor executor, int defaultCapacity, OverflowPolicy defaultPolicy) {
+        if (defaultCapacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        this.executor = Objects.requireNonNull(executor);
+        this.defaultCapacity = defaultCapacity;
+        this.defaultPolicy = Objects.requireNonNull(defaultPolicy);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        subscribe(subscriber, defaultCapacity, defaultPolicy);
+    }
+
+    /**
+     * Subscribe with a buffer size and overflow policy of the subscriber's own choosing.
+     *
+     * @param subscriber The subscriber
+     * @param capacity   How many undelivered events to hold for this subscriber
+     * @param policy     What to do with events that don't fit in the buffer
+     */
+    public void subscribe(Flow.Subscriber<? super T> subscriber, int capacity, OverflowPolicy policy) {
+        Objects.requireNonNull(subscriber);
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        BufferedSubscription<T> subscription = new BufferedSubscription<>(this, subscriber, capacity, Objects.requireNonNull(policy));
+        subscriptions.add(subscription);
+        //close may have missed the new subscription, in which case it completes straight away
+        if (closed) {
+            subscription.complete();
+        }
+        subscription.schedule();
+    }
+
+    /**
+     * Hand an event to every current subscriber. Never blocks.
+     *
+     * @param event The event
+     */
+    public void submit(T event) {
+        Objects.requireNonNull(event);
+        if (closed) {
+            throw new IllegalStateException("publisher is closed");
+        }
+        for (BufferedSubscription<T> subscription : subscriptions) {
+            subscription.offer(event);
+        }
+    }
+
+    /**
+     * Callers can skip building an event nobody will receive.
+     *
+     * @return true if at least one subscriber is attached
+     */
+    public boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * @return the number of events discarded because a subscriber's buffer was full
+     */
+    public long getDroppedEvents() {
+        return droppedEvents.get();
+    }
+
+    /**
+     * Completes every subscription once its buffered events have been delivered.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (BufferedSubscription<T> subscription : subscriptions) {
+            subscription.complete();
+            subscription.schedule();
+        }
+    }
+
+    /**
+     * The buffer and demand of one subscriber. All signals to the subscriber are sent from
+     * {@link #run}, and the work-in-progress counter makes sure only one run is active at a time.
+     */
+    private static final class BufferedSubscription<T> implements Flow.Subscription, Runnable {
+        private final EventPublisher<T> publisher;
+        private final Flow.Subscriber<? super T> subscriber;
+        private final int capacity;
+        private final OverflowPolicy policy;
+        private final AtomicInteger wip = new AtomicInteger();
+
+        //guarded by this
+        private final ArrayDeque<T> buffer = new ArrayDeque<>();
+        private long demand;
+        private boolean completed;
+        private Throwable error;
+        private boolean cancelled;
+
+        //only touched from run
+        private boolean subscribed;
+        private boolean terminated;
+
+        private BufferedSubscription(EventPublisher<T> publisher, Flow.Subscriber<? super T> subscriber,
+                                     int capacity, OverflowPolicy policy) {
+            this.publisher = publisher;
+            this.subscriber = subscriber;
+            this.capacity = capacity;
+            this.policy = policy;
+        }
+
+        private void offer(T event) {
+            synchronized (this) {
+                if (cancelled || completed || error != null) {
+                    return;
+                }
+                if (buffer.size() < capacity) {
+                    buffer.add(event);
+                } else {
+                    switch (policy) {
+                        case DROP -> publisher.droppedEvents.incrementAndGet();
+                        case LATEST -> {
+                            buffer.poll();
+                            buffer.add(event);
+                            publisher.droppedEvents.incrementAndGet();
+                        }
+                        case ERROR -> {
+                            publisher.droppedEvents.addAndGet(buffer.size() + 1L);
+                            buffer.clear();
+                            error = new IllegalStateException("subscriber buffer of " + capacity + " events overflowed");
+                        }
+                    }
+                }
+            }
+            schedule();
+        }
+
+        private synchronized void complete() {
+            completed = true;
+        }
+
+        @Override
+        public void request(long n) {
+            synchronized (this) {
+                if (n <= 0) {
+                    error = new IllegalArgumentException("request must be positive, was " + n);
+                    buffer.clear();
+                } else {
+                    demand += n;
+                    if (demand < 0) {
+                        //effectively unbounded
+                        demand = Long.MAX_VALUE;
+                    }
+                }
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (this) {
+                cancelled = true;
+                buffer.clear();
+            }
+            publisher.subscriptions.remove(this);
+        }
+
+        private void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                try {
+                    publisher.executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    //nothing can be delivered anymore
+                    cancel();
+                    wip.set(0);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                if (!subscribed) {
+                    subscribed = true;
+                    subscriber.onSubscribe(this);
+                }
+                drain();
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drain() {
+            while (!terminated) {
+                T event = null;
+                Throwable failure = null;
+                boolean done = false;
+                synchronized (this) {
+                    if (cancelled) {
+                        terminated = true;
+                        return;
+                    }
+                    if (error != null) {
+                        failure = error;
+                    } else if (demand > 0 && !buffer.isEmpty()) {
+                        event = buffer.poll();
+                        demand--;
+                    } else if (completed && buffer.isEmpty()) {
+                        done = true;
+                    } else {
+                        return;
+                    }
+                }
+                if (event != null) {
+                    try {
+                        subscriber.onNext(event);
+                    } catch (RuntimeException e) {
+                        //a subscriber that throws is treated as having cancelled
+                        cancel();
+                    }
+                } else {
+                    terminated = true;
+                    publisher.subscriptions.remove(this);
+                    if (failure != null) {
+                        subscriber.onError(failure);
+                    } else if (done) {
+                        subscriber.onComplete();
+                    }
+                }
+            }
+        }
+    }
+}
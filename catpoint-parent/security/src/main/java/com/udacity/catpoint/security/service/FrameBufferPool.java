@@ -0,0 +1,216 @@
+package com.udacity.catpoint.security.service;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pool of decoded frame buffers, so camera frames can be decoded into the rasters of earlier
+ * frames instead of allocating a new image for every frame. Buffers are pooled by width, height
+ * and {@link BufferedImage} type. Whoever acquires a frame must {@link PooledFrame#release()
+ * release} it once nothing refers to its image any more; at most {@code maxIdlePerShape} released
+ * buffers of each shape are kept for reuse.
+ * <p>
+ * In debug mode the pool remembers where every outstanding frame was acquired, and
+ * {@link #findLeaks(long)} reports the frames that have been held for too long. Debug mode is
+ * turned on by the constructor, or by the catpoint.framePool.debug system property.
+ * <p>
+ * The pool is thread safe.
+ */
+public class FrameBufferPool {
+
+    public static final int DEFAULT_MAX_IDLE_PER_SHAPE = 8;
+
+    private final int maxIdlePerShape;
+    private final boolean debug;
+
+    //guarded by this
+    private final Map<Shape, ArrayDeque<PooledFrame>> idle = new HashMap<>();
+    private final Set<PooledFrame> outstanding = ConcurrentHashMap.newKeySet();
+
+    //metrics, guarded by this
+    private long acquisitions;
+    private long allocations;
+    private long allocatedBytes;
+    private long discarded;
+
+    public FrameBufferPool() {
+        this(DEFAULT_MAX_IDLE_PER_SHAPE, Boolean.getBoolean("catpoint.framePool.debug"));
+    }
+
+    /**
+     * @param maxIdlePerShape How many released buffers of each shape are kept for reuse
+     * @param debug           Whether to record where frames are acquired, for {@link #findLeaks(long)}
+     */
+    public FrameBufferPool(int maxIdlePerShape, boolean debug) {
+        if (maxIdlePerShape < 0) {
+            throw new IllegalArgumentException("maxIdlePerShape must not be negative: " + maxIdlePerShape);
+        }
+        this.maxIdlePerShape = maxIdlePerShape;
+        this.debug = debug;
+    }
+
+    /**
+     * Takes a released buffer of the given shape, or allocates one if there is none. The contents
+     * of a reused buffer are whatever the previous frame left in it.
+     *
+     * @param imageType One of the predefined {@link BufferedImage} types, not TYPE_CUSTOM
+     */
+    public PooledFrame acquire(int width, int height, int imageType) {
+        Shape shape = new Shape(width, height, imageType);
+        PooledFrame frame;
+        synchronized (this) {
+            acquisitions++;
+            ArrayDeque<PooledFrame> buffers = idle.get(shape);
+            frame = buffers == null ? null : buffers.pollFirst();
+            if (frame == null) {
+                frame = new PooledFrame(this, shape, new BufferedImage(width, height, imageType));
+                allocations++;
+                allocatedBytes += sizeInBytes(frame.getImage());
+            }
+        }
+        frame.acquired(debug ? new Throwable("Frame acquired here") : null);
+        if (debug) {
+            outstanding.add(frame);
+        }
+        return frame;
+    }
+
+    /**
+     * Called by {@link PooledFrame#release()} once the frame is marked as released.
+     */
+    void release(PooledFrame frame) {
+        if (debug) {
+            outstanding.remove(frame);
+        }
+        synchronized (this) {
+            ArrayDeque<PooledFrame> buffers = idle.computeIfAbsent(frame.getShape(), s -> new ArrayDeque<>());
+            if (buffers.size() < maxIdlePerShape) {
+                //reuse the most recently released buffer first, it is the most likely to still be in cache
+                buffers.addFirst(frame);
+            } else {
+                discarded++;
+            }
+        }
+    }
+
+    /**
+     * Describes the frames that were acquired more than the given time ago and haven't been
+     * released, along with where they were acquired. Only available in debug mode.
+     *
+     * @return one description per leaked frame
+     */
+    public List<String> findLeaks(long heldForMillis) {
+        if (!debug) {
+            throw new IllegalStateException("Leak detection requires the pool to be in debug mode");
+        }
+        long now = System.currentTimeMillis();
+        List<String> leaks = new ArrayList<>();
+        for (PooledFrame frame : outstanding) {
+            long held = now - frame.getAcquiredMillis();
+            Throwable acquiredAt = frame.getAcquiredAt();
+            if (held < heldForMillis || acquiredAt == null) {
+                continue;
+            }
+            StringBuilder leak = new StringBuilder()
+                    .append(frame.getShape()).append(" held for ").append(held).append(" ms, acquired");
+            for (StackTraceElement element : acquiredAt.getStackTrace()) {
+                leak.append("\n\tat ").append(element);
+            }
+            leaks.add(leak.toString());
+        }
+        return leaks;
+    }
+
+    public boolean isDebug() {
+        return debug;
+    }
+
+    public synchronized long getAcquisitionCount() {
+        return acquisitions;
+    }
+
+    /**
+     * @return the number of buffers allocated because no released buffer of the right shape was
+     * available. Stops growing once the pool has warmed up.
+     */
+    public synchronized long getAllocationCount() {
+        return allocations;
+    }
+
+    /**
+     * @return the total size of the pixel data of every buffer allocated so far
+     */
+    public synchronized long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * @return the fraction of acquisitions that reused a buffer instead of allocating one
+     */
+    public synchronized double getReuseRatio() {
+        return acquisitions == 0 ? 0 : (double) (acquisitions - allocations) / acquisitions;
+    }
+
+    /**
+     * @return the number of released buffers dropped because the pool already had enough of their shape
+     */
+    public synchronized long getDiscardedCount() {
+        return discarded;
+    }
+
+    public synchronized int getIdleCount() {
+        return idle.values().stream().mapToInt(ArrayDeque::size).sum();
+    }
+
+    private static long sizeInBytes(BufferedImage image) {
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+    }
+
+    /**
+     * Dimensions and type of a buffer, the key buffers are pooled by.
+     */
+    static final class Shape {
+        private final int width;
+        private final int height;
+        private final int imageType;
+
+        Shape(int width, int height, int imageType) {
+            if (width < 1 || height < 1) {
+                throw new IllegalArgumentException("Invalid frame size " + width + "x" + height);
+            }
+            if (imageType == BufferedImage.TYPE_CUSTOM) {
+                throw new IllegalArgumentException("Custom image types can't be pooled");
+            }
+            this.width = width;
+            this.height = height;
+            this.imageType = imageType;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Shape shape = (Shape) o;
+            return width == shape.width && height == shape.height && imageType == shape.imageType;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(width, height, imageType);
+        }
+
+        @Override
+        public String toString() {
+            return width + "x" + height + " type " + imageType;
+        }
+    }
+}
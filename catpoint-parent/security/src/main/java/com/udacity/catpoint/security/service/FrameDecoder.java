@@ -0,0 +1,126 @@
+package com.udacity.catpoint.security.service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Decodes encoded camera frames into buffers from a {@link FrameBufferPool}, so decoding a
+ * stream of same-sized frames doesn't allocate a new image per frame. Image readers are kept
+ * and reused for every frame of the same format.
+ * <p>
+ * A decoder is not thread safe, use one per decoding thread.
+ */
+public class FrameDecoder {
+
+    private final FrameBufferPool pool;
+    private final List<ImageReader> readers = new ArrayList<>();
+
+    public FrameDecoder(FrameBufferPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * @return the decoded frame, which the caller must release, or null if the data isn't a supported image
+     */
+    public PooledFrame decode(byte[] data) throws IOException {
+        try (ImageInputStream in = new MemoryCacheImageInputStream(new ByteArrayInputStream(data))) {
+            return decode(in);
+        }
+    }
+
+    /**
+     * @return the decoded frame, which the caller must release, or null if the file isn't a supported image
+     */
+    public PooledFrame decode(Path file) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            return in == null ? null : decode(in);
+        }
+    }
+
+    private PooledFrame decode(ImageInputStream in) throws IOException {
+        ImageReader reader = readerFor(in);
+        if (reader == null) {
+            return null;
+        }
+        try {
+            reader.setInput(in, true, true);
+            int width = reader.getWidth(0);
+            int height = reader.getHeight(0);
+            int imageType = destinationType(reader);
+            PooledFrame frame = pool.acquire(width, height, imageType);
+            try {
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setDestination(frame.getImage());
+                reader.read(0, param);
+                return frame;
+            } catch (IOException | RuntimeException e) {
+                frame.release();
+                throw e;
+            }
+        } finally {
+            reader.setInput(null);
+        }
+    }
+
+    /**
+     * Finds a cached reader for the input's format, and only asks ImageIO for a new reader
+     * the first time a format is seen.
+     */
+    private ImageReader readerFor(ImageInputStream in) throws IOException {
+        for (ImageReader reader : readers) {
+            if (canDecode(reader, in)) {
+                return reader;
+            }
+        }
+        Iterator<ImageReader> candidates = ImageIO.getImageReaders(in);
+        if (!candidates.hasNext()) {
+            return null;
+        }
+        ImageReader reader = candidates.next();
+        readers.add(reader);
+        return reader;
+    }
+
+    private static boolean canDecode(ImageReader reader, ImageInputStream in) {
+        try {
+            return reader.getOriginatingProvider().canDecodeInput(in);
+        } catch (IOException ioe) {
+            //too short to tell, the same as ImageIO treats it
+            return false;
+        }
+    }
+
+    /**
+     * Picks the first image type the reader can decode into that can be pooled.
+     */
+    private static int destinationType(ImageReader reader) throws IOException {
+        Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+        while (types.hasNext()) {
+            int type = types.next().getBufferedImageType();
+            if (type != BufferedImage.TYPE_CUSTOM) {
+                return type;
+            }
+        }
+        //the reader can still convert to a standard type
+        return BufferedImage.TYPE_INT_RGB;
+    }
+
+    /**
+     * Releases the cached image readers.
+     */
+    public void dispose() {
+        readers.forEach(ImageReader::dispose);
+        readers.clear();
+    }
+}
@@ -0,0 +1,18 @@
+package com.udacity.catpoint.security.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A stream of encoded camera frames, read one frame at a time.
+ */
+public interface FrameSource extends Closeable {
+
+    /**
+     * Reads the next encoded frame, blocking until it is available.
+     *
+     * @return the encoded frame, or null when the stream has ended
+     * @throws IOException if the stream can't be read
+     */
+    byte[] nextFrame() throws IOException;
+}
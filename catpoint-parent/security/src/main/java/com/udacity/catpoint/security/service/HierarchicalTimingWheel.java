@@ -0,0 +1,279 @@
+package com.udacity.catpoint.security.service;
+
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hierarchical timing wheel for large numbers of coarse-grained timers. Scheduling and
+ * cancelling a timer are constant-time, and timers live in intrusive linked lists so a pending
+ * timer costs one small object instead of a task on a {@link ScheduledExecutorService}.
+ * <p>
+ * Level 0 has {@code wheelSize} slots of one tick each, and every further level covers the whole
+ * range of the level below in each slot. Timers move down a level whenever the wheel below wraps
+ * around, and fire when they reach their slot on level 0. Levels are added on demand, so there is
+ * no upper limit on the delay.
+ * <p>
+ * Time comes from the provided {@link Clock}. Call {@link #start()} to advance the wheel
+ * from a background thread, or call {@link #advance()} directly, which is handy in tests.
+ */
+public class HierarchicalTimingWheel implements AutoCloseable {
+
+    private final Clock clock;
+    private final long tickMillis;
+    private final int wheelBits;
+    private final int wheelMask;
+
+    private Bucket[][] levels;
+    private long currentTick;
+    private int size;
+    private ScheduledExecutorService ticker;
+
+    /**
+     * @param tickMillis Resolution of the wheel. Timers fire up to one tick late.
+     * @param wheelSize  Slots per level, must be a power of two
+     * @param clock      Source of the current time
+     */
+    public HierarchicalTimingWheel(long tickMillis, int wheelSize, Clock clock) {
+        if (tickMillis <= 0 || wheelSize < 2 || Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("tickMillis must be positive and wheelSize a power of two");
+        }
+        this.clock = clock;
+        this.tickMillis = tickMillis;
+        this.wheelBits = Integer.numberOfTrailingZeros(wheelSize);
+        this.wheelMask = wheelSize - 1;
+        this.levels = new Bucket[][]{newLevel()};
+        this.currentTick = clock.millis() / tickMillis;
+    }
+
+    private Bucket[] newLevel() {
+        Bucket[] level = new Bucket[wheelMask + 1];
+        for (int i = 0; i < level.length; i++) {
+            level[i] = new Bucket();
+        }
+        return level;
+    }
+
+    /**
+     * Schedules a task to run once the delay has passed. The task runs on the thread that
+     * advances the wheel, so it should be short or hand off to another executor.
+     *
+     * @param delayMillis Delay from now
+     * @param task        The task to run
+     * @return a handle that can cancel the timer
+     */
+    public synchronized Timeout schedule(long delayMillis, Runnable task) {
+        long deadline = clock.millis() + Math.max(0, delayMillis);
+        //round up so a timer never fires early, and never into a slot that has already been processed
+        long deadlineTick = Math.max((deadline + tickMillis - 1) / tickMillis, currentTick + 1);
+        Timeout timeout = new Timeout(this, deadlineTick, task);
+        insert(timeout);
+        size++;
+        return timeout;
+    }
+
+    private void insert(Timeout timeout) {
+        long delta = timeout.deadlineTick - currentTick;
+        int level = 0;
+        while (level < 62 / wheelBits && (delta >>> (wheelBits * (level + 1))) != 0) {
+            level++;
+        }
+        if (level >= levels.length) {
+            Bucket[][] grown = Arrays.copyOf(levels, level + 1);
+            for (int i = levels.length; i < grown.length; i++) {
+                grown[i] = newLevel();
+            }
+            levels = grown;
+        }
+        levels[level][(int) ((timeout.deadlineTick >>> (wheelBits * level)) & wheelMask)].add(timeout);
+    }
+
+    /**
+     * Advances the wheel to the current time of the clock, running every timer that is due.
+     *
+     * @return the number of timers that fired
+     */
+    public int advance() {
+        return advanceTo(clock.millis());
+    }
+
+    /**
+     * Advances the wheel to the given time, running every timer that is due. Tasks run after the
+     * wheel has been updated and outside of its lock, so they may schedule new timers.
+     *
+     * @param nowMillis The time to advance to
+     * @return the number of timers that fired
+     */
+    public int advanceTo(long nowMillis) {
+        Timeout expired = null;
+        synchronized (this) {
+            long targetTick = nowMillis / tickMillis;
+            while (currentTick < targetTick) {
+                if (size == 0) {
+                    //nothing to cascade or fire, so skip straight to the target
+                    currentTick = targetTick;
+                    break;
+                }
+                currentTick++;
+                cascade();
+                Bucket bucket = levels[0][(int) (currentTick & wheelMask)];
+                Timeout timeout = bucket.head;
+                bucket.head = null;
+                while (timeout != null) {
+                    Timeout next = timeout.next;
+                    timeout.bucket = null;
+                    timeout.prev = null;
+                    timeout.next = expired;
+                    timeout.state = Timeout.EXPIRED;
+                    expired = timeout;
+                    size--;
+                    timeout = next;
+                }
+            }
+        }
+        int fired = 0;
+        while (expired != null) {
+            Timeout next = expired.next;
+            expired.next = null;
+            expired.task.run();
+            fired++;
+            expired = next;
+        }
+        return fired;
+    }
+
+    /**
+     * Moves the timers of every higher level whose slot starts at the current tick one level down.
+     * Higher levels go first so that timers can trickle down several levels in one tick.
+     */
+    private void cascade() {
+        int top = 0;
+        while (top + 1 < levels.length && (currentTick & ((1L << (wheelBits * (top + 1))) - 1)) == 0) {
+            top++;
+        }
+        for (int level = top; level > 0; level--) {
+            Bucket bucket = levels[level][(int) ((currentTick >>> (wheelBits * level)) & wheelMask)];
+            Timeout timeout = bucket.head;
+            bucket.head = null;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                timeout.prev = null;
+                timeout.next = null;
+                insert(timeout);
+                timeout = next;
+            }
+        }
+    }
+
+    private synchronized boolean cancel(Timeout timeout) {
+        if (timeout.state != Timeout.PENDING) {
+            return false;
+        }
+        timeout.bucket.remove(timeout);
+        timeout.state = Timeout.CANCELLED;
+        size--;
+        return true;
+    }
+
+    /**
+     * @return the number of timers that have neither fired nor been cancelled
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Starts a daemon thread that advances the wheel once per tick.
+     */
+    public synchronized void start() {
+        if (ticker == null) {
+            ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "timing-wheel");
+                t.setDaemon(true);
+                return t;
+            });
+            ticker.scheduleAtFixedRate(this::advance, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+            ticker = null;
+        }
+    }
+
+    /**
+     * Handle for a scheduled timer.
+     */
+    public static final class Timeout {
+        private static final int PENDING = 0;
+        private static final int EXPIRED = 1;
+        private static final int CANCELLED = 2;
+
+        private final HierarchicalTimingWheel wheel;
+        private final long deadlineTick;
+        private final Runnable task;
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+        private volatile int state = PENDING;
+
+        private Timeout(HierarchicalTimingWheel wheel, long deadlineTick, Runnable task) {
+            this.wheel = wheel;
+            this.deadlineTick = deadlineTick;
+            this.task = task;
+        }
+
+        /**
+         * Stops the timer from firing.
+         *
+         * @return true if the timer was pending and is now cancelled
+         */
+        public boolean cancel() {
+            return wheel.cancel(this);
+        }
+
+        public boolean isExpired() {
+            return state == EXPIRED;
+        }
+
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+    }
+
+    /**
+     * Doubly linked list of timers sharing a slot.
+     */
+    private static final class Bucket {
+        private Timeout head;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            timeout.prev = null;
+            timeout.next = head;
+            if (head != null) {
+                head.prev = timeout;
+            }
+            head = timeout;
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+}
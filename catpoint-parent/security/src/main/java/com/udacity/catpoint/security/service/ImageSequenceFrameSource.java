@@ -0,0 +1,34 @@
+package com.udacity.catpoint.security.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reads a sequence of image files from a directory, in file name order, one file per frame.
+ */
+public class ImageSequenceFrameSource implements FrameSource {
+
+    private final Iterator<Path> files;
+
+    public ImageSequenceFrameSource(Path directory) throws IOException {
+        try (Stream<Path> listing = Files.list(directory)) {
+            List<Path> sorted = listing.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+            this.files = sorted.iterator();
+        }
+    }
+
+    @Override
+    public byte[] nextFrame() throws IOException {
+        return files.hasNext() ? Files.readAllBytes(files.next()) : null;
+    }
+
+    @Override
+    public void close() {
+        //nothing is held open between frames
+    }
+}
@@ -0,0 +1,26 @@
+package com.udacity.catpoint.security.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for one notification being handed to every status listener.
+ * Slow listeners show up as long durations here.
+ */
+@Name("com.udacity.catpoint.ListenerDispatch")
+@Label("Listener Dispatch")
+@Category({"Catpoint", "Security"})
+@Description("Status listeners were notified")
+@StackTrace(false)
+final class ListenerDispatchEvent extends Event {
+
+    @Label("Notification")
+    String notification;
+
+    @Label("Listeners")
+    int listeners;
+}
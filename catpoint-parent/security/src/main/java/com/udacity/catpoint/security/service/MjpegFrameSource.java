@@ -0,0 +1,225 @@
+package com.udacity.catpoint.security.service;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Reads JPEG frames from an MJPEG stream, such as a file or a socket connected to a camera.
+ * <p>
+ * Frames are found by walking the JPEG marker structure rather than by looking for multipart
+ * boundaries, so both multipart MJPEG and plain concatenated JPEGs work, and anything between
+ * frames is ignored. Only the current frame is buffered, never the whole stream, and a frame
+ * larger than the maximum frame size is dropped, so a stream that loses an end of image marker
+ * can't exhaust memory. After a corrupt or oversized frame, reading resumes at the next start of
+ * image.
+ */
+public class MjpegFrameSource implements FrameSource {
+
+    private static final int SOI = 0xD8;
+    private static final int EOI = 0xD9;
+    private static final int SOS = 0xDA;
+    private static final int DEFAULT_MAX_FRAME_BYTES = 8 * 1024 * 1024;
+
+    private final InputStream in;
+    private final int maxFrameBytes;
+    private byte[] buffer;
+    private int length;
+    //set when a frame was cut short by the start of the next one, which is already in the buffer
+    private boolean atStartOfImage;
+    private long droppedFrames;
+
+    public MjpegFrameSource(InputStream in) {
+        this(in, DEFAULT_MAX_FRAME_BYTES);
+    }
+
+    /**
+     * @param maxFrameBytes Size of the largest frame that is passed on
+     */
+    public MjpegFrameSource(InputStream in, int maxFrameBytes) {
+        if (maxFrameBytes < 4) {
+            throw new IllegalArgumentException("maxFrameBytes must be at least 4");
+        }
+        this.in = new BufferedInputStream(in);
+        this.maxFrameBytes = maxFrameBytes;
+        this.buffer = new byte[Math.min(64 * 1024, maxFrameBytes)];
+    }
+
+    public static MjpegFrameSource fromFile(Path file) throws IOException {
+        return new MjpegFrameSource(Files.newInputStream(file));
+    }
+
+    /**
+     * Connects to a camera that serves an MJPEG stream on a plain TCP socket.
+     */
+    public static MjpegFrameSource fromSocket(String host, int port) throws IOException {
+        Socket socket = new Socket(host, port);
+        return new MjpegFrameSource(socket.getInputStream()) {
+            @Override
+            public void close() throws IOException {
+                socket.close();
+            }
+        };
+    }
+
+    @Override
+    public byte[] nextFrame() throws IOException {
+        try {
+            while (true) {
+                if (!atStartOfImage && !seekStartOfImage()) {
+                    return null;
+                }
+                atStartOfImage = false;
+                try {
+                    if (readFrameBody()) {
+                        return Arrays.copyOf(buffer, length);
+                    }
+                } catch (FrameTooLargeException e) {
+                    //the rest of it is skipped like a corrupt frame
+                }
+                //corrupt frame, resynchronize on the next start of image
+                droppedFrames++;
+            }
+        } catch (EOFException eof) {
+            //the stream ended part way through a frame
+            return null;
+        }
+    }
+
+    /**
+     * Skips ahead to the next SOI marker and puts it at the start of the buffer.
+     *
+     * @return false if the stream ended first
+     */
+    private boolean seekStartOfImage() throws IOException {
+        int previous = -1;
+        int b;
+        while ((b = in.read()) != -1) {
+            if (previous == 0xFF && b == SOI) {
+                length = 0;
+                append(0xFF);
+                append(SOI);
+                return true;
+            }
+            previous = b;
+        }
+        return false;
+    }
+
+    /**
+     * Copies marker segments and entropy coded data into the buffer until the EOI marker.
+     *
+     * @return false if the data doesn't look like a JPEG
+     */
+    private boolean readFrameBody() throws IOException {
+        int marker = -1;
+        while (true) {
+            if (marker == -1) {
+                if (read() != 0xFF) {
+                    return false;
+                }
+                marker = read();
+            }
+            while (marker == 0xFF) {
+                //fill bytes before a marker
+                marker = read();
+            }
+            append(0xFF);
+            append(marker);
+            if (marker == EOI) {
+                return true;
+            }
+            if (marker == SOI) {
+                //the frame was cut short, keep the start of the next one
+                length = 0;
+                append(0xFF);
+                append(SOI);
+                atStartOfImage = true;
+                return false;
+            }
+            if (marker == 0x00) {
+                return false;
+            }
+            boolean standalone = marker == 0x01 || marker >= 0xD0 && marker <= 0xD7;
+            if (!standalone) {
+                int high = read();
+                int low = read();
+                append(high);
+                append(low);
+                int segmentLength = (high << 8 | low) - 2;
+                if (segmentLength < 0) {
+                    return false;
+                }
+                for (int i = 0; i < segmentLength; i++) {
+                    append(read());
+                }
+            }
+            marker = marker == SOS ? readEntropyCodedData() : -1;
+        }
+    }
+
+    /**
+     * Copies the entropy coded data after a start of scan.
+     *
+     * @return the marker that ends the data
+     */
+    private int readEntropyCodedData() throws IOException {
+        while (true) {
+            int b = read();
+            if (b != 0xFF) {
+                append(b);
+                continue;
+            }
+            int next = read();
+            while (next == 0xFF) {
+                next = read();
+            }
+            if (next == 0x00 || next >= 0xD0 && next <= 0xD7) {
+                //stuffed byte or restart marker, both are part of the data
+                append(0xFF);
+                append(next);
+                continue;
+            }
+            return next;
+        }
+    }
+
+    private int read() throws IOException {
+        int b = in.read();
+        if (b == -1) {
+            throw new EOFException();
+        }
+        return b;
+    }
+
+    private void append(int b) throws FrameTooLargeException {
+        if (length == buffer.length) {
+            if (length == maxFrameBytes) {
+                throw new FrameTooLargeException();
+            }
+            buffer = Arrays.copyOf(buffer, (int) Math.min((long) buffer.length * 2, maxFrameBytes));
+        }
+        buffer[length++] = (byte) b;
+    }
+
+    /**
+     * @return the number of corrupt, truncated and oversized frames that were skipped
+     */
+    public long getDroppedFrameCount() {
+        return droppedFrames;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private static class FrameTooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+    }
+}
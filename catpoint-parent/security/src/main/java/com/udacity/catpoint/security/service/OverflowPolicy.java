@@ -0,0 +1,19 @@
+package com.udacity.catpoint.security.service;
+
+/**
+ * What an {@link EventPublisher} does with a new event when a subscriber's buffer is full.
+ */
+public enum OverflowPolicy {
+    /**
+     * Discard the new event and keep the ones already buffered.
+     */
+    DROP,
+    /**
+     * Discard the oldest buffered event, so the subscriber always catches up to the newest ones.
+     */
+    LATEST,
+    /**
+     * Cancel the subscription and signal an error to the subscriber.
+     */
+    ERROR
+}
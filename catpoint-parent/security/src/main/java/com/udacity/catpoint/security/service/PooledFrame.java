@@ -0,0 +1,67 @@
+package com.udacity.catpoint.security.service;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * A buffer borrowed from a {@link FrameBufferPool}. The same object is handed out again every
+ * time its buffer is reused, so it must not be used after {@link #release()}.
+ */
+public final class PooledFrame implements AutoCloseable {
+
+    private final FrameBufferPool pool;
+    private final FrameBufferPool.Shape shape;
+    private final BufferedImage image;
+
+    private boolean released = true; //guarded by this
+    private volatile long acquiredMillis;
+    private volatile Throwable acquiredAt;
+
+    PooledFrame(FrameBufferPool pool, FrameBufferPool.Shape shape, BufferedImage image) {
+        this.pool = pool;
+        this.shape = shape;
+        this.image = image;
+    }
+
+    synchronized void acquired(Throwable acquiredAt) {
+        released = false;
+        this.acquiredMillis = System.currentTimeMillis();
+        this.acquiredAt = acquiredAt;
+    }
+
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /**
+     * Returns the buffer to its pool.
+     *
+     * @throws IllegalStateException if the frame has already been released
+     */
+    public void release() {
+        synchronized (this) {
+            if (released) {
+                throw new IllegalStateException("Frame " + shape + " released twice");
+            }
+            released = true;
+            acquiredAt = null;
+        }
+        pool.release(this);
+    }
+
+    @Override
+    public void close() {
+        release();
+    }
+
+    FrameBufferPool.Shape getShape() {
+        return shape;
+    }
+
+    long getAcquiredMillis() {
+        return acquiredMillis;
+    }
+
+    Throwable getAcquiredAt() {
+        return acquiredAt;
+    }
+}
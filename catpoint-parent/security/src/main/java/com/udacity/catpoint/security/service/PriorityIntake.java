@@ -0,0 +1,336 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.DetectionResult;
+import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.Sensor;
+
+import java.awt.image.BufferedImage;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Prioritized intake in front of {@link SecurityService}. Work that can raise an alarm, sensor
+ * activations and cat detections while the system is armed, goes to the high priority lane. Bulk
+ * and maintenance work such as arming changes, which reset every sensor, image processing and
+ * sensor imports goes to the low priority lane.
+ * <p>
+ * Every command is run by the executor of the thread that owns the service, one at a time. Each
+ * submitted command posts one task to that executor, and the task picks the next command only
+ * when it runs, so an activation submitted while a long command is running is next in line
+ * rather than behind everything queued before it. Low priority work is never starved for long:
+ * after a number of high priority commands in a row, a waiting low priority command runs next.
+ * <p>
+ * The intake measures how long commands waited and the worst case time from submitting an
+ * activation or detection to the alarm going off, see {@link #report()}. That includes alarms
+ * raised later by the entry delay running out: a high priority command that leaves its zone short
+ * of an alarm stays outstanding until the alarm goes off, the zone is disarmed, or the zone goes
+ * back to no alarm after having been pending.
+ */
+public class PriorityIntake {
+
+    public enum Lane {
+        HIGH,
+        LOW
+    }
+
+    private final SecurityService securityService;
+    private final Executor executor;
+    private final int maxHighInARow;
+    private final Queue<Command> high = new ConcurrentLinkedQueue<>();
+    private final Queue<Command> low = new ConcurrentLinkedQueue<>();
+    //only used on the thread that owns the service
+    private int highInARow;
+    private boolean running;
+    //submit time of the latest high priority command per zone, null for the system, that has not
+    //raised the alarm yet
+    private final Map<String, Outstanding> outstanding = new HashMap<>();
+
+    //metrics
+    private final AtomicLong highRun = new AtomicLong();
+    private final AtomicLong lowRun = new AtomicLong();
+    private final AtomicLong lowForced = new AtomicLong();
+    private final AtomicLong alarmsRaised = new AtomicLong();
+    private final AtomicLong worstHighWaitNanos = new AtomicLong();
+    private final AtomicLong worstLowWaitNanos = new AtomicLong();
+    private final AtomicLong worstActivationToAlarmNanos = new AtomicLong();
+
+    /**
+     * @param securityService The service that runs the commands
+     * @param executor        Executor that runs commands on the thread that owns the service
+     * @param maxHighInARow   How many high priority commands may run in a row while low
+     *                        priority work is waiting
+     */
+    public PriorityIntake(SecurityService securityService, Executor executor, int maxHighInARow) {
+        if (maxHighInARow < 1) {
+            throw new IllegalArgumentException("maxHighInARow must be at least 1");
+        }
+        this.securityService = securityService;
+        this.executor = executor;
+        this.maxHighInARow = maxHighInARow;
+        securityService.addStatusListener(new StatusListener() {
+            @Override
+            public void notify(AlarmStatus status) {
+                //changes made by a command are settled once it has finished
+                if (!running) {
+                    settleOutstanding();
+                }
+            }
+
+            @Override
+            public void catDetected(boolean catDetected) {
+            }
+
+            @Override
+            public void sensorStatusChanged() {
+            }
+        });
+    }
+
+    /**
+     * Activations while the sensor's zone is armed go to the high priority lane, anything else to
+     * the low priority lane. The arming status is read on the caller's thread, so an activation
+     * racing an arming change may land in the lane for the old status.
+     */
+    public CompletableFuture<Void> changeSensorActivationStatus(Sensor sensor, Boolean active) {
+        boolean urgent = active && isArmed(sensor.getZone());
+        return submit(urgent ? Lane.HIGH : Lane.LOW, () -> securityService.changeSensorActivationStatus(sensor, active),
+                urgent, sensor.getZone());
+    }
+
+    /**
+     * Same lanes as {@link #changeSensorActivationStatus}, for raw readings that go through the
+     * service's debounce stage.
+     */
+    public CompletableFuture<Void> reportSensorReading(Sensor sensor, boolean active) {
+        boolean urgent = active && isArmed(sensor.getZone());
+        return submit(urgent ? Lane.HIGH : Lane.LOW, () -> securityService.reportSensorReading(sensor, active),
+                urgent, sensor.getZone());
+    }
+
+    /**
+     * Cats detected while the system is armed go to the high priority lane, other frames to the
+     * low priority lane. The frame should already have been through detection, off the thread
+     * that owns the service.
+     */
+    public CompletableFuture<Void> processDetection(DetectionResult detection) {
+        boolean urgent = isArmed(null) && detection.containsCat(securityService.getCatConfidenceThreshhold());
+        return submit(urgent ? Lane.HIGH : Lane.LOW, () -> securityService.processDetection(detection), urgent, null);
+    }
+
+    /**
+     * Detection runs on the owning thread in {@link SecurityService#processImage}, so frames go
+     * to the low priority lane. Use {@link #processDetection} to have cats handled promptly.
+     */
+    public CompletableFuture<Void> processImage(BufferedImage image) {
+        return submit(Lane.LOW, () -> securityService.processImage(image));
+    }
+
+    public CompletableFuture<Void> setArmingStatus(ArmingStatus armingStatus) {
+        return submit(Lane.LOW, () -> securityService.setArmingStatus(armingStatus));
+    }
+
+    public CompletableFuture<Void> setZoneArmingStatus(String zone, ArmingStatus armingStatus) {
+        return submit(Lane.LOW, () -> securityService.setZoneArmingStatus(zone, armingStatus));
+    }
+
+    public CompletableFuture<Void> addSensor(Sensor sensor) {
+        return submit(Lane.LOW, () -> securityService.addSensor(sensor));
+    }
+
+    public CompletableFuture<Void> addSensors(Collection<Sensor> sensors) {
+        return submit(Lane.LOW, () -> securityService.addSensors(sensors));
+    }
+
+    public CompletableFuture<Void> removeSensor(Sensor sensor) {
+        return submit(Lane.LOW, () -> securityService.removeSensor(sensor));
+    }
+
+    /**
+     * Runs any other work against the service in the given lane.
+     *
+     * @return completes once the command has run, or exceptionally if it failed
+     */
+    public CompletableFuture<Void> submit(Lane lane, Runnable command) {
+        return submit(lane, command, false, null);
+    }
+
+    private CompletableFuture<Void> submit(Lane lane, Runnable action, boolean canRaiseAlarm, String zone) {
+        Command command = new Command(lane, action, canRaiseAlarm, zone);
+        (lane == Lane.HIGH ? high : low).add(command);
+        executor.execute(this::runNext);
+        return command.done;
+    }
+
+    private void runNext() {
+        Command command = next();
+        if (command == null) {
+            return;
+        }
+        long started = System.nanoTime();
+        max(command.lane == Lane.HIGH ? worstHighWaitNanos : worstLowWaitNanos, started - command.submittedNanos);
+        boolean alarmBefore = command.canRaiseAlarm && isAlarm(command.zone);
+        running = true;
+        try {
+            command.action.run();
+            command.done.complete(null);
+        } catch (RuntimeException e) {
+            command.done.completeExceptionally(e);
+        } finally {
+            running = false;
+        }
+        if (command.canRaiseAlarm && !alarmBefore && isAlarm(command.zone)) {
+            outstanding.remove(command.zone);
+            alarmRaised(command.submittedNanos);
+        } else if (command.canRaiseAlarm && !alarmBefore) {
+            //the alarm may still go off once the entry delay or the debounce window runs out
+            outstanding.put(command.zone, new Outstanding(command.submittedNanos));
+        }
+        settleOutstanding();
+    }
+
+    /**
+     * Records the alarms outstanding commands have set off since, and forgets the commands whose
+     * zone is disarmed or has gone from pending back to no alarm.
+     */
+    private void settleOutstanding() {
+        for (Iterator<Map.Entry<String, Outstanding>> it = outstanding.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Outstanding> entry = it.next();
+            String zone = entry.getKey();
+            AlarmStatus status = zone == null ? securityService.getAlarmStatus() : securityService.getZoneAlarmStatus(zone);
+            if (status == AlarmStatus.ALARM) {
+                it.remove();
+                alarmRaised(entry.getValue().submittedNanos);
+            } else if (status == AlarmStatus.PENDING_ALARM) {
+                entry.getValue().pendingSeen = true;
+            } else if (entry.getValue().pendingSeen || !isArmed(zone)) {
+                it.remove();
+            }
+        }
+    }
+
+    private void alarmRaised(long submittedNanos) {
+        alarmsRaised.incrementAndGet();
+        max(worstActivationToAlarmNanos, System.nanoTime() - submittedNanos);
+    }
+
+    /**
+     * Picks the high priority lane first, unless it has had its turn too many times in a row
+     * while low priority work was waiting.
+     */
+    private Command next() {
+        if (!high.isEmpty() && (highInARow < maxHighInARow || low.isEmpty())) {
+            highInARow++;
+            highRun.incrementAndGet();
+            return high.poll();
+        }
+        if (!high.isEmpty()) {
+            lowForced.incrementAndGet();
+        }
+        highInARow = 0;
+        Command command = low.poll();
+        if (command != null) {
+            lowRun.incrementAndGet();
+        }
+        return command;
+    }
+
+    private boolean isArmed(String zone) {
+        return (zone == null ? securityService.getArmingStatus() : securityService.getZoneArmingStatus(zone))
+                != ArmingStatus.DISARMED;
+    }
+
+    private boolean isAlarm(String zone) {
+        return (zone == null ? securityService.getAlarmStatus() : securityService.getZoneAlarmStatus(zone))
+                == AlarmStatus.ALARM;
+    }
+
+    private static void max(AtomicLong worst, long nanos) {
+        worst.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * @return the number of commands waiting in a lane
+     */
+    public int getQueued(Lane lane) {
+        return (lane == Lane.HIGH ? high : low).size();
+    }
+
+    /**
+     * @return the number of commands run from a lane
+     */
+    public long getRun(Lane lane) {
+        return (lane == Lane.HIGH ? highRun : lowRun).get();
+    }
+
+    /**
+     * @return the number of low priority commands run ahead of waiting high priority ones to
+     * keep the low priority lane from starving
+     */
+    public long getLowForced() {
+        return lowForced.get();
+    }
+
+    /**
+     * @return the longest time a command waited in a lane before it ran
+     */
+    public long getWorstWaitNanos(Lane lane) {
+        return (lane == Lane.HIGH ? worstHighWaitNanos : worstLowWaitNanos).get();
+    }
+
+    /**
+     * @return the number of high priority activations and detections that set off the alarm,
+     * straight away or once the entry delay ran out
+     */
+    public long getAlarmsRaised() {
+        return alarmsRaised.get();
+    }
+
+    /**
+     * @return the longest time from submitting an activation or detection to the alarm it set
+     * off, or 0 if none has
+     */
+    public long getWorstActivationToAlarmNanos() {
+        return worstActivationToAlarmNanos.get();
+    }
+
+    public String report() {
+        return String.format("high: %d run, worst wait %.1f ms; low: %d run (%d ahead of high), worst wait %.1f ms; "
+                        + "%d alarms raised, worst activation-to-alarm %.1f ms",
+                highRun.get(), worstHighWaitNanos.get() / 1e6, lowRun.get(), lowForced.get(),
+                worstLowWaitNanos.get() / 1e6, alarmsRaised.get(), worstActivationToAlarmNanos.get() / 1e6);
+    }
+
+    private static class Outstanding {
+        private final long submittedNanos;
+        private boolean pendingSeen;
+
+        private Outstanding(long submittedNanos) {
+            this.submittedNanos = submittedNanos;
+        }
+    }
+
+    private static class Command {
+        private final Lane lane;
+        private final Runnable action;
+        private final boolean canRaiseAlarm;
+        private final String zone;
+        private final long submittedNanos = System.nanoTime();
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private Command(Lane lane, Runnable action, boolean canRaiseAlarm, String zone) {
+            this.lane = lane;
+            this.action = action;
+            this.canRaiseAlarm = canRaiseAlarm;
+            this.zone = zone;
+        }
+    }
+}
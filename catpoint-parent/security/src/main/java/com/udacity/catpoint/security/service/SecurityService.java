@@ -1,16 +1,28 @@
 package com.udacity.catpoint.security.service;
 
+import com.udacity.catpoint.image.service.DetectionResult;
 import com.udacity.catpoint.image.service.ImageService;
 import com.udacity.catpoint.security.application.StatusListener;
 import com.udacity.catpoint.security.data.AlarmStatus;
 import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.MappedStateWriter;
 import com.udacity.catpoint.security.data.SecurityRepository;
 import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorHistoryStore;
+import com.udacity.catpoint.security.data.SensorType;
 
 import java.awt.image.BufferedImage;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 
 /**
  * Service that receives information about changes to the security system. Responsible for
@@ -23,13 +35,52 @@ public class SecurityService {
 
     private ImageService imageService;
     private SecurityRepository securityRepository;
+    private AlarmRuleEngine alarmRuleEngine;
     private Set<StatusListener> statusListeners = new HashSet<>();
     private boolean isCatDetected;
+    private float catConfidenceThreshhold = 50.0f;
+    //labels of the last frame, if it was processed with processDetection
+    private DetectionResult lastDetection;
+
+    //entry/exit delays, only used once enableAlarmDelays has been called
+    private HierarchicalTimingWheel timingWheel;
+    private Executor timerExecutor;
+    private long entryDelayMillis;
+    private long exitDelayMillis;
+    private HierarchicalTimingWheel.Timeout entryDelayTimeout;
+    private HierarchicalTimingWheel.Timeout exitDelayTimeout;
+    private long entryDelayGeneration;
+    private long exitDelayGeneration;
+    private final Map<String, ZoneDelays> zoneDelays = new HashMap<>();
+
+    //event streams for consumers outside the UI
+    private final EventPublisher<AlarmChange> alarmPublisher =
+            new EventPublisher<>(ForkJoinPool.commonPool(), Flow.defaultBufferSize(), OverflowPolicy.DROP);
+    private final EventPublisher<SensorChange> sensorPublisher =
+            new EventPublisher<>(ForkJoinPool.commonPool(), Flow.defaultBufferSize(), OverflowPolicy.DROP);
+    private final EventPublisher<CatDetection> detectionPublisher =
+            new EventPublisher<>(ForkJoinPool.commonPool(), Flow.defaultBufferSize(), OverflowPolicy.DROP);
+
+    //state file for other processes, only used once publishStateTo has been called
+    private MappedStateWriter stateWriter;
+    //activation history, only used once recordHistoryTo has been called
+    private SensorHistoryStore historyStore;
+    //debounce stage for raw readings, only used once debounceReadingsWith has been called
+    private SensorDebouncer sensorDebouncer;
+    //heartbeat supervision, only used once superviseSensors has been called
+    private SensorSupervisor sensorSupervisor;
+    private final Set<UUID> offlineSensors = new HashSet<>();
+    private boolean escalateOfflineSensors;
 
 
     public SecurityService(SecurityRepository securityRepository, ImageService imageService) {
+        this(securityRepository, imageService, AlarmRuleEngine.withDefaultRules());
+    }
+
+    public SecurityService(SecurityRepository securityRepository, ImageService imageService, AlarmRuleEngine alarmRuleEngine) {
         this.securityRepository = securityRepository;
         this.imageService = imageService;
+        this.alarmRuleEngine = alarmRuleEngine;
         this.isCatDetected = false;
     }
 
@@ -40,21 +91,39 @@ public class SecurityService {
      * @param armingStatus
      */
     public void setArmingStatus(ArmingStatus armingStatus) {
-        if (armingStatus == ArmingStatus.DISARMED) {
-            setAlarmStatus(AlarmStatus.NO_ALARM);
-        } else {
-            if (isCatDetected) {
-                setAlarmStatus(AlarmStatus.ALARM);
+        ArmingStatusChangeEvent event = new ArmingStatusChangeEvent();
+        event.begin();
+        applyAlarmRules(AlarmEvent.ARMING_CHANGED, armingStatus, securityRepository.getAlarmStatus(), null);
+        //zones without their own arming status follow the system-wide one
+        Set<String> followingZones = new HashSet<>();
+        for (String zone : securityRepository.getZones()) {
+            if (securityRepository.getZoneArmingStatus(zone) == null) {
+                followingZones.add(zone);
+                applyZoneAlarmRules(zone, AlarmEvent.ARMING_CHANGED, armingStatus, null);
             }
-            ConcurrentSkipListSet<Sensor> sensors = new ConcurrentSkipListSet<>(getSensors());
-            sensors.forEach(sensor -> {
-                changeSensorActivationStatus(sensor, false);
+        }
+        if (armingStatus != ArmingStatus.DISARMED) {
+            //the repository hands out an immutable snapshot, so it can be iterated while sensors are updated
+            //resetting a sensor is not a report from it, so offline sensors stay offline
+            getSensors().forEach(sensor -> {
+                updateSensorActivationStatus(sensor, false);
             });
         }
+        restartExitDelay(null, armingStatus);
+        followingZones.forEach(zone -> restartExitDelay(zone, armingStatus));
         securityRepository.setArmingStatus(armingStatus);
-        statusListeners.forEach(StatusListener::sensorStatusChanged);
+        dispatch("sensorStatusChanged", StatusListener::sensorStatusChanged);
         //statusListeners.forEach(StatusListener::notify);
+        publishState();
+        commitArmingEvent(event, null, armingStatus);
+    }
 
+    private static void commitArmingEvent(ArmingStatusChangeEvent event, String zone, ArmingStatus armingStatus) {
+        if (event.shouldCommit()) {
+            event.zone = zone;
+            event.armingStatus = String.valueOf(armingStatus);
+            event.commit();
+        }
     }
 
     /**
@@ -64,15 +133,280 @@ public class SecurityService {
      * @param cat True if a cat is detected, otherwise false.
      */
     private void catDetected(Boolean cat) {
-        if (cat && getArmingStatus() == ArmingStatus.ARMED_HOME) {
-            setAlarmStatus(AlarmStatus.ALARM);
-        } else if (!cat && getSensorsState()) {
-            setAlarmStatus(AlarmStatus.ALARM);
+        applyAlarmRules(cat ? AlarmEvent.CAT_DETECTED : AlarmEvent.CAT_CLEARED,
+                securityRepository.getArmingStatus(), securityRepository.getAlarmStatus(), null);
+
+        dispatch("catDetected", sl -> sl.catDetected(cat));
+        if (detectionPublisher.hasSubscribers()) {
+            detectionPublisher.submit(new CatDetection(cat, System.currentTimeMillis()));
+        }
+        publishState();
+    }
+
+    /**
+     * Internal method that asks the rule engine how the alarm status should react to an event,
+     * and applies the result.
+     *
+     * @param event        The event that happened
+     * @param armingStatus The arming status to evaluate the event against
+     * @param alarmStatus  The current alarm status
+     * @param sensorType   The type of the sensor involved, or null if the event isn't about a sensor
+     */
+    private void applyAlarmRules(AlarmEvent event, ArmingStatus armingStatus, AlarmStatus alarmStatus, SensorType sensorType) {
+        boolean anySensorActive = alarmRuleEngine.dependsOnSensorState(event) && getSensorsState();
+        AlarmStatus next = alarmRuleEngine.evaluate(event, armingStatus, alarmStatus, sensorType, isCatDetected, anySensorActive);
+        if (next != null) {
+            setAlarmStatus(next);
+        }
+    }
+
+    /**
+     * Turn on entry and exit delays. A pending alarm escalates through the alarm rules once the
+     * entry delay has passed. After arming, the exit delay gives people time to leave: activations
+     * while it runs are evaluated as {@link AlarmEvent#SENSOR_ACTIVATED_DURING_EXIT} and no entry
+     * delay starts. When it ends the alarm rules decide what happens to any pending alarm, and
+     * the entry delay starts for one that is still pending.
+     *
+     * @param timingWheel      The timing wheel that tracks the delays, may be shared between services
+     * @param timerExecutor    Executor that runs expired delays on the thread that owns this service
+     * @param entryDelayMillis Delay before a pending alarm escalates, or 0 to disable
+     * @param exitDelayMillis  Delay after arming before pending alarms are resolved, or 0 to disable
+     */
+    public void enableAlarmDelays(HierarchicalTimingWheel timingWheel, Executor timerExecutor,
+                                  long entryDelayMillis, long exitDelayMillis) {
+        this.timingWheel = timingWheel;
+        this.timerExecutor = timerExecutor;
+        this.entryDelayMillis = entryDelayMillis;
+        this.exitDelayMillis = exitDelayMillis;
+    }
+
+    /**
+     * Internal method that schedules a delay. A delay that was cancelled or replaced after it had
+     * already fired is recognised by its generation and ignored.
+     *
+     * @param zone The zone the delay belongs to, or null for the system-wide delays
+     */
+    private HierarchicalTimingWheel.Timeout scheduleDelay(String zone, long delayMillis, AlarmEvent event, long generation) {
+        return timingWheel.schedule(delayMillis, () -> timerExecutor.execute(() -> delayExpired(zone, event, generation)));
+    }
+
+    private void delayExpired(String zone, AlarmEvent event, long generation) {
+        if (zone != null) {
+            ZoneDelays delays = zoneDelays.get(zone);
+            if (delays == null || !delays.expire(event, generation)) {
+                return;
+            }
+            applyZoneAlarmRules(zone, event, getZoneArmingStatus(zone), null);
+            if (event == AlarmEvent.EXIT_DELAY_EXPIRED) {
+                updateZoneEntryDelay(zone, getZoneAlarmStatus(zone));
+            }
+            return;
+        }
+        if (event == AlarmEvent.EXIT_DELAY_EXPIRED) {
+            if (exitDelayTimeout == null || generation != exitDelayGeneration) {
+                return;
+            }
+            exitDelayTimeout = null;
+        } else {
+            if (entryDelayTimeout == null || generation != entryDelayGeneration) {
+                return;
+            }
+            entryDelayTimeout = null;
+        }
+        applyAlarmRules(event, securityRepository.getArmingStatus(), securityRepository.getAlarmStatus(), null);
+        if (event == AlarmEvent.EXIT_DELAY_EXPIRED) {
+            updateEntryDelay(securityRepository.getAlarmStatus());
+        }
+    }
+
+    /**
+     * Internal method that cancels the exit delay of the system or a zone, and starts a new one
+     * unless it is being disarmed.
+     */
+    private void restartExitDelay(String zone, ArmingStatus armingStatus) {
+        boolean start = armingStatus != ArmingStatus.DISARMED && timingWheel != null && exitDelayMillis > 0;
+        if (zone == null) {
+            cancelTimeout(exitDelayTimeout);
+            exitDelayTimeout = start
+                    ? scheduleDelay(null, exitDelayMillis, AlarmEvent.EXIT_DELAY_EXPIRED, ++exitDelayGeneration)
+                    : null;
+            return;
+        }
+        ZoneDelays delays = zoneDelays.computeIfAbsent(zone, z -> new ZoneDelays());
+        cancelTimeout(delays.exitTimeout);
+        delays.exitTimeout = start
+                ? scheduleDelay(zone, exitDelayMillis, AlarmEvent.EXIT_DELAY_EXPIRED, ++delays.exitGeneration)
+                : null;
+    }
+
+    private static void cancelTimeout(HierarchicalTimingWheel.Timeout timeout) {
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    /**
+     * Internal method that starts the entry delay when the system becomes pending,
+     * and stops it when it leaves the pending state.
+     */
+    private void updateEntryDelay(AlarmStatus status) {
+        if (status != AlarmStatus.PENDING_ALARM) {
+            cancelTimeout(entryDelayTimeout);
+            entryDelayTimeout = null;
+        } else if (entryDelayTimeout == null && exitDelayTimeout == null
+                && timingWheel != null && entryDelayMillis > 0) {
+            entryDelayTimeout = scheduleDelay(null, entryDelayMillis, AlarmEvent.ENTRY_DELAY_EXPIRED, ++entryDelayGeneration);
+        }
+    }
+
+    /**
+     * Internal method that does the same as {@link #updateEntryDelay} for a single zone.
+     */
+    private void updateZoneEntryDelay(String zone, AlarmStatus status) {
+        ZoneDelays delays = zoneDelays.computeIfAbsent(zone, z -> new ZoneDelays());
+        if (status != AlarmStatus.PENDING_ALARM) {
+            cancelTimeout(delays.entryTimeout);
+            delays.entryTimeout = null;
+        } else if (delays.entryTimeout == null && delays.exitTimeout == null
+                && timingWheel != null && entryDelayMillis > 0) {
+            delays.entryTimeout = scheduleDelay(zone, entryDelayMillis, AlarmEvent.ENTRY_DELAY_EXPIRED,
+                    ++delays.entryGeneration);
+        }
+    }
+
+    /**
+     * Publish the system state into a memory-mapped file after every change, so other processes
+     * can read it without going through this service.
+     *
+     * @param stateWriter The state file to publish into
+     */
+    public void publishStateTo(MappedStateWriter stateWriter) {
+        this.stateWriter = stateWriter;
+        publishState();
+    }
+
+    private void publishState() {
+        if (stateWriter == null) {
+            return;
+        }
+        AlarmStatus systemAlarmStatus = securityRepository.getAlarmStatus();
+        stateWriter.write(mostSevere(systemAlarmStatus, securityRepository.getHighestZoneAlarmStatus()), systemAlarmStatus,
+                securityRepository.getArmingStatus(), isCatDetected,
+                securityRepository.getSensorsVersion(), securityRepository.getSensors());
+    }
+
+    /**
+     * Record every sensor activation change and alarm in a history store.
+     *
+     * @param historyStore The store to record into
+     */
+    public void recordHistoryTo(SensorHistoryStore historyStore) {
+        this.historyStore = historyStore;
+    }
+
+    /**
+     * Pass raw readings from {@link #reportSensorReading} through a debounce stage, so only
+     * settled transitions change the activation status of a sensor.
+     */
+    public void debounceReadingsWith(SensorDebouncer sensorDebouncer) {
+        this.sensorDebouncer = sensorDebouncer;
+    }
+
+    /**
+     * Report a raw reading from a sensor. The reading goes through the debounce stage if there is
+     * one, otherwise it is applied straight away. Listeners are told once it has been applied.
+     *
+     * @param sensor The sensor that reported
+     * @param active The activation state it reported
+     */
+    public void reportSensorReading(Sensor sensor, boolean active) {
+        //the reading is a heartbeat even if the debounce stage drops it
+        reportSensorHeartbeat(sensor);
+        if (sensorDebouncer != null) {
+            sensorDebouncer.submit(sensor, active);
         } else {
-            setAlarmStatus(AlarmStatus.NO_ALARM);
+            applySensorReading(sensor, active);
+        }
+    }
+
+    /**
+     * Applies a settled reading and tells listeners, called by the debounce stage.
+     */
+    void applySensorReading(Sensor sensor, boolean active) {
+        updateSensorActivationStatus(sensor, active);
+        dispatch("sensorStatusChanged", StatusListener::sensorStatusChanged);
+    }
+
+    /**
+     * Supervise sensor heartbeats. Every sensor is tracked from now on, and every report from a
+     * sensor counts as a heartbeat: readings, activation changes and the periodic check-ins passed
+     * to {@link #reportSensorHeartbeat(Sensor)}. Sensors being reset by an arming change have not
+     * reported. The supervisor reports sensors that stop reporting through {@link #sensorOffline(Sensor)}.
+     */
+    public void superviseSensors(SensorSupervisor sensorSupervisor) {
+        this.sensorSupervisor = sensorSupervisor;
+        getSensors().forEach(sensorSupervisor::track);
+    }
+
+    /**
+     * Report that a sensor has checked in without a change of state, such as the periodic
+     * supervision message of a wireless sensor. An offline sensor comes back online.
+     */
+    public void reportSensorHeartbeat(Sensor sensor) {
+        if (sensorSupervisor != null) {
+            sensorSupervisor.heartbeat(sensor);
         }
+    }
+
+    /**
+     * Whether a sensor going offline is evaluated against the alarm rules, which by default
+     * treat it like an activation while armed. Listeners are told either way.
+     */
+    public void setEscalateOfflineSensors(boolean escalateOfflineSensors) {
+        this.escalateOfflineSensors = escalateOfflineSensors;
+    }
+
+    /**
+     * Called by sensor supervision when a sensor has stopped reporting. An offline sensor counts
+     * as unsafe in {@link #getSensorsState()} until it reports again.
+     */
+    public void sensorOffline(Sensor sensor) {
+        if (!offlineSensors.add(sensor.getSensorId())) {
+            return;
+        }
+        if (escalateOfflineSensors) {
+            if (sensor.getZone() != null) {
+                applyZoneAlarmRules(sensor.getZone(), AlarmEvent.SENSOR_OFFLINE,
+                        getZoneArmingStatus(sensor.getZone()), sensor.getSensorType());
+            } else {
+                applyAlarmRules(AlarmEvent.SENSOR_OFFLINE, securityRepository.getArmingStatus(),
+                        securityRepository.getAlarmStatus(), sensor.getSensorType());
+            }
+        }
+        dispatch("sensorOnlineChanged", sl -> sl.sensorOnlineChanged(sensor, false));
+    }
+
+    /**
+     * Called by sensor supervision when an offline sensor reports again.
+     */
+    public void sensorOnline(Sensor sensor) {
+        if (offlineSensors.remove(sensor.getSensorId())) {
+            dispatch("sensorOnlineChanged", sl -> sl.sensorOnlineChanged(sensor, true));
+        }
+    }
+
+    public boolean isSensorOffline(Sensor sensor) {
+        return offlineSensors.contains(sensor.getSensorId());
+    }
 
-        statusListeners.forEach(sl -> sl.catDetected(cat));
+    /**
+     * Replace the alarm rules used to decide alarm status changes. Events keep being
+     * processed with the previous rules until the new ones are compiled.
+     *
+     * @param rules The rules in priority order, the first matching rule wins
+     */
+    public void reloadAlarmRules(List<AlarmRule> rules) {
+        alarmRuleEngine.reload(rules);
     }
 
     /**
@@ -88,62 +422,250 @@ public class SecurityService {
         statusListeners.remove(statusListener);
     }
 
+    /**
+     * Alarm status changes, for consumers that need flow control. Subscribers can pick their own
+     * buffer size and overflow policy with {@link EventPublisher#subscribe(Flow.Subscriber, int, OverflowPolicy)}.
+     *
+     * @return the publisher of alarm status changes
+     */
+    public EventPublisher<AlarmChange> alarmChanges() {
+        return alarmPublisher;
+    }
+
+    /**
+     * @return the publisher of sensor activations and deactivations
+     */
+    public EventPublisher<SensorChange> sensorChanges() {
+        return sensorPublisher;
+    }
+
+    /**
+     * @return the publisher of camera detection results
+     */
+    public EventPublisher<CatDetection> detections() {
+        return detectionPublisher;
+    }
+
     /**
      * Change the alarm status of the system and notify all listeners.
      *
      * @param status
      */
     public void setAlarmStatus(AlarmStatus status) {
+        AlarmStatusChangeEvent event = new AlarmStatusChangeEvent();
+        event.begin();
         securityRepository.setAlarmStatus(status);
-        statusListeners.forEach(sl -> sl.notify(status));
+        updateEntryDelay(status);
+        notifyAlarmStatus(status);
+        publishAlarmChange(null, status);
+        recordAlarm(status);
+        publishState();
+        commitAlarmEvent(event, null, status);
     }
 
     /**
-     * Internal method for updating the alarm status when a sensor has been activated.
+     * Change the alarm status of a single zone and notify all listeners of the resulting
+     * status of the whole site.
+     *
+     * @param zone   The zone, or null for the system-wide status
+     * @param status
      */
-    private void handleSensorActivated() {
-        if (securityRepository.getArmingStatus() == ArmingStatus.DISARMED) {
-            return; //no problem if the system is disarmed
+    public void setZoneAlarmStatus(String zone, AlarmStatus status) {
+        if (zone == null) {
+            setAlarmStatus(status);
+            return;
+        }
+        AlarmStatusChangeEvent event = new AlarmStatusChangeEvent();
+        event.begin();
+        securityRepository.setZoneAlarmStatus(zone, status);
+        updateZoneEntryDelay(zone, status);
+        notifyAlarmStatus(securityRepository.getAlarmStatus());
+        publishAlarmChange(zone, status);
+        recordAlarm(status);
+        publishState();
+        commitAlarmEvent(event, zone, status);
+    }
+
+    private void recordAlarm(AlarmStatus status) {
+        if (historyStore != null && status == AlarmStatus.ALARM) {
+            historyStore.recordAlarm();
+        }
+    }
+
+    private void publishAlarmChange(String zone, AlarmStatus status) {
+        if (alarmPublisher.hasSubscribers()) {
+            alarmPublisher.submit(new AlarmChange(zone, status, System.currentTimeMillis()));
+        }
+    }
+
+    private static void commitAlarmEvent(AlarmStatusChangeEvent event, String zone, AlarmStatus status) {
+        if (event.shouldCommit()) {
+            event.zone = zone;
+            event.alarmStatus = String.valueOf(status);
+            event.commit();
         }
-        switch (securityRepository.getAlarmStatus()) {
-            case NO_ALARM -> setAlarmStatus(AlarmStatus.PENDING_ALARM);
-            case PENDING_ALARM -> setAlarmStatus(AlarmStatus.ALARM);
+    }
+
+    /**
+     * Internal method that tells listeners about the most severe of the system-wide
+     * and zone alarm statuses.
+     */
+    private void notifyAlarmStatus(AlarmStatus systemStatus) {
+        if (statusListeners.isEmpty()) {
+            return;
         }
+        AlarmStatus status = mostSevere(systemStatus, securityRepository.getHighestZoneAlarmStatus());
+        dispatch("notify", sl -> sl.notify(status));
     }
 
     /**
-     * Internal method for updating the alarm status when a sensor has been deactivated
+     * Internal method that hands one notification to every listener, recording how long it took.
      */
-    private void handleSensorDeactivated() {
-        if (securityRepository.getAlarmStatus() == AlarmStatus.PENDING_ALARM) {
-            setAlarmStatus(AlarmStatus.NO_ALARM);
+    private void dispatch(String notification, Consumer<StatusListener> action) {
+        ListenerDispatchEvent event = new ListenerDispatchEvent();
+        event.begin();
+        statusListeners.forEach(action);
+        if (event.shouldCommit()) {
+            event.notification = notification;
+            event.listeners = statusListeners.size();
+            event.commit();
+        }
+    }
+
+    private static AlarmStatus mostSevere(AlarmStatus a, AlarmStatus b) {
+        if (a == null) {
+            return b;
         }
-//        switch (securityRepository.getAlarmStatus()) {
-//            case PENDING_ALARM -> setAlarmStatus(AlarmStatus.NO_ALARM);
-//            case ALARM -> setAlarmStatus(AlarmStatus.PENDING_ALARM);
-//        }
+        return b == null || a.compareTo(b) >= 0 ? a : b;
     }
 
     /**
      * Change the activation status for the specified sensor and update alarm status if necessary.
+     * The change is a report from the sensor, so it also counts as a heartbeat.
      *
      * @param sensor
      * @param active
      */
     public void changeSensorActivationStatus(Sensor sensor, Boolean active) {
-        // The logic hasn't to be checked when alarm is active
-        // Modify the logic to meet the request for test 6
-        if (securityRepository.getAlarmStatus() != AlarmStatus.ALARM) {
-            if (active) {
-                handleSensorActivated();
-            } else if (sensor.getActive()) {
-                handleSensorDeactivated();
-            }
+        //an offline sensor is back online before its reading is evaluated
+        reportSensorHeartbeat(sensor);
+        updateSensorActivationStatus(sensor, active);
+    }
+
+    /**
+     * Internal method that changes the activation status of a sensor without counting it as a
+     * report from the sensor.
+     */
+    private void updateSensorActivationStatus(Sensor sensor, Boolean active) {
+        SensorStateChangeEvent event = new SensorStateChangeEvent();
+        event.begin();
+        boolean wasActive = Boolean.TRUE.equals(sensor.getActive());
+        if (sensor.getZone() != null) {
+            changeZoneSensorActivationStatus(sensor, active);
+        } else {
+            changeSystemSensorActivationStatus(sensor, active);
+        }
+        publishState();
+        if (historyStore != null && wasActive != active) {
+            historyStore.record(sensor.getSensorId(), active);
+        }
+        if (sensorPublisher.hasSubscribers() && wasActive != active) {
+            sensorPublisher.submit(new SensorChange(sensor.getSensorId(), sensor.getName(), sensor.getSensorType(),
+                    sensor.getZone(), active, System.currentTimeMillis()));
+        }
+        if (event.shouldCommit()) {
+            event.sensorId = String.valueOf(sensor.getSensorId());
+            event.sensorType = String.valueOf(sensor.getSensorType());
+            event.zone = sensor.getZone();
+            event.wasActive = wasActive;
+            event.active = active;
+            event.commit();
+        }
+    }
+
+    private void changeSystemSensorActivationStatus(Sensor sensor, Boolean active) {
+        // deactivating a sensor that is already inactive is not an event
+        AlarmStatus alarmStatus = securityRepository.getAlarmStatus();
+        if (active) {
+            AlarmEvent activated = exitDelayTimeout != null ? AlarmEvent.SENSOR_ACTIVATED_DURING_EXIT : AlarmEvent.SENSOR_ACTIVATED;
+            applyAlarmRules(activated, securityRepository.getArmingStatus(), alarmStatus, sensor.getSensorType());
+        } else if (sensor.getActive()) {
+            applyAlarmRules(AlarmEvent.SENSOR_DEACTIVATED, securityRepository.getArmingStatus(), alarmStatus, sensor.getSensorType());
+        }
+        sensor.setActive(active);
+        securityRepository.updateSensor(sensor);
+    }
+
+    /**
+     * Internal method that evaluates a sensor change against its own zone only: the zone's
+     * arming status, which falls back to the system-wide one, its alarm status and its
+     * active sensor count. Other zones are not looked at.
+     */
+    private void changeZoneSensorActivationStatus(Sensor sensor, Boolean active) {
+        String zone = sensor.getZone();
+        if (active) {
+            ZoneDelays delays = zoneDelays.get(zone);
+            AlarmEvent activated = delays != null && delays.exitTimeout != null
+                    ? AlarmEvent.SENSOR_ACTIVATED_DURING_EXIT : AlarmEvent.SENSOR_ACTIVATED;
+            applyZoneAlarmRules(zone, activated, getZoneArmingStatus(zone), sensor.getSensorType());
+        } else if (sensor.getActive()) {
+            applyZoneAlarmRules(zone, AlarmEvent.SENSOR_DEACTIVATED, getZoneArmingStatus(zone), sensor.getSensorType());
         }
         sensor.setActive(active);
         securityRepository.updateSensor(sensor);
     }
 
+    private void applyZoneAlarmRules(String zone, AlarmEvent event, ArmingStatus armingStatus, SensorType sensorType) {
+        boolean anySensorActive = alarmRuleEngine.dependsOnSensorState(event)
+                && securityRepository.getActiveSensorCount(zone) > 0;
+        AlarmStatus next = alarmRuleEngine.evaluate(event, armingStatus, securityRepository.getZoneAlarmStatus(zone),
+                sensorType, isCatDetected, anySensorActive);
+        if (next != null) {
+            setZoneAlarmStatus(zone, next);
+        }
+    }
+
+    /**
+     * Arm or disarm a single zone. Only the sensors in that zone are reset, and only that
+     * zone's alarm status can change. The zone gets its own entry and exit delays.
+     *
+     * @param zone         The zone, or null to change the system-wide arming status
+     * @param armingStatus
+     */
+    public void setZoneArmingStatus(String zone, ArmingStatus armingStatus) {
+        if (zone == null) {
+            setArmingStatus(armingStatus);
+            return;
+        }
+        ArmingStatusChangeEvent event = new ArmingStatusChangeEvent();
+        event.begin();
+        applyZoneAlarmRules(zone, AlarmEvent.ARMING_CHANGED, armingStatus, null);
+        if (armingStatus != ArmingStatus.DISARMED) {
+            securityRepository.getSensorsInZone(zone).forEach(sensor -> updateSensorActivationStatus(sensor, false));
+        }
+        restartExitDelay(zone, armingStatus);
+        securityRepository.setZoneArmingStatus(zone, armingStatus);
+        dispatch("sensorStatusChanged", StatusListener::sensorStatusChanged);
+        publishState();
+        commitArmingEvent(event, zone, armingStatus);
+    }
+
+    /**
+     * @return the arming status of the zone, or the system-wide one if the zone doesn't override it
+     */
+    public ArmingStatus getZoneArmingStatus(String zone) {
+        ArmingStatus armingStatus = securityRepository.getZoneArmingStatus(zone);
+        return armingStatus == null ? securityRepository.getArmingStatus() : armingStatus;
+    }
+
+    public AlarmStatus getZoneAlarmStatus(String zone) {
+        return securityRepository.getZoneAlarmStatus(zone);
+    }
+
+    public Set<String> getZones() {
+        return securityRepository.getZones();
+    }
+
     /**
      * Send an image to the SecurityService for processing. The securityService will use its provided
      * ImageService to analyze the image for cats and update the alarm status accordingly.
@@ -151,13 +673,49 @@ public class SecurityService {
      * @param currentCameraImage
      */
     public void processImage(BufferedImage currentCameraImage) {
-        isCatDetected = imageService.imageContainsCat(currentCameraImage, 50.0f);
+        lastDetection = null;
+        isCatDetected = imageService.imageContainsCat(currentCameraImage, catConfidenceThreshhold);
         catDetected(isCatDetected);
         System.out.println("=> Debug: processImage: ");
         System.out.println(securityRepository.getAlarmStatus());
         System.out.println(securityRepository.getArmingStatus());
     }
 
+    /**
+     * Updates the system with a frame that has already been through {@link ImageService#detect}.
+     * The result is kept, so a later threshhold change is applied to this frame without
+     * detecting it again.
+     */
+    public void processDetection(DetectionResult detection) {
+        lastDetection = detection;
+        isCatDetected = detection.containsCat(catConfidenceThreshhold);
+        catDetected(isCatDetected);
+    }
+
+    /**
+     * Sets the confidence a frame needs for a cat to count. If the last frame was processed with
+     * {@link #processDetection} and the new threshhold changes the answer for it, the system is
+     * updated straight away.
+     */
+    public void setCatConfidenceThreshhold(float catConfidenceThreshhold) {
+        this.catConfidenceThreshhold = catConfidenceThreshhold;
+        if (lastDetection != null && lastDetection.containsCat(catConfidenceThreshhold) != isCatDetected) {
+            isCatDetected = !isCatDetected;
+            catDetected(isCatDetected);
+        }
+    }
+
+    public float getCatConfidenceThreshhold() {
+        return catConfidenceThreshhold;
+    }
+
+    /**
+     * @return the labels of the last frame, or null if it wasn't processed with {@link #processDetection}
+     */
+    public DetectionResult getLastDetection() {
+        return lastDetection;
+    }
+
     public AlarmStatus getAlarmStatus() {
         return securityRepository.getAlarmStatus();
     }
@@ -166,12 +724,42 @@ public class SecurityService {
         return securityRepository.getSensors();
     }
 
+    /**
+     * @return a number that changes whenever a sensor is added, removed or updated
+     */
+    public long getSensorsVersion() {
+        return securityRepository.getSensorsVersion();
+    }
+
     public void addSensor(Sensor sensor) {
         securityRepository.addSensor(sensor);
+        if (sensorSupervisor != null) {
+            sensorSupervisor.track(sensor);
+        }
+        publishState();
+    }
+
+    /**
+     * Adds several sensors as one change, see {@link SensorBulkTransfer} for importing them from a file.
+     */
+    public void addSensors(Collection<Sensor> sensors) {
+        securityRepository.addSensors(sensors);
+        if (sensorSupervisor != null) {
+            sensors.forEach(sensorSupervisor::track);
+        }
+        publishState();
     }
 
     public void removeSensor(Sensor sensor) {
         securityRepository.removeSensor(sensor);
+        offlineSensors.remove(sensor.getSensorId());
+        if (sensorDebouncer != null) {
+            sensorDebouncer.forget(sensor);
+        }
+        if (sensorSupervisor != null) {
+            sensorSupervisor.forget(sensor);
+        }
+        publishState();
     }
 
     public ArmingStatus getArmingStatus() {
@@ -179,9 +767,38 @@ public class SecurityService {
     }
 
     /**
-     * @return true if at least one sensor is active
+     * @return true if at least one sensor is active or offline, since a sensor that has stopped
+     * reporting can't be assumed to be inactive
      */
     public boolean getSensorsState() {
-        return securityRepository.getSensorsState();
+        return securityRepository.getSensorsState() || !offlineSensors.isEmpty();
+    }
+
+    /**
+     * Entry and exit delays of one zone, handled like the system-wide ones.
+     */
+    private static class ZoneDelays {
+        private HierarchicalTimingWheel.Timeout entryTimeout;
+        private HierarchicalTimingWheel.Timeout exitTimeout;
+        private long entryGeneration;
+        private long exitGeneration;
+
+        /**
+         * @return true if the delay that fired is still the current one, which is then cleared
+         */
+        private boolean expire(AlarmEvent event, long generation) {
+            if (event == AlarmEvent.EXIT_DELAY_EXPIRED) {
+                if (exitTimeout == null || generation != exitGeneration) {
+                    return false;
+                }
+                exitTimeout = null;
+            } else {
+                if (entryTimeout == null || generation != entryGeneration) {
+                    return false;
+                }
+                entryTimeout = null;
+            }
+            return true;
+        }
     }
 }
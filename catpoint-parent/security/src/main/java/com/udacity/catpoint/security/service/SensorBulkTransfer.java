@@ -0,0 +1,313 @@
+package com.udacity.catpoint.security.service;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Imports sensor definitions from, and exports them to, CSV or JSON lines. Files are read one
+ * line at a time, so large files are never held in memory, and imported sensors are added to
+ * the {@link SecurityService} in chunks so the repository persists once per chunk rather than
+ * once per sensor.
+ * <p>
+ * CSV rows have the columns {@code sensorId,name,sensorType,zone}, with an optional header as the
+ * first non-blank row.
+ * Fields may be quoted, but can't span lines. JSON lines have one object per line with the same
+ * property names. A blank sensor id gets a new random id, and a blank zone means no zone.
+ * Imported sensors start out inactive. Rows that are malformed, or whose id is already in use,
+ * are skipped and counted in the {@link ImportReport}.
+ */
+public class SensorBulkTransfer {
+
+    public enum Format {CSV, JSON_LINES}
+
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+    private static final int MAX_REPORTED_ERRORS = 100;
+    private static final String[] COLUMNS = {"sensorId", "name", "sensorType", "zone"};
+
+    private static final Gson gson = new Gson();
+
+    private final SecurityService securityService;
+    private final int chunkSize;
+
+    public SensorBulkTransfer(SecurityService securityService) {
+        this(securityService, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param chunkSize How many sensors are added to the security service at a time
+     */
+    public SensorBulkTransfer(SecurityService securityService, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.securityService = securityService;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Reads sensor definitions and adds the valid, new ones to the security service.
+     *
+     * @param in       The input, read to the end but not closed
+     * @param progress Called with the report so far after every full chunk, and with the final
+     *                 report at the end unless it was just reported. May be null.
+     * @return the final report
+     */
+    public ImportReport importSensors(Reader in, Format format, Consumer<ImportReport> progress) throws IOException {
+        long start = System.nanoTime();
+        ImportReport report = new ImportReport();
+        Set<UUID> knownIds = new HashSet<>();
+        for (Sensor existing : securityService.getSensors()) {
+            knownIds.add(existing.getSensorId());
+        }
+
+        BufferedReader reader = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+        List<Sensor> chunk = new ArrayList<>(chunkSize);
+        boolean firstRow = true;
+        long reportedLines = -1;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            report.lines++;
+            if (line.isBlank()) {
+                continue;
+            }
+            String[] fields;
+            try {
+                fields = format == Format.CSV ? parseCsv(line) : parseJson(line);
+            } catch (IllegalArgumentException | JsonParseException | IllegalStateException | UnsupportedOperationException e) {
+                report.reject("line " + report.lines + ": " + e.getMessage());
+                continue;
+            }
+            boolean header = firstRow && format == Format.CSV && COLUMNS[0].equalsIgnoreCase(fields[0].trim());
+            firstRow = false;
+            if (header) {
+                continue;
+            }
+
+            Sensor sensor;
+            try {
+                sensor = toSensor(fields);
+            } catch (IllegalArgumentException e) {
+                report.reject("line " + report.lines + ": " + e.getMessage());
+                continue;
+            }
+            if (!knownIds.add(sensor.getSensorId())) {
+                report.duplicates++;
+                continue;
+            }
+            chunk.add(sensor);
+            if (chunk.size() == chunkSize) {
+                commit(chunk, report, start);
+                if (progress != null) {
+                    progress.accept(report);
+                }
+                reportedLines = report.lines;
+            }
+        }
+        if (!chunk.isEmpty()) {
+            commit(chunk, report, start);
+        }
+        report.elapsedNanos = System.nanoTime() - start;
+        //unless the last chunk filled up on the last line and has been reported already
+        if (progress != null && report.lines != reportedLines) {
+            progress.accept(report);
+        }
+        return report;
+    }
+
+    private void commit(List<Sensor> chunk, ImportReport report, long start) {
+        securityService.addSensors(new ArrayList<>(chunk));
+        report.imported += chunk.size();
+        report.chunks++;
+        chunk.clear();
+        report.elapsedNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Writes the definitions of all current sensors. Active states are not exported.
+     *
+     * @param out The output, flushed but not closed
+     * @return the number of sensors written
+     */
+    public int exportSensors(Writer out, Format format) throws IOException {
+        int count = 0;
+        if (format == Format.CSV) {
+            out.write(String.join(",", COLUMNS));
+            out.write('\n');
+        }
+        for (Sensor sensor : securityService.getSensors()) {
+            String zone = sensor.getZone() == null ? "" : sensor.getZone();
+            if (format == Format.CSV) {
+                out.write(sensor.getSensorId() + "," + quote(sensor.getName()) + ","
+                        + sensor.getSensorType() + "," + quote(zone));
+            } else {
+                JsonObject object = new JsonObject();
+                object.addProperty(COLUMNS[0], sensor.getSensorId().toString());
+                object.addProperty(COLUMNS[1], sensor.getName());
+                object.addProperty(COLUMNS[2], sensor.getSensorType().toString());
+                if (!zone.isEmpty()) {
+                    object.addProperty(COLUMNS[3], zone);
+                }
+                out.write(gson.toJson(object));
+            }
+            out.write('\n');
+            count++;
+        }
+        out.flush();
+        return count;
+    }
+
+    private static Sensor toSensor(String[] fields) {
+        String id = fields[0] == null ? "" : fields[0].trim();
+        String name = fields[1] == null ? "" : fields[1].trim();
+        String type = fields[2] == null ? "" : fields[2].trim();
+        String zone = fields[3] == null ? "" : fields[3].trim();
+        if (name.isEmpty()) {
+            throw new IllegalArgumentException("missing sensor name");
+        }
+        SensorType sensorType;
+        try {
+            sensorType = SensorType.valueOf(type.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("unknown sensor type '" + type + "'");
+        }
+        Sensor sensor = new Sensor(name, sensorType, zone.isEmpty() ? null : zone);
+        if (!id.isEmpty()) {
+            try {
+                sensor.setSensorId(UUID.fromString(id));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("invalid sensor id '" + id + "'");
+            }
+        }
+        return sensor;
+    }
+
+    /**
+     * Splits a CSV row into the four columns. Missing trailing columns are null.
+     */
+    static String[] parseCsv(String line) {
+        String[] fields = new String[COLUMNS.length];
+        int column = 0;
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                if (column == COLUMNS.length - 1) {
+                    throw new IllegalArgumentException("too many columns");
+                }
+                fields[column++] = field.toString();
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quote");
+        }
+        fields[column] = field.toString();
+        return fields;
+    }
+
+    private static String[] parseJson(String line) {
+        JsonObject object = JsonParser.parseString(line).getAsJsonObject();
+        String[] fields = new String[COLUMNS.length];
+        for (int i = 0; i < COLUMNS.length; i++) {
+            JsonElement value = object.get(COLUMNS[i]);
+            fields[i] = value == null || value.isJsonNull() ? null : value.getAsString();
+        }
+        return fields;
+    }
+
+    private static String quote(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * Counts of an import. Updated while the import runs, so read it from the progress callback
+     * or after the import returns.
+     */
+    public static class ImportReport {
+        private long lines;
+        private long imported;
+        private long duplicates;
+        private long rejected;
+        private long chunks;
+        private long elapsedNanos;
+        private final List<String> errors = new ArrayList<>();
+
+        private void reject(String error) {
+            rejected++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(error);
+            }
+        }
+
+        /**
+         * @return the number of lines read so far, including blank and header lines
+         */
+        public long getLines() {
+            return lines;
+        }
+
+        public long getImported() {
+            return imported;
+        }
+
+        /**
+         * @return the number of rows skipped because their sensor id was already in use
+         */
+        public long getDuplicates() {
+            return duplicates;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public long getChunks() {
+            return chunks;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * @return why rows were rejected, limited to the first hundred rejections
+         */
+        public List<String> getErrors() {
+            return Collections.unmodifiableList(errors);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.SensorType;
+
+import java.util.UUID;
+
+/**
+ * Published by {@link SecurityService#sensorChanges()} whenever a sensor is activated or
+ * deactivated. Carries copies of the sensor's fields, since the sensor itself is mutable.
+ */
+public final class SensorChange {
+    private final UUID sensorId;
+    private final String name;
+    private final SensorType sensorType;
+    private final String zone;
+    private final boolean active;
+    private final long timestampMillis;
+
+    public SensorChange(UUID sensorId, String name, SensorType sensorType, String zone, boolean active, long timestampMillis) {
+        this.sensorId = sensorId;
+        this.name = name;
+        this.sensorType = sensorType;
+        this.zone = zone;
+        this.active = active;
+        this.timestampMillis = timestampMillis;
+    }
+
+    public UUID getSensorId() {
+        return sensorId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public SensorType getSensorType() {
+        return sensorType;
+    }
+
+    public String getZone() {
+        return zone;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "SensorChange{sensorId=" + sensorId + ", name=" + name + ", sensorType=" + sensorType
+                + ", zone=" + zone + ", active=" + active + ", timestampMillis=" + timestampMillis + '}';
+    }
+}
@@ -0,0 +1,278 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+
+/**
+ * Debouncing stage in front of {@link SecurityService#changeSensorActivationStatus(Sensor, Boolean)}, set up
+ * with {@link SecurityService#debounceReadingsWith(SensorDebouncer)}.
+ * Raw readings from noisy sensors are held back until they have been stable for the debounce
+ * window of their {@link SensorType}, so only settled transitions reach the service.
+ * <p>
+ * Sensors that keep flapping are quarantined: while quarantined their readings are dropped, and
+ * they are released once the quarantine period ends.
+ * <p>
+ * Per-sensor state is kept in parallel primitive arrays indexed by a slot assigned on first use,
+ * rather than in a map of state objects. The debouncer is not thread safe and should be used
+ * from the thread that owns the security service; settled readings are delivered through the
+ * provided executor.
+ */
+public class SensorDebouncer {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    //bits of the state array
+    private static final byte STABLE_ACTIVE = 1;
+    private static final byte PENDING = 2;
+    private static final byte PENDING_ACTIVE = 4;
+    private static final byte QUARANTINED = 8;
+
+    private final SecurityService securityService;
+    private final HierarchicalTimingWheel timingWheel;
+    private final Executor executor;
+    private final Clock clock;
+    private final Map<SensorType, Long> debounceWindows = new EnumMap<>(SensorType.class);
+
+    private int flapThreshold = 10;
+    private long flapWindowMillis = 10_000;
+    private long quarantineMillis = 60_000;
+
+    private final Map<UUID, Integer> slots = new HashMap<>();
+    private int[] freeSlots = new int[0];
+    private int freeCount;
+    private int nextSlot;
+
+    private Sensor[] sensors = new Sensor[INITIAL_CAPACITY];
+    private byte[] state = new byte[INITIAL_CAPACITY];
+    private int[] generation = new int[INITIAL_CAPACITY];
+    private long[] flapWindowStart = new long[INITIAL_CAPACITY];
+    private int[] flapCount = new int[INITIAL_CAPACITY];
+    private long[] quarantineUntil = new long[INITIAL_CAPACITY];
+
+    //metrics
+    private long suppressedReadings;
+    private long forwardedTransitions;
+    private long quarantines;
+    private int quarantinedSensors;
+
+    /**
+     * @param securityService The service that receives settled readings
+     * @param timingWheel     Timing wheel used to wait out the debounce windows
+     * @param executor        Executor that runs settled readings on the thread that owns the service
+     * @param clock           Source of the current time, should be the clock of the timing wheel
+     */
+    public SensorDebouncer(SecurityService securityService, HierarchicalTimingWheel timingWheel,
+                           Executor executor, Clock clock) {
+        this.securityService = securityService;
+        this.timingWheel = timingWheel;
+        this.executor = executor;
+        this.clock = clock;
+        debounceWindows.put(SensorType.DOOR, 250L);
+        debounceWindows.put(SensorType.WINDOW, 250L);
+        debounceWindows.put(SensorType.MOTION, 1_000L);
+    }
+
+    /**
+     * Set how long readings from a type of sensor must be stable before they are passed on.
+     *
+     * @param sensorType   The type of sensor
+     * @param windowMillis The debounce window, or 0 to pass readings on immediately
+     */
+    public void setDebounceWindow(SensorType sensorType, long windowMillis) {
+        debounceWindows.put(sensorType, windowMillis);
+    }
+
+    /**
+     * Configure flap detection. A sensor that changes its raw reading more than {@code threshold}
+     * times within {@code windowMillis} is quarantined for {@code quarantineMillis}.
+     */
+    public void setFlapDetection(int threshold, long windowMillis, long quarantineMillis) {
+        this.flapThreshold = threshold;
+        this.flapWindowMillis = windowMillis;
+        this.quarantineMillis = quarantineMillis;
+    }
+
+    /**
+     * Submit a raw reading from a sensor.
+     *
+     * @param sensor The sensor that reported
+     * @param active The raw activation state it reported
+     */
+    public void submit(Sensor sensor, boolean active) {
+        long now = clock.millis();
+        int slot = slotFor(sensor);
+
+        if ((state[slot] & QUARANTINED) != 0) {
+            if (now < quarantineUntil[slot]) {
+                suppressedReadings++;
+                return;
+            }
+            state[slot] &= ~QUARANTINED;
+            quarantinedSensors--;
+            flapWindowStart[slot] = now;
+            flapCount[slot] = 0;
+        }
+
+        //the service also changes sensors without going through here, when arming resets them for
+        //example, so the stable state is taken from the sensor rather than from the last settled reading
+        boolean stable = Boolean.TRUE.equals(sensor.getActive());
+        state[slot] = (byte) (stable ? state[slot] | STABLE_ACTIVE : state[slot] & ~STABLE_ACTIVE);
+        boolean pending = (state[slot] & PENDING) != 0;
+        boolean pendingActive = (state[slot] & PENDING_ACTIVE) != 0;
+        if (pending ? pendingActive == active : stable == active) {
+            //nothing new, a repeated reading neither starts nor extends a window
+            return;
+        }
+        if (recordFlap(slot, now)) {
+            return;
+        }
+
+        if (pending) {
+            //the pending reading flipped back before it settled
+            suppressedReadings++;
+        }
+        if (stable == active) {
+            state[slot] &= ~(PENDING | PENDING_ACTIVE);
+            generation[slot]++;
+            return;
+        }
+
+        long window = debounceWindows.getOrDefault(sensor.getSensorType(), 0L);
+        if (window <= 0) {
+            state[slot] &= ~(PENDING | PENDING_ACTIVE);
+            settle(slot, active);
+            return;
+        }
+        state[slot] = (byte) ((state[slot] & ~PENDING_ACTIVE) | PENDING | (active ? PENDING_ACTIVE : 0));
+        int expected = ++generation[slot];
+        timingWheel.schedule(window, () -> executor.execute(() -> windowElapsed(slot, expected)));
+    }
+
+    /**
+     * Counts a raw change for flap detection and quarantines the sensor if it changes too often.
+     *
+     * @return true if the sensor was quarantined
+     */
+    private boolean recordFlap(int slot, long now) {
+        if (now - flapWindowStart[slot] > flapWindowMillis) {
+            flapWindowStart[slot] = now;
+            flapCount[slot] = 0;
+        }
+        if (++flapCount[slot] <= flapThreshold) {
+            return false;
+        }
+        //drop the unsettled reading and keep the last stable state
+        state[slot] = (byte) ((state[slot] & STABLE_ACTIVE) | QUARANTINED);
+        generation[slot]++;
+        quarantineUntil[slot] = now + quarantineMillis;
+        quarantines++;
+        quarantinedSensors++;
+        suppressedReadings++;
+        return true;
+    }
+
+    private void windowElapsed(int slot, int expected) {
+        if (sensors[slot] == null || generation[slot] != expected || (state[slot] & PENDING) == 0) {
+            return;
+        }
+        boolean active = (state[slot] & PENDING_ACTIVE) != 0;
+        state[slot] &= ~(PENDING | PENDING_ACTIVE);
+        settle(slot, active);
+    }
+
+    private void settle(int slot, boolean active) {
+        state[slot] = (byte) (active ? state[slot] | STABLE_ACTIVE : state[slot] & ~STABLE_ACTIVE);
+        forwardedTransitions++;
+        securityService.applySensorReading(sensors[slot], active);
+    }
+
+    private int slotFor(Sensor sensor) {
+        Integer slot = slots.get(sensor.getSensorId());
+        if (slot != null) {
+            return slot;
+        }
+        int s = freeCount > 0 ? freeSlots[--freeCount] : nextSlot++;
+        if (s >= sensors.length) {
+            int capacity = sensors.length * 2;
+            sensors = Arrays.copyOf(sensors, capacity);
+            state = Arrays.copyOf(state, capacity);
+            generation = Arrays.copyOf(generation, capacity);
+            flapWindowStart = Arrays.copyOf(flapWindowStart, capacity);
+            flapCount = Arrays.copyOf(flapCount, capacity);
+            quarantineUntil = Arrays.copyOf(quarantineUntil, capacity);
+        }
+        sensors[s] = sensor;
+        state[s] = Boolean.TRUE.equals(sensor.getActive()) ? STABLE_ACTIVE : 0;
+        generation[s]++;
+        flapWindowStart[s] = clock.millis();
+        flapCount[s] = 0;
+        slots.put(sensor.getSensorId(), s);
+        return s;
+    }
+
+    /**
+     * Stop tracking a sensor, for example after it has been removed from the system.
+     * Any reading that has not settled yet is dropped.
+     */
+    public void forget(Sensor sensor) {
+        Integer slot = slots.remove(sensor.getSensorId());
+        if (slot == null) {
+            return;
+        }
+        if ((state[slot] & QUARANTINED) != 0) {
+            quarantinedSensors--;
+        }
+        sensors[slot] = null;
+        state[slot] = 0;
+        generation[slot]++;
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, Math.max(INITIAL_CAPACITY, freeCount * 2));
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    /**
+     * @return true if the sensor's readings are currently being dropped
+     */
+    public boolean isQuarantined(Sensor sensor) {
+        Integer slot = slots.get(sensor.getSensorId());
+        return slot != null && (state[slot] & QUARANTINED) != 0 && clock.millis() < quarantineUntil[slot];
+    }
+
+    /**
+     * @return the number of sensors in quarantine, including ones whose quarantine has ended but
+     * that have not reported since
+     */
+    public int getQuarantinedSensorCount() {
+        return quarantinedSensors;
+    }
+
+    /**
+     * @return how many times a sensor has been put into quarantine
+     */
+    public long getQuarantineCount() {
+        return quarantines;
+    }
+
+    /**
+     * @return the number of raw readings that were dropped or superseded before they settled
+     */
+    public long getSuppressedReadingCount() {
+        return suppressedReadings;
+    }
+
+    /**
+     * @return the number of settled transitions passed on to the security service
+     */
+    public long getForwardedTransitionCount() {
+        return forwardedTransitions;
+    }
+}
@@ -0,0 +1,35 @@
+package com.udacity.catpoint.security.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for a sensor being activated or deactivated. The duration covers
+ * evaluating the alarm rules and updating the repository.
+ */
+@Name("com.udacity.catpoint.SensorStateChange")
+@Label("Sensor State Change")
+@Category({"Catpoint", "Security"})
+@Description("A sensor was activated or deactivated")
+@StackTrace(false)
+final class SensorStateChangeEvent extends Event {
+
+    @Label("Sensor Id")
+    String sensorId;
+
+    @Label("Sensor Type")
+    String sensorType;
+
+    @Label("Zone")
+    String zone;
+
+    @Label("Was Active")
+    boolean wasActive;
+
+    @Label("Active")
+    boolean active;
+}
@@ -0,0 +1,329 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+
+/**
+ * Heartbeat supervision for sensors. Every report from a sensor counts as a heartbeat, and a
+ * sensor that has not reported within the supervision interval of its {@link SensorType} is
+ * reported offline through {@link SecurityService#sensorOffline(Sensor)}. Its next heartbeat
+ * brings it back online.
+ * <p>
+ * Sensors are filed into a ring of epoch buckets by the epoch their deadline falls in. Each
+ * bucket is a bitset over the sensor slots, so a heartbeat moves a sensor between buckets with
+ * two bit operations, and a sweep only reads the buckets of the epochs that have ended since the
+ * last sweep instead of looking at every sensor. A deadline further out than the ring reaches is
+ * filed in the furthest bucket and filed again when that bucket is swept.
+ * <p>
+ * Per-sensor state is kept in parallel primitive arrays indexed by a slot assigned on first use.
+ * The supervisor is not thread safe and should be used from the thread that owns the security
+ * service; periodic sweeps are delivered through the provided executor.
+ */
+public class SensorSupervisor {
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int BUCKETS = 64;
+    private static final long DEFAULT_INTERVAL_MILLIS = 60 * 60_000;
+
+    private final SecurityService securityService;
+    private final Executor executor;
+    private final Clock clock;
+    private final long epochMillis;
+    //supervision interval by SensorType ordinal, 0 for types that are not supervised
+    private final long[] intervals = new long[SensorType.values().length];
+
+    private final Map<UUID, Integer> slots = new HashMap<>();
+    private int[] freeSlots = new int[0];
+    private int freeCount;
+    private int nextSlot;
+
+    private Sensor[] sensors = new Sensor[INITIAL_CAPACITY];
+    private long[] lastSeen = new long[INITIAL_CAPACITY];
+    //bucket the slot is filed in, or -1 while it is offline, unsupervised or free
+    private byte[] bucketOf = new byte[INITIAL_CAPACITY];
+    private final long[][] buckets = new long[BUCKETS][INITIAL_CAPACITY >>> 6];
+    private long[] offline = new long[INITIAL_CAPACITY >>> 6];
+    private long sweptEpoch;
+
+    private HierarchicalTimingWheel timingWheel;
+    private long sweepGeneration;
+    private boolean running;
+
+    //metrics
+    private int offlineSensors;
+    private long offlineTransitions;
+    private long sweeps;
+    private long checkedSensors;
+
+    /**
+     * @param securityService The service that is told about sensors going offline and back online
+     * @param executor        Executor that runs sweeps on the thread that owns the service
+     * @param clock           Source of the current time, should be the clock of the timing wheel
+     * @param epochMillis     Width of an epoch bucket, which is how late an offline sensor may be noticed
+     */
+    public SensorSupervisor(SecurityService securityService, Executor executor, Clock clock, long epochMillis) {
+        if (epochMillis <= 0) {
+            throw new IllegalArgumentException("epochMillis must be positive");
+        }
+        this.securityService = securityService;
+        this.executor = executor;
+        this.clock = clock;
+        this.epochMillis = epochMillis;
+        Arrays.fill(intervals, DEFAULT_INTERVAL_MILLIS);
+        Arrays.fill(bucketOf, (byte) -1);
+        sweptEpoch = clock.millis() / epochMillis - 1;
+    }
+
+    /**
+     * Set how long a type of sensor may go without reporting before it is considered offline.
+     * Sensors already being supervised are held to the new interval straight away.
+     *
+     * @param sensorType     The type of sensor
+     * @param intervalMillis The supervision interval, or 0 to stop supervising the type
+     */
+    public void setSupervisionInterval(SensorType sensorType, long intervalMillis) {
+        intervals[sensorType.ordinal()] = Math.max(0, intervalMillis);
+        for (int slot = 0; slot < nextSlot; slot++) {
+            if (sensors[slot] != null && sensors[slot].getSensorType() == sensorType) {
+                file(slot);
+            }
+        }
+    }
+
+    /**
+     * Start supervising a sensor, counting from now. Does nothing if it is already supervised.
+     */
+    public void track(Sensor sensor) {
+        slotFor(sensor);
+    }
+
+    /**
+     * Record that a sensor has reported. An offline sensor comes back online.
+     */
+    public void heartbeat(Sensor sensor) {
+        int slot = slotFor(sensor);
+        sensors[slot] = sensor;
+        lastSeen[slot] = clock.millis();
+        if (isSet(offline, slot)) {
+            offline[slot >>> 6] &= ~(1L << slot);
+            offlineSensors--;
+            securityService.sensorOnline(sensor);
+        }
+        file(slot);
+    }
+
+    /**
+     * Stop supervising a sensor, for example after it has been removed from the system.
+     */
+    public void forget(Sensor sensor) {
+        Integer slot = slots.remove(sensor.getSensorId());
+        if (slot == null) {
+            return;
+        }
+        unfile(slot);
+        if (isSet(offline, slot)) {
+            offline[slot >>> 6] &= ~(1L << slot);
+            offlineSensors--;
+        }
+        sensors[slot] = null;
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, Math.max(INITIAL_CAPACITY, freeCount * 2));
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    /**
+     * Sweep once per epoch, using the timing wheel to wait between sweeps.
+     */
+    public void start(HierarchicalTimingWheel timingWheel) {
+        this.timingWheel = timingWheel;
+        running = true;
+        scheduleSweep(++sweepGeneration);
+    }
+
+    public void stop() {
+        running = false;
+        sweepGeneration++;
+    }
+
+    private void scheduleSweep(long generation) {
+        timingWheel.schedule(epochMillis, () -> executor.execute(() -> {
+            if (running && generation == sweepGeneration) {
+                sweep();
+                scheduleSweep(generation);
+            }
+        }));
+    }
+
+    /**
+     * Reports every sensor whose deadline fell in an epoch that has ended since the last sweep.
+     * Only the buckets of those epochs are read. If sweeps have fallen behind by more than the
+     * whole ring, each bucket is read once.
+     *
+     * @return the number of sensors that went offline
+     */
+    public int sweep() {
+        long now = clock.millis();
+        long lastEndedEpoch = now / epochMillis - 1;
+        if (lastEndedEpoch - sweptEpoch > BUCKETS) {
+            sweptEpoch = lastEndedEpoch - BUCKETS;
+        }
+        int found = 0;
+        while (sweptEpoch < lastEndedEpoch) {
+            sweptEpoch++;
+            found += sweepBucket(bucketIndex(sweptEpoch), now);
+        }
+        sweeps++;
+        return found;
+    }
+
+    private int sweepBucket(int index, long now) {
+        int found = 0;
+        int words = (nextSlot + 63) >>> 6;
+        for (int i = 0; i < words; i++) {
+            //read through the ring each time, listeners may grow the buckets while the sweep runs
+            long word = buckets[index][i];
+            if (word == 0) {
+                continue;
+            }
+            buckets[index][i] = 0;
+            while (word != 0) {
+                int slot = (i << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                if (bucketOf[slot] != index) {
+                    //forgotten or filed elsewhere by a listener earlier in this sweep
+                    continue;
+                }
+                bucketOf[slot] = -1;
+                checkedSensors++;
+                if (lastSeen[slot] + interval(slot) > now) {
+                    //filed early, either because the deadline was beyond the ring or the interval grew
+                    file(slot);
+                } else {
+                    markOffline(slot);
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    private void markOffline(int slot) {
+        offline[slot >>> 6] |= 1L << slot;
+        offlineSensors++;
+        offlineTransitions++;
+        securityService.sensorOffline(sensors[slot]);
+    }
+
+    /**
+     * Files a slot in the bucket of the epoch its deadline falls in, kept within the epochs the
+     * ring can reach and after the last swept one.
+     */
+    private void file(int slot) {
+        unfile(slot);
+        long interval = interval(slot);
+        if (interval <= 0 || isSet(offline, slot)) {
+            return;
+        }
+        long epoch = (lastSeen[slot] + interval) / epochMillis;
+        epoch = Math.max(sweptEpoch + 1, Math.min(epoch, sweptEpoch + BUCKETS - 1));
+        int bucket = bucketIndex(epoch);
+        buckets[bucket][slot >>> 6] |= 1L << slot;
+        bucketOf[slot] = (byte) bucket;
+    }
+
+    private void unfile(int slot) {
+        int bucket = bucketOf[slot];
+        if (bucket >= 0) {
+            buckets[bucket][slot >>> 6] &= ~(1L << slot);
+            bucketOf[slot] = -1;
+        }
+    }
+
+    private long interval(int slot) {
+        return intervals[sensors[slot].getSensorType().ordinal()];
+    }
+
+    private static int bucketIndex(long epoch) {
+        return (int) Math.floorMod(epoch, (long) BUCKETS);
+    }
+
+    private static boolean isSet(long[] bits, int slot) {
+        return (bits[slot >>> 6] & (1L << slot)) != 0;
+    }
+
+    private int slotFor(Sensor sensor) {
+        Integer slot = slots.get(sensor.getSensorId());
+        if (slot != null) {
+            return slot;
+        }
+        int s = freeCount > 0 ? freeSlots[--freeCount] : nextSlot++;
+        if (s >= sensors.length) {
+            int capacity = sensors.length * 2;
+            sensors = Arrays.copyOf(sensors, capacity);
+            lastSeen = Arrays.copyOf(lastSeen, capacity);
+            bucketOf = Arrays.copyOf(bucketOf, capacity);
+            Arrays.fill(bucketOf, capacity / 2, capacity, (byte) -1);
+            for (int b = 0; b < BUCKETS; b++) {
+                buckets[b] = Arrays.copyOf(buckets[b], capacity >>> 6);
+            }
+            offline = Arrays.copyOf(offline, capacity >>> 6);
+        }
+        sensors[s] = sensor;
+        lastSeen[s] = clock.millis();
+        slots.put(sensor.getSensorId(), s);
+        file(s);
+        return s;
+    }
+
+    /**
+     * @return true if the sensor has been reported offline and has not reported since
+     */
+    public boolean isOffline(Sensor sensor) {
+        Integer slot = slots.get(sensor.getSensorId());
+        return slot != null && isSet(offline, slot);
+    }
+
+    /**
+     * @return when the sensor last reported, or when supervision started if it hasn't, or -1 if
+     * it isn't supervised
+     */
+    public long getLastSeenMillis(Sensor sensor) {
+        Integer slot = slots.get(sensor.getSensorId());
+        return slot == null ? -1 : lastSeen[slot];
+    }
+
+    public int getSupervisedSensorCount() {
+        return slots.size();
+    }
+
+    public int getOfflineSensorCount() {
+        return offlineSensors;
+    }
+
+    /**
+     * @return how many times a sensor has gone offline
+     */
+    public long getOfflineTransitionCount() {
+        return offlineTransitions;
+    }
+
+    public long getSweepCount() {
+        return sweeps;
+    }
+
+    /**
+     * @return the number of sensors sweeps have looked at, which stays far below sweeps times
+     * supervised sensors
+     */
+    public long getCheckedSensorCount() {
+        return checkedSensors;
+    }
+}
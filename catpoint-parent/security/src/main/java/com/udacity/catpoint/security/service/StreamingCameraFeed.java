@@ -0,0 +1,206 @@
+package com.udacity.catpoint.security.service;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Feeds a continuous camera stream into detection. A reader thread pulls encoded frames from the
+ * {@link FrameSource} as fast as they come and keeps only the newest one. A detection thread takes
+ * that frame whenever the {@link AdaptiveFrameRateController} allows, decodes it and hands it to
+ * the detector. Frames that arrive in between are skipped rather than queued, and only sampled
+ * frames are ever decoded. Frames are decoded into buffers from a {@link FrameBufferPool}, which
+ * are reused once the detector returns, so the detector must not keep a reference to the image.
+ */
+public class StreamingCameraFeed implements AutoCloseable {
+
+    private final FrameSource source;
+    private final Consumer<BufferedImage> detector;
+    private final AdaptiveFrameRateController controller;
+    private final long sourceFrameIntervalMillis;
+    private final FrameBufferPool framePool;
+    private final FrameDecoder decoder; //only used by the detection thread
+
+    private final Object lock = new Object();
+    //guarded by lock
+    private byte[] latestFrame;
+    private long latestFrameArrivedMillis;
+    private boolean sourceEnded;
+
+    private volatile boolean running;
+    private volatile long framesRead;
+    private volatile long framesSkipped;
+    private volatile long framesProcessed;
+    private volatile long framesFailed;
+
+    private Thread readerThread;
+    private Thread detectionThread;
+
+    /**
+     * @param source                    The stream to read
+     * @param detector                  Receives sampled frames, usually {@link SecurityService#processImage}
+     * @param controller                Decides how often frames are sampled
+     * @param sourceFrameIntervalMillis Pace at which to read a recorded source, such as a file, to
+     *                                  simulate a live camera. Use 0 for live sources.
+     */
+    public StreamingCameraFeed(FrameSource source, Consumer<BufferedImage> detector,
+                               AdaptiveFrameRateController controller, long sourceFrameIntervalMillis) {
+        this(source, detector, controller, sourceFrameIntervalMillis, new FrameBufferPool());
+    }
+
+    /**
+     * @param framePool Pool to decode frames into, which may be shared with other camera feeds
+     */
+    public StreamingCameraFeed(FrameSource source, Consumer<BufferedImage> detector,
+                               AdaptiveFrameRateController controller, long sourceFrameIntervalMillis,
+                               FrameBufferPool framePool) {
+        this.framePool = framePool;
+        this.decoder = new FrameDecoder(framePool);
+        this.source = source;
+        this.detector = detector;
+        this.controller = controller;
+        this.sourceFrameIntervalMillis = sourceFrameIntervalMillis;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        readerThread = new Thread(this::readLoop, "camera-stream-reader");
+        readerThread.setDaemon(true);
+        readerThread.start();
+        detectionThread = new Thread(this::detectionLoop, "camera-stream-detection");
+        detectionThread.setDaemon(true);
+        detectionThread.start();
+    }
+
+    private void readLoop() {
+        try {
+            byte[] frame;
+            while (running && (frame = source.nextFrame()) != null) {
+                framesRead++;
+                synchronized (lock) {
+                    if (latestFrame != null) {
+                        framesSkipped++;
+                    }
+                    latestFrame = frame;
+                    latestFrameArrivedMillis = System.currentTimeMillis();
+                    lock.notifyAll();
+                }
+                if (sourceFrameIntervalMillis > 0) {
+                    Thread.sleep(sourceFrameIntervalMillis);
+                }
+            }
+        } catch (IOException ioe) {
+            //treated as the end of the stream
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            synchronized (lock) {
+                sourceEnded = true;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private void detectionLoop() {
+        long nextSampleMillis = 0;
+        try {
+            while (running) {
+                byte[] frame;
+                long arrivedMillis;
+                synchronized (lock) {
+                    long now = System.currentTimeMillis();
+                    while (running && (latestFrame == null || now < nextSampleMillis)) {
+                        if (latestFrame == null && sourceEnded) {
+                            return;
+                        }
+                        lock.wait(latestFrame == null ? 0 : nextSampleMillis - now);
+                        now = System.currentTimeMillis();
+                    }
+                    if (!running) {
+                        return;
+                    }
+                    frame = latestFrame;
+                    arrivedMillis = latestFrameArrivedMillis;
+                    latestFrame = null;
+                }
+
+                long start = System.currentTimeMillis();
+                try (PooledFrame image = decoder.decode(frame)) {
+                    if (image == null) {
+                        framesFailed++;
+                        continue;
+                    }
+                    detector.accept(image.getImage());
+                    framesProcessed++;
+                } catch (IOException | RuntimeException e) {
+                    framesFailed++;
+                    continue;
+                }
+                long end = System.currentTimeMillis();
+                controller.record(end - arrivedMillis, end - start);
+                nextSampleMillis = start + controller.getSampleIntervalMillis();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            decoder.dispose();
+        }
+    }
+
+    /**
+     * Waits for the stream to end and every sampled frame to be processed.
+     */
+    public void awaitCompletion() throws InterruptedException {
+        if (detectionThread != null) {
+            detectionThread.join();
+        }
+    }
+
+    public long getFramesRead() {
+        return framesRead;
+    }
+
+    /**
+     * @return frames that were replaced by a newer frame before detection got to them
+     */
+    public long getFramesSkipped() {
+        return framesSkipped;
+    }
+
+    public long getFramesProcessed() {
+        return framesProcessed;
+    }
+
+    /**
+     * @return frames that could not be decoded, or that the detector failed on
+     */
+    public long getFramesFailed() {
+        return framesFailed;
+    }
+
+    public AdaptiveFrameRateController getController() {
+        return controller;
+    }
+
+    /**
+     * @return the pool frames are decoded into, for its allocation metrics
+     */
+    public FrameBufferPool getFramePool() {
+        return framePool;
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+        if (readerThread != null) {
+            readerThread.interrupt();
+        }
+        source.close();
+    }
+}
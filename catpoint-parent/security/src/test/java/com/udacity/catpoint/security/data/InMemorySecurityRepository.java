@@ -0,0 +1,130 @@
+package com.udacity.catpoint.security.data;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Repository that only keeps state in memory, for tests that need a real repository
+ * without touching user preferences.
+ */
+public class InMemorySecurityRepository implements SecurityRepository {
+
+    private final Map<UUID, Sensor> sensors = new HashMap<>();
+    private final Map<String, ArmingStatus> zoneArming = new HashMap<>();
+    private final Map<String, AlarmStatus> zoneAlarm = new HashMap<>();
+    private AlarmStatus alarmStatus = AlarmStatus.NO_ALARM;
+    private ArmingStatus armingStatus = ArmingStatus.DISARMED;
+    private long version;
+
+    @Override
+    public synchronized void addSensor(Sensor sensor) {
+        sensors.put(sensor.getSensorId(), sensor);
+        version++;
+    }
+
+    @Override
+    public synchronized void removeSensor(Sensor sensor) {
+        sensors.remove(sensor.getSensorId());
+        version++;
+    }
+
+    @Override
+    public synchronized void updateSensor(Sensor sensor) {
+        sensors.put(sensor.getSensorId(), sensor);
+        version++;
+    }
+
+    @Override
+    public synchronized void setAlarmStatus(AlarmStatus alarmStatus) {
+        this.alarmStatus = alarmStatus;
+    }
+
+    @Override
+    public synchronized void setArmingStatus(ArmingStatus armingStatus) {
+        this.armingStatus = armingStatus;
+    }
+
+    @Override
+    public synchronized Set<Sensor> getSensors() {
+        return new TreeSet<>(sensors.values());
+    }
+
+    @Override
+    public synchronized long getSensorsVersion() {
+        return version;
+    }
+
+    @Override
+    public synchronized AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    @Override
+    public synchronized ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+
+    @Override
+    public synchronized boolean getSensorsState() {
+        return sensors.values().stream().anyMatch(Sensor::getActive);
+    }
+
+    @Override
+    public synchronized Set<String> getZones() {
+        Set<String> zones = new TreeSet<>(zoneArming.keySet());
+        zones.addAll(zoneAlarm.keySet());
+        sensors.values().stream().map(Sensor::getZone).filter(Objects::nonNull).forEach(zones::add);
+        return zones;
+    }
+
+    @Override
+    public synchronized Set<Sensor> getSensorsInZone(String zone) {
+        Set<Sensor> inZone = new TreeSet<>();
+        sensors.values().stream().filter(s -> Objects.equals(zone, s.getZone())).forEach(inZone::add);
+        return inZone;
+    }
+
+    @Override
+    public synchronized int getActiveSensorCount(String zone) {
+        return (int) getSensorsInZone(zone).stream().filter(Sensor::getActive).count();
+    }
+
+    @Override
+    public synchronized ArmingStatus getZoneArmingStatus(String zone) {
+        return zone == null ? armingStatus : zoneArming.get(zone);
+    }
+
+    @Override
+    public synchronized void setZoneArmingStatus(String zone, ArmingStatus armingStatus) {
+        if (zone == null) {
+            this.armingStatus = armingStatus;
+        } else if (armingStatus == null) {
+            zoneArming.remove(zone);
+        } else {
+            zoneArming.put(zone, armingStatus);
+        }
+    }
+
+    @Override
+    public synchronized AlarmStatus getZoneAlarmStatus(String zone) {
+        return zone == null ? alarmStatus : zoneAlarm.getOrDefault(zone, AlarmStatus.NO_ALARM);
+    }
+
+    @Override
+    public synchronized void setZoneAlarmStatus(String zone, AlarmStatus alarmStatus) {
+        if (zone == null) {
+            this.alarmStatus = alarmStatus;
+        } else {
+            zoneAlarm.put(zone, alarmStatus);
+        }
+    }
+
+    @Override
+    public synchronized AlarmStatus getHighestZoneAlarmStatus() {
+        return zoneAlarm.values().stream().max(Enum::compareTo).orElse(AlarmStatus.NO_ALARM);
+    }
+}
@@ -0,0 +1,126 @@
+package com.udacity.catpoint.security.data;
+
+import com.udacity.catpoint.image.service.ImageService;
+import com.udacity.catpoint.security.service.SecurityService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+class MappedStateFileTest {
+
+    private final Path file;
+
+    MappedStateFileTest() throws IOException {
+        file = Files.createTempFile("catpoint-state", ".bin");
+    }
+
+    @AfterEach
+    void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    void writtenState_readBack() throws IOException {
+        Sensor door = new Sensor("front door", SensorType.DOOR);
+        Sensor motion = new Sensor("a motion sensor with a name far too long to fit in its slot", SensorType.MOTION);
+        motion.setActive(true);
+        try (MappedStateWriter writer = new MappedStateWriter(file, 8);
+             MappedStateReader reader = new MappedStateReader(file)) {
+            writer.write(AlarmStatus.ALARM, AlarmStatus.PENDING_ALARM, ArmingStatus.ARMED_HOME, true, 3, List.of(door, motion));
+
+            StateSnapshot state = reader.read();
+            Assertions.assertEquals(AlarmStatus.ALARM, state.getSiteAlarmStatus());
+            Assertions.assertEquals(AlarmStatus.PENDING_ALARM, state.getSystemAlarmStatus());
+            Assertions.assertEquals(ArmingStatus.ARMED_HOME, state.getArmingStatus());
+            Assertions.assertTrue(state.isCatDetected());
+            Assertions.assertEquals(2, state.getSensorCount());
+            Assertions.assertEquals(1, state.getActiveSensorCount());
+            Assertions.assertEquals(door.getSensorId(), state.getSensors().get(0).getSensorId());
+            Assertions.assertEquals("front door", state.getSensors().get(0).getName());
+            Assertions.assertTrue(motion.getName().startsWith(state.getSensors().get(1).getName()));
+            Assertions.assertTrue(state.getSensors().get(1).isActive());
+            Assertions.assertEquals(0, state.getSequence() % 2);
+        }
+    }
+
+    @Test
+    void sensorsAddedAndRemovedThroughService_arePublished() throws IOException {
+        SecurityService securityService = new SecurityService(new InMemorySecurityRepository(), Mockito.mock(ImageService.class));
+        Sensor door = new Sensor("front door", SensorType.DOOR);
+        try (MappedStateWriter writer = new MappedStateWriter(file, 8);
+             MappedStateReader reader = new MappedStateReader(file)) {
+            securityService.publishStateTo(writer);
+
+            securityService.addSensor(door);
+            Assertions.assertEquals(1, reader.read().getSensorCount());
+            securityService.addSensors(List.of(new Sensor("back door", SensorType.DOOR), new Sensor("hall", SensorType.MOTION)));
+            Assertions.assertEquals(3, reader.read().getSensorCount());
+            securityService.removeSensor(door);
+            StateSnapshot state = reader.read();
+            Assertions.assertEquals(2, state.getSensorCount());
+            Assertions.assertEquals(securityService.getSensorsVersion(), state.getSensorsVersion());
+        }
+    }
+
+    @Test
+    void moreSensorsThanSlots_countsAllSensors() throws IOException {
+        try (MappedStateWriter writer = new MappedStateWriter(file, 1);
+             MappedStateReader reader = new MappedStateReader(file)) {
+            writer.write(AlarmStatus.NO_ALARM, AlarmStatus.NO_ALARM, ArmingStatus.DISARMED, false, 1,
+                    List.of(new Sensor("a", SensorType.DOOR), new Sensor("b", SensorType.WINDOW)));
+
+            StateSnapshot state = reader.read();
+            Assertions.assertEquals(2, state.getSensorCount());
+            Assertions.assertEquals(1, state.getSensors().size());
+        }
+    }
+
+    @Test
+    void newWriter_continuesSequence() throws IOException {
+        long sequence;
+        try (MappedStateWriter writer = new MappedStateWriter(file, 4)) {
+            writer.write(AlarmStatus.NO_ALARM, AlarmStatus.NO_ALARM, ArmingStatus.DISARMED, false, 0, List.of());
+            sequence = writer.getSequence();
+        }
+        try (MappedStateWriter writer = new MappedStateWriter(file, 4)) {
+            Assertions.assertTrue(writer.getSequence() > sequence);
+        }
+    }
+
+    // every state written has the arming status and cat flag derived from the same counter,
+    // so a torn read would show up as a mismatch
+    @Test
+    void concurrentReads_neverSeeTornState() throws Exception {
+        ArmingStatus[] armingStatuses = ArmingStatus.values();
+        try (MappedStateWriter writer = new MappedStateWriter(file, 4);
+             MappedStateReader reader = new MappedStateReader(file)) {
+            writer.write(AlarmStatus.NO_ALARM, AlarmStatus.NO_ALARM, armingStatuses[0], true, 0, List.of());
+            AtomicBoolean running = new AtomicBoolean(true);
+            Thread writerThread = new Thread(() -> {
+                for (long i = 1; running.get(); i++) {
+                    writer.write(AlarmStatus.NO_ALARM, AlarmStatus.NO_ALARM,
+                            armingStatuses[(int) (i % armingStatuses.length)], i % armingStatuses.length == 0, i, List.of());
+                }
+            });
+            writerThread.start();
+            try {
+                for (int i = 0; i < 100_000; i++) {
+                    StateSnapshot state = reader.readHeader();
+                    long version = state.getSensorsVersion();
+                    Assertions.assertEquals(armingStatuses[(int) (version % armingStatuses.length)], state.getArmingStatus());
+                    Assertions.assertEquals(version % armingStatuses.length == 0, state.isCatDetected());
+                }
+            } finally {
+                running.set(false);
+                writerThread.join();
+            }
+        }
+    }
+}
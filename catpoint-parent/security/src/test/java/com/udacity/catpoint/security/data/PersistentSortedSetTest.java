@@ -0,0 +1,51 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+class PersistentSortedSetTest {
+
+    @Test
+    void randomUpdates_matchTreeSet() {
+        Random random = new Random(7);
+        TreeSet<Integer> expected = new TreeSet<>();
+        PersistentSortedSet<Integer> set = PersistentSortedSet.empty();
+        for (int i = 0; i < 5_000; i++) {
+            int value = random.nextInt(500);
+            if (random.nextBoolean()) {
+                expected.add(value);
+                set = set.plus(value);
+            } else {
+                expected.remove(value);
+                set = set.minus(value);
+            }
+        }
+        Assertions.assertEquals(expected.size(), set.size());
+        Assertions.assertEquals(new ArrayList<>(expected), new ArrayList<>(set));
+        for (int value = 0; value < 500; value++) {
+            Assertions.assertEquals(expected.contains(value), set.contains(value));
+        }
+    }
+
+    @Test
+    void updates_leaveEarlierVersionsUntouched() {
+        PersistentSortedSet<Integer> before = PersistentSortedSet.of(List.of(3, 1, 2));
+        PersistentSortedSet<Integer> after = before.plus(4).minus(1);
+
+        Assertions.assertEquals(List.of(1, 2, 3), new ArrayList<>(before));
+        Assertions.assertEquals(List.of(2, 3, 4), new ArrayList<>(after));
+        Assertions.assertSame(after, after.minus(42));
+    }
+
+    @Test
+    void setMutators_notSupported() {
+        PersistentSortedSet<Integer> set = PersistentSortedSet.of(List.of(1));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> set.add(2));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> set.iterator().remove());
+    }
+}
@@ -0,0 +1,117 @@
+package com.udacity.catpoint.security.data;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+
+class PretendDatabaseSecurityRepositoryImplTest {
+
+    //a throwaway node, so the tests never touch the state of the real application
+    private final Preferences prefs = Preferences.userRoot().node("catpoint-test-" + UUID.randomUUID());
+
+    @AfterEach
+    void removeNode() throws BackingStoreException {
+        prefs.removeNode();
+    }
+
+    private static List<Sensor> sensors(int count, String namePrefix) {
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            sensors.add(new Sensor(namePrefix + i, SensorType.values()[i % SensorType.values().length]));
+        }
+        return sensors;
+    }
+
+    @Test
+    void sensors_arePersistedInBucketsAndReloaded() {
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(prefs);
+        repository.addSensors(sensors(70, "sensor "));
+
+        Assertions.assertEquals(3, prefs.getInt("SENSOR_BUCKETS", 0));
+        Assertions.assertEquals(repository.getSensors(), new PretendDatabaseSecurityRepositoryImpl(prefs).getSensors());
+    }
+
+    @Test
+    void sensorChange_onlyRewritesItsBucket() {
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(prefs);
+        List<Sensor> sensors = sensors(40, "sensor ");
+        repository.addSensors(sensors);
+        String firstBucket = prefs.get("SENSORS_0", null);
+        String secondBucket = prefs.get("SENSORS_1", null);
+
+        Sensor last = sensors.get(39);
+        last.setActive(true);
+        repository.updateSensor(last);
+        Assertions.assertEquals(firstBucket, prefs.get("SENSORS_0", null));
+        Assertions.assertNotEquals(secondBucket, prefs.get("SENSORS_1", null));
+
+        repository.removeSensor(sensors.get(0));
+        Assertions.assertNotEquals(firstBucket, prefs.get("SENSORS_0", null));
+        PretendDatabaseSecurityRepositoryImpl reloaded = new PretendDatabaseSecurityRepositoryImpl(prefs);
+        Assertions.assertEquals(39, reloaded.getSensors().size());
+        Assertions.assertTrue(reloaded.getSensorsState());
+    }
+
+    @Test
+    void snapshot_isUnchangedByLaterUpdates() {
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(prefs);
+        Sensor sensor = new Sensor("front door", SensorType.DOOR);
+        repository.addSensor(sensor);
+        Set<Sensor> before = repository.getSensors();
+
+        sensor.setActive(true);
+        Assertions.assertFalse(repository.getSensors().iterator().next().getActive());
+        repository.updateSensor(sensor);
+
+        Assertions.assertFalse(before.iterator().next().getActive());
+        Assertions.assertTrue(repository.getSensors().iterator().next().getActive());
+        Assertions.assertTrue(repository.getSensorsInZone(null).iterator().next().getActive());
+    }
+
+    @Test
+    void renamedSensor_replacesItsPreviousCopy() {
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(prefs);
+        Sensor sensor = new Sensor("front door", SensorType.DOOR);
+        repository.addSensor(sensor);
+
+        sensor.setName("back door");
+        repository.updateSensor(sensor);
+
+        Assertions.assertEquals(1, repository.getSensors().size());
+        Assertions.assertEquals("back door", repository.getSensors().iterator().next().getName());
+    }
+
+    @Test
+    void bucketTooLargeForOnePreference_isSplit() {
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(prefs);
+        repository.addSensors(sensors(32, "x".repeat(400) + " "));
+
+        int buckets = prefs.getInt("SENSOR_BUCKETS", 0);
+        Assertions.assertTrue(buckets > 1);
+        for (int i = 0; i < buckets; i++) {
+            Assertions.assertTrue(prefs.get("SENSORS_" + i, "").length() <= Preferences.MAX_VALUE_LENGTH);
+        }
+        Assertions.assertEquals(repository.getSensors(), new PretendDatabaseSecurityRepositoryImpl(prefs).getSensors());
+    }
+
+    @Test
+    void legacySensorSet_isMigratedIntoBuckets() {
+        Set<Sensor> legacy = Set.of(new Sensor("front door", SensorType.DOOR), new Sensor("hall", SensorType.MOTION, "ground"));
+        prefs.put("SENSORS", new Gson().toJson(legacy));
+
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(prefs);
+
+        Assertions.assertEquals(legacy, repository.getSensors());
+        Assertions.assertEquals(1, repository.getSensorsInZone("ground").size());
+        Assertions.assertNull(prefs.get("SENSORS", null));
+        Assertions.assertEquals(legacy, new PretendDatabaseSecurityRepositoryImpl(prefs).getSensors());
+    }
+}
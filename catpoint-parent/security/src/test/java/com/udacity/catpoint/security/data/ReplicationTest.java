@@ -0,0 +1,174 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+class ReplicationTest {
+
+    private final InMemorySecurityRepository primaryStore = new InMemorySecurityRepository();
+    private final InMemorySecurityRepository standbyStore = new InMemorySecurityRepository();
+    private ReplicatedSecurityRepository primary;
+    private ReplicationStandby standby;
+
+    private void startPrimary(AckMode ackMode) throws IOException {
+        primary = new ReplicatedSecurityRepository(primaryStore,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), ackMode, 2_000);
+    }
+
+    private void startStandby() throws IOException {
+        standby = new ReplicationStandby(primary.getLocalAddress(), standbyStore);
+        standby.start();
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        if (standby != null) {
+            standby.close();
+        }
+        if (primary != null) {
+            primary.close();
+        }
+    }
+
+    @Test
+    void standbyJoiningLate_catchesUpFromSnapshot() throws Exception {
+        startPrimary(AckMode.ASYNC);
+        Sensor door = new Sensor("front door", SensorType.DOOR);
+        primary.addSensor(door);
+        primary.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        primary.setZoneAlarmStatus("garage", AlarmStatus.PENDING_ALARM);
+
+        startStandby();
+        awaitTrue(() -> standby.getLastAppliedSequence() == primary.getLastSequence());
+        Assertions.assertEquals(primaryStore.getSensors(), standbyStore.getSensors());
+        Assertions.assertEquals(ArmingStatus.ARMED_AWAY, standbyStore.getArmingStatus());
+        Assertions.assertEquals(AlarmStatus.PENDING_ALARM, standbyStore.getZoneAlarmStatus("garage"));
+    }
+
+    @Test
+    void stateLoadedBeforeReplicationStarted_reachesStandby() throws Exception {
+        primaryStore.addSensor(new Sensor("back door", SensorType.DOOR));
+        primaryStore.setArmingStatus(ArmingStatus.ARMED_HOME);
+        startPrimary(AckMode.ASYNC);
+
+        startStandby();
+        awaitTrue(() -> standbyStore.getSensors().size() == 1);
+        Assertions.assertEquals(primaryStore.getSensors(), standbyStore.getSensors());
+        Assertions.assertEquals(ArmingStatus.ARMED_HOME, standbyStore.getArmingStatus());
+        Assertions.assertEquals(0, standby.getLastAppliedSequence());
+    }
+
+    @Test
+    void standbyReconnectingToRestartedPrimary_getsSnapshotInsteadOfUnrelatedLog() throws Exception {
+        startPrimary(AckMode.ASYNC);
+        startStandby();
+        primary.addSensor(new Sensor("front door", SensorType.DOOR));
+        awaitTrue(() -> standby.getLastAppliedSequence() == 1);
+        InetSocketAddress address = primary.getLocalAddress();
+        primary.close();
+
+        //a restarted primary whose log happens to cover the standby's sequence
+        InMemorySecurityRepository restartedStore = new InMemorySecurityRepository();
+        restartedStore.addSensor(new Sensor("garage door", SensorType.DOOR));
+        primary = new ReplicatedSecurityRepository(restartedStore, address, AckMode.ASYNC, 2_000);
+        primary.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        primary.setArmingStatus(ArmingStatus.ARMED_AWAY);
+
+        awaitTrue(() -> standbyStore.getArmingStatus() == ArmingStatus.ARMED_AWAY);
+        Assertions.assertEquals(restartedStore.getSensors(), standbyStore.getSensors());
+        Assertions.assertEquals(AlarmStatus.PENDING_ALARM, standbyStore.getAlarmStatus());
+    }
+
+    @Test
+    void syncAck_changeIsOnStandbyWhenCallReturns() throws Exception {
+        startPrimary(AckMode.SYNC);
+        startStandby();
+        awaitTrue(() -> primary.getStandbyCount() == 1);
+
+        Sensor window = new Sensor("kitchen window", SensorType.WINDOW, "kitchen");
+        primary.addSensor(window);
+        window.setActive(true);
+        primary.updateSensor(window);
+        primary.setAlarmStatus(AlarmStatus.ALARM);
+
+        Assertions.assertTrue(standbyStore.getSensors().iterator().next().getActive());
+        Assertions.assertEquals("kitchen", standbyStore.getSensors().iterator().next().getZone());
+        Assertions.assertEquals(AlarmStatus.ALARM, standbyStore.getAlarmStatus());
+        Assertions.assertEquals(0, primary.getAckTimeouts());
+    }
+
+    @Test
+    void syncAck_standbyThatStopsAcking_isOnlyWaitedForOnce() throws Exception {
+        primary = new ReplicatedSecurityRepository(primaryStore,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), AckMode.SYNC, 200);
+        try (SocketChannel silent = SocketChannel.open(primary.getLocalAddress())) {
+            ByteBuffer hello = ReplicationProtocol.encodeHello(0, 0);
+            while (hello.hasRemaining()) {
+                silent.write(hello);
+            }
+            awaitTrue(() -> primary.getStandbyCount() == 1);
+
+            for (int i = 0; i < 5; i++) {
+                primary.setAlarmStatus(i % 2 == 0 ? AlarmStatus.ALARM : AlarmStatus.NO_ALARM);
+            }
+
+            Assertions.assertEquals(1, primary.getAckTimeouts());
+            Assertions.assertEquals(1, primary.getSlowStandbyCount());
+        }
+    }
+
+    @Test
+    void primaryNeverReached_isNotTakenOverFromUnlessAllowed() throws Exception {
+        InetSocketAddress nobody;
+        try (ServerSocketChannel closed = ServerSocketChannel.open()) {
+            closed.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            nobody = (InetSocketAddress) closed.getLocalAddress();
+        }
+        standby = new ReplicationStandby(nobody, standbyStore);
+        standby.start();
+
+        CompletableFuture<Boolean> failed = CompletableFuture.supplyAsync(() -> {
+            try {
+                return standby.awaitPrimaryFailure(50);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Assertions.assertTrue(standby.awaitPrimaryFailure(50, true));
+        Thread.sleep(300);
+        Assertions.assertFalse(failed.isDone());
+
+        standby.close();
+        Assertions.assertFalse(failed.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void primaryGoesAway_standbyReportsFailure() throws Exception {
+        startPrimary(AckMode.ASYNC);
+        startStandby();
+        awaitTrue(standby::isConnected);
+
+        primary.close();
+        primary = null;
+        Assertions.assertTrue(standby.awaitPrimaryFailure(200));
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            Assertions.assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            Thread.sleep(10);
+        }
+    }
+}
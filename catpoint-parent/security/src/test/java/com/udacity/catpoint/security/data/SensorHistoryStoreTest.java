@@ -0,0 +1,107 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+class SensorHistoryStoreTest {
+
+    private static final long MINUTE = 60_000;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+
+    private final SensorHistoryStore store = new SensorHistoryStore(Clock.fixed(Instant.EPOCH, ZoneOffset.UTC),
+            HOUR, 7 * DAY, HOUR, DAY);
+    private final UUID door = UUID.randomUUID();
+    private final UUID window = UUID.randomUUID();
+
+    @Test
+    void activationsPerHour_countedAcrossSealedAndOpenChunks() {
+        store.record(door, true, 10 * MINUTE);
+        store.record(door, false, 11 * MINUTE);
+        store.record(window, true, 20 * MINUTE);
+        store.record(door, true, HOUR + 5 * MINUTE);
+        store.record(door, true, 2 * HOUR + 5 * MINUTE);
+
+        Map<UUID, long[]> counts = store.activationsPerSensor(0, 3 * HOUR, HOUR);
+        Assertions.assertArrayEquals(new long[]{1, 1, 1}, counts.get(door));
+        Assertions.assertArrayEquals(new long[]{1, 0, 0}, counts.get(window));
+        Assertions.assertEquals(2, store.getPartitionCount());
+        Assertions.assertEquals(5, store.getRowCount());
+    }
+
+    @Test
+    void randomHistory_matchesBruteForce() {
+        Random random = new Random(11);
+        UUID[] sensors = new UUID[40];
+        for (int i = 0; i < sensors.length; i++) {
+            sensors[i] = UUID.randomUUID();
+        }
+        long[][] expected = new long[sensors.length][48];
+        long timestamp = 0;
+        for (int i = 0; i < 20_000; i++) {
+            timestamp += random.nextInt(15_000);
+            int sensor = random.nextInt(sensors.length);
+            boolean active = random.nextBoolean();
+            store.record(sensors[sensor], active, timestamp);
+            if (active && timestamp < 48 * HOUR) {
+                expected[sensor][(int) (timestamp / HOUR)]++;
+            }
+        }
+        Map<UUID, long[]> counts = store.activationsPerSensor(0, 48 * HOUR, HOUR);
+        for (int i = 0; i < sensors.length; i++) {
+            Assertions.assertArrayEquals(expected[i], counts.get(sensors[i]));
+        }
+    }
+
+    @Test
+    void oldChunks_rolledUpWithoutLosingCounts() {
+        for (int hour = 0; hour < 24; hour++) {
+            store.record(door, true, hour * HOUR + MINUTE);
+            store.record(door, true, hour * HOUR + 2 * MINUTE);
+        }
+        store.record(window, true, 9 * DAY);
+
+        Assertions.assertEquals(1, store.getRollupCount());
+        Map<UUID, long[]> perDay = store.activationsPerSensor(0, 10 * DAY, DAY);
+        Assertions.assertEquals(48, perDay.get(door)[0]);
+        Assertions.assertEquals(1, perDay.get(window)[9]);
+        Map<UUID, long[]> perHour = store.activationsPerSensor(0, DAY, HOUR);
+        Assertions.assertEquals(2, perHour.get(door)[23]);
+    }
+
+    @Test
+    void maintain_rollsUpAQuietStoreAndDropsOldAlarms() {
+        store.record(door, true, 10 * MINUTE);
+        store.recordAlarm(11 * MINUTE);
+        store.recordAlarm(2 * DAY);
+
+        store.maintain(2 * HOUR);
+        Assertions.assertEquals(1, store.getPartitionCount());
+        Assertions.assertEquals(0, store.getRollupCount());
+        Assertions.assertEquals(2, store.getAlarmCount());
+
+        store.maintain(9 * DAY);
+        Assertions.assertEquals(1, store.getRollupCount());
+        Assertions.assertEquals(1, store.getAlarmCount());
+        Assertions.assertEquals(1, store.activationsPerSensor(0, DAY, DAY).get(door)[0]);
+    }
+
+    @Test
+    void activationsBeforeAlarms_onlyCountsWithinWindow() {
+        store.record(door, true, 10 * MINUTE);
+        store.record(window, true, 12 * MINUTE);
+        store.recordAlarm(13 * MINUTE);
+        store.record(door, true, 40 * MINUTE);
+
+        Map<UUID, Long> counts = store.activationsBeforeAlarms(0, HOUR, 2 * MINUTE);
+        Assertions.assertEquals(1, counts.get(window).longValue());
+        Assertions.assertNull(counts.get(door));
+    }
+}
@@ -0,0 +1,42 @@
+package com.udacity.catpoint.security.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class AdaptiveFrameRateControllerTest {
+
+    @Test
+    void lagOverBudget_backsOffAndRecovers() {
+        AdaptiveFrameRateController controller = new AdaptiveFrameRateController(500, 40, 5_000);
+        Assertions.assertEquals(40, controller.getSampleIntervalMillis());
+
+        controller.record(900, 100);
+        long backedOff = controller.getSampleIntervalMillis();
+        Assertions.assertTrue(backedOff > 40);
+
+        for (int i = 0; i < 100; i++) {
+            controller.record(100, 20);
+        }
+        Assertions.assertTrue(controller.getSampleIntervalMillis() < backedOff);
+        Assertions.assertTrue(controller.getSampleIntervalMillis() >= 40);
+    }
+
+    @Test
+    void intervalNeverBelowDetectorLatency() {
+        AdaptiveFrameRateController controller = new AdaptiveFrameRateController(1_000, 10, 5_000);
+        for (int i = 0; i < 50; i++) {
+            controller.record(300, 300);
+        }
+        Assertions.assertTrue(controller.getSampleIntervalMillis() >= 290);
+    }
+
+    @Test
+    void intervalCappedAtMaximum() {
+        AdaptiveFrameRateController controller = new AdaptiveFrameRateController(100, 10, 1_000);
+        for (int i = 0; i < 20; i++) {
+            controller.record(10_000, 50);
+        }
+        Assertions.assertEquals(1_000, controller.getSampleIntervalMillis());
+        Assertions.assertEquals(1.0, controller.getSampledFrameRate(), 0.001);
+    }
+}
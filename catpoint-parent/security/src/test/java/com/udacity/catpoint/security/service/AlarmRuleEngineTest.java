@@ -0,0 +1,92 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.SensorType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class AlarmRuleEngineTest {
+
+    private AlarmRuleEngine engine;
+
+    @BeforeEach
+    void init() {
+        engine = AlarmRuleEngine.withDefaultRules();
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = ArmingStatus.class, names = {"ARMED_AWAY", "ARMED_HOME"})
+    void defaultRules_sensorActivatedWhileArmed_escalates(ArmingStatus armingStatus) {
+        Assertions.assertEquals(AlarmStatus.PENDING_ALARM, engine.evaluate(AlarmEvent.SENSOR_ACTIVATED,
+                armingStatus, AlarmStatus.NO_ALARM, SensorType.DOOR, false, false));
+        Assertions.assertEquals(AlarmStatus.ALARM, engine.evaluate(AlarmEvent.SENSOR_ACTIVATED,
+                armingStatus, AlarmStatus.PENDING_ALARM, SensorType.DOOR, false, false));
+    }
+
+    @Test
+    void defaultRules_sensorActivatedDuringExitDelay_onlyGoesPending() {
+        Assertions.assertEquals(AlarmStatus.PENDING_ALARM, engine.evaluate(AlarmEvent.SENSOR_ACTIVATED_DURING_EXIT,
+                ArmingStatus.ARMED_AWAY, AlarmStatus.PENDING_ALARM, SensorType.MOTION, false, false));
+        Assertions.assertNull(engine.evaluate(AlarmEvent.EXIT_DELAY_EXPIRED,
+                ArmingStatus.ARMED_AWAY, AlarmStatus.PENDING_ALARM, null, false, true));
+    }
+
+    @ParameterizedTest
+    @EnumSource(SensorType.class)
+    void defaultRules_sensorActivatedWhileDisarmed_keepsStatus(SensorType sensorType) {
+        Assertions.assertNull(engine.evaluate(AlarmEvent.SENSOR_ACTIVATED,
+                ArmingStatus.DISARMED, AlarmStatus.NO_ALARM, sensorType, false, false));
+    }
+
+    @Test
+    void defaultRules_catClearedWithActiveSensor_setsAlarm() {
+        Assertions.assertTrue(engine.dependsOnSensorState(AlarmEvent.CAT_CLEARED));
+        Assertions.assertFalse(engine.dependsOnSensorState(AlarmEvent.SENSOR_ACTIVATED));
+        Assertions.assertEquals(AlarmStatus.ALARM, engine.evaluate(AlarmEvent.CAT_CLEARED,
+                ArmingStatus.ARMED_AWAY, AlarmStatus.NO_ALARM, null, false, true));
+        Assertions.assertEquals(AlarmStatus.NO_ALARM, engine.evaluate(AlarmEvent.CAT_CLEARED,
+                ArmingStatus.ARMED_AWAY, AlarmStatus.NO_ALARM, null, false, false));
+    }
+
+    @Test
+    void unknownStatus_onlyMatchesUnrestrictedRules() {
+        Assertions.assertEquals(AlarmStatus.ALARM, engine.evaluate(AlarmEvent.SENSOR_ACTIVATED,
+                null, AlarmStatus.PENDING_ALARM, SensorType.WINDOW, false, false));
+    }
+
+    @Test
+    void reload_sitePolicy_motionOnlyCountsWhenArmedAway() {
+        List<AlarmRule> rules = new ArrayList<>();
+        rules.add(AlarmRule.on(AlarmEvent.SENSOR_ACTIVATED)
+                .whenSensorType(SensorType.MOTION)
+                .whenArming(ArmingStatus.ARMED_HOME)
+                .keep());
+        rules.add(AlarmRule.on(AlarmEvent.SENSOR_ACTIVATED)
+                .whenSensorType(SensorType.DOOR)
+                .whenArming(ArmingStatus.ARMED_HOME, ArmingStatus.ARMED_AWAY)
+                .whenCatDetected(true)
+                .then(AlarmStatus.ALARM));
+        rules.addAll(AlarmRuleEngine.defaultRules());
+        engine.reload(rules);
+
+        Assertions.assertNull(engine.evaluate(AlarmEvent.SENSOR_ACTIVATED,
+                ArmingStatus.ARMED_HOME, AlarmStatus.NO_ALARM, SensorType.MOTION, false, false));
+        Assertions.assertEquals(AlarmStatus.PENDING_ALARM, engine.evaluate(AlarmEvent.SENSOR_ACTIVATED,
+                ArmingStatus.ARMED_AWAY, AlarmStatus.NO_ALARM, SensorType.MOTION, false, false));
+        Assertions.assertEquals(AlarmStatus.ALARM, engine.evaluate(AlarmEvent.SENSOR_ACTIVATED,
+                ArmingStatus.ARMED_AWAY, AlarmStatus.NO_ALARM, SensorType.DOOR, true, false));
+    }
+
+    @Test
+    void rule_nullOutcome_rejected() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> AlarmRule.on(AlarmEvent.CAT_DETECTED).then(null));
+    }
+}
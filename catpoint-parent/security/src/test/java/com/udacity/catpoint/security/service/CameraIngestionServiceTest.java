@@ -0,0 +1,136 @@
+package com.udacity.catpoint.security.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+class CameraIngestionServiceTest {
+
+    private final Path spoolDirectory;
+    private final List<Integer> detectedWidths = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch releaseDetector = new CountDownLatch(1);
+    private CameraIngestionService service;
+
+    CameraIngestionServiceTest() throws IOException {
+        spoolDirectory = Files.createTempDirectory("catpoint-spool");
+    }
+
+    @AfterEach
+    void cleanUp() throws IOException {
+        releaseDetector.countDown();
+        if (service != null) {
+            service.close();
+        }
+        try (Stream<Path> files = Files.walk(spoolDirectory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Files are written before the service starts, so the watch service ignores them and the
+     * test decides when each one arrives.
+     */
+    private Path image(String name, int width) throws IOException {
+        Path file = spoolDirectory.resolve(name);
+        ImageIO.write(new BufferedImage(width, 8, BufferedImage.TYPE_INT_RGB), "png", file.toFile());
+        return file;
+    }
+
+    /**
+     * Starts a service whose detector holds on to the first frame until the test releases it.
+     */
+    private void start(int maxInFlight) throws IOException {
+        service = new CameraIngestionService(spoolDirectory, image -> {
+            detectedWidths.add(image.getWidth());
+            if (detectedWidths.size() == 1) {
+                try {
+                    releaseDetector.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, 2, maxInFlight);
+        service.start();
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            Assertions.assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void staleFramesFromOneCamera_areDroppedWhileDetectionIsBusy() throws Exception {
+        List<Path> files = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            files.add(image("cam_" + i + ".png", 10 + i));
+        }
+        start(4);
+
+        service.offer(files.get(0));
+        waitFor(() -> detectedWidths.size() == 1);
+        files.subList(1, 5).forEach(service::offer);
+        waitFor(() -> service.getDroppedFrameCount() == 3 && service.getInFlightCount() == 2);
+        releaseDetector.countDown();
+        waitFor(() -> service.getProcessedFrameCount() == 2);
+
+        Assertions.assertEquals(List.of(11, 15), detectedWidths);
+        waitFor(() -> service.getInFlightCount() == 0);
+    }
+
+    @Test
+    void framesInFlight_neverExceedTheLimit() throws Exception {
+        List<Path> files = new ArrayList<>();
+        for (String camera : List.of("a", "b", "c", "d")) {
+            files.add(image(camera + "_1.png", 20));
+        }
+        start(2);
+
+        service.offer(files.get(0));
+        waitFor(() -> detectedWidths.size() == 1);
+        files.subList(1, 4).forEach(service::offer);
+        waitFor(() -> service.getInFlightCount() == 2);
+        Thread.sleep(50);
+        Assertions.assertEquals(2, service.getInFlightCount());
+        Assertions.assertEquals(1, detectedWidths.size());
+
+        releaseDetector.countDown();
+        waitFor(() -> service.getProcessedFrameCount() == 4);
+        Assertions.assertEquals(0, service.getDroppedFrameCount());
+        waitFor(() -> service.getInFlightCount() == 0);
+    }
+
+    @Test
+    void fileThatFailsToDecode_givesItsSlotBack() throws Exception {
+        Path broken = spoolDirectory.resolve("cam_1.png");
+        Files.write(broken, new byte[]{(byte) 0x89, 'P', 'N', 'G', 1, 2, 3});
+        Path good = image("other_1.png", 30);
+        releaseDetector.countDown();
+        start(1);
+
+        service.offer(broken);
+        waitFor(() -> service.getFailedFrameCount() == 1);
+        service.offer(good);
+        waitFor(() -> service.getProcessedFrameCount() == 1);
+
+        Assertions.assertEquals(List.of(30), detectedWidths);
+        Assertions.assertEquals(0, service.getInFlightCount());
+    }
+}
@@ -0,0 +1,125 @@
+package com.udacity.catpoint.security.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+class EventPublisherTest {
+
+    // delivers on the calling thread, so tests can check results straight away
+    private final EventPublisher<Integer> publisher = new EventPublisher<>(Runnable::run, 2, OverflowPolicy.DROP);
+
+    @Test
+    void deliversOnlyRequestedEvents() {
+        RecordingSubscriber subscriber = new RecordingSubscriber(1);
+        publisher.subscribe(subscriber, 10, OverflowPolicy.DROP);
+        for (int i = 0; i < 4; i++) {
+            publisher.submit(i);
+        }
+        Assertions.assertEquals(List.of(0), subscriber.received);
+
+        subscriber.subscription.request(2);
+        Assertions.assertEquals(List.of(0, 1, 2), subscriber.received);
+    }
+
+    @Test
+    void fullBufferWithDropPolicy_keepsOldestEvents() {
+        RecordingSubscriber subscriber = new RecordingSubscriber(0);
+        publisher.subscribe(subscriber);
+        for (int i = 0; i < 5; i++) {
+            publisher.submit(i);
+        }
+        subscriber.subscription.request(Long.MAX_VALUE);
+        Assertions.assertEquals(List.of(0, 1), subscriber.received);
+        Assertions.assertEquals(3, publisher.getDroppedEvents());
+    }
+
+    @Test
+    void fullBufferWithLatestPolicy_keepsNewestEvents() {
+        RecordingSubscriber subscriber = new RecordingSubscriber(0);
+        publisher.subscribe(subscriber, 2, OverflowPolicy.LATEST);
+        for (int i = 0; i < 5; i++) {
+            publisher.submit(i);
+        }
+        subscriber.subscription.request(Long.MAX_VALUE);
+        Assertions.assertEquals(List.of(3, 4), subscriber.received);
+    }
+
+    @Test
+    void fullBufferWithErrorPolicy_signalsErrorAndUnsubscribes() {
+        RecordingSubscriber slow = new RecordingSubscriber(0);
+        RecordingSubscriber fast = new RecordingSubscriber(Long.MAX_VALUE);
+        publisher.subscribe(slow, 2, OverflowPolicy.ERROR);
+        publisher.subscribe(fast);
+        for (int i = 0; i < 3; i++) {
+            publisher.submit(i);
+        }
+        Assertions.assertNotNull(slow.error);
+        Assertions.assertTrue(slow.received.isEmpty());
+        Assertions.assertEquals(List.of(0, 1, 2), fast.received);
+        Assertions.assertEquals(1, publisher.getSubscriberCount());
+    }
+
+    @Test
+    void close_completesAfterBufferedEvents() {
+        RecordingSubscriber subscriber = new RecordingSubscriber(0);
+        publisher.subscribe(subscriber);
+        publisher.submit(7);
+        publisher.close();
+        Assertions.assertFalse(subscriber.completed);
+
+        subscriber.subscription.request(1);
+        Assertions.assertEquals(List.of(7), subscriber.received);
+        Assertions.assertTrue(subscriber.completed);
+        Assertions.assertFalse(publisher.hasSubscribers());
+    }
+
+    @Test
+    void cancel_stopsDelivery() {
+        RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+        publisher.subscribe(subscriber);
+        publisher.submit(1);
+        subscriber.subscription.cancel();
+        publisher.submit(2);
+        Assertions.assertEquals(List.of(1), subscriber.received);
+        Assertions.assertFalse(publisher.hasSubscribers());
+    }
+
+    private static class RecordingSubscriber implements Flow.Subscriber<Integer> {
+        private final long initialRequest;
+        private final List<Integer> received = new ArrayList<>();
+        private Flow.Subscription subscription;
+        private Throwable error;
+        private boolean completed;
+
+        RecordingSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (initialRequest > 0) {
+                subscription.request(initialRequest);
+            }
+        }
+
+        @Override
+        public void onNext(Integer item) {
+            received.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+}
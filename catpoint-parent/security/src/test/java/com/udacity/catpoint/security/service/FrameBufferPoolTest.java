@@ -0,0 +1,89 @@
+package com.udacity.catpoint.security.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+class FrameBufferPoolTest {
+
+    private final FrameBufferPool pool = new FrameBufferPool(2, true);
+
+    @Test
+    void releasedBufferIsReusedForSameShape() {
+        PooledFrame first = pool.acquire(64, 48, BufferedImage.TYPE_INT_RGB);
+        BufferedImage image = first.getImage();
+        first.release();
+
+        PooledFrame second = pool.acquire(64, 48, BufferedImage.TYPE_INT_RGB);
+        Assertions.assertSame(image, second.getImage());
+        Assertions.assertEquals(1, pool.getAllocationCount());
+        Assertions.assertEquals(64 * 48 * 4, pool.getAllocatedBytes());
+
+        PooledFrame otherType = pool.acquire(64, 48, BufferedImage.TYPE_3BYTE_BGR);
+        Assertions.assertNotSame(image, otherType.getImage());
+        Assertions.assertEquals(2, pool.getAllocationCount());
+    }
+
+    @Test
+    void releasingTwice_throws() {
+        PooledFrame frame = pool.acquire(8, 8, BufferedImage.TYPE_INT_RGB);
+        frame.release();
+        Assertions.assertThrows(IllegalStateException.class, frame::release);
+    }
+
+    @Test
+    void idleBuffersBeyondLimitAreDiscarded() {
+        PooledFrame a = pool.acquire(8, 8, BufferedImage.TYPE_INT_RGB);
+        PooledFrame b = pool.acquire(8, 8, BufferedImage.TYPE_INT_RGB);
+        PooledFrame c = pool.acquire(8, 8, BufferedImage.TYPE_INT_RGB);
+        a.release();
+        b.release();
+        c.release();
+        Assertions.assertEquals(2, pool.getIdleCount());
+        Assertions.assertEquals(1, pool.getDiscardedCount());
+    }
+
+    @Test
+    void debugMode_reportsFramesThatWereNotReleased() {
+        PooledFrame released = pool.acquire(8, 8, BufferedImage.TYPE_INT_RGB);
+        pool.acquire(16, 16, BufferedImage.TYPE_INT_RGB);
+        released.release();
+
+        Assertions.assertEquals(1, pool.findLeaks(0).size());
+        Assertions.assertTrue(pool.findLeaks(0).get(0).startsWith("16x16"));
+        Assertions.assertTrue(pool.findLeaks(60_000).isEmpty());
+        Assertions.assertThrows(IllegalStateException.class, () -> new FrameBufferPool(2, false).findLeaks(0));
+    }
+
+    @Test
+    void decoder_decodesIntoReusedBuffersWithoutAllocating() throws IOException {
+        FrameDecoder decoder = new FrameDecoder(pool);
+        for (int i = 0; i < 5; i++) {
+            int rgb = 0x102030 * (i + 1);
+            try (PooledFrame frame = decoder.decode(encode(32, 24, rgb))) {
+                Assertions.assertEquals(32, frame.getImage().getWidth());
+                Assertions.assertEquals(rgb, frame.getImage().getRGB(31, 23) & 0xFFFFFF);
+            }
+        }
+        Assertions.assertEquals(5, pool.getAcquisitionCount());
+        Assertions.assertEquals(1, pool.getAllocationCount());
+        Assertions.assertNull(decoder.decode(new byte[]{1, 2, 3}));
+        Assertions.assertTrue(pool.findLeaks(0).isEmpty());
+    }
+
+    private static byte[] encode(int width, int height, int rgb) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, rgb);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,95 @@
+package com.udacity.catpoint.security.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class HierarchicalTimingWheelTest {
+
+    private ManualClock clock;
+    private HierarchicalTimingWheel wheel;
+
+    @BeforeEach
+    void init() {
+        clock = new ManualClock(1_000);
+        wheel = new HierarchicalTimingWheel(10, 8, clock);
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {0, 5, 10, 79, 80, 641, 5_120, 100_000})
+    void timerFiresOnTimeAndNotBefore(long delay) {
+        AtomicInteger fired = new AtomicInteger();
+        wheel.schedule(delay, fired::incrementAndGet);
+
+        if (delay > 0) {
+            clock.advance(delay - 1);
+            wheel.advance();
+            Assertions.assertEquals(0, fired.get());
+        }
+
+        clock.advance(20);
+        wheel.advance();
+        Assertions.assertEquals(1, fired.get());
+        Assertions.assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void cancelledTimerNeverFires() {
+        AtomicInteger fired = new AtomicInteger();
+        HierarchicalTimingWheel.Timeout timeout = wheel.schedule(500, fired::incrementAndGet);
+
+        Assertions.assertTrue(timeout.cancel());
+        Assertions.assertFalse(timeout.cancel());
+        clock.advance(1_000);
+        wheel.advance();
+        Assertions.assertEquals(0, fired.get());
+        Assertions.assertTrue(timeout.isCancelled());
+    }
+
+    @Test
+    void manyTimers_fireWithinOneTickAcrossLevels() {
+        Random random = new Random(42);
+        List<long[]> fired = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            long deadline = clock.millis() + random.nextInt(200_000);
+            wheel.schedule(deadline - clock.millis(), () -> fired.add(new long[]{deadline, clock.millis()}));
+        }
+        Assertions.assertEquals(10_000, wheel.size());
+
+        for (int step = 0; step < 20_100; step++) {
+            clock.advance(10);
+            wheel.advance();
+        }
+        for (long[] timer : fired) {
+            Assertions.assertTrue(timer[1] >= timer[0]);
+            Assertions.assertTrue(timer[1] < timer[0] + 20);
+        }
+        Assertions.assertEquals(10_000, fired.size());
+        Assertions.assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void taskCanScheduleAnotherTimer() {
+        AtomicInteger fired = new AtomicInteger();
+        wheel.schedule(50, () -> wheel.schedule(50, fired::incrementAndGet));
+
+        clock.advance(60);
+        wheel.advance();
+        Assertions.assertEquals(1, wheel.size());
+        clock.advance(60);
+        wheel.advance();
+        Assertions.assertEquals(1, fired.get());
+    }
+
+    @Test
+    void wheelSizeMustBePowerOfTwo() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new HierarchicalTimingWheel(10, 12, clock));
+    }
+}
@@ -0,0 +1,89 @@
+package com.udacity.catpoint.security.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+class MjpegFrameSourceTest {
+
+    private byte[] jpeg;
+
+    @BeforeEach
+    void init() throws IOException {
+        BufferedImage image = new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.ORANGE);
+        g.fillOval(10, 10, 30, 20);
+        g.dispose();
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", os);
+        jpeg = os.toByteArray();
+    }
+
+    @Test
+    void multipartStream_yieldsEachFrameThenEnds() throws IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        for (int i = 0; i < 3; i++) {
+            stream.write("--frame\r\nContent-Type: image/jpeg\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            stream.write(jpeg);
+            stream.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+        }
+
+        try (MjpegFrameSource source = new MjpegFrameSource(new ByteArrayInputStream(stream.toByteArray()))) {
+            for (int i = 0; i < 3; i++) {
+                byte[] frame = source.nextFrame();
+                Assertions.assertArrayEquals(jpeg, frame);
+                Assertions.assertNotNull(ImageIO.read(new ByteArrayInputStream(frame)));
+            }
+            Assertions.assertNull(source.nextFrame());
+        }
+    }
+
+    @Test
+    void truncatedFrameAtEndOfStream_isDropped() throws IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        stream.write(jpeg);
+        stream.write(Arrays.copyOf(jpeg, jpeg.length / 2));
+
+        try (MjpegFrameSource source = new MjpegFrameSource(new ByteArrayInputStream(stream.toByteArray()))) {
+            Assertions.assertArrayEquals(jpeg, source.nextFrame());
+            Assertions.assertNull(source.nextFrame());
+        }
+    }
+
+    @Test
+    void frameCutShortByTheNextOne_doesNotLoseTheNextOne() throws IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        stream.write(Arrays.copyOf(jpeg, jpeg.length - 10));
+        stream.write(jpeg);
+
+        try (MjpegFrameSource source = new MjpegFrameSource(new ByteArrayInputStream(stream.toByteArray()))) {
+            Assertions.assertArrayEquals(jpeg, source.nextFrame());
+            Assertions.assertNull(source.nextFrame());
+            Assertions.assertEquals(1, source.getDroppedFrameCount());
+        }
+    }
+
+    @Test
+    void frameLargerThanTheMaximum_isSkipped() throws IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        //a start of image and a comment segment that never ends in an end of image
+        stream.write(new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xFE, (byte) 0xFF, (byte) 0xFF});
+        stream.write(new byte[0xFFFD]);
+        stream.write(jpeg);
+
+        try (MjpegFrameSource source = new MjpegFrameSource(new ByteArrayInputStream(stream.toByteArray()), jpeg.length)) {
+            Assertions.assertArrayEquals(jpeg, source.nextFrame());
+            Assertions.assertEquals(1, source.getDroppedFrameCount());
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.ImageService;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.InMemorySecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+
+class PriorityIntakeTest {
+
+    private final Queue<Runnable> posted = new ArrayDeque<>();
+    private final SecurityService securityService =
+            new SecurityService(new InMemorySecurityRepository(), Mockito.mock(ImageService.class));
+    private final PriorityIntake intake = new PriorityIntake(securityService, posted::add, 2);
+
+    private void runPosted() {
+        while (!posted.isEmpty()) {
+            posted.poll().run();
+        }
+    }
+
+    @Test
+    void highPriorityCommands_runBeforeQueuedLowPriorityOnes() {
+        List<String> order = new ArrayList<>();
+        intake.submit(PriorityIntake.Lane.LOW, () -> order.add("low 1"));
+        intake.submit(PriorityIntake.Lane.LOW, () -> order.add("low 2"));
+        intake.submit(PriorityIntake.Lane.HIGH, () -> order.add("high"));
+
+        runPosted();
+
+        Assertions.assertEquals(List.of("high", "low 1", "low 2"), order);
+    }
+
+    @Test
+    void lowPriorityCommands_runAfterTooManyHighPriorityOnesInARow() {
+        List<String> order = new ArrayList<>();
+        intake.submit(PriorityIntake.Lane.LOW, () -> order.add("low"));
+        for (int i = 0; i < 4; i++) {
+            String name = "high " + i;
+            intake.submit(PriorityIntake.Lane.HIGH, () -> order.add(name));
+        }
+
+        runPosted();
+
+        Assertions.assertEquals(List.of("high 0", "high 1", "low", "high 2", "high 3"), order);
+        Assertions.assertEquals(1, intake.getLowForced());
+        Assertions.assertEquals(4, intake.getRun(PriorityIntake.Lane.HIGH));
+        Assertions.assertEquals(1, intake.getRun(PriorityIntake.Lane.LOW));
+    }
+
+    @Test
+    void activationWhileArmed_jumpsBulkWorkAndRecordsAlarmLatency() {
+        Sensor sensor = new Sensor("Front door", SensorType.DOOR);
+        securityService.addSensor(sensor);
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        securityService.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        List<AlarmStatus> seenByBulkWork = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            intake.submit(PriorityIntake.Lane.LOW, () -> seenByBulkWork.add(securityService.getAlarmStatus()));
+        }
+
+        CompletableFuture<Void> activation = intake.changeSensorActivationStatus(sensor, true);
+        runPosted();
+
+        Assertions.assertTrue(activation.isDone());
+        Assertions.assertEquals(List.of(AlarmStatus.ALARM, AlarmStatus.ALARM, AlarmStatus.ALARM), seenByBulkWork);
+        Assertions.assertEquals(1, intake.getAlarmsRaised());
+        Assertions.assertTrue(intake.getWorstActivationToAlarmNanos() > 0);
+    }
+
+    @Test
+    void activationLeftPending_isMeasuredUntilTheEntryDelayRaisesTheAlarm() {
+        ManualClock clock = new ManualClock(0);
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(100, 64, clock);
+        securityService.enableAlarmDelays(wheel, posted::add, 30_000, 0);
+        Sensor sensor = new Sensor("Front door", SensorType.DOOR);
+        securityService.addSensor(sensor);
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+
+        intake.reportSensorReading(sensor, true);
+        Assertions.assertEquals(1, intake.getQueued(PriorityIntake.Lane.HIGH));
+        runPosted();
+        Assertions.assertEquals(AlarmStatus.PENDING_ALARM, securityService.getAlarmStatus());
+        Assertions.assertEquals(0, intake.getAlarmsRaised());
+
+        clock.advance(31_000);
+        wheel.advance();
+        runPosted();
+
+        Assertions.assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+        Assertions.assertEquals(1, intake.getAlarmsRaised());
+        Assertions.assertTrue(intake.getWorstActivationToAlarmNanos() > 0);
+    }
+
+    @Test
+    void activationWhosePendingAlarmWasCleared_isNotBlamedForALaterAlarm() {
+        Sensor sensor = new Sensor("Front door", SensorType.DOOR);
+        securityService.addSensor(sensor);
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+
+        intake.reportSensorReading(sensor, true);
+        runPosted();
+        Assertions.assertEquals(AlarmStatus.PENDING_ALARM, securityService.getAlarmStatus());
+        intake.reportSensorReading(sensor, false);
+        runPosted();
+        Assertions.assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+
+        securityService.setAlarmStatus(AlarmStatus.ALARM);
+
+        Assertions.assertEquals(0, intake.getAlarmsRaised());
+    }
+
+    @Test
+    void activationWhileDisarmed_goesToTheLowPriorityLane() {
+        Sensor sensor = new Sensor("Front door", SensorType.DOOR);
+        securityService.addSensor(sensor);
+
+        intake.changeSensorActivationStatus(sensor, true);
+
+        Assertions.assertEquals(1, intake.getQueued(PriorityIntake.Lane.LOW));
+        runPosted();
+        Assertions.assertTrue(sensor.getActive());
+        Assertions.assertEquals(0, intake.getAlarmsRaised());
+    }
+
+    @Test
+    void failedCommand_completesExceptionallyAndLaterCommandsStillRun() {
+        CompletableFuture<Void> failed = intake.submit(PriorityIntake.Lane.HIGH, () -> {
+            throw new IllegalStateException("boom");
+        });
+        CompletableFuture<Void> next = intake.submit(PriorityIntake.Lane.LOW, () -> { });
+
+        runPosted();
+
+        Assertions.assertTrue(failed.isCompletedExceptionally());
+        Assertions.assertTrue(next.isDone());
+        Assertions.assertFalse(next.isCompletedExceptionally());
+    }
+}
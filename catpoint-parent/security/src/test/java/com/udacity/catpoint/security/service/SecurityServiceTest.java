@@ -1,5 +1,7 @@
 package com.udacity.catpoint.security.service;
 
+import com.udacity.catpoint.image.service.DetectedLabel;
+import com.udacity.catpoint.image.service.DetectionResult;
 import com.udacity.catpoint.image.service.ImageService;
 import com.udacity.catpoint.security.data.*;
 import org.junit.jupiter.api.Assertions;
@@ -14,6 +16,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.awt.image.BufferedImage;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 
@@ -189,4 +192,164 @@ class SecurityServiceTest {
         securityService.processImage(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB));
         verify(securityRepository, times(1)).setAlarmStatus(AlarmStatus.ALARM);
     }
+
+    // entry delay: a pending alarm escalates on its own
+    @Test
+    void pendingAlarmOutlivesEntryDelay_setAlarmToAlarm() {
+        ManualClock clock = new ManualClock(0);
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(100, 64, clock);
+        securityService.enableAlarmDelays(wheel, Runnable::run, 30_000, 0);
+        when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_AWAY);
+        when(securityRepository.getAlarmStatus()).thenReturn(AlarmStatus.NO_ALARM, AlarmStatus.PENDING_ALARM);
+
+        securityService.changeSensorActivationStatus(sensor, true);
+        verify(securityRepository, times(1)).setAlarmStatus(AlarmStatus.PENDING_ALARM);
+
+        clock.advance(29_000);
+        wheel.advance();
+        verify(securityRepository, never()).setAlarmStatus(AlarmStatus.ALARM);
+
+        clock.advance(2_000);
+        wheel.advance();
+        verify(securityRepository, times(1)).setAlarmStatus(AlarmStatus.ALARM);
+    }
+
+    // entry delay: leaving the pending state cancels the delay
+    @Test
+    void pendingAlarmClearedBeforeEntryDelay_noAlarm() {
+        ManualClock clock = new ManualClock(0);
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(100, 64, clock);
+        securityService.enableAlarmDelays(wheel, Runnable::run, 30_000, 0);
+        when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_AWAY);
+        when(securityRepository.getAlarmStatus()).thenReturn(AlarmStatus.NO_ALARM, AlarmStatus.PENDING_ALARM);
+
+        securityService.changeSensorActivationStatus(sensor, true);
+        securityService.changeSensorActivationStatus(sensor, false);
+        Assertions.assertEquals(0, wheel.size());
+
+        clock.advance(60_000);
+        wheel.advance();
+        verify(securityRepository, never()).setAlarmStatus(AlarmStatus.ALARM);
+    }
+
+    // exit delay: a sensor still active when the exit delay ends starts the entry delay
+    @Test
+    void sensorStillActiveAfterExitDelay_entryDelayThenAlarm() {
+        ManualClock clock = new ManualClock(0);
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(100, 64, clock);
+        securityService.enableAlarmDelays(wheel, Runnable::run, 30_000, 60_000);
+        when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_AWAY);
+        when(securityRepository.getAlarmStatus())
+                .thenReturn(AlarmStatus.NO_ALARM, AlarmStatus.NO_ALARM, AlarmStatus.PENDING_ALARM);
+        when(securityRepository.getSensorsState()).thenReturn(true);
+
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        securityService.changeSensorActivationStatus(sensor, true);
+        verify(securityRepository, times(1)).setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        // only the exit delay is running
+        Assertions.assertEquals(1, wheel.size());
+
+        clock.advance(61_000);
+        wheel.advance();
+        verify(securityRepository, never()).setAlarmStatus(AlarmStatus.ALARM);
+        // the entry delay took over
+        Assertions.assertEquals(1, wheel.size());
+
+        clock.advance(31_000);
+        wheel.advance();
+        verify(securityRepository, times(1)).setAlarmStatus(AlarmStatus.ALARM);
+    }
+
+    // exit delay: people leaving may trip several sensors without raising the alarm
+    @Test
+    void twoActivationsDuringExitDelay_staysPending() {
+        ManualClock clock = new ManualClock(0);
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(100, 64, clock);
+        securityService.enableAlarmDelays(wheel, Runnable::run, 30_000, 60_000);
+        Sensor hall = new Sensor("hall", SensorType.MOTION);
+        when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_AWAY);
+        when(securityRepository.getAlarmStatus())
+                .thenReturn(AlarmStatus.NO_ALARM, AlarmStatus.NO_ALARM, AlarmStatus.PENDING_ALARM);
+
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        securityService.changeSensorActivationStatus(sensor, true);
+        securityService.changeSensorActivationStatus(hall, true);
+
+        verify(securityRepository, times(2)).setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        verify(securityRepository, never()).setAlarmStatus(AlarmStatus.ALARM);
+    }
+
+    // zones: a sensor in an armed zone only changes that zone's alarm status
+    @Test
+    void zoneSensorActivatedWhileZoneArmed_onlyZonePending() {
+        Sensor garage = new Sensor("garage door", SensorType.DOOR, "garage");
+        when(securityRepository.getZoneArmingStatus("garage")).thenReturn(ArmingStatus.ARMED_AWAY);
+        when(securityRepository.getZoneAlarmStatus("garage")).thenReturn(AlarmStatus.NO_ALARM);
+
+        securityService.changeSensorActivationStatus(garage, true);
+        verify(securityRepository, times(1)).setZoneAlarmStatus("garage", AlarmStatus.PENDING_ALARM);
+        verify(securityRepository, never()).setAlarmStatus(any(AlarmStatus.class));
+    }
+
+    // zones: arming a zone only resets the sensors in that zone
+    @Test
+    void zoneIsArmed_resetOnlyZoneSensors() {
+        Sensor garage = new Sensor("garage door", SensorType.DOOR, "garage");
+        garage.setActive(true);
+        when(securityRepository.getZoneArmingStatus("garage")).thenReturn(ArmingStatus.ARMED_HOME);
+        when(securityRepository.getZoneAlarmStatus("garage")).thenReturn(AlarmStatus.NO_ALARM);
+        when(securityRepository.getSensorsInZone("garage")).thenReturn(Set.of(garage));
+
+        securityService.setZoneArmingStatus("garage", ArmingStatus.ARMED_HOME);
+        Assertions.assertFalse(garage.getActive());
+        verify(securityRepository, never()).getSensors();
+        verify(securityRepository, times(1)).setZoneArmingStatus("garage", ArmingStatus.ARMED_HOME);
+    }
+
+    // zones: disarming the system clears the alarm of zones that follow the system arming status
+    @Test
+    void zoneFollowingSystemInAlarm_systemDisarmed_zoneNoAlarm() {
+        when(securityRepository.getZones()).thenReturn(Set.of("garage", "office"));
+        when(securityRepository.getZoneArmingStatus("office")).thenReturn(ArmingStatus.ARMED_AWAY);
+        when(securityRepository.getZoneAlarmStatus("garage")).thenReturn(AlarmStatus.ALARM);
+
+        securityService.setArmingStatus(ArmingStatus.DISARMED);
+        verify(securityRepository, times(1)).setZoneAlarmStatus("garage", AlarmStatus.NO_ALARM);
+        verify(securityRepository, never()).setZoneAlarmStatus(eq("office"), any(AlarmStatus.class));
+    }
+
+    // zones: a pending zone escalates once its own entry delay has passed
+    @Test
+    void zonePendingOutlivesEntryDelay_zoneAlarm() {
+        ManualClock clock = new ManualClock(0);
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(100, 64, clock);
+        securityService.enableAlarmDelays(wheel, Runnable::run, 30_000, 0);
+        Sensor garage = new Sensor("garage door", SensorType.DOOR, "garage");
+        when(securityRepository.getZoneArmingStatus("garage")).thenReturn(ArmingStatus.ARMED_AWAY);
+        when(securityRepository.getZoneAlarmStatus("garage")).thenReturn(AlarmStatus.NO_ALARM, AlarmStatus.PENDING_ALARM);
+
+        securityService.changeSensorActivationStatus(garage, true);
+        verify(securityRepository, times(1)).setZoneAlarmStatus("garage", AlarmStatus.PENDING_ALARM);
+        Assertions.assertEquals(1, wheel.size());
+
+        clock.advance(31_000);
+        wheel.advance();
+        verify(securityRepository, times(1)).setZoneAlarmStatus("garage", AlarmStatus.ALARM);
+        verify(securityRepository, never()).setAlarmStatus(any(AlarmStatus.class));
+    }
+
+    // detection results: a threshhold change is applied to the last frame without detecting it again
+    @Test
+    void catConfidenceThreshholdRaisedAboveLastFrame_catClearedWithoutNewDetection() {
+        when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_HOME);
+        DetectionResult detection = new DetectionResult(List.of(new DetectedLabel("Cat", 60.0f, List.of())));
+
+        securityService.processDetection(detection);
+        verify(securityRepository, times(1)).setAlarmStatus(AlarmStatus.ALARM);
+
+        securityService.setCatConfidenceThreshhold(55.0f);
+        securityService.setCatConfidenceThreshhold(70.0f);
+        verify(securityRepository, times(1)).setAlarmStatus(AlarmStatus.NO_ALARM);
+        verify(imageService, never()).imageContainsCat(any(), anyFloat());
+    }
 }
@@ -0,0 +1,107 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.ImageService;
+import com.udacity.catpoint.security.data.InMemorySecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+class SensorBulkTransferTest {
+
+    private final SecurityService securityService =
+            new SecurityService(new InMemorySecurityRepository(), Mockito.mock(ImageService.class));
+    private final SensorBulkTransfer transfer = new SensorBulkTransfer(securityService, 2);
+
+    @Test
+    void importCsv_addsValidRowsInChunks() throws IOException {
+        String csv = "sensorId,name,sensorType,zone\n"
+                + "0c7a6f76-49f7-4c33-b8b5-0e5d2f4c2f1a,Front door,DOOR,Ground floor\n"
+                + ",\"Kitchen, east\",window,\n"
+                + ",Hall,MOTION\n";
+        List<Long> progress = new ArrayList<>();
+
+        SensorBulkTransfer.ImportReport report = transfer.importSensors(new StringReader(csv),
+                SensorBulkTransfer.Format.CSV, r -> progress.add(r.getImported()));
+
+        Assertions.assertEquals(3, report.getImported());
+        Assertions.assertEquals(2, report.getChunks());
+        Assertions.assertEquals(List.of(2L, 3L), progress);
+        Assertions.assertEquals(3, securityService.getSensors().size());
+        Sensor door = securityService.getSensors().stream()
+                .filter(s -> s.getName().equals("Front door")).findFirst().orElseThrow();
+        Assertions.assertEquals(UUID.fromString("0c7a6f76-49f7-4c33-b8b5-0e5d2f4c2f1a"), door.getSensorId());
+        Assertions.assertEquals("Ground floor", door.getZone());
+        Assertions.assertFalse(door.getActive());
+        Assertions.assertTrue(securityService.getSensors().stream().anyMatch(s -> s.getName().equals("Kitchen, east")));
+    }
+
+    @Test
+    void importCsv_headerAfterBlankLinesIsSkipped() throws IOException {
+        String csv = "\n  \nsensorId,name,sensorType,zone\n,Hall,MOTION\n";
+
+        SensorBulkTransfer.ImportReport report = transfer.importSensors(new StringReader(csv),
+                SensorBulkTransfer.Format.CSV, null);
+
+        Assertions.assertEquals(1, report.getImported());
+        Assertions.assertEquals(0, report.getRejected());
+    }
+
+    @Test
+    void importEndingOnAFullChunk_reportsItOnce() throws IOException {
+        String csv = ",Hall,MOTION\n,Attic,WINDOW\n";
+        List<Long> progress = new ArrayList<>();
+
+        transfer.importSensors(new StringReader(csv), SensorBulkTransfer.Format.CSV, r -> progress.add(r.getImported()));
+
+        Assertions.assertEquals(List.of(2L), progress);
+    }
+
+    @Test
+    void importJsonLines_skipsDuplicatesAndRejectsInvalidRows() throws IOException {
+        Sensor existing = new Sensor("Garage", SensorType.DOOR);
+        securityService.addSensor(existing);
+        String id = UUID.randomUUID().toString();
+        String lines = "{\"sensorId\":\"" + existing.getSensorId() + "\",\"name\":\"Garage\",\"sensorType\":\"DOOR\"}\n"
+                + "{\"sensorId\":\"" + id + "\",\"name\":\"Attic\",\"sensorType\":\"WINDOW\"}\n"
+                + "{\"sensorId\":\"" + id + "\",\"name\":\"Attic again\",\"sensorType\":\"WINDOW\"}\n"
+                + "{\"sensorId\":\"not-a-uuid\",\"name\":\"Porch\",\"sensorType\":\"MOTION\"}\n"
+                + "{\"name\":\"Cellar\",\"sensorType\":\"SMOKE\"}\n"
+                + "[1, 2]\n";
+
+        SensorBulkTransfer.ImportReport report = transfer.importSensors(new StringReader(lines),
+                SensorBulkTransfer.Format.JSON_LINES, null);
+
+        Assertions.assertEquals(1, report.getImported());
+        Assertions.assertEquals(2, report.getDuplicates());
+        Assertions.assertEquals(3, report.getRejected());
+        Assertions.assertEquals(3, report.getErrors().size());
+        Assertions.assertEquals(2, securityService.getSensors().size());
+    }
+
+    @Test
+    void exportThenImport_recreatesSensors() throws IOException {
+        securityService.addSensor(new Sensor("Front door", SensorType.DOOR, "Ground floor"));
+        securityService.addSensor(new Sensor("Bedroom \"north\"", SensorType.WINDOW));
+
+        for (SensorBulkTransfer.Format format : SensorBulkTransfer.Format.values()) {
+            StringWriter out = new StringWriter();
+            Assertions.assertEquals(2, transfer.exportSensors(out, format));
+
+            SecurityService target = new SecurityService(new InMemorySecurityRepository(), Mockito.mock(ImageService.class));
+            SensorBulkTransfer.ImportReport report = new SensorBulkTransfer(target)
+                    .importSensors(new StringReader(out.toString()), format, null);
+
+            Assertions.assertEquals(2, report.getImported());
+            Assertions.assertEquals(securityService.getSensors(), target.getSensors());
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.ImageService;
+import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.SecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Set;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SensorDebouncerTest {
+
+    @Mock
+    private SecurityRepository securityRepository;
+
+    @Mock
+    private ImageService imageService;
+
+    private ManualClock clock;
+    private HierarchicalTimingWheel wheel;
+    private SecurityService securityService;
+    private SensorDebouncer debouncer;
+    private Sensor door;
+
+    @BeforeEach
+    void init() {
+        clock = new ManualClock(0);
+        wheel = new HierarchicalTimingWheel(10, 64, clock);
+        securityService = new SecurityService(securityRepository, imageService);
+        debouncer = new SensorDebouncer(securityService, wheel, Runnable::run, clock);
+        debouncer.setDebounceWindow(SensorType.DOOR, 250);
+        door = new Sensor("front door", SensorType.DOOR);
+    }
+
+    private void advance(long millis) {
+        clock.advance(millis);
+        wheel.advance();
+    }
+
+    @Test
+    void stableReading_passesAfterWindow() {
+        debouncer.submit(door, true);
+        advance(200);
+        verify(securityRepository, never()).updateSensor(any());
+
+        advance(100);
+        verify(securityRepository, times(1)).updateSensor(door);
+        Assertions.assertTrue(door.getActive());
+        Assertions.assertEquals(1, debouncer.getForwardedTransitionCount());
+    }
+
+    @Test
+    void readingsReportedToService_settleThroughDebouncerAndNotifyListeners() {
+        StatusListener listener = mock(StatusListener.class);
+        securityService.addStatusListener(listener);
+        securityService.debounceReadingsWith(debouncer);
+
+        securityService.reportSensorReading(door, true);
+        advance(200);
+        verify(securityRepository, never()).updateSensor(any());
+        verify(listener, never()).sensorStatusChanged();
+
+        advance(100);
+        verify(securityRepository, times(1)).updateSensor(door);
+        verify(listener, times(1)).sensorStatusChanged();
+    }
+
+    @Test
+    void sensorResetByArming_passesTheNextActivation() {
+        securityService.debounceReadingsWith(debouncer);
+        securityService.reportSensorReading(door, true);
+        advance(300);
+        when(securityRepository.getSensors()).thenReturn(Set.of(door));
+
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        Assertions.assertFalse(door.getActive());
+
+        securityService.reportSensorReading(door, true);
+        advance(300);
+        Assertions.assertTrue(door.getActive());
+        Assertions.assertEquals(2, debouncer.getForwardedTransitionCount());
+    }
+
+    @Test
+    void readingThatFlipsBackWithinWindow_isSuppressed() {
+        debouncer.submit(door, true);
+        advance(100);
+        debouncer.submit(door, false);
+        advance(1_000);
+
+        verify(securityRepository, never()).updateSensor(any());
+        Assertions.assertFalse(door.getActive());
+        Assertions.assertEquals(1, debouncer.getSuppressedReadingCount());
+    }
+
+    @Test
+    void zeroWindow_passesImmediately() {
+        debouncer.setDebounceWindow(SensorType.DOOR, 0);
+        debouncer.submit(door, true);
+        verify(securityRepository, times(1)).updateSensor(door);
+    }
+
+    @Test
+    void flappingSensor_isQuarantinedUntilPeriodEnds() {
+        debouncer.setFlapDetection(3, 10_000, 60_000);
+        for (int i = 0; i < 6; i++) {
+            debouncer.submit(door, i % 2 == 0);
+            advance(10);
+        }
+        Assertions.assertTrue(debouncer.isQuarantined(door));
+        Assertions.assertEquals(1, debouncer.getQuarantineCount());
+        Assertions.assertEquals(1, debouncer.getQuarantinedSensorCount());
+        advance(1_000);
+        verify(securityRepository, never()).updateSensor(any());
+
+        advance(60_000);
+        debouncer.submit(door, true);
+        Assertions.assertFalse(debouncer.isQuarantined(door));
+        Assertions.assertEquals(0, debouncer.getQuarantinedSensorCount());
+        advance(300);
+        verify(securityRepository, times(1)).updateSensor(door);
+    }
+
+    @Test
+    void forgottenSensor_pendingReadingDropped() {
+        debouncer.submit(door, true);
+        debouncer.forget(door);
+        advance(1_000);
+        verify(securityRepository, never()).updateSensor(any());
+    }
+}
@@ -0,0 +1,202 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.ImageService;
+import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.InMemorySecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class SensorSupervisorTest {
+
+    private ManualClock clock;
+    private SecurityService securityService;
+    private SensorSupervisor supervisor;
+    private final List<String> onlineChanges = new ArrayList<>();
+    private Sensor door;
+
+    @BeforeEach
+    void init() {
+        clock = new ManualClock(0);
+        securityService = new SecurityService(new InMemorySecurityRepository(), Mockito.mock(ImageService.class));
+        securityService.addStatusListener(new StatusListener() {
+            @Override
+            public void notify(AlarmStatus status) {
+            }
+
+            @Override
+            public void catDetected(boolean catDetected) {
+            }
+
+            @Override
+            public void sensorStatusChanged() {
+            }
+
+            @Override
+            public void sensorOnlineChanged(Sensor sensor, boolean online) {
+                onlineChanges.add(sensor.getName() + (online ? " online" : " offline"));
+            }
+        });
+        supervisor = new SensorSupervisor(securityService, Runnable::run, clock, 100);
+        supervisor.setSupervisionInterval(SensorType.DOOR, 1_000);
+        door = new Sensor("front door", SensorType.DOOR);
+        securityService.addSensor(door);
+        securityService.superviseSensors(supervisor);
+    }
+
+    private int advanceAndSweep(long millis) {
+        int found = 0;
+        for (long step = 0; step < millis; step += 100) {
+            clock.advance(100);
+            found += supervisor.sweep();
+        }
+        return found;
+    }
+
+    @Test
+    void silentSensor_goesOfflineOnceItsIntervalHasPassed() {
+        Assertions.assertEquals(0, advanceAndSweep(900));
+        Assertions.assertFalse(supervisor.isOffline(door));
+
+        Assertions.assertEquals(1, advanceAndSweep(300));
+        Assertions.assertTrue(supervisor.isOffline(door));
+        Assertions.assertTrue(securityService.isSensorOffline(door));
+        Assertions.assertTrue(securityService.getSensorsState());
+        Assertions.assertEquals(List.of("front door offline"), onlineChanges);
+    }
+
+    @Test
+    void activationChange_countsAsHeartbeat_andBringsSensorBackOnline() {
+        advanceAndSweep(600);
+        securityService.changeSensorActivationStatus(door, true);
+        securityService.changeSensorActivationStatus(door, false);
+        Assertions.assertEquals(600, supervisor.getLastSeenMillis(door));
+        Assertions.assertEquals(0, advanceAndSweep(1_000));
+
+        advanceAndSweep(500);
+        Assertions.assertTrue(supervisor.isOffline(door));
+        securityService.changeSensorActivationStatus(door, false);
+
+        Assertions.assertFalse(supervisor.isOffline(door));
+        Assertions.assertFalse(securityService.getSensorsState());
+        Assertions.assertEquals(List.of("front door offline", "front door online"), onlineChanges);
+        Assertions.assertEquals(0, supervisor.getOfflineSensorCount());
+    }
+
+    @Test
+    void heartbeats_keepAnUntouchedSensorOnline() {
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertEquals(0, advanceAndSweep(600));
+            securityService.reportSensorHeartbeat(door);
+        }
+
+        Assertions.assertEquals(3_000, supervisor.getLastSeenMillis(door));
+        Assertions.assertFalse(door.getActive());
+        Assertions.assertTrue(onlineChanges.isEmpty());
+    }
+
+    @Test
+    void reading_countsAsHeartbeat() {
+        advanceAndSweep(600);
+        securityService.reportSensorReading(door, false);
+
+        Assertions.assertEquals(600, supervisor.getLastSeenMillis(door));
+    }
+
+    @Test
+    void arming_keepsOfflineSensorsOffline() {
+        Sensor garageDoor = new Sensor("garage door", SensorType.DOOR, "garage");
+        securityService.addSensor(garageDoor);
+        advanceAndSweep(1_200);
+        Assertions.assertTrue(supervisor.isOffline(door));
+        Assertions.assertTrue(supervisor.isOffline(garageDoor));
+
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        securityService.setZoneArmingStatus("garage", ArmingStatus.ARMED_HOME);
+
+        Assertions.assertTrue(supervisor.isOffline(door));
+        Assertions.assertTrue(supervisor.isOffline(garageDoor));
+        Assertions.assertTrue(securityService.getSensorsState());
+        Assertions.assertEquals(2, onlineChanges.size());
+    }
+
+    @Test
+    void sweeps_onlyLookAtSensorsThatAreDue() {
+        supervisor.setSupervisionInterval(SensorType.MOTION, 5_000);
+        for (int i = 0; i < 1_000; i++) {
+            securityService.addSensor(new Sensor("motion " + i, SensorType.MOTION));
+        }
+
+        advanceAndSweep(1_500);
+
+        Assertions.assertEquals(1_001, supervisor.getSupervisedSensorCount());
+        Assertions.assertEquals(1, supervisor.getOfflineSensorCount());
+        Assertions.assertEquals(1, supervisor.getCheckedSensorCount());
+    }
+
+    @Test
+    void deadlineBeyondTheRing_isFiledAgainUntilItIsDue() {
+        supervisor.setSupervisionInterval(SensorType.DOOR, 20_000);
+
+        Assertions.assertEquals(0, advanceAndSweep(19_900));
+        Assertions.assertFalse(supervisor.isOffline(door));
+        Assertions.assertEquals(1, advanceAndSweep(200));
+        Assertions.assertTrue(supervisor.getCheckedSensorCount() > 1);
+    }
+
+    @Test
+    void sweepThatFellBehind_stillFindsEverySilentSensor() {
+        Sensor window = new Sensor("window", SensorType.WINDOW);
+        securityService.addSensor(window);
+        supervisor.setSupervisionInterval(SensorType.WINDOW, 3_000);
+
+        clock.advance(1_000_000);
+
+        Assertions.assertEquals(2, supervisor.sweep());
+        Assertions.assertTrue(supervisor.isOffline(window));
+    }
+
+    @Test
+    void removedSensor_isNoLongerSupervised() {
+        securityService.removeSensor(door);
+
+        Assertions.assertEquals(0, advanceAndSweep(2_000));
+        Assertions.assertEquals(-1, supervisor.getLastSeenMillis(door));
+        Assertions.assertTrue(onlineChanges.isEmpty());
+    }
+
+    @Test
+    void offlineSensorWhileArmed_escalatesOnlyWhenEnabled() {
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        Sensor window = new Sensor("window", SensorType.WINDOW);
+        securityService.addSensor(window);
+        supervisor.setSupervisionInterval(SensorType.WINDOW, 0);
+
+        advanceAndSweep(1_200);
+        Assertions.assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+
+        securityService.setEscalateOfflineSensors(true);
+        securityService.reportSensorHeartbeat(door);
+        advanceAndSweep(1_200);
+        Assertions.assertEquals(AlarmStatus.PENDING_ALARM, securityService.getAlarmStatus());
+        Assertions.assertFalse(supervisor.isOffline(window));
+    }
+
+    @Test
+    void offlineSensorWhileDisarmed_neverEscalates() {
+        securityService.setEscalateOfflineSensors(true);
+
+        advanceAndSweep(1_200);
+
+        Assertions.assertTrue(supervisor.isOffline(door));
+        Assertions.assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+    }
+}
@@ -0,0 +1,104 @@
+package com.udacity.catpoint.security.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+class StreamingCameraFeedTest {
+
+    private final Path frameDirectory;
+    private final List<Integer> detectedWidths = Collections.synchronizedList(new ArrayList<>());
+    private StreamingCameraFeed feed;
+
+    StreamingCameraFeedTest() throws IOException {
+        frameDirectory = Files.createTempDirectory("catpoint-stream");
+    }
+
+    @AfterEach
+    void cleanUp() throws IOException {
+        if (feed != null) {
+            feed.close();
+        }
+        try (Stream<Path> files = Files.walk(frameDirectory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Writes frames named so the sequence plays them in order, each as wide as its number plus 10.
+     */
+    private void frames(int count) throws IOException {
+        for (int i = 1; i <= count; i++) {
+            ImageIO.write(new BufferedImage(10 + i, 8, BufferedImage.TYPE_INT_RGB), "png",
+                    frameDirectory.resolve(String.format("frame_%03d.png", i)).toFile());
+        }
+    }
+
+    private void play(Consumer<BufferedImage> detector, long frameIntervalMillis) throws Exception {
+        feed = new StreamingCameraFeed(new ImageSequenceFrameSource(frameDirectory), image -> {
+            detectedWidths.add(image.getWidth());
+            detector.accept(image);
+        }, new AdaptiveFrameRateController(1_000, 0, 1_000), frameIntervalMillis);
+        feed.start();
+        feed.awaitCompletion();
+    }
+
+    @Test
+    void pacedSequence_reachesTheDetectorFrameByFrame() throws Exception {
+        frames(5);
+
+        play(image -> { }, 20);
+
+        Assertions.assertEquals(5, feed.getFramesRead());
+        Assertions.assertEquals(feed.getFramesRead(),
+                feed.getFramesProcessed() + feed.getFramesSkipped() + feed.getFramesFailed());
+        Assertions.assertEquals(0, feed.getFramesFailed());
+        Assertions.assertEquals(15, (int) detectedWidths.get(detectedWidths.size() - 1));
+    }
+
+    @Test
+    void slowDetector_skipsFramesRatherThanQueueingThem() throws Exception {
+        frames(20);
+
+        play(image -> {
+            try {
+                Thread.sleep(30);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 2);
+
+        Assertions.assertEquals(20, feed.getFramesRead());
+        Assertions.assertTrue(feed.getFramesSkipped() > 0);
+        Assertions.assertEquals(20, feed.getFramesProcessed() + feed.getFramesSkipped());
+        Assertions.assertEquals(feed.getFramesProcessed(), detectedWidths.size());
+        //the newest frame is never skipped
+        Assertions.assertEquals(30, (int) detectedWidths.get(detectedWidths.size() - 1));
+    }
+
+    @Test
+    void frameThatFailsToDecode_isCountedAndTheStreamCarriesOn() throws Exception {
+        frames(2);
+        Files.write(frameDirectory.resolve("frame_001.png"), new byte[]{(byte) 0x89, 'P', 'N', 'G', 1, 2, 3});
+
+        play(image -> { }, 50);
+
+        Assertions.assertEquals(2, feed.getFramesRead());
+        Assertions.assertEquals(1, feed.getFramesFailed());
+        Assertions.assertEquals(List.of(12), detectedWidths);
+    }
+}